@@ -0,0 +1,130 @@
+package a3;
+
+import java.util.HashMap;
+
+/**
+ * Spreads NPC decision making across physics steps. Physics still runs every
+ * step; only re-deciding the inputs is scheduled, and an NPC keeps driving
+ * with its last inputs in between.
+ *
+ * Each NPC has an update level picked from how much it matters right now.
+ * Level 0 decides every step, level 1 every 2nd, level 2 every 4th and so on.
+ * On top of that, decisions in one server tick are capped by a time budget.
+ * Once the budget is spent, NPCs that are due are pushed back a step, unless
+ * they have already waited {@link #MAX_DEFERRED_STEPS} past their due step.
+ */
+public class AIScheduler {
+	public static final int MAX_LEVEL = 3;
+	public static final int MAX_DEFERRED_STEPS = 8;
+
+	private final long budgetNanos;
+	private final HashMap<GhostAvatar, Slot> slots = new HashMap<GhostAvatar, Slot>();
+	private long step = 0;
+	private long spentNanos = 0;
+	private int decisions = 0;
+	private int deferrals = 0;
+
+	private static class Slot {
+		long dueStep = 0;
+		int level = 0;
+	}
+
+	/**
+	 * @param budgetNanos Time allowed for decisions per server tick.
+	 */
+	public AIScheduler(long budgetNanos) {
+		if (budgetNanos <= 0) {
+			throw new IllegalArgumentException("Budget must be positive: " + budgetNanos);
+		}
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * Starts a server tick. Must be followed by {@link #endTick(int)}.
+	 */
+	public void beginTick() {
+		spentNanos = 0;
+		decisions = 0;
+		deferrals = 0;
+	}
+
+	/**
+	 * Advances the step counter past the steps simulated this tick.
+	 */
+	public void endTick(int steps) {
+		step += steps;
+	}
+
+	/**
+	 * @param stepInTick Which of this tick's steps is being simulated.
+	 * @return Whether the NPC should decide its inputs before this step.
+	 */
+	public boolean isDue(GhostAvatar npc, int stepInTick) {
+		Slot slot = slots.get(npc);
+		if (slot == null) {
+			return true;
+		}
+		long now = step + stepInTick;
+		if (now < slot.dueStep) {
+			return false;
+		}
+		if (spentNanos < budgetNanos || now - slot.dueStep >= MAX_DEFERRED_STEPS) {
+			return true;
+		}
+		deferrals++;
+		return false;
+	}
+
+	/**
+	 * Records a decision and schedules the next one.
+	 *
+	 * @param level Update level from 0 (every step) to {@link #MAX_LEVEL}.
+	 * @param nanos How long the decision took.
+	 */
+	public void decided(GhostAvatar npc, int stepInTick, int level, long nanos) {
+		Slot slot = slots.get(npc);
+		if (slot == null) {
+			slot = new Slot();
+			slots.put(npc, slot);
+		}
+		slot.level = Math.max(0, Math.min(level, MAX_LEVEL));
+		slot.dueStep = step + stepInTick + (1 << slot.level);
+		spentNanos += nanos;
+		decisions++;
+	}
+
+	/**
+	 * @return The NPC's current update level, or 0 if it has not decided yet.
+	 */
+	public int getLevel(GhostAvatar npc) {
+		Slot slot = slots.get(npc);
+		return slot == null ? 0 : slot.level;
+	}
+
+	public void forget(GhostAvatar npc) {
+		slots.remove(npc);
+	}
+
+	public void clear() {
+		slots.clear();
+		step = 0;
+	}
+
+	/**
+	 * @return Decisions made in the current tick.
+	 */
+	public int getDecisions() {
+		return decisions;
+	}
+
+	/**
+	 * @return Due decisions pushed back by the budget in the current tick.
+	 */
+	public int getDeferrals() {
+		return deferrals;
+	}
+
+	public long getSpentNanos() {
+		return spentNanos;
+	}
+}
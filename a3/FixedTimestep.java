@@ -0,0 +1,58 @@
+package a3;
+
+/**
+ * Accumulates variable frame time and hands it back as a whole number of
+ * fixed-size steps, so the simulation behaves the same at any frame rate.
+ *
+ * Time that does not fill a whole step is carried over to the next frame and
+ * exposed as {@link #getAlpha()} for interpolating rendered transforms
+ * between the last two simulated states.
+ */
+public class FixedTimestep {
+	private final float stepMS;
+	private final int maxStepsPerFrame;
+	private float accumulatorMS = 0f;
+
+	public FixedTimestep(float stepsPerSecond, int maxStepsPerFrame) {
+		if (stepsPerSecond <= 0f) {
+			throw new IllegalArgumentException("Step rate must be positive: " + stepsPerSecond);
+		}
+		if (maxStepsPerFrame < 1) {
+			throw new IllegalArgumentException("Must allow at least one step per frame: " + maxStepsPerFrame);
+		}
+		this.stepMS = 1000f / stepsPerSecond;
+		this.maxStepsPerFrame = maxStepsPerFrame;
+	}
+
+	/**
+	 * Adds the frame's elapsed time and returns how many steps to simulate.
+	 * If more than the per-frame cap is owed (e.g. after a long hitch), the
+	 * excess is dropped instead of being simulated in a burst.
+	 */
+	public int advance(float elapsedMS) {
+		accumulatorMS += elapsedMS;
+		int steps = (int) (accumulatorMS / stepMS);
+		if (steps > maxStepsPerFrame) {
+			steps = maxStepsPerFrame;
+			accumulatorMS = stepMS * steps;
+		}
+		accumulatorMS -= stepMS * steps;
+		return steps;
+	}
+
+	/**
+	 * @return How far, in [0, 1), the current frame is between the last
+	 *         simulated state and the next one.
+	 */
+	public float getAlpha() {
+		return Math.min(accumulatorMS / stepMS, 1f);
+	}
+
+	public float getStepMS() {
+		return stepMS;
+	}
+
+	public void reset() {
+		accumulatorMS = 0f;
+	}
+}
@@ -5,7 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
-import ray.rml.Matrix3;
+import ray.rml.Quaternion;
 import ray.rml.Vector3;
 
 public class GameState {
@@ -58,12 +58,12 @@ public class GameState {
 		ghostAvatars.put(ghostID, new GhostAvatar(ghostID));
 	}
 	
-	public void updateGhostAvatar(UUID ghostID, Vector3 ghostPosition, Matrix3 ghostRotation, float vForward, float actualTurn, long time) {
+	public void updateGhostAvatar(UUID ghostID, Vector3 ghostPosition, Quaternion ghostOrientation, float vForward, float actualTurn, long time) {
 		if (!(ghostAvatars.containsKey(ghostID))) {
 			return;
 		}
 		ghostAvatars.get(ghostID).setPos(ghostPosition);
-		ghostAvatars.get(ghostID).setRot(ghostRotation);
+		ghostAvatars.get(ghostID).setOrientation(ghostOrientation);
 		ghostAvatars.get(ghostID).setVelocityForward(vForward);
 		ghostAvatars.get(ghostID).setActualTurn(actualTurn);
 		ghostAvatars.get(ghostID).setLastUpdateTime(time);
@@ -73,10 +73,10 @@ public class GameState {
 		ghostAvatars.remove(ghostID);
 	}
 
-	public void updateItem(UUID itemID, Vector3 itemPos, Matrix3 itemRot) {
+	public void updateItem(UUID itemID, Vector3 itemPos, Quaternion itemOrientation) {
 		if (items.get(itemID) != null) {
 			items.get(itemID).setPos(itemPos);
-			items.get(itemID).setRot(itemRot);
+			items.get(itemID).setOrientation(itemOrientation);
 		}
 	}
 
@@ -2,9 +2,11 @@ package a3;
 
 import java.util.UUID;
 
+import ray.ai.behaviortrees.BTBlackboard;
 import ray.audio.Sound;
 import ray.rml.Matrix3;
-import ray.rml.Matrix3f;
+import ray.rml.Quaternion;
+import ray.rml.Quaternionf;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
 
@@ -13,13 +15,17 @@ public class GhostAvatar {
 	private Item item = null;
 	private float velocityForward = 0f;
 	private Vector3 pos = Vector3f.createFrom(0f, 0f, 0f);
-	private Matrix3 rot = Matrix3f.createIdentityMatrix();
+	private Quaternion orientation = Quaternionf.createIdentityQuaternion();
+	private Matrix3 rot = null;
+	private Quaternion rotOrientation = null;
 	private float actualTurn;
 	private boolean shouldRemove = false;
 	private boolean isNPC = false;
 	private PhysicsBody physicsBody = null;
 	private long lastUpdateTime = 0;
 	private int waypoint = -1;
+	private int racingLineIndex = -1;
+	private BTBlackboard blackboard = null;
 	private int color;
 	private int place;
 	private int zone = 3;
@@ -46,12 +52,25 @@ public class GhostAvatar {
 		this.pos = pos;
 	}
 
+	/**
+	 * The orientation is what's sent over the network; the rotation matrix is
+	 * only derived from it when asked for.
+	 */
 	public Matrix3 getRot() {
+		Quaternion q = orientation;
+		if (rotOrientation != q) {
+			rot = q.toMatrix3();
+			rotOrientation = q;
+		}
 		return rot;
 	}
 
-	public void setRot(Matrix3 rot) {
-		this.rot = rot;
+	public Quaternion getOrientation() {
+		return orientation;
+	}
+
+	public void setOrientation(Quaternion orientation) {
+		this.orientation = orientation;
 	}
 	
 	public boolean hasItem() {
@@ -118,6 +137,22 @@ public class GhostAvatar {
 		this.waypoint = waypoint;
 	}
 
+	public int getRacingLineIndex() {
+		return racingLineIndex;
+	}
+
+	public void setRacingLineIndex(int racingLineIndex) {
+		this.racingLineIndex = racingLineIndex;
+	}
+
+	public BTBlackboard getBlackboard() {
+		return blackboard;
+	}
+
+	public void setBlackboard(BTBlackboard blackboard) {
+		this.blackboard = blackboard;
+	}
+
 	public void setActualTurn(float actualTurn) {
 		this.actualTurn = actualTurn;
 	}
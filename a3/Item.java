@@ -3,7 +3,8 @@ package a3;
 import java.util.UUID;
 
 import ray.rml.Matrix3;
-import ray.rml.Matrix3f;
+import ray.rml.Quaternion;
+import ray.rml.Quaternionf;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
 
@@ -11,7 +12,9 @@ public class Item {
 	private UUID ID;
 	private ItemType type;
 	private Vector3 pos = Vector3f.createFrom(0f, 0f, 0f);
-	private Matrix3 rot = Matrix3f.createIdentityMatrix();
+	private Quaternion orientation = Quaternionf.createIdentityQuaternion();
+	private Matrix3 rot = null;
+	private Quaternion rotOrientation = null;
 	
 	public Item(ItemType type) {
 		this.type = type;
@@ -35,11 +38,20 @@ public class Item {
 	public void setPos(Vector3 pos) {
 		this.pos = pos;
 	}
+	// derived from the orientation when asked for, see GhostAvatar.getRot()
 	public Matrix3 getRot() {
+		Quaternion q = orientation;
+		if (rotOrientation != q) {
+			rot = q.toMatrix3();
+			rotOrientation = q;
+		}
 		return rot;
 	}
-	public void setRot(Matrix3 rot) {
-		this.rot = rot;
+	public Quaternion getOrientation() {
+		return orientation;
+	}
+	public void setOrientation(Quaternion orientation) {
+		this.orientation = orientation;
 	}
 	public ItemType getType() {
 		return type;
@@ -0,0 +1,566 @@
+package a3;
+
+import ray.rml.FastMath;
+import ray.rml.Matrix3;
+import ray.rml.Quaternion;
+import ray.rml.Quaternionf;
+import ray.rml.Vector3;
+import ray.rml.Vector3f;
+
+/**
+ * Structure-of-arrays counterpart of {@link PhysicsBody} for simulating many
+ * karts at once, e.g. every NPC of a room (or of all rooms) on the server.
+ *
+ * Each field of a kart lives in its own primitive array indexed by kart, and
+ * {@link #update(float)} runs the step as a series of passes over all karts.
+ * The arithmetic passes are plain counted loops over parallel arrays, which
+ * HotSpot can unroll and auto-vectorize; the passes that sample the track
+ * surface stay scalar.
+ *
+ * The step performs the same floating point operations, in the same order, as
+ * {@link PhysicsBody#updatePhysics(float)}, so a kart in the batch ends up in
+ * exactly the same state as a PhysicsBody given the same inputs.
+ *
+ * Orientations are unit quaternions, [w, x, y, z] like
+ * Quaternionf.toFloatArray(), stored 4 floats per kart, and composed with the
+ * same helpers as PhysicsBody.
+ */
+public class KartBatch {
+	private static final float DEGREE_TO_RADIAN = (float) Math.PI / 180.0f;
+	private static final float GRAVITY = -10f;
+	private static final float SPINOUT_DURATION = 1500f;
+	private static final float SPEED_BOOST_DURATION = 1000f;
+	private static final float CAR_LENGTH = 0.6f;
+	private static final float CAR_WIDTH = 0.3f;
+	// Untuned defaults, same as PhysicsBody
+	private static final float ACCELERATION_RATE = 20f;
+	private static final float DECCELERATION_RATE = -15f;
+	private static final float TURN_RATE = 50f;
+	private static final float DRIFTING_TURN_RATE = 75f;
+	private static final float MAX_BASE_SPEED = 20f;
+
+	private final TrackSurface surface;
+	private final int capacity;
+	private int count = 0;
+
+	private final float[] posX;
+	private final float[] posY;
+	private final float[] posZ;
+	private final float[] direction;
+	private final float[] rotation;
+	private final float[] vForward;
+	private final float[] vUp;
+	private final float[] currentPitch;
+	private final float[] currentRoll;
+	private final float[] desiredTurn;
+	private final float[] desiredTurnRollingAverage;
+	private final float[] actualTurn;
+	private final float[] spinoutTimer;
+	private final float[] speedBoostTimer;
+	private final float[] spinDirection;
+	private final boolean[] isOnGround;
+	private final boolean[] isOnSpeedBoost;
+	private final boolean[] isAccelerating;
+	private final boolean[] isDeccelerating;
+	private final boolean[] isDrifting;
+
+	// Per-kart tuning
+	private final float[] accelerationRate;
+	private final float[] deccelerationRate;
+	private final float[] turnRate;
+	private final float[] driftingTurnRate;
+	private final float[] maxBaseSpeed;
+
+	// Per-step scratch
+	private final float[] fvX;
+	private final float[] fvY;
+	private final float[] fvZ;
+	private final float[] turnDegrees;
+	// Right and forward axes of each kart's direction, 6 floats per kart
+	private final float[] axes;
+	private final float[] quaternionA = new float[4];
+	private final float[] quaternionB = new float[4];
+	private final float[] quaternionC = new float[4];
+
+	public KartBatch(int capacity) {
+		this(capacity, TrackSurface.getTrack1Surface());
+	}
+
+	public KartBatch(int capacity, TrackSurface surface) {
+		this.capacity = capacity;
+		this.surface = surface;
+		posX = new float[capacity];
+		posY = new float[capacity];
+		posZ = new float[capacity];
+		direction = new float[capacity * 4];
+		rotation = new float[capacity * 4];
+		vForward = new float[capacity];
+		vUp = new float[capacity];
+		currentPitch = new float[capacity];
+		currentRoll = new float[capacity];
+		desiredTurn = new float[capacity];
+		desiredTurnRollingAverage = new float[capacity];
+		actualTurn = new float[capacity];
+		spinoutTimer = new float[capacity];
+		speedBoostTimer = new float[capacity];
+		spinDirection = new float[capacity];
+		isOnGround = new boolean[capacity];
+		isOnSpeedBoost = new boolean[capacity];
+		isAccelerating = new boolean[capacity];
+		isDeccelerating = new boolean[capacity];
+		isDrifting = new boolean[capacity];
+		accelerationRate = new float[capacity];
+		deccelerationRate = new float[capacity];
+		turnRate = new float[capacity];
+		driftingTurnRate = new float[capacity];
+		maxBaseSpeed = new float[capacity];
+		fvX = new float[capacity];
+		fvY = new float[capacity];
+		fvZ = new float[capacity];
+		turnDegrees = new float[capacity];
+		axes = new float[capacity * 6];
+	}
+
+	/**
+	 * Adds a kart at rest, with the same state a new PhysicsBody would have.
+	 *
+	 * @return The kart's index in the batch.
+	 */
+	public int add(Vector3 position, Matrix3 rotation) {
+		if (count >= capacity) {
+			throw new IllegalStateException("Kart batch is full: " + capacity);
+		}
+		int i = count++;
+		posX[i] = position.x();
+		posY[i] = position.y();
+		posZ[i] = position.z();
+		Quaternion q = rotation.toQuaternion();
+		direction[i * 4] = 1f;
+		direction[i * 4 + 1] = 0f;
+		direction[i * 4 + 2] = 0f;
+		direction[i * 4 + 3] = 0f;
+		this.rotation[i * 4] = q.w();
+		this.rotation[i * 4 + 1] = q.x();
+		this.rotation[i * 4 + 2] = q.y();
+		this.rotation[i * 4 + 3] = q.z();
+		vForward[i] = 0f;
+		vUp[i] = 0f;
+		currentPitch[i] = 0f;
+		currentRoll[i] = 0f;
+		desiredTurn[i] = 0f;
+		desiredTurnRollingAverage[i] = 0f;
+		actualTurn[i] = 0f;
+		spinoutTimer[i] = 0f;
+		speedBoostTimer[i] = 0f;
+		spinDirection[i] = 0f;
+		isOnGround[i] = true;
+		isOnSpeedBoost[i] = false;
+		isAccelerating[i] = false;
+		isDeccelerating[i] = false;
+		isDrifting[i] = false;
+		accelerationRate[i] = ACCELERATION_RATE;
+		deccelerationRate[i] = DECCELERATION_RATE;
+		turnRate[i] = TURN_RATE;
+		driftingTurnRate[i] = DRIFTING_TURN_RATE;
+		maxBaseSpeed[i] = MAX_BASE_SPEED;
+		return i;
+	}
+
+	/**
+	 * Removes a kart by moving the last kart into its slot.
+	 *
+	 * @return The old index of the kart that now lives at <code>i</code>, or
+	 *         -1 if <code>i</code> was the last kart.
+	 */
+	public int remove(int i) {
+		int last = --count;
+		if (i == last) {
+			return -1;
+		}
+		posX[i] = posX[last];
+		posY[i] = posY[last];
+		posZ[i] = posZ[last];
+		System.arraycopy(direction, last * 4, direction, i * 4, 4);
+		System.arraycopy(rotation, last * 4, rotation, i * 4, 4);
+		vForward[i] = vForward[last];
+		vUp[i] = vUp[last];
+		currentPitch[i] = currentPitch[last];
+		currentRoll[i] = currentRoll[last];
+		desiredTurn[i] = desiredTurn[last];
+		desiredTurnRollingAverage[i] = desiredTurnRollingAverage[last];
+		actualTurn[i] = actualTurn[last];
+		spinoutTimer[i] = spinoutTimer[last];
+		speedBoostTimer[i] = speedBoostTimer[last];
+		spinDirection[i] = spinDirection[last];
+		isOnGround[i] = isOnGround[last];
+		isOnSpeedBoost[i] = isOnSpeedBoost[last];
+		isAccelerating[i] = isAccelerating[last];
+		isDeccelerating[i] = isDeccelerating[last];
+		isDrifting[i] = isDrifting[last];
+		accelerationRate[i] = accelerationRate[last];
+		deccelerationRate[i] = deccelerationRate[last];
+		turnRate[i] = turnRate[last];
+		driftingTurnRate[i] = driftingTurnRate[last];
+		maxBaseSpeed[i] = maxBaseSpeed[last];
+		return last;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Same tuning spread as {@link PhysicsBody.Tuning#DEFAULT}.
+	 */
+	public void randomizeConstants(int i) {
+		float n = random(0.8f, 1.2f);
+		accelerationRate[i] *= n;
+		deccelerationRate[i] *= n;
+		n = random(1f, 1.15f);
+		turnRate[i] *= n;
+		driftingTurnRate[i] *= n;
+		n *= 0.95f;
+		maxBaseSpeed[i] *= n;
+	}
+
+	private float random(float min, float max) {
+		return (float) (min + Math.random() * (max - min));
+	}
+
+	public void update(float elapsedMS) {
+		final int n = count;
+		final float elapsedSec = elapsedMS / 1000;
+		updateTimers(n, elapsedMS);
+		updateForwardVectors(n);
+		updateSpeedBoosts(n);
+		updateTurning(n, elapsedSec);
+		updateAxes(n);
+		updateForwardVelocity(n, elapsedSec);
+		updatePosition(n, elapsedSec);
+		updateHeight(n, elapsedSec);
+		updateOrientation(n, elapsedSec);
+	}
+
+	private void updateTimers(int n, float elapsedMS) {
+		for (int i = 0; i < n; i++) {
+			spinoutTimer[i] = Math.max(0, spinoutTimer[i] - elapsedMS);
+			speedBoostTimer[i] = Math.max(0, speedBoostTimer[i] - elapsedMS);
+			float timer = spinoutTimer[i];
+			if (timer > 750) {
+				timer -= 750;
+			}
+			spinDirection[i] = timer * 360 / 750;
+		}
+	}
+
+	private void updateForwardVectors(int n) {
+		// (direction * rotation).column(2)
+		for (int i = 0; i < n; i++) {
+			PhysicsBody.mult(direction, i * 4, rotation, i * 4, quaternionA, 0);
+			PhysicsBody.toAxes(quaternionA, 0, axes, i * 6);
+			fvX[i] = axes[i * 6 + 3];
+			fvY[i] = axes[i * 6 + 4];
+			fvZ[i] = axes[i * 6 + 5];
+		}
+	}
+
+	private void updateSpeedBoosts(int n) {
+		for (int i = 0; i < n; i++) {
+			float x = posX[i];
+			float z = posZ[i];
+			boolean boost =
+				surface.isSpeedBoost(x + fvX[i] * 1f, z + fvZ[i] * 1f) ||
+				surface.isSpeedBoost(x, z) ||
+				surface.isSpeedBoost(x - fvX[i] * 1f, z - fvZ[i] * 1f);
+			if (boost && !(spinoutTimer[i] > 0)) {
+				speedBoostTimer[i] = SPEED_BOOST_DURATION;
+			}
+			isOnSpeedBoost[i] = boost;
+		}
+	}
+
+	private void updateTurning(int n, float elapsedSec) {
+		for (int i = 0; i < n; i++) {
+			desiredTurnRollingAverage[i] = desiredTurnRollingAverage[i] * 0.9f + desiredTurn[i] * 0.1f;
+			float dTurn = desiredTurnRollingAverage[i] - actualTurn[i];
+			actualTurn[i] += dTurn / 6;
+			float rate = (vForward[i] < 0 ? -1f : 1f) * (isDrifting[i] ? driftingTurnRate[i] : turnRate[i]);
+			float degrees = actualTurn[i] * elapsedSec * rate;
+			// Reduce turn rate if car is moving slowly
+			float speed = Math.abs(vForward[i]);
+			if (speed <= 1f) {
+				degrees = (speed <= 0.05f) ? 0 : degrees * ((speed * 16 / 19) + 3/19);
+			}
+			turnDegrees[i] = degrees;
+		}
+		for (int i = 0; i < n; i++) {
+			if (isOnGround[i]) {
+				setRotationQuaternion(quaternionA, turnDegrees[i], 0f, 1f, 0f);
+				PhysicsBody.mult(direction, i * 4, quaternionA, 0, quaternionB, 0);
+				System.arraycopy(quaternionB, 0, direction, i * 4, 4);
+			}
+		}
+	}
+
+	private void updateAxes(int n) {
+		for (int i = 0; i < n; i++) {
+			PhysicsBody.toAxes(direction, i * 4, axes, i * 6);
+		}
+	}
+
+	private void updateForwardVelocity(int n, float elapsedSec) {
+		for (int i = 0; i < n; i++) {
+			if (speedBoostTimer[i] > 0f) {
+				vForward[i] = getMaxSpeed(i);
+			}
+			else if (isOnGround[i]) {
+				boolean acc = isAccelerating[i];
+				boolean dec = isDeccelerating[i];
+				if (acc) {
+					vForward[i] += accelerationRate[i] * elapsedSec;
+				}
+				if (dec) {
+					vForward[i] += deccelerationRate[i] * elapsedSec;
+				}
+				if ((!acc && !dec || acc && dec) && Math.abs(vForward[i]) < 0.2f) {
+					// Clamp to prevent small movement when kart should be stationary
+					vForward[i] = 0f;
+				}
+				else {
+					vForward[i] += getGroundFriction(i) * elapsedSec;
+					vForward[i] = Math.max(vForward[i], -getMaxSpeed(i) / 4);
+					vForward[i] = Math.min(vForward[i], getMaxSpeed(i));
+				}
+			}
+		}
+	}
+
+	private void updatePosition(int n, float elapsedSec) {
+		for (int i = 0; i < n; i++) {
+			float fvScale = (vForward[i] + getGravityForce(i)) * elapsedSec;
+			fvX[i] = fvX[i] * fvScale;
+			fvY[i] = fvY[i] * fvScale;
+			fvZ[i] = fvZ[i] * fvScale;
+		}
+		for (int i = 0; i < n; i++) {
+			// Check if kart is running into a wall by checking the angle of the kart
+			int o = i * 6;
+			float currentHeight = posY[i];
+			float tCarLength = vForward[i] > 0 ? CAR_LENGTH : -CAR_LENGTH;
+			float aheadX = posX[i] + axes[o + 3] * tCarLength;
+			float aheadZ = posZ[i] + axes[o + 5] * tCarLength;
+			posX[i] = aheadX + axes[o + 3] * -tCarLength;
+			posY[i] = (posY[i] + axes[o + 4] * tCarLength) + axes[o + 4] * -tCarLength;
+			posZ[i] = aheadZ + axes[o + 5] * -tCarLength;
+			float heightDifferential = surface.getWorldHeight(aheadX, aheadZ) - currentHeight;
+			float pitchAngle = FastMath.toDegrees(FastMath.atan(Math.abs(heightDifferential) / Math.abs(tCarLength)));
+			if (heightDifferential > 0f && pitchAngle > 45f) {
+				vForward[i] = -vForward[i] / 10;
+			}
+			else {
+				posX[i] = posX[i] + fvX[i];
+				posY[i] = posY[i] + fvY[i];
+				posZ[i] = posZ[i] + fvZ[i];
+			}
+		}
+	}
+
+	private void updateHeight(int n, float elapsedSec) {
+		for (int i = 0; i < n; i++) {
+			float groundHeight = surface.getWorldHeight(posX[i], posZ[i]);
+			float currentHeight = posY[i];
+			// If kart was already on the ground, and the ground is near, "snap" it to the ground
+			if (isOnGround[i] && (currentHeight - groundHeight) < 0.2f) {
+				currentHeight = groundHeight;
+			}
+			// If falling, update currentHeight with gravity
+			if (currentHeight > groundHeight) {
+				isOnGround[i] = false;
+				vUp[i] += GRAVITY * elapsedSec;
+				currentHeight += ((GRAVITY * elapsedSec * elapsedSec / 2) + vUp[i] * elapsedSec);
+			}
+			// Must check if gravity has put us below ground (or going uphill)
+			if (currentHeight < groundHeight) {
+				// if we were falling with enough speed, bounce
+				if (!isOnGround[i] && vUp[i] < -5f) {
+					vUp[i] = Math.abs(vUp[i]) / 8;
+				}
+				else {
+					vUp[i] = 0;
+					isOnGround[i] = true;
+				}
+				currentHeight = groundHeight;
+			}
+			posY[i] = currentHeight;
+		}
+	}
+
+	private void updateOrientation(int n, float elapsedSec) {
+		for (int i = 0; i < n; i++) {
+			int o = i * 6;
+			float newPitch;
+			float newRoll;
+			if (isOnGround[i]) {
+				float currentHeight = posY[i];
+				// Calculate pitch
+				float headingX = posX[i] + axes[o + 3] * CAR_LENGTH;
+				float headingZ = posZ[i] + axes[o + 5] * CAR_LENGTH;
+				posX[i] = headingX + axes[o + 3] * -CAR_LENGTH;
+				posY[i] = (posY[i] + axes[o + 4] * CAR_LENGTH) + axes[o + 4] * -CAR_LENGTH;
+				posZ[i] = headingZ + axes[o + 5] * -CAR_LENGTH;
+				float heightChange = surface.getWorldHeight(headingX, headingZ) - currentHeight;
+				float pitchAngle = FastMath.toDegrees(FastMath.atan(heightChange / CAR_LENGTH));
+				if (heightChange < -0.5f) {
+					// if falling, don't correct pitch much
+					newPitch = (pitchAngle - currentPitch[i]) * elapsedSec / 3 + currentPitch[i];
+				}
+				else {
+					newPitch = (pitchAngle - currentPitch[i]) * elapsedSec * 3 + currentPitch[i];
+				}
+
+				// Calculate roll
+				headingX = posX[i] + axes[o] * CAR_LENGTH;
+				headingZ = posZ[i] + axes[o + 2] * CAR_LENGTH;
+				posX[i] = headingX + axes[o] * -CAR_LENGTH;
+				posY[i] = (posY[i] + axes[o + 1] * CAR_LENGTH) + axes[o + 1] * -CAR_LENGTH;
+				posZ[i] = headingZ + axes[o + 2] * -CAR_LENGTH;
+				heightChange = surface.getWorldHeight(headingX, headingZ) - currentHeight;
+				float rollAngle = FastMath.toDegrees(FastMath.atan(heightChange / CAR_WIDTH)) * 0.6f; // car rolls too much, damp it
+				newRoll = (rollAngle - currentRoll[i]) * elapsedSec * 5 + currentRoll[i];
+			}
+			// If in air, straighten kart out
+			else {
+				newPitch = -currentPitch[i] * elapsedSec + currentPitch[i];
+				newRoll = -currentRoll[i] * elapsedSec + currentRoll[i];
+			}
+			setRotationQuaternion(quaternionA, -newPitch, 1f, 0f, 0f);
+			setRotationQuaternion(quaternionB, newRoll, 0f, 0f, 1f);
+			PhysicsBody.mult(quaternionA, 0, quaternionB, 0, rotation, i * 4);
+			currentPitch[i] = newPitch;
+			currentRoll[i] = newRoll;
+		}
+	}
+
+	private float getGravityForce(int i) {
+		return FastMath.sin(FastMath.toRadians(currentPitch[i])) * GRAVITY;
+	}
+
+	private float getMaxSpeed(int i) {
+		return (maxBaseSpeed[i] + getGravityForce(i)) * getMaxSpeedModifier(i);
+	}
+
+	private float getMaxSpeedModifier(int i) {
+		if (spinoutTimer[i] <= 0f) {
+			if (speedBoostTimer[i] > 0f) {
+				return 1.2f;
+			}
+			return 1f;
+		}
+		return ((spinoutTimer[i] / SPINOUT_DURATION) * 0.3f ) + 0.4f;
+	}
+
+	private float getGroundFriction(int i) {
+		float v = vForward[i];
+		float friction = surface.isHighFriction(posX[i], posZ[i]) ? v * 3.0f : v * 0.5f;
+		friction = Math.max(10f, friction);
+		if (v > 0f) {
+			friction = -friction;
+		}
+		return friction;
+	}
+
+	/**
+	 * Same as PhysicsBody's, with FastMath.
+	 */
+	private static void setRotationQuaternion(float[] out, float degrees, float x, float y, float z) {
+		final float halfRadians = degrees * DEGREE_TO_RADIAN * 0.5f;
+		final float sin = FastMath.sin(halfRadians);
+		out[0] = FastMath.cos(halfRadians);
+		out[1] = x * sin;
+		out[2] = y * sin;
+		out[3] = z * sin;
+	}
+
+	public void resetInputs(int i) {
+		isAccelerating[i] = false;
+		isDeccelerating[i] = false;
+		isDrifting[i] = false;
+		desiredTurn[i] = 0f;
+	}
+
+	public void setAccelerating(int i, boolean accelerating) {
+		isAccelerating[i] = accelerating;
+	}
+
+	public void setDeccelerating(int i, boolean deccelerating) {
+		isDeccelerating[i] = deccelerating;
+	}
+
+	public void setDrifting(int i, boolean drifting) {
+		isDrifting[i] = drifting;
+	}
+
+	public void setDesiredTurn(int i, float turn) {
+		desiredTurn[i] = turn;
+	}
+
+	public void handleCollision(int i) {
+		spinoutTimer[i] = SPINOUT_DURATION;
+	}
+
+	public boolean isSpinning(int i) {
+		return spinoutTimer[i] > 0;
+	}
+
+	public float getVForward(int i) {
+		return vForward[i];
+	}
+
+	public float getActualTurn(int i) {
+		return actualTurn[i];
+	}
+
+	public float getX(int i) {
+		return posX[i];
+	}
+
+	public float getY(int i) {
+		return posY[i];
+	}
+
+	public float getZ(int i) {
+		return posZ[i];
+	}
+
+	public Vector3 getPosition(int i) {
+		return Vector3f.createFrom(posX[i], posY[i], posZ[i]);
+	}
+
+	public Matrix3 getDirection(int i) {
+		return toQuaternion(direction, i).toMatrix3();
+	}
+
+	public Matrix3 getSpinRotation(int i) {
+		if (!isSpinning(i)) {
+			return Quaternionf.createIdentityQuaternion().toMatrix3();
+		}
+		setRotationQuaternion(quaternionC, spinDirection[i], 0f, 1f, 0f);
+		return Quaternionf.createFrom(quaternionC).toMatrix3();
+	}
+
+	public Matrix3 getRotation(int i) {
+		return toQuaternion(rotation, i).toMatrix3();
+	}
+
+	/**
+	 * Same as {@link PhysicsBody#getOrientation()}.
+	 */
+	public Quaternion getOrientation(int i) {
+		PhysicsBody.mult(direction, i * 4, rotation, i * 4, quaternionC, 0);
+		return Quaternionf.createFrom(quaternionC);
+	}
+
+	private static Quaternion toQuaternion(float[] values, int i) {
+		return Quaternionf.createFrom(values[i * 4], values[i * 4 + 1], values[i * 4 + 2], values[i * 4 + 3]);
+	}
+}
@@ -0,0 +1,120 @@
+package a3;
+
+import java.util.Random;
+
+import ray.rml.Matrix3f;
+import ray.rml.Vector3;
+
+/**
+ * Compares {@link KartBatch} against one {@link PhysicsBody} per kart.
+ *
+ * First checks that both produce the same state for the same inputs, then
+ * reports throughput in karts per millisecond for several batch sizes.
+ *
+ * Run from the project root (for the height map):
+ * <code>java a3.KartBatchBenchmark</code>
+ */
+public class KartBatchBenchmark {
+	private static final float STEP_MS = 1000f / 60;
+	private static final int[] KART_COUNTS = {8, 64, 512, 4096};
+
+	public static void main(String[] args) {
+		if (!checkEquivalence(64, 3000)) {
+			System.out.println("KartBatch diverged from PhysicsBody");
+			System.exit(1);
+		}
+		System.out.println("KartBatch matches PhysicsBody bit for bit");
+		System.out.println(String.format("%8s %16s %16s", "karts", "batch k/ms", "bodies k/ms"));
+		for (int karts : KART_COUNTS) {
+			int ticks = Math.max(200, 400000 / karts);
+			double batch = runBatch(karts, ticks);
+			double bodies = runBodies(karts, ticks);
+			System.out.println(String.format("%8d %16.1f %16.1f", karts, batch, bodies));
+		}
+	}
+
+	private static boolean checkEquivalence(int karts, int ticks) {
+		KartBatch batch = new KartBatch(karts);
+		PhysicsBody[] bodies = new PhysicsBody[karts];
+		for (int i = 0; i < karts; i++) {
+			batch.add(startingPosition(i), Matrix3f.createIdentityMatrix());
+			bodies[i] = new PhysicsBody(startingPosition(i), Matrix3f.createIdentityMatrix());
+		}
+		Random random = new Random(1);
+		for (int t = 0; t < ticks; t++) {
+			for (int i = 0; i < karts; i++) {
+				boolean accelerate = random.nextInt(10) < 8;
+				boolean drift = random.nextInt(10) < 2;
+				float turn = random.nextFloat() * 2 - 1;
+				batch.resetInputs(i);
+				batch.setAccelerating(i, accelerate);
+				batch.setDrifting(i, drift);
+				batch.setDesiredTurn(i, turn);
+				bodies[i].resetInputs();
+				bodies[i].setAccelerating(accelerate);
+				bodies[i].setDrifting(drift);
+				bodies[i].setDesiredTurn(turn);
+				if (t % 1000 == 500 + i) {
+					batch.handleCollision(i);
+					bodies[i].handleCollision();
+				}
+			}
+			batch.update(STEP_MS);
+			for (int i = 0; i < karts; i++) {
+				bodies[i].updatePhysics(STEP_MS);
+			}
+		}
+		for (int i = 0; i < karts; i++) {
+			if (!batch.getPosition(i).equals(bodies[i].getPosition())
+				|| !batch.getRotation(i).equals(bodies[i].getRotation())
+				|| !batch.getDirection(i).equals(bodies[i].getDirection())
+				|| batch.getVForward(i) != bodies[i].getVForward()
+			) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static double runBatch(int karts, int ticks) {
+		KartBatch batch = new KartBatch(karts);
+		for (int i = 0; i < karts; i++) {
+			batch.add(startingPosition(i), Matrix3f.createIdentityMatrix());
+			batch.setAccelerating(i, true);
+			batch.setDesiredTurn(i, (i % 3 - 1) * 0.5f);
+		}
+		for (int t = 0; t < ticks; t++) {
+			batch.update(STEP_MS);
+		}
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			batch.update(STEP_MS);
+		}
+		return karts * (double) ticks / ((System.nanoTime() - start) / 1e6);
+	}
+
+	private static double runBodies(int karts, int ticks) {
+		PhysicsBody[] bodies = new PhysicsBody[karts];
+		for (int i = 0; i < karts; i++) {
+			bodies[i] = new PhysicsBody(startingPosition(i), Matrix3f.createIdentityMatrix());
+			bodies[i].setAccelerating(true);
+			bodies[i].setDesiredTurn((i % 3 - 1) * 0.5f);
+		}
+		for (int t = 0; t < ticks; t++) {
+			for (PhysicsBody body : bodies) {
+				body.updatePhysics(STEP_MS);
+			}
+		}
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++) {
+			for (PhysicsBody body : bodies) {
+				body.updatePhysics(STEP_MS);
+			}
+		}
+		return karts * (double) ticks / ((System.nanoTime() - start) / 1e6);
+	}
+
+	private static Vector3 startingPosition(int i) {
+		return Track1.getPosition(i % 8 + 1);
+	}
+}
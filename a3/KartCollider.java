@@ -0,0 +1,378 @@
+package a3;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import ray.rml.Vector3;
+import ray.rml.Vector3f;
+
+/**
+ * Pushes overlapping karts apart and exchanges their velocity along the
+ * contact normal, treating every kart as an equal-mass circle on the ground
+ * plane.
+ *
+ * Candidate pairs come from a sort-and-sweep along the track's longest axis.
+ * The sorted order is kept between ticks and re-sorted with an insertion sort,
+ * which is close to linear because karts rarely swap order in one tick.
+ *
+ * NPC karts are moved through their physics body. Player karts are simulated
+ * by their own client, so their share of the response is handed to a
+ * {@link BumpListener} to be sent on.
+ *
+ * A player's position keeps arriving from before the bump until the client
+ * has applied it, so a contact involving a player is resolved once and then
+ * left alone while the pair stays overlapped, for up to
+ * {@link #BUMP_RESEND_TICKS} ticks. Otherwise each stale update would push
+ * the kart again on top of the last push.
+ */
+public class KartCollider {
+	public interface BumpListener {
+		void onPlayerBumped(GhostAvatar avatar, float pushX, float pushZ, float vForward);
+	}
+
+	/**
+	 * How long a contact involving a player is left alone after its bump is
+	 * sent: half a second at the server's 60 ticks per second, which is
+	 * enough for the pushed position to come back from the client.
+	 */
+	public static final int BUMP_RESEND_TICKS = 30;
+
+	private final float radius;
+	private final boolean isSweepAlongX;
+	// The tick each tracked kart was last passed in, boxed once per kart
+	private final Map<GhostAvatar, int[]> lastSeen = new HashMap<GhostAvatar, int[]>();
+	private int tick = 0;
+	private GhostAvatar[] order = new GhostAvatar[16];
+	// Per-kart values for this tick, indexed like order
+	private float[] sweep = new float[16];
+	private float[] cross = new float[16];
+	private float[] posX = new float[16];
+	private float[] posZ = new float[16];
+	private float[] velX = new float[16];
+	private float[] velZ = new float[16];
+	private float[] pushX = new float[16];
+	private float[] pushZ = new float[16];
+	private boolean[] isHit = new boolean[16];
+	private int count = 0;
+	// Contacts involving a player, and the tick their bump was last sent
+	private GhostAvatar[] contactA = new GhostAvatar[8];
+	private GhostAvatar[] contactB = new GhostAvatar[8];
+	private int[] contactTick = new int[8];
+	private boolean[] isContactTouching = new boolean[8];
+	private int contactCount = 0;
+
+	/**
+	 * @param radius Collision radius of a kart.
+	 * @param isSweepAlongX Whether to sort along world X instead of world Z.
+	 *        Pick the axis the track spreads out along the most.
+	 */
+	public KartCollider(float radius, boolean isSweepAlongX) {
+		if (radius <= 0f) {
+			throw new IllegalArgumentException("Radius must be positive: " + radius);
+		}
+		this.radius = radius;
+		this.isSweepAlongX = isSweepAlongX;
+	}
+
+	/**
+	 * Chooses the sweep axis from the extent of the track 1 waypoints.
+	 */
+	public static KartCollider forTrack1(float radius) {
+		float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE;
+		float minZ = Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		for (int i = 0; i < Track1.NUM_WAYPOINTS; i++) {
+			Vector3 w = Track1.getWaypoint(i);
+			minX = Math.min(minX, w.x());
+			maxX = Math.max(maxX, w.x());
+			minZ = Math.min(minZ, w.z());
+			maxZ = Math.max(maxZ, w.z());
+		}
+		return new KartCollider(radius, maxX - minX > maxZ - minZ);
+	}
+
+	/**
+	 * Resolves every overlapping pair among <code>avatars</code>. Karts
+	 * missing from the collection since the last call are forgotten.
+	 *
+	 * @return The number of overlapping pairs found.
+	 */
+	public int resolve(Collection<GhostAvatar> avatars, BumpListener listener) {
+		tick++;
+		syncMembership(avatars);
+		for (int i = 0; i < count; i++) {
+			load(i);
+		}
+		insertionSort();
+
+		int contacts = 0;
+		float diameter = radius * 2f;
+		for (int i = 0; i < count; i++) {
+			for (int j = i + 1; j < count && sweep[j] - sweep[i] < diameter; j++) {
+				if (Math.abs(cross[j] - cross[i]) >= diameter) {
+					continue;
+				}
+				if (isBumpPending(i, j, diameter)) {
+					continue;
+				}
+				if (resolvePair(i, j, diameter)) {
+					contacts++;
+					recordContact(order[i], order[j]);
+				}
+			}
+		}
+		forgetSeparatedContacts();
+		if (contacts > 0) {
+			apply(listener);
+		}
+		return contacts;
+	}
+
+	public void clear() {
+		lastSeen.clear();
+		Arrays.fill(order, 0, count, null);
+		count = 0;
+		Arrays.fill(contactA, 0, contactCount, null);
+		Arrays.fill(contactB, 0, contactCount, null);
+		contactCount = 0;
+	}
+
+	private void syncMembership(Collection<GhostAvatar> avatars) {
+		for (GhostAvatar ga : avatars) {
+			if (ga.isShouldRemove() || ga.getPos() == null) {
+				continue;
+			}
+			int[] seen = lastSeen.get(ga);
+			if (seen == null) {
+				seen = new int[1];
+				lastSeen.put(ga, seen);
+				ensureCapacity(count + 1);
+				order[count++] = ga;
+			}
+			seen[0] = tick;
+		}
+		// Drop karts that left, keeping the survivors in their sorted order
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (lastSeen.get(order[i])[0] == tick) {
+				order[kept++] = order[i];
+			}
+			else {
+				lastSeen.remove(order[i]);
+			}
+		}
+		Arrays.fill(order, kept, count, null);
+		count = kept;
+	}
+
+	private static boolean isClientSimulated(GhostAvatar ga) {
+		return !ga.isNPC() || ga.getPhysicsBody() == null;
+	}
+
+	private int findContact(GhostAvatar a, GhostAvatar b) {
+		for (int c = 0; c < contactCount; c++) {
+			if ((contactA[c] == a && contactB[c] == b) || (contactA[c] == b && contactB[c] == a)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the pair had a bump sent recently enough that the client may
+	 * not have applied it yet, in which case the pair is left alone. A
+	 * contact is kept for as long as the pair overlaps.
+	 */
+	private boolean isBumpPending(int a, int b, float diameter) {
+		int c = findContact(order[a], order[b]);
+		if (c < 0 || tick - contactTick[c] >= BUMP_RESEND_TICKS) {
+			return false;
+		}
+		float dx = posX[b] - posX[a];
+		float dz = posZ[b] - posZ[a];
+		if (dx * dx + dz * dz < diameter * diameter) {
+			isContactTouching[c] = true;
+		}
+		return true;
+	}
+
+	private void recordContact(GhostAvatar a, GhostAvatar b) {
+		if (!isClientSimulated(a) && !isClientSimulated(b)) {
+			// Both are moved right away, so the next tick sees the result
+			return;
+		}
+		int c = findContact(a, b);
+		if (c < 0) {
+			if (contactCount == contactA.length) {
+				int size = contactCount * 2;
+				contactA = Arrays.copyOf(contactA, size);
+				contactB = Arrays.copyOf(contactB, size);
+				contactTick = Arrays.copyOf(contactTick, size);
+				isContactTouching = Arrays.copyOf(isContactTouching, size);
+			}
+			c = contactCount++;
+			contactA[c] = a;
+			contactB[c] = b;
+		}
+		contactTick[c] = tick;
+		isContactTouching[c] = true;
+	}
+
+	private void forgetSeparatedContacts() {
+		int kept = 0;
+		for (int c = 0; c < contactCount; c++) {
+			if (isContactTouching[c]) {
+				contactA[kept] = contactA[c];
+				contactB[kept] = contactB[c];
+				contactTick[kept] = contactTick[c];
+				isContactTouching[kept] = false;
+				kept++;
+			}
+		}
+		Arrays.fill(contactA, kept, contactCount, null);
+		Arrays.fill(contactB, kept, contactCount, null);
+		contactCount = kept;
+	}
+
+	private void load(int i) {
+		GhostAvatar ga = order[i];
+		Vector3 pos = ga.getPos();
+		posX[i] = pos.x();
+		posZ[i] = pos.z();
+		sweep[i] = isSweepAlongX ? posX[i] : posZ[i];
+		cross[i] = isSweepAlongX ? posZ[i] : posX[i];
+		if (ga.getRot() != null) {
+			Vector3 forward = ga.getRot().column(2);
+			velX[i] = forward.x() * ga.getVelocityForward();
+			velZ[i] = forward.z() * ga.getVelocityForward();
+		}
+		else {
+			velX[i] = 0f;
+			velZ[i] = 0f;
+		}
+		pushX[i] = 0f;
+		pushZ[i] = 0f;
+		isHit[i] = false;
+	}
+
+	private void insertionSort() {
+		for (int i = 1; i < count; i++) {
+			float key = sweep[i];
+			if (sweep[i - 1] <= key) {
+				continue;
+			}
+			GhostAvatar ga = order[i];
+			float c = cross[i], x = posX[i], z = posZ[i], vx = velX[i], vz = velZ[i];
+			int j = i - 1;
+			while (j >= 0 && sweep[j] > key) {
+				order[j + 1] = order[j];
+				sweep[j + 1] = sweep[j];
+				cross[j + 1] = cross[j];
+				posX[j + 1] = posX[j];
+				posZ[j + 1] = posZ[j];
+				velX[j + 1] = velX[j];
+				velZ[j + 1] = velZ[j];
+				j--;
+			}
+			order[j + 1] = ga;
+			sweep[j + 1] = key;
+			cross[j + 1] = c;
+			posX[j + 1] = x;
+			posZ[j + 1] = z;
+			velX[j + 1] = vx;
+			velZ[j + 1] = vz;
+		}
+	}
+
+	private boolean resolvePair(int a, int b, float diameter) {
+		float dx = posX[b] - posX[a];
+		float dz = posZ[b] - posZ[a];
+		float distSq = dx * dx + dz * dz;
+		if (distSq >= diameter * diameter) {
+			return false;
+		}
+		float dist = (float) Math.sqrt(distSq);
+		float nx, nz;
+		if (dist > 0.0001f) {
+			nx = dx / dist;
+			nz = dz / dist;
+		}
+		else {
+			// Exactly on top of each other, push apart sideways
+			nx = isSweepAlongX ? 0f : 1f;
+			nz = isSweepAlongX ? 1f : 0f;
+		}
+
+		// Split the push between the two karts
+		float half = (diameter - dist) / 2f;
+		pushX[a] -= nx * half;
+		pushZ[a] -= nz * half;
+		pushX[b] += nx * half;
+		pushZ[b] += nz * half;
+
+		// Equal masses: swap the velocity components along the normal, but
+		// only while the karts are still closing in on each other
+		float va = velX[a] * nx + velZ[a] * nz;
+		float vb = velX[b] * nx + velZ[b] * nz;
+		if (va > vb) {
+			float exchange = vb - va;
+			velX[a] += nx * exchange;
+			velZ[a] += nz * exchange;
+			velX[b] -= nx * exchange;
+			velZ[b] -= nz * exchange;
+		}
+		isHit[a] = true;
+		isHit[b] = true;
+		return true;
+	}
+
+	private void apply(BumpListener listener) {
+		for (int i = 0; i < count; i++) {
+			if (!isHit[i]) {
+				continue;
+			}
+			GhostAvatar ga = order[i];
+			float vForward = ga.getVelocityForward();
+			if (ga.getRot() != null) {
+				// Karts can only move along their heading, so keep the part of
+				// the new velocity that lies along it
+				Vector3 forward = ga.getRot().column(2);
+				float lengthSq = forward.x() * forward.x() + forward.z() * forward.z();
+				if (lengthSq > 0f) {
+					vForward = (velX[i] * forward.x() + velZ[i] * forward.z()) / lengthSq;
+				}
+			}
+			if (ga.isNPC() && ga.getPhysicsBody() != null) {
+				PhysicsBody body = ga.getPhysicsBody();
+				body.applyBump(pushX[i], pushZ[i], vForward);
+				ga.setPos(body.getPosition());
+				ga.setVelocityForward(vForward);
+			}
+			else {
+				Vector3 pos = ga.getPos();
+				ga.setPos(Vector3f.createFrom(pos.x() + pushX[i], pos.y(), pos.z() + pushZ[i]));
+				if (listener != null) {
+					listener.onPlayerBumped(ga, pushX[i], pushZ[i], vForward);
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= order.length) {
+			return;
+		}
+		int size = Math.max(capacity, order.length * 2);
+		order = Arrays.copyOf(order, size);
+		sweep = Arrays.copyOf(sweep, size);
+		cross = Arrays.copyOf(cross, size);
+		posX = Arrays.copyOf(posX, size);
+		posZ = Arrays.copyOf(posZ, size);
+		velX = Arrays.copyOf(velX, size);
+		velZ = Arrays.copyOf(velZ, size);
+		pushX = Arrays.copyOf(pushX, size);
+		pushZ = Arrays.copyOf(pushZ, size);
+		isHit = Arrays.copyOf(isHit, size);
+	}
+}
@@ -3,9 +3,9 @@ package a3;
 import myGameEngine.*;
 import myGameEngine.Networking.ProtocolClient;
 import myGameEngine.controllers.BananaDeathAnimationController;
+import myGameEngine.controllers.ItemBoxSpinController;
 import myGameEngine.controllers.ItemGrowthController;
 import myGameEngine.controllers.NodeOrbitController;
-import myGameEngine.controllers.ParticleController;
 import myGameEngine.myRage.HUDString;
 import net.java.games.input.Controller;
 import ray.audio.AudioManagerFactory;
@@ -35,6 +35,7 @@ import ray.rage.rendersystem.shader.GpuShaderProgram;
 import ray.rage.scene.Camera;
 import ray.rage.scene.Entity;
 import ray.rage.scene.Light;
+import ray.rage.scene.ParticleSystem;
 import ray.rage.scene.SceneManager;
 import ray.rage.scene.SceneNode;
 import ray.rage.scene.SkeletalEntity;
@@ -45,22 +46,17 @@ import ray.rage.scene.controllers.RotationController;
 import ray.rage.scene.Camera.Frustum.*;
 import ray.rage.util.Configuration;
 import ray.rml.Degreef;
-import ray.rml.Matrix3;
+import ray.rml.FastMath;
 import ray.rml.Matrix3f;
-import ray.rml.Vector2;
-import ray.rml.Vector2f;
+import ray.rml.Quaternion;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
-import ray.rml.Vector4;
 
 import java.awt.*;
 import java.io.*;
 import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 
@@ -98,6 +94,9 @@ public class MyGame extends VariableFrameRateGame {
 	private final boolean SHOW_PACKET_MESSAGES = false;
 	private NodeOrbitController cameraController = null; 
 	private PhysicsBody physicsBody;
+	private FixedTimestep physicsTimestep;
+	private PhysicsRecording raceRecording = null;
+	private final int MAX_PHYSICS_STEPS_PER_FRAME = 5;
 	private LobbyGui lobbyGui = null;
 	private PlaceGui placeGui = null;
 	private WaitingGui waitingGui = null;
@@ -113,7 +112,30 @@ public class MyGame extends VariableFrameRateGame {
 	private int carTextureNum = 1;
 	private long totalElapsedTime = 0;
 	private int NUM_TREES = 10;
-	private int wayPoint = -1;
+	private int racePlace = 1;
+	// Scene handles cached at creation, so per-frame updates make no name lookups
+	private static final int KART_NODE = 0;
+	private static final int KART_WHEEL1 = 1;
+	private static final int KART_WHEEL1_YAW = 2;
+	private static final int KART_WHEEL2 = 3;
+	private static final int KART_WHEEL2_YAW = 4;
+	private static final int KART_WHEEL3 = 5;
+	private static final int KART_WHEEL4 = 6;
+	private static final int KART_HANDLES = 7;
+	private static final int ITEM_BOX_NODE = 0;
+	private static final int ITEM_BOX_QUESTIONMARK_BODY = 1;
+	private static final int ITEM_BOX_QUESTIONMARK_DOT = 2;
+	private int[] playerHandles = new int[KART_HANDLES];
+	private int cameraNodeHandle = 0;
+	private int[] treeHandles = new int[NUM_TREES];
+	private HashMap<UUID, int[]> ghostHandles = new HashMap<UUID, int[]>();
+	private HashMap<Integer, SceneNode> ghostPrefabs = new HashMap<Integer, SceneNode>();
+	private HashMap<UUID, int[]> itemBoxHandles = new HashMap<UUID, int[]>();
+	private HashMap<UUID, Integer> itemHandles = new HashMap<UUID, Integer>();
+	// one batch per tile colour, since a batch is drawn with a single texture
+	private static final int MAX_EXPLOSION_PARTICLES = 64;
+	private static final float EXPLOSION_PARTICLE_GRAVITY = 48f;
+	private ParticleSystem[] explosionParticles;
 
 	public int getCarTextureNum() {
 		return carTextureNum;
@@ -190,6 +212,7 @@ public class MyGame extends VariableFrameRateGame {
 	@Override
 	protected void setupScene(Engine eng, SceneManager sm) throws IOException {
 		setTextures(new PreloadTextures(this));
+		createExplosionParticles(sm);
 		lobbyRotator = new RotationController(Vector3f.createUnitVectorY(), 0.02f);
 		getEngine().getSceneManager().addController(lobbyRotator);
 		setupNetworking();
@@ -201,6 +224,9 @@ public class MyGame extends VariableFrameRateGame {
 		setupPointLight(sm);
 		createDolphinWithCamera(sm);
 		physicsBody = new PhysicsBody(playerNode.getWorldPosition(), playerNode.getWorldRotation());
+		float physicsRate = Float.parseFloat(eng.getConfiguration().valueOf("game.physics.rate"));
+		physicsTimestep = new FixedTimestep(physicsRate, MAX_PHYSICS_STEPS_PER_FRAME);
+		physicsBody.setDeterministic(Boolean.parseBoolean(eng.getConfiguration().valueOf("game.physics.deterministic")));
 		initMeshes();
 		setupInputs();
 		createSkyBox(eng, sm);
@@ -263,7 +289,7 @@ public class MyGame extends VariableFrameRateGame {
 	}
 
 	private void setEarParameters(SceneManager sm) {
-		SceneNode camera = sm.getSceneNode("dolphinNodeCamera");
+		SceneNode camera = sm.getSceneNode(cameraNodeHandle);
 		audioMgr.getEar().setLocation(camera.getWorldPosition());
 		audioMgr.getEar().setOrientation(camera.getWorldForwardAxis(), Vector3f.createUnitVectorY());
 		// audioMgr.getEar().setVelocity(physicsBody.getDirection().column(2).mult(physicsBody.getVForward()));
@@ -284,6 +310,7 @@ public class MyGame extends VariableFrameRateGame {
 			treeE.playAnimation("waveAnimation", 0.5f, LOOP, 0);
 			SceneNode treeN = getEngine().getSceneManager().getRootSceneNode().createChildSceneNode(treeE.getName());
 			treeN.attachObject(treeE);
+			treeHandles[i] = treeE.getHandle();
 		}
 	}
 
@@ -352,16 +379,28 @@ public class MyGame extends VariableFrameRateGame {
 		frametime = System.currentTimeMillis();
 		physicsBody.resetInputs();
 		im.update(elapsTime);
+		// Render between the last two physics states while simulating
+		float alpha = 1f;
 		if (gameState.getRaceState() != RaceState.LOBBY
 			&& gameState.getRaceState() != RaceState.FINISH
 		) {
-			physicsBody.updatePhysics(elapsTime);	
+			int steps = physicsTimestep.advance(elapsTime);
+			for (int i = 0; i < steps; i++) {
+				physicsBody.updatePhysics(physicsTimestep.getStepMS());
+				if (raceRecording != null) {
+					raceRecording.recordTick(physicsBody);
+				}
+			}
+			alpha = physicsTimestep.getAlpha();
+		}
+		else {
+			physicsTimestep.reset();
 		}
-		playerNode.setLocalPosition(physicsBody.getPosition());
-		playerNode.setLocalRotation(physicsBody.getDirection());
-		playerAvatar.setLocalRotation(physicsBody.getRotation());
+		playerNode.setLocalPosition(physicsBody.getInterpolatedPosition(alpha));
+		playerNode.setLocalOrientation(physicsBody.getInterpolatedDirection(alpha));
+		playerAvatar.setLocalOrientation(physicsBody.getInterpolatedRotation(alpha));
 		if (gameState.getRaceState() != RaceState.LOBBY) {
-			playerAvatarRotator.setLocalRotation(physicsBody.getSpinRotation());
+			playerAvatarRotator.setLocalOrientation(physicsBody.getInterpolatedSpinRotation(alpha));
 		}
 		if (gameState.getRaceState() != RaceState.FINISH) {
 			updateLapInfo();
@@ -378,14 +417,14 @@ public class MyGame extends VariableFrameRateGame {
 			if (SHOW_PACKET_MESSAGES) System.out.println("Sending Update Information");
 			clientProtocol.updatePlayerInformation(
 				this.getPlayerPosition(),
-				this.getPlayerRotation(),
+				this.getPlayerOrientation(),
 				physicsBody.getVForward(),
 				physicsBody.getActualTurn(),
 				carTextureNum
 			);
 		}
 		for (int i = 0; i < NUM_TREES; i++) {
-			((SkeletalEntity) engine.getSceneManager().getEntity("tree" + i)).update();
+			((SkeletalEntity) engine.getSceneManager().getEntity(treeHandles[i])).update();
 		}
 		updatePlayerItem();
 		updateGameStateDisplay();
@@ -412,7 +451,7 @@ public class MyGame extends VariableFrameRateGame {
 		int lap = raceLap == 0 ? 1 : raceLap;
 		stringList.get(0).setAll("Lap " + lap + "/3", bottomLeftX, bottomLeftY);
 
-		placeGui.update(calculatePlace(), elapsTime);
+		placeGui.update(racePlace, elapsTime);
 
 		int bottomRightX = rs.getCanvas().getWidth() - 100;
 		int bottomRightY = 15;
@@ -427,10 +466,14 @@ public class MyGame extends VariableFrameRateGame {
 
 	protected void updateItemBoxesRotation() {
 		SceneManager sm = getEngine().getSceneManager();
+		SceneNode cameraNode = sm.getSceneNode(cameraNodeHandle);
 		for (HashMap.Entry<UUID, ItemBox> entry : gameState.getItemBoxes().entrySet()) {
-			UUID id = entry.getKey();
+			int[] handles = itemBoxHandles.get(entry.getKey());
+			if (handles == null) {
+				continue;
+			}
 			
-			SceneNode itemBoxN = sm.getSceneNode(id.toString());
+			SceneNode itemBoxN = sm.getSceneNode(handles[ITEM_BOX_NODE]);
 			ItemBox itemBox = entry.getValue();
 			Vector3 lp = itemBoxN.getLocalPosition();
 			if (itemBox.getIsActive() == 0) {
@@ -443,13 +486,12 @@ public class MyGame extends VariableFrameRateGame {
 			float scale = entry.getValue().scaleFactor();
 			itemBoxN.setLocalScale(scale * 0.6f, scale * 0.6f, scale * 0.6f);
 			
-			SceneNode questionmarkbody = sm.getSceneNode(id.toString() + "questionmarkbody");
-			SceneNode questionmarkdot = sm.getSceneNode(id.toString() + "questionmarkdot");
-			SceneNode cameraNode = sm.getSceneNode("dolphinNodeCamera");
+			SceneNode questionmarkbody = sm.getSceneNode(handles[ITEM_BOX_QUESTIONMARK_BODY]);
+			SceneNode questionmarkdot = sm.getSceneNode(handles[ITEM_BOX_QUESTIONMARK_DOT]);
 			
 			Vector3 qmWP = questionmarkbody.getWorldPosition();
 			Vector3 cWP = cameraNode.getWorldPosition();
-			float angle = (float) Math.toDegrees(Math.atan((qmWP.x() - cWP.x())/(qmWP.z() - cWP.z())));
+			float angle = FastMath.toDegrees(FastMath.atan((qmWP.x() - cWP.x())/(qmWP.z() - cWP.z())));
 			if (qmWP.z() > cWP.z()) {
 				angle += 180f;
 			}
@@ -487,6 +529,8 @@ public class MyGame extends VariableFrameRateGame {
 		Entity wheel1 = sm.createEntity("wheel1", "wheelSpikes.obj");
 		SceneNode wheel1N = playerAvatarRotator.createChildSceneNode("wheel1");
 		SceneNode wheel1yawN = wheel1N.createChildSceneNode("wheel1yaw");
+		playerHandles[KART_WHEEL1] = wheel1N.getHandle();
+		playerHandles[KART_WHEEL1_YAW] = wheel1yawN.getHandle();
 		wheel1yawN.attachObject(wheel1);
 		wheel1.setRenderState(cullingState);
 		wheel1N.translate(2.2f, -0.4f, 2.4f);
@@ -496,6 +540,8 @@ public class MyGame extends VariableFrameRateGame {
 		Entity wheel2 = sm.createEntity("wheel2", "wheelSpikes.obj");
 		SceneNode wheel2N = playerAvatarRotator.createChildSceneNode("wheel2");
 		SceneNode wheel2yawN = wheel2N.createChildSceneNode("wheel2yaw");
+		playerHandles[KART_WHEEL2] = wheel2N.getHandle();
+		playerHandles[KART_WHEEL2_YAW] = wheel2yawN.getHandle();
 		wheel2yawN.attachObject(wheel2);
 		wheel2.setRenderState(cullingState);
 		wheel2N.translate(-2.0f, -0.4f, 2.4f);
@@ -505,6 +551,7 @@ public class MyGame extends VariableFrameRateGame {
 		// back left
 		Entity wheel3 = sm.createEntity("wheel3", "wheelSpikes.obj");
 		SceneNode wheel3N = playerAvatarRotator.createChildSceneNode("wheel3");
+		playerHandles[KART_WHEEL3] = wheel3N.getHandle();
 		wheel3N.attachObject(wheel3);
 		wheel3.setRenderState(cullingState);
 		wheel3N.translate(2.2f, -0.4f, -1.45f);
@@ -513,6 +560,7 @@ public class MyGame extends VariableFrameRateGame {
 		// back right
 		Entity wheel4 = sm.createEntity("wheel4", "wheelSpikes.obj");
 		SceneNode wheel4N = playerAvatarRotator.createChildSceneNode("wheel4");
+		playerHandles[KART_WHEEL4] = wheel4N.getHandle();
 		wheel4N.attachObject(wheel4);
 		wheel4.setRenderState(cullingState);
 		wheel4N.translate(-2.0f, -0.4f, -1.45f);
@@ -523,7 +571,7 @@ public class MyGame extends VariableFrameRateGame {
 		skyN.translate(-50f, 15f, -110f);
 		skyN.rotate(Degreef.createFrom(20f), Vector3f.createUnitVectorY());
 		skyN.rotate(Degreef.createFrom(15f), Vector3f.createUnitVectorX());
-		dolphinN.createChildSceneNode(dolphinN.getName() + "Camera");
+		cameraNodeHandle = dolphinN.createChildSceneNode(dolphinN.getName() + "Camera").getHandle();
 		setCameraToSky();
 	}
 	
@@ -838,76 +886,103 @@ public class MyGame extends VariableFrameRateGame {
 		return playerNode.getWorldPosition();
 	}
 	
-	public Matrix3 getPlayerRotation() {
-		return playerAvatarRotator.getWorldRotation();
+	public Quaternion getPlayerOrientation() {
+		return playerAvatarRotator.getWorldOrientation();
 	}
 	
 	public void createGhostAvatar(UUID ghostID, Vector3 ghostPosition, int color) {
 		try {
-			CullingState cullingState = (CullingState) getEngine().getSceneManager().getRenderSystem().createRenderState(RenderState.Type.CULLING);
-			cullingState.setCulling(CullingState.Culling.DISABLED);
-
 			SceneManager sm = getEngine().getSceneManager();
-			SceneNode ghostN = sm.getRootSceneNode().createChildSceneNode(ghostID.toString());
+			SceneNode ghostN = sm.instantiate(getGhostPrefab(sm, color), ghostID.toString());
+			sm.getRootSceneNode().attachChild(ghostN);
 			ghostN.setLocalPosition(ghostPosition);
-			Entity dolphinE = sm.createEntity(ghostID.toString(), "car1.obj");
-			dolphinE.setRenderState(cullingState);
-			ghostN.attachObject(dolphinE);
-			TextureState ghostCarTexture = (TextureState) sm.getRenderSystem().createRenderState(RenderState.Type.TEXTURE);
-			ghostCarTexture.setTexture(getTextures().getCarTexture(color));
-			dolphinE.setRenderState(ghostCarTexture);
-			ghostN.scale(0.3f, 0.3f, 0.3f);
 			gameState.createGhostAvatar(ghostID, ghostPosition);
 			if (gameState.getGhostAvatars().size() < 8) {
 				carSounds[gameState.getGhostAvatars().size()].play();
 			}
 
-			
-			// front left
-			Entity wheel1 = sm.createEntity("wheel1" + ghostID.toString(), "wheelSpikes.obj");
-			SceneNode wheel1N = ghostN.createChildSceneNode("wheel1" + ghostID.toString());
-			SceneNode wheel1yawN = wheel1N.createChildSceneNode("wheel1yaw" + ghostID.toString());
-			wheel1yawN.attachObject(wheel1);
-			wheel1.setRenderState(cullingState);
-			wheel1N.translate(2.2f, -0.4f, 2.4f);
-			wheel1N.scale(0.15f, 0.15f, 0.15f);
-			
-			// front right
-			Entity wheel2 = sm.createEntity("wheel2" + ghostID.toString(), "wheelSpikes.obj");
-			SceneNode wheel2N = ghostN.createChildSceneNode("wheel2" + ghostID.toString());
-			SceneNode wheel2yawN = wheel2N.createChildSceneNode("wheel2yaw" + ghostID.toString());
-			wheel2yawN.attachObject(wheel2);
-			wheel2.setRenderState(cullingState);
-			wheel2N.translate(-2.0f, -0.4f, 2.4f);
-			wheel2yawN.roll(Degreef.createFrom(180f));
-			wheel2N.scale(0.15f, 0.15f, 0.15f);
-			
-			// back left
-			Entity wheel3 = sm.createEntity("wheel3" + ghostID.toString(), "wheelSpikes.obj");
-			SceneNode wheel3N = ghostN.createChildSceneNode("wheel3" + ghostID.toString());
-			wheel3N.attachObject(wheel3);
-			wheel3.setRenderState(cullingState);
-			wheel3N.translate(2.2f, -0.4f, -1.45f);
-			wheel3N.scale(0.15f, 0.15f, 0.15f);
-			
-			// back right
-			Entity wheel4 = sm.createEntity("wheel4" + ghostID.toString(), "wheelSpikes.obj");
-			SceneNode wheel4N = ghostN.createChildSceneNode("wheel4" + ghostID.toString());
-			wheel4N.attachObject(wheel4);
-			wheel4.setRenderState(cullingState);
-			wheel4N.translate(-2.0f, -0.4f, -1.45f);
-			wheel4N.roll(Degreef.createFrom(180f));
-			wheel4N.scale(0.15f, 0.15f, 0.15f);
+			// children are in the order the prefab creates them
+			SceneNode wheel1N = (SceneNode) ghostN.getChild(0);
+			SceneNode wheel2N = (SceneNode) ghostN.getChild(1);
+			int[] handles = new int[KART_HANDLES];
+			handles[KART_NODE] = ghostN.getHandle();
+			handles[KART_WHEEL1] = wheel1N.getHandle();
+			handles[KART_WHEEL1_YAW] = ((SceneNode) wheel1N.getChild(0)).getHandle();
+			handles[KART_WHEEL2] = wheel2N.getHandle();
+			handles[KART_WHEEL2_YAW] = ((SceneNode) wheel2N.getChild(0)).getHandle();
+			handles[KART_WHEEL3] = ((SceneNode) ghostN.getChild(2)).getHandle();
+			handles[KART_WHEEL4] = ((SceneNode) ghostN.getChild(3)).getHandle();
+			ghostHandles.put(ghostID, handles);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
+
+	// Builds the kart of the given colour once, off the scene graph, so that
+	// every ghost of that colour is a cheap copy sharing its meshes and states
+	private SceneNode getGhostPrefab(SceneManager sm, int color) throws IOException {
+		SceneNode prefab = ghostPrefabs.get(color);
+		if (prefab != null) {
+			return prefab;
+		}
+
+		String name = "ghostKart" + color;
+		CullingState cullingState = (CullingState) sm.getRenderSystem().createRenderState(RenderState.Type.CULLING);
+		cullingState.setCulling(CullingState.Culling.DISABLED);
+
+		prefab = sm.createSceneNode(name);
+		Entity carE = sm.createEntity(name + "Car", "car1.obj");
+		carE.setRenderState(cullingState);
+		prefab.attachObject(carE);
+		TextureState ghostCarTexture = (TextureState) sm.getRenderSystem().createRenderState(RenderState.Type.TEXTURE);
+		ghostCarTexture.setTexture(getTextures().getCarTexture(color));
+		carE.setRenderState(ghostCarTexture);
+		prefab.scale(0.3f, 0.3f, 0.3f);
+
+		// front left
+		Entity wheel1 = sm.createEntity(name + "Wheel1", "wheelSpikes.obj");
+		SceneNode wheel1N = prefab.createChildSceneNode(name + "Wheel1");
+		SceneNode wheel1yawN = wheel1N.createChildSceneNode(name + "Wheel1yaw");
+		wheel1yawN.attachObject(wheel1);
+		wheel1.setRenderState(cullingState);
+		wheel1N.translate(2.2f, -0.4f, 2.4f);
+		wheel1N.scale(0.15f, 0.15f, 0.15f);
+
+		// front right
+		Entity wheel2 = sm.createEntity(name + "Wheel2", "wheelSpikes.obj");
+		SceneNode wheel2N = prefab.createChildSceneNode(name + "Wheel2");
+		SceneNode wheel2yawN = wheel2N.createChildSceneNode(name + "Wheel2yaw");
+		wheel2yawN.attachObject(wheel2);
+		wheel2.setRenderState(cullingState);
+		wheel2N.translate(-2.0f, -0.4f, 2.4f);
+		wheel2yawN.roll(Degreef.createFrom(180f));
+		wheel2N.scale(0.15f, 0.15f, 0.15f);
+
+		// back left
+		Entity wheel3 = sm.createEntity(name + "Wheel3", "wheelSpikes.obj");
+		SceneNode wheel3N = prefab.createChildSceneNode(name + "Wheel3");
+		wheel3N.attachObject(wheel3);
+		wheel3.setRenderState(cullingState);
+		wheel3N.translate(2.2f, -0.4f, -1.45f);
+		wheel3N.scale(0.15f, 0.15f, 0.15f);
+
+		// back right
+		Entity wheel4 = sm.createEntity(name + "Wheel4", "wheelSpikes.obj");
+		SceneNode wheel4N = prefab.createChildSceneNode(name + "Wheel4");
+		wheel4N.attachObject(wheel4);
+		wheel4.setRenderState(cullingState);
+		wheel4N.translate(-2.0f, -0.4f, -1.45f);
+		wheel4N.roll(Degreef.createFrom(180f));
+		wheel4N.scale(0.15f, 0.15f, 0.15f);
+
+		ghostPrefabs.put(color, prefab);
+		return prefab;
+	}
 	
-	public void updateGhostAvatar(UUID ghostID, Vector3 ghostPosition, Matrix3 ghostRotation, float vForward, float actualTurn, int color, long time) {
+	public void updateGhostAvatar(UUID ghostID, Vector3 ghostPosition, Quaternion ghostRotation, float vForward, float actualTurn, int color, long time) {
 		try {
-			SceneManager sm = getEngine().getSceneManager();
-			if (!sm.hasSceneNode(ghostID.toString())) {
+			if (!ghostHandles.containsKey(ghostID)) {
 				System.out.println("Ghost does not exist.  Creating: " + ghostID.toString());
 				createGhostAvatar(ghostID, ghostPosition, color);
 				return;
@@ -920,60 +995,60 @@ public class MyGame extends VariableFrameRateGame {
 	}
 	
 	public void updateGameStateDisplay() {
-		final float SPIN_FACTOR = 1.5f;
-		getEngine().getSceneManager().getSceneNode("wheel3").pitch(Degreef.createFrom(SPIN_FACTOR * (physicsBody.getVForward() + physicsBody.getGravityForce())));
-		getEngine().getSceneManager().getSceneNode("wheel4").pitch(Degreef.createFrom(-SPIN_FACTOR * (physicsBody.getVForward() + physicsBody.getGravityForce())));
-		
-		getEngine().getSceneManager().getSceneNode("wheel1yaw").pitch(Degreef.createFrom(SPIN_FACTOR * (physicsBody.getVForward() + physicsBody.getGravityForce())));
-		getEngine().getSceneManager().getSceneNode("wheel1").setLocalRotation(Matrix3f.createIdentityMatrix());
-		getEngine().getSceneManager().getSceneNode("wheel1").yaw(Degreef.createFrom(physicsBody.getActualTurn() * 30f));
-		
-		getEngine().getSceneManager().getSceneNode("wheel2yaw").pitch(Degreef.createFrom(-SPIN_FACTOR * (physicsBody.getVForward() + physicsBody.getGravityForce())));
-		getEngine().getSceneManager().getSceneNode("wheel2").setLocalRotation(Matrix3f.createIdentityMatrix());
-		getEngine().getSceneManager().getSceneNode("wheel2").yaw(Degreef.createFrom(physicsBody.getActualTurn() * 30f));
-
 		SceneManager sm = getEngine().getSceneManager();
+		updateWheels(sm, playerHandles, physicsBody.getVForward() + physicsBody.getGravityForce(), physicsBody.getActualTurn());
+
 		for (Entry<UUID, GhostAvatar> entry : gameState.getGhostAvatars().entrySet()) {
-			String id = entry.getKey().toString();
-			SceneNode ghostN = sm.getSceneNode(id);
+			int[] handles = ghostHandles.get(entry.getKey());
+			if (handles == null) {
+				continue;
+			}
+			SceneNode ghostN = sm.getSceneNode(handles[KART_NODE]);
 			ghostN.setLocalPosition(entry.getValue().getPos());
 			ghostN.moveUp(CAR_HEIGHT_OFFSET);
-			ghostN.setLocalRotation(entry.getValue().getRot());
+			ghostN.setLocalOrientation(entry.getValue().getOrientation());
 			
 			GhostAvatar ga = entry.getValue();
-
-			sm.getSceneNode("wheel3" + id).pitch(Degreef.createFrom(SPIN_FACTOR * ga.getVelocityForward()));
-			sm.getSceneNode("wheel4" + id).pitch(Degreef.createFrom(-SPIN_FACTOR * ga.getVelocityForward()));
-			
-			sm.getSceneNode("wheel1yaw" + id).pitch(Degreef.createFrom(SPIN_FACTOR * ga.getVelocityForward()));
-			sm.getSceneNode("wheel1" + id).setLocalRotation(Matrix3f.createIdentityMatrix());
-			sm.getSceneNode("wheel1" + id).yaw(Degreef.createFrom(ga.getActualTurn() * 30f));
-			
-			sm.getSceneNode("wheel2yaw" + id).pitch(Degreef.createFrom(-SPIN_FACTOR * ga.getVelocityForward()));
-			sm.getSceneNode("wheel2" + id).setLocalRotation(Matrix3f.createIdentityMatrix());
-			sm.getSceneNode("wheel2" + id).yaw(Degreef.createFrom(ga.getActualTurn() * 30f));
-
+			updateWheels(sm, handles, ga.getVelocityForward(), ga.getActualTurn());
 		}
 		for (Entry<UUID, Item> entry : gameState.getItems().entrySet()) {
-			SceneNode itemN = null;
-			try {
-				itemN = sm.getSceneNode(entry.getKey().toString());
-			}
-			catch (Exception e) {
+			Integer handle = itemHandles.get(entry.getKey());
+			if (handle == null || !sm.hasSceneNode(handle)) {
 				continue;
 			}
+			SceneNode itemN = sm.getSceneNode(handle);
 			itemN.setLocalPosition(entry.getValue().getPos());
-			itemN.setLocalRotation(entry.getValue().getRot());
+			itemN.setLocalOrientation(entry.getValue().getOrientation());
 		}
 		handleInterpolation();
 	}
+
+	private void updateWheels(SceneManager sm, int[] handles, float velocity, float turn) {
+		final float SPIN_FACTOR = 1.5f;
+		sm.getSceneNode(handles[KART_WHEEL3]).pitch(Degreef.createFrom(SPIN_FACTOR * velocity));
+		sm.getSceneNode(handles[KART_WHEEL4]).pitch(Degreef.createFrom(-SPIN_FACTOR * velocity));
+		
+		sm.getSceneNode(handles[KART_WHEEL1_YAW]).pitch(Degreef.createFrom(SPIN_FACTOR * velocity));
+		SceneNode wheel1N = sm.getSceneNode(handles[KART_WHEEL1]);
+		wheel1N.setLocalRotation(Matrix3f.createIdentityMatrix());
+		wheel1N.yaw(Degreef.createFrom(turn * 30f));
+		
+		sm.getSceneNode(handles[KART_WHEEL2_YAW]).pitch(Degreef.createFrom(-SPIN_FACTOR * velocity));
+		SceneNode wheel2N = sm.getSceneNode(handles[KART_WHEEL2]);
+		wheel2N.setLocalRotation(Matrix3f.createIdentityMatrix());
+		wheel2N.yaw(Degreef.createFrom(turn * 30f));
+	}
 	
 
 	private void handleInterpolation() {
+		SceneManager sm = getEngine().getSceneManager();
 		for (HashMap.Entry<UUID, GhostAvatar> entry : gameState.getGhostAvatars().entrySet()) {
-			UUID id = entry.getKey();
+			int[] handles = ghostHandles.get(entry.getKey());
+			if (handles == null) {
+				continue;
+			}
 			
-			SceneNode ghostAvatarN = getEngine().getSceneManager().getSceneNode(id.toString());
+			SceneNode ghostAvatarN = sm.getSceneNode(handles[KART_NODE]);
 			GhostAvatar ga = entry.getValue();
 			long time = frametime - ga.getLastUpdateTime();
 			if (time > 0) {
@@ -1021,13 +1096,13 @@ public class MyGame extends VariableFrameRateGame {
 			questionMarkDotN.attachObject(questionMarkDotE);
 			questionMarkDotN.scale(0.5f, 0.5f, 0.5f);
 			questionMarkDotN.translate(0f, -0.8f, 0f);
+			itemBoxHandles.put(id, new int[] { itemBoxN.getHandle(), questionMarkBodyN.getHandle(), questionMarkDotN.getHandle() });
 	
-			RotationController verticalRotation = new RotationController(Vector3f.createUnitVectorX(), 0.04f);
-			RotationController horizontalRotation = new RotationController(Vector3f.createUnitVectorY(), 0.07f);
-			verticalRotation.addNode(itemBoxRotator);
-			horizontalRotation.addNode(itemBoxRotator);
-			sm.addController(verticalRotation);
-			sm.addController(horizontalRotation);
+			ItemBoxSpinController spin = new ItemBoxSpinController();
+			spin.addNode(itemBoxRotator);
+			// only spins its own node, so boxes can be updated in parallel
+			spin.setConcurrent(true);
+			sm.addController(spin);
 			
 			gameState.createItemBox(id, pos);
 		}
@@ -1057,16 +1132,16 @@ public class MyGame extends VariableFrameRateGame {
 			return;
 		}
 		SceneManager sm = getEngine().getSceneManager();
-		SceneNode itemN = sm.getSceneNode(item.getID().toString());
+		SceneNode itemN = sm.getSceneNode(itemHandles.get(item.getID()));
 		itemN.setLocalPosition(playerNode.getWorldPosition());
-		itemN.setLocalRotation(playerAvatar.getWorldRotation());
+		itemN.setLocalOrientation(playerAvatar.getWorldOrientation());
 		itemN.moveBackward(1.1f);
-		gameState.updateItem(item.getID(), itemN.getWorldPosition(), itemN.getWorldRotation());
+		gameState.updateItem(item.getID(), itemN.getWorldPosition(), itemN.getWorldOrientation());
 		if (SHOW_PACKET_MESSAGES) System.out.println("Sending Update Item");
 		clientProtocol.updateItem(
 			item.getID(),
 			itemN.getWorldPosition(),
-			itemN.getWorldRotation(),
+			itemN.getWorldOrientation(),
 			item.getType()
 		);
 	}
@@ -1074,16 +1149,12 @@ public class MyGame extends VariableFrameRateGame {
 	public void removeGhostAvatar(UUID ghostID) {
 		try {
 			SceneManager sm = getEngine().getSceneManager();
-			sm.destroySceneNode(ghostID.toString());
-			sm.destroyEntity(ghostID.toString());
-			for (int i = 1; i <= 4; i++) {
-				sm.destroySceneNode("wheel" + i + ghostID.toString());
-				sm.destroyEntity("wheel" + i + ghostID.toString());
-				if (i < 3) {
-					sm.destroySceneNode("wheel" + i + "yaw" + ghostID.toString());
-				}
+			int[] handles = ghostHandles.get(ghostID);
+			if (handles != null) {
+				sm.destroySceneNodeTree(sm.getSceneNode(handles[KART_NODE]));
 			}
 			gameState.getGhostAvatars().remove(ghostID);
+			ghostHandles.remove(ghostID);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -1105,10 +1176,12 @@ public class MyGame extends VariableFrameRateGame {
 			SceneNode itemN = sm.getRootSceneNode().createChildSceneNode(itemID.toString());
 			itemN.scale(BANANA_SCALE, BANANA_SCALE, BANANA_SCALE);
 			itemN.attachObject(itemE);
+			itemHandles.put(itemID, itemN.getHandle());
 			Item newItem = new Item(itemID, ItemType.getType(itemType));
 			gameState.getItems().put(itemID, newItem);
 			ItemGrowthController itemC = new ItemGrowthController();
 			itemC.addNode(itemN);
+			itemC.setConcurrent(true);
 			getEngine().getSceneManager().addController(itemC);
 			
 			return newItem;
@@ -1122,7 +1195,7 @@ public class MyGame extends VariableFrameRateGame {
 	public void throwItem() {
 		if (hasItem()) {
 			SceneManager sm = getEngine().getSceneManager();
-			SceneNode itemN = sm.getSceneNode(item.getID().toString());
+			SceneNode itemN = sm.getSceneNode(itemHandles.get(item.getID()));
 			SceneNode itemNParent = (SceneNode) itemN.getParent();
 			Vector3 currentPos = itemN.getWorldPosition();
 			itemNParent.detachChild(itemN);
@@ -1142,12 +1215,20 @@ public class MyGame extends VariableFrameRateGame {
 		physicsBody.handleCollision();
 	}
 	
+	public void handlePlayerBump(float pushX, float pushZ, float vForward) {
+		physicsBody.applyBump(pushX, pushZ, vForward);
+		if (raceRecording != null) {
+			raceRecording.recordBump(pushX, pushZ, vForward);
+		}
+	}
+	
 	public void removeItem(UUID itemID) {
 		try {
 			SceneManager sm = getEngine().getSceneManager();
 			sm.destroySceneNode(itemID.toString());
 			sm.destroyEntity(itemID.toString());
 			gameState.getItems().remove(itemID);
+			itemHandles.remove(itemID);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -1160,7 +1241,7 @@ public class MyGame extends VariableFrameRateGame {
 		}
 		try {
 			SceneManager sm = getEngine().getSceneManager();
-			SceneNode item = sm.getSceneNode(itemID.toString());
+			SceneNode item = sm.getSceneNode(itemHandles.get(itemID));
 			if (gameState.getItems().get(itemID).getType().equals(ItemType.BANANA)) {
 				BananaDeathAnimationController bdaC = new BananaDeathAnimationController(
 					this,
@@ -1171,6 +1252,7 @@ public class MyGame extends VariableFrameRateGame {
 				sm.addController(bdaC);
 			}
 			gameState.getItems().remove(itemID);
+			itemHandles.remove(itemID);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -1190,10 +1272,11 @@ public class MyGame extends VariableFrameRateGame {
         }
     }
 
-	public void updateItem(UUID itemID, Vector3 itemPos, Matrix3 itemRot, int itemType) {
+	public void updateItem(UUID itemID, Vector3 itemPos, Quaternion itemRot, int itemType) {
 		try {
 			SceneManager sm = getEngine().getSceneManager();
-			if (!sm.hasSceneNode(itemID.toString())) {
+			Integer handle = itemHandles.get(itemID);
+			if (handle == null || !sm.hasSceneNode(handle)) {
 				if (SHOW_PACKET_MESSAGES) System.out.println("Item does not exist.  Creating: " + itemID.toString());
 				createItem(itemID, itemType);
 				return;
@@ -1205,36 +1288,54 @@ public class MyGame extends VariableFrameRateGame {
 		}
 	}
 
+	private void createExplosionParticles(SceneManager sm) {
+		PreloadTextures.TEXTURE[] colors = {
+			PreloadTextures.TEXTURE.BLUE1,
+			PreloadTextures.TEXTURE.BLUE2,
+			PreloadTextures.TEXTURE.RED1,
+			PreloadTextures.TEXTURE.GREEN1,
+			PreloadTextures.TEXTURE.YELLOW1,
+			PreloadTextures.TEXTURE.GRAY1
+		};
+		SceneNode particlesN = sm.getRootSceneNode().createChildSceneNode("explosionParticlesNode");
+		explosionParticles = new ParticleSystem[colors.length];
+		for (int i = 0; i < colors.length; i++) {
+			ParticleSystem ps = sm.createParticleSystem("explosionParticles" + i, MAX_EXPLOSION_PARTICLES);
+			ps.setGravity(EXPLOSION_PARTICLE_GRAVITY);
+			ps.setShrinkStart(0.5f);
+			ps.setCanReceiveShadows(false);
+			
+			CullingState cullingState = (CullingState) sm.getRenderSystem().createRenderState(RenderState.Type.CULLING);
+			cullingState.setCulling(CullingState.Culling.DISABLED);
+			ps.setRenderState(cullingState);
+			TextureState tstate = (TextureState) sm.getRenderSystem().createRenderState(RenderState.Type.TEXTURE);
+			tstate.setTexture(getTextures().getTexture(colors[i]));
+			ps.setRenderState(tstate);
+			ps.setGpuShaderProgram(sm.getRenderSystem().getGpuShaderProgram(GpuShaderProgram.Type.TRANSPARENT));
+			particlesN.attachObject(ps);
+			explosionParticles[i] = ps;
+		}
+	}
+
 	public void itemBoxExplosion(Vector3 pos, Vector3 force) {
-		final float PARTICLE_COUNT  = 15;
+		final int PARTICLE_COUNT = 15;
+		final float PARTICLE_LIFE = 500f;
+		float height = getGroundHeight(pos.x(), pos.z());
 		for (int i = 0; i < PARTICLE_COUNT; i++) {
-			Entity particleE = null;
-			try {
-				particleE = getEngine().getSceneManager().createEntity(createID(), "plane.obj");
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			particleE.setCanReceiveShadows(false);
-			SceneNode particleN = getEngine().getSceneManager().getRootSceneNode().createChildSceneNode(particleE.getName());
-			float height = getGroundHeight(pos.x(), pos.z());
-			particleN.setLocalPosition(pos.x(), height, pos.z());
-			particleN.attachObject(particleE);
-			ParticleController particleC = new ParticleController(
-				this,
-				particleN,
-				force
+			ParticleSystem ps = explosionParticles[(int) (Math.random() * explosionParticles.length)];
+			// lands back near the ground when it expires
+			float rise = EXPLOSION_PARTICLE_GRAVITY * (PARTICLE_LIFE / 1000f) / 2f * (0.85f + (float) Math.random() * 0.3f);
+			ps.emit(
+				pos.x() + (float) (Math.random() - 0.5f) * 2,
+				height,
+				pos.z() + (float) (Math.random() - 0.5f) * 2,
+				force.x() + (float) (Math.random() * 10) - 5f,
+				rise,
+				force.z() + (float) (Math.random() * 10) - 5f,
+				(float) ((Math.random() * 0.9f) + 0.1f) / 6,
+				(float) Math.random() * 1200f,
+				PARTICLE_LIFE
 			);
-			particleC.addNode(particleN);
-			getEngine().getSceneManager().addController(particleC);
-			
-			
-			CullingState cullingState = (CullingState) getEngine().getSceneManager().getRenderSystem().createRenderState(RenderState.Type.CULLING);
-			cullingState.setCulling(CullingState.Culling.DISABLED);
-			particleE.setRenderState(cullingState);
-			TextureState tstate = (TextureState) getEngine().getSceneManager().getRenderSystem().createRenderState(RenderState.Type.TEXTURE);
-			tstate.setTexture(getTextures().getRandomTexture());
-			particleE.setRenderState(tstate);
-			particleE.setGpuShaderProgram(getEngine().getSceneManager().getRenderSystem().getGpuShaderProgram(GpuShaderProgram.Type.TRANSPARENT));
 		}
 	}
 
@@ -1272,12 +1373,14 @@ public class MyGame extends VariableFrameRateGame {
 			if (item != null) {
 				getEngine().getSceneManager().destroyEntity(item.getID().toString());
 				getEngine().getSceneManager().destroySceneNode(item.getID().toString());
+				itemHandles.remove(item.getID());
 			}
 			item = null;
+			raceRecording = null;
 			raceLap = 0;
 			currentZone = 3;
 			carTextureNum = 1;
-			setWaypoint(-1);
+			racePlace = 1;
 			updateCarTexture();
 			// gameState.getGhostAvatars().clear();
 			setCameraToSky();
@@ -1329,28 +1432,12 @@ public class MyGame extends VariableFrameRateGame {
 	
 	protected void finishRace() {
 		gameState.setRaceState(RaceState.FINISH);
+		verifyRaceRecording();
 		physicsBody.setActualTurn(0f);
 		clientState.setRaceFinished(true);
 		clientProtocol.completedRace(clientState.getSelectedTrack());
 	}
 	
-	private int determineWaypoint(int waypoint, Vector3 pos) {
-		int nextWaypoint = (waypoint + 1) % Track1.NUM_WAYPOINTS;
-		Vector4 nextWaypointLine = Track1.getWaypointLine(nextWaypoint);
-		boolean sign = getSign(Vector2f.createFrom(pos.x(), pos.z()), nextWaypointLine);
-		return (sign == getSign(Track1.getPointInWaypoint(nextWaypoint), nextWaypointLine))
-			? nextWaypoint : 
-			waypoint;
-	}
-	
-	private boolean getSign(Vector2 a, Vector4 b) {
-		return (
-			(a.x() - b.x()) * (b.w() - b.y())
-			-
-			(a.y() - b.y()) * (b.z() - b.x())
-		) < 0;
-	}
-
 	protected int getZone(Vector3 coord, int currentZone) {
 		if (hasRaceFinished()) {
 			return currentZone;
@@ -1400,6 +1487,25 @@ public class MyGame extends VariableFrameRateGame {
 			startingPos
 		);
 		playerNode.setLocalRotation(Matrix3f.createIdentityMatrix());
+		if (physicsBody.isDeterministic()) {
+			raceRecording = new PhysicsRecording(physicsBody, physicsTimestep.getStepMS());
+		}
+	}
+	
+	// Re-simulate the recorded inputs and check that every tick reproduces
+	private void verifyRaceRecording() {
+		if (raceRecording == null) {
+			return;
+		}
+		PhysicsBody replayBody = new PhysicsBody(Vector3f.createFrom(0f, 0f, 0f), Matrix3f.createIdentityMatrix());
+		int mismatch = raceRecording.replay(replayBody);
+		if (mismatch < 0) {
+			System.out.println("Race replay verified (" + raceRecording.getTicks() + " ticks)");
+		}
+		else {
+			System.out.println("Race replay diverged at tick " + mismatch + " of " + raceRecording.getTicks());
+		}
+		raceRecording = null;
 	}
 	
 	public PhysicsBody getPhysicsBody() {
@@ -1439,7 +1545,7 @@ public class MyGame extends VariableFrameRateGame {
 		lobbyGui.hide();
 	}
 
-	public void updateAvatar(Vector3 ghostPosition, Matrix3 ghostRotation) {
+	public void updateAvatar(Vector3 ghostPosition, Quaternion ghostRotation) {
 		physicsBody.setPosition(ghostPosition);
 		physicsBody.setRotation(ghostRotation);
 	}
@@ -1488,11 +1594,6 @@ public class MyGame extends VariableFrameRateGame {
 	}
 
 	public void updateLapInfo() {
-        int newWaypoint = determineWaypoint(getWaypoint(), playerNode.getWorldPosition());
-        if (getWaypoint() != newWaypoint) {
-        	// System.out.println("Updating waypoint: " + newWaypoint);
-    		setWaypoint(newWaypoint);	
-        }
 		int newZone = getZone(playerNode.getWorldPosition(), currentZone);
 		if (currentZone != newZone && newZone > currentZone) {
 			currentZone = newZone;
@@ -1507,80 +1608,9 @@ public class MyGame extends VariableFrameRateGame {
 			}
 			currentZone = newZone;
 		}
-		
-		Iterator<Entry<UUID, GhostAvatar>> avatarIter = gameState.getGhostAvatars().entrySet().iterator();
-    	while (avatarIter.hasNext()) {
-            Map.Entry<UUID, GhostAvatar> pair = (Map.Entry<UUID, GhostAvatar>) avatarIter.next();
-            GhostAvatar ga = pair.getValue();
-            newWaypoint = determineWaypoint(ga.getWaypoint(), ga.getPos());
-            if (ga.getWaypoint() != newWaypoint) {
-        		ga.setWaypoint(newWaypoint);	
-            }
-            int gaNewZone = getZone(ga.getPos(), ga.getZone());
-            int gaCurrentZone = ga.getZone();
-            if (gaCurrentZone != gaNewZone && gaNewZone > gaCurrentZone) {
-            	ga.setZone(gaNewZone);
-    		}
-    		else if (gaCurrentZone == 3 && gaNewZone == 0) {
-				ga.setLap(ga.getLap() + 1);
-    			ga.setZone(gaNewZone);
-    		}
-    	}
-	}
-
-	private int calculatePlace() {
-		int[] scores = new int[7];
-    	Iterator<Entry<UUID, GhostAvatar>> avatarIter = gameState.getGhostAvatars().entrySet().iterator();
-    	int i = 0;
-    	while (i < 7 && avatarIter.hasNext()) {
-            Map.Entry<UUID, GhostAvatar> pair = (Map.Entry<UUID, GhostAvatar>) avatarIter.next();
-            GhostAvatar ga = pair.getValue();
-            scores[i] = calculateScore(ga.getWaypoint(), ga.getPos(), ga.getLap(), ga.getZone());
-            i++;
-    	}
-    	Arrays.sort(scores);
-
-    	int score = calculateScore(getWaypoint(), physicsBody.getPosition(), raceLap, currentZone);
-    	
-    	i = 0;
-    	while (i < 7 && score > scores[i]) {
-    		i++;
-    	}
-
-    	/*
-    	for (int j = 0; j < 7; j++) {
-    		System.out.println(scores[j] / 1000);
-    	}
-    	System.out.println("My Score: " + score / 1000 + " - " + i);
-    	System.out.println("---------");
-		*/
-
-    	return 7 - i;
-	}
-	
-	private int calculateScore(int waypoint, Vector3 pos, int lap, int zone) {
-		int nextWaypointNum = (waypoint + 1) % Track1.NUM_WAYPOINTS;
-		Vector3 nextWaypoint = Track1.getWaypoint(nextWaypointNum);
-		int distance = (int) calcDistance(nextWaypoint.x(), nextWaypoint.z(), pos.x(), pos.z());
-		int score = (waypoint * 1000) - distance;
-		score += 100000 * lap; // get lap number
-		if (zone == 0 && waypoint > 20) {
-			score -= 24 * 1000;
-		}
-		return score;
-	}
-	
-	protected double calcDistance(float x1, float y1, float x2, float y2) {
-		float dx = (x1 - x2);
-		float dy = (y1 - y2);
-		return Math.sqrt(dx * dx + dy * dy);
-	}
-
-	public int getWaypoint() {
-		return wayPoint;
 	}
 
-	public void setWaypoint(int wayPoint) {
-		this.wayPoint = wayPoint;
+	public void setRacePlace(int racePlace) {
+		this.racePlace = racePlace;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+package a3;
+
+import ray.ai.behaviortrees.BTBlackboard;
+import ray.ai.behaviortrees.BTCompiler;
+import ray.ai.behaviortrees.BTPredicate;
+import ray.ai.behaviortrees.BTProgram;
+import ray.ai.behaviortrees.BTStatus;
+import ray.ai.behaviortrees.BTTask;
+import ray.rml.Vector3;
+
+/**
+ * Drives NPC karts: decides their inputs with a shared behavior tree, steps
+ * their physics and keeps their racing-line position up to date.
+ *
+ * It only needs a {@link GameState}, so the game server and the offline
+ * {@link RaceSimulator} run exactly the same NPC logic.
+ *
+ * Decisions are time-sliced by an {@link AIScheduler}; physics runs every
+ * step. NPCs steer at a point on the racing line that moves further ahead
+ * with speed, and accelerate while below the line's target speed.
+ */
+public class NPCDriver {
+	private static final float COS_30_DEGREES = 0.866f;
+	private static final float COS_45_DEGREES = 0.707f;
+	private static final float DROP_ITEM_DISTANCE = 4f;
+	private static final float CORNER_LOOKAHEAD = 15f;
+	private static final float CORNER_SPEED = 15f;
+	private static final float NEAR_HUMAN_DISTANCE = 25f;
+	private static final float MID_HUMAN_DISTANCE = 60f;
+	private static final float NEAR_ITEM_DISTANCE = 15f;
+
+	private final GameState gameState;
+	private final RacingLine racingLine;
+	private final AIScheduler aiScheduler;
+	// Shared by every NPC; each NPC keeps its own blackboard
+	private final BTProgram program = createProgram();
+	private float lookaheadDistance = 4f;
+	private float lookaheadTime = 0.4f;
+	private float steeringGain = 4f;
+	private float maxTurn = 2f;
+	private float stepMS = 0f;
+
+	/**
+	 * @param aiBudgetNanos Time allowed for NPC decisions per server tick.
+	 */
+	public NPCDriver(GameState gameState, RacingLine racingLine, long aiBudgetNanos) {
+		this.gameState = gameState;
+		this.racingLine = racingLine;
+		this.aiScheduler = new AIScheduler(aiBudgetNanos);
+	}
+
+	/**
+	 * Gets an avatar ready to be driven. It must already have a physics body.
+	 */
+	public void attach(GhostAvatar npc) {
+		npc.setBlackboard(new BTBlackboard(program, npc, 0));
+	}
+
+	public void forget(GhostAvatar npc) {
+		aiScheduler.forget(npc);
+	}
+
+	public void clear() {
+		aiScheduler.clear();
+	}
+
+	/**
+	 * Call before updating NPCs for a server tick.
+	 */
+	public void beginTick() {
+		aiScheduler.beginTick();
+	}
+
+	/**
+	 * Call after updating every NPC for a server tick.
+	 */
+	public void endTick(int steps) {
+		aiScheduler.endTick(steps);
+	}
+
+	/**
+	 * Simulates <code>steps</code> fixed steps of one NPC.
+	 */
+	public void update(GhostAvatar ga, int steps, float stepMS) {
+		this.stepMS = stepMS;
+		PhysicsBody physicsBody = ga.getPhysicsBody();
+		for (int i = 0; i < steps; i++) {
+			if (aiScheduler.isDue(ga, i)) {
+				long start = System.nanoTime();
+				setInputs(physicsBody, ga);
+				int level = computeUpdateLevel(ga, physicsBody);
+				aiScheduler.decided(ga, i, level, System.nanoTime() - start);
+			}
+			physicsBody.updatePhysics(stepMS);
+			ga.setPos(physicsBody.getPosition());
+			ga.setOrientation(physicsBody.getOrientation().mult(physicsBody.getSpinOrientation()));
+			int index = racingLine.project(ga.getPos().x(), ga.getPos().z(), ga.getRacingLineIndex());
+			ga.setRacingLineIndex(index);
+			ga.setWaypoint(racingLine.getWaypoint(index));
+		}
+		ga.setVelocityForward(physicsBody.getVForward());
+		ga.setActualTurn(physicsBody.getActualTurn());
+		if (ga.hasItem()) {
+			Item item = ga.getItem();
+			item.setOrientation(physicsBody.getOrientation());
+			item.setPos(physicsBody.getPosition());
+			item.setPos(item.getPos().add(item.getRot().column(2).mult(-1.1f)));
+		}
+	}
+
+	/**
+	 * Sets how far ahead NPCs aim: <code>distance</code> plus
+	 * <code>seconds</code> worth of their current speed.
+	 */
+	public void setLookahead(float distance, float seconds) {
+		this.lookaheadDistance = distance;
+		this.lookaheadTime = seconds;
+	}
+
+	/**
+	 * Sets how hard NPCs turn toward their aim point, and the largest turn
+	 * input they will use.
+	 */
+	public void setSteering(float gain, float maxTurn) {
+		this.steeringGain = gain;
+		this.maxTurn = maxTurn;
+	}
+
+	public RacingLine getRacingLine() {
+		return racingLine;
+	}
+
+	public AIScheduler getScheduler() {
+		return aiScheduler;
+	}
+
+	private void setInputs(PhysicsBody pb, GhostAvatar ga) {
+		pb.resetInputs();
+		program.tick(ga.getBlackboard(), stepMS);
+	}
+
+	/**
+	 * How often an NPC needs to re-decide its inputs, from 0 (every step) to
+	 * AIScheduler.MAX_LEVEL. NPCs near a corner, a human or something to
+	 * pick up or dodge decide every step; NPCs on a straight far from any
+	 * human can hold their inputs for several steps.
+	 */
+	private int computeUpdateLevel(GhostAvatar ga, PhysicsBody pb) {
+		if (gameState.getRaceState() != RaceState.RACING) {
+			// Keep watching so every NPC launches on the first racing step
+			return 0;
+		}
+		if (pb.isSpinning()) {
+			return 2;
+		}
+		int index = ga.getRacingLineIndex();
+		if (index >= 0 && racingLine.getTargetSpeed(racingLine.ahead(index, CORNER_LOOKAHEAD)) < CORNER_SPEED) {
+			return 0;
+		}
+		Vector3 pos = ga.getPos();
+		if (isNearItem(pos, NEAR_ITEM_DISTANCE)) {
+			return 0;
+		}
+		float nearestHuman = Float.MAX_VALUE;
+		for (GhostAvatar other : gameState.getGhostAvatars().values()) {
+			if (other.isNPC()) {
+				continue;
+			}
+			float dx = other.getPos().x() - pos.x();
+			float dz = other.getPos().z() - pos.z();
+			nearestHuman = Math.min(nearestHuman, dx * dx + dz * dz);
+		}
+		if (nearestHuman < NEAR_HUMAN_DISTANCE * NEAR_HUMAN_DISTANCE) {
+			return 0;
+		}
+		if (isNearItemBox(pos, NEAR_ITEM_DISTANCE)) {
+			return 1;
+		}
+		if (nearestHuman < MID_HUMAN_DISTANCE * MID_HUMAN_DISTANCE) {
+			return 1;
+		}
+		if (nearestHuman == Float.MAX_VALUE) {
+			// Only NPCs left on the track
+			return AIScheduler.MAX_LEVEL;
+		}
+		return 2;
+	}
+
+	private boolean isNearItem(Vector3 pos, float distance) {
+		for (Item item : gameState.getItems().values()) {
+			if (isWithin(pos, item.getPos(), distance)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isNearItemBox(Vector3 pos, float distance) {
+		for (ItemBox itemBox : gameState.getItemBoxes().values()) {
+			if (isWithin(pos, itemBox.getPos(), distance)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isWithin(Vector3 a, Vector3 b, float distance) {
+		float dx = b.x() - a.x();
+		float dz = b.z() - a.z();
+		return dx * dx + dz * dz < distance * distance;
+	}
+
+	private BTProgram createProgram() {
+		BTPredicate isInputDisabled = new BTPredicate() {
+			public boolean check(BTBlackboard blackboard) {
+				return isRacingInputDisabled(((GhostAvatar) blackboard.getAgent()).getPhysicsBody());
+			}
+		};
+		BTTask drive = new BTTask() {
+			public BTStatus run(BTBlackboard blackboard, float elapsedTime) {
+				GhostAvatar ga = (GhostAvatar) blackboard.getAgent();
+				PhysicsBody pb = ga.getPhysicsBody();
+				pb.setDesiredTurn(computeTurnAndSetAcceleration(ga, pb));
+				return BTStatus.BH_SUCCESS;
+			}
+		};
+		BTPredicate hasItem = new BTPredicate() {
+			public boolean check(BTBlackboard blackboard) {
+				return ((GhostAvatar) blackboard.getAgent()).hasItem();
+			}
+		};
+		BTPredicate isKartCloseBehind = new BTPredicate() {
+			public boolean check(BTBlackboard blackboard) {
+				return isKartCloseBehind((GhostAvatar) blackboard.getAgent());
+			}
+		};
+		BTTask dropItem = new BTTask() {
+			public BTStatus run(BTBlackboard blackboard, float elapsedTime) {
+				// The item stays where it is on the track
+				((GhostAvatar) blackboard.getAgent()).removeItem();
+				return BTStatus.BH_SUCCESS;
+			}
+		};
+		return new BTCompiler()
+			.sequence()
+				.condition(isInputDisabled, true)
+				.action(drive)
+				.sequence()
+					.condition(hasItem)
+					.condition(isKartCloseBehind)
+					.action(dropItem)
+				.end()
+			.end()
+			.compile();
+	}
+
+	private boolean isKartCloseBehind(GhostAvatar ga) {
+		Vector3 pos = ga.getPos();
+		Vector3 forward = ga.getRot().column(2);
+		for (GhostAvatar other : gameState.getGhostAvatars().values()) {
+			if (other == ga) {
+				continue;
+			}
+			float dx = other.getPos().x() - pos.x();
+			float dz = other.getPos().z() - pos.z();
+			if (dx * dx + dz * dz < DROP_ITEM_DISTANCE * DROP_ITEM_DISTANCE
+				&& dx * forward.x() + dz * forward.z() < 0f
+			) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private float computeTurnAndSetAcceleration(GhostAvatar ga, PhysicsBody pb) {
+		Vector3 pos = ga.getPos();
+		Vector3 forward = ga.getRot().column(2);
+		int index = ga.getRacingLineIndex();
+		if (index < 0) {
+			index = racingLine.project(pos.x(), pos.z(), -1);
+			ga.setRacingLineIndex(index);
+		}
+		float lookahead = lookaheadDistance + Math.max(0f, pb.getVForward()) * lookaheadTime;
+		int target = racingLine.ahead(index, lookahead);
+		float dx = racingLine.getX(target) - pos.x();
+		float dz = racingLine.getZ(target) - pos.z();
+		float dist = (float) Math.sqrt(dx * dx + dz * dz);
+		if (dist <= 0f) {
+			pb.setAccelerating(true);
+			return 0f;
+		}
+		// Sine and cosine of the angle between the heading and the target,
+		// positive sine meaning the target is to the kart's left
+		float sin = (dx * forward.z() - dz * forward.x()) / dist;
+		float cos = (dx * forward.x() + dz * forward.z()) / dist;
+		float turn;
+		if (cos < 0f) {
+			// Target is behind, turn as hard as possible
+			turn = (sin >= 0f) ? maxTurn : -maxTurn;
+		}
+		else {
+			turn = Math.max(-maxTurn, Math.min(maxTurn, sin * steeringGain));
+		}
+		if (cos < COS_30_DEGREES) {
+			pb.setDrifting(true);
+		}
+		if (cos > COS_45_DEGREES && pb.getVForward() < racingLine.getTargetSpeed(index)) {
+			pb.setAccelerating(true);
+		}
+		if (pb.getVForward() < 3f) {
+			pb.setAccelerating(true);
+		}
+		return turn;
+	}
+
+	private boolean isRacingInputDisabled(PhysicsBody pb) {
+		if (gameState.getRaceState() == RaceState.LOBBY) {
+			return true;
+		}
+		if (gameState.getRaceState() == RaceState.COUNTDOWN) {
+			return true;
+		}
+		if (pb.isSpinning()) {
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,71 @@
+package a3;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import ray.rml.Matrix3f;
+
+/**
+ * Checks that {@link PhysicsBody#updatePhysics(float)} allocates nothing per
+ * step, in both deterministic and FastMath modes.
+ *
+ * Counts the bytes the thread allocates over many steps with varied inputs,
+ * after a warmup so the JIT has compiled the step, and exits with a non-zero
+ * status if there were any. Needs a HotSpot-based JVM for the counters.
+ *
+ * Run from the project root (for the height map):
+ * <code>java a3.PhysicsAllocationCheck</code>
+ */
+public class PhysicsAllocationCheck {
+	private static final float STEP_MS = 1000f / 60;
+	private static final int WARMUP_STEPS = 200000;
+	private static final int STEPS = 100000;
+
+	public static void main(String[] args) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)
+			|| !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+		) {
+			System.out.println("Allocation counters are not available on this JVM");
+			System.exit(1);
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		boolean ok = true;
+		for (boolean isDeterministic : new boolean[] {true, false}) {
+			PhysicsBody body = new PhysicsBody(Track1.getPosition(1), Matrix3f.createIdentityMatrix());
+			body.setDeterministic(isDeterministic);
+			run(body, WARMUP_STEPS);
+
+			long before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+			run(body, STEPS);
+			long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+			String mode = isDeterministic ? "deterministic" : "FastMath";
+			System.out.println(String.format("%-14s %d bytes over %d steps", mode, allocated, STEPS));
+			ok &= allocated == 0;
+		}
+		if (!ok) {
+			System.out.println("PhysicsBody.updatePhysics allocates");
+			System.exit(1);
+		}
+	}
+
+	// drives through turns, drifts, braking and the odd collision, without
+	// allocating anything itself
+	private static void run(PhysicsBody body, int steps) {
+		for (int s = 0; s < steps; s++) {
+			int phase = s % 600;
+			body.resetInputs();
+			body.setAccelerating(phase < 450);
+			body.setBraking(phase >= 500);
+			body.setDrifting(phase >= 200 && phase < 300);
+			body.setDesiredTurn(phase < 150 ? 0.6f : phase < 400 ? -0.8f : 0f);
+			if (phase == 350) {
+				body.handleCollision();
+			}
+			body.updatePhysics(STEP_MS);
+		}
+	}
+}
@@ -1,24 +1,49 @@
 package a3;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-
-import ray.rage.asset.texture.Texture;
-import ray.rage.asset.texture.TextureManager;
-import ray.rage.asset.texture.loaders.RgbaTextureLoader;
-import ray.rage.util.Configuration;
-import ray.rml.Degreef;
+import java.util.Random;
+
+import ray.rml.FastMath;
 import ray.rml.Matrix3;
-import ray.rml.Matrix3f;
+import ray.rml.Quaternion;
+import ray.rml.Quaternionf;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
 
 public class PhysicsBody {
-	private Vector3 position = Vector3f.createFrom(0f, 0f, 0f);
-	private Matrix3 direction = Matrix3f.createIdentityMatrix();
-	private Matrix3 rotation = Matrix3f.createIdentityMatrix();
-	private Matrix3 spinRotation = Matrix3f.createIdentityMatrix();
+	private static final float DEGREE_TO_RADIAN = (float) Math.PI / 180.0f;
+	// Number of floats written by writeState()
+	public static final int STATE_SIZE = 35;
+	// Kart state is kept in primitives so a physics step does not allocate.
+	// Orientations are unit quaternions, laid out like
+	// Quaternionf.toFloatArray() ([w, x, y, z]) and renormalized whenever they
+	// are composed, so the heading doesn't drift however long the kart turns.
+	// Matrices are only derived from them for the getters.
+	private float posX = 0f;
+	private float posY = 0f;
+	private float posZ = 0f;
+	private final float[] direction = new float[] {1f, 0f, 0f, 0f};
+	private final float[] rotation = new float[] {1f, 0f, 0f, 0f};
+	private boolean isSpinRotation = false;
+	private float spinRotationDegrees = 0f;
+	// State at the start of the last step, for render interpolation
+	private float prevPosX = 0f;
+	private float prevPosY = 0f;
+	private float prevPosZ = 0f;
+	private final float[] prevDirection = new float[] {1f, 0f, 0f, 0f};
+	private final float[] prevRotation = new float[] {1f, 0f, 0f, 0f};
+	private boolean prevIsSpinRotation = false;
+	private float prevSpinRotationDegrees = 0f;
+	// Scratch quaternions and axes reused by every step
+	private final float[] scratchA = new float[4];
+	private final float[] scratchB = new float[4];
+	private final float[] scratchC = new float[4];
+	// Right (x) and forward (z) axes of the direction, see toAxes()
+	private final float[] axes = new float[6];
+	// Immutable views handed out by the getters, rebuilt lazily after a step
+	private Vector3 positionView = null;
+	private Matrix3 directionView = null;
+	private Matrix3 rotationView = null;
+	private Matrix3 spinRotationView = null;
 	private boolean isOnGround = true;
 	private float gravity = -10f;
 	private boolean isAccelerating = false;
@@ -44,60 +69,107 @@ public class PhysicsBody {
 	private float vUp = 0f; // upward velocity
 	private float currentPitch = 0f;
 	private float currentRoll = 0f;
-	private Texture heightMap;
-	private TextureManager textureManager;
+	private TrackSurface surface;
+	// Deterministic mode: StrictMath trig, so results are bit-identical on any JVM
+	private boolean isDeterministic = false;
+	private int collisionCount = 0;
+	private final float[] stateScratch = new float[STATE_SIZE];
 	
 	public PhysicsBody(Vector3 position, Matrix3 rotation) {
-		textureManager = new TextureManager();
-        textureManager.addAssetLoader(new RgbaTextureLoader());
-        Configuration conf = new Configuration();
-        try {
-			conf.load();
-		} catch (IOException e) {
-			e.printStackTrace();
+		surface = TrackSurface.getTrack1Surface();
+		setPosition(position);
+		setRotation(rotation);
+	}
+
+	/**
+	 * Ranges the randomized constants are scaled by. The acceleration scale
+	 * applies to both acceleration and decceleration, the turn scale to both
+	 * turn rates, and the top speed is scaled by the turn scale times the
+	 * speed factor. A range whose min equals its max fixes that scale.
+	 */
+	public static class Tuning {
+		/**
+		 * The spread NPCs are given on the server.
+		 */
+		public static final Tuning DEFAULT = new Tuning(0.8f, 1.2f, 1f, 1.15f, 0.95f);
+
+		private final float minAcceleration;
+		private final float maxAcceleration;
+		private final float minTurn;
+		private final float maxTurn;
+		private final float speedFactor;
+
+		public Tuning(float minAcceleration, float maxAcceleration, float minTurn, float maxTurn, float speedFactor) {
+			this.minAcceleration = minAcceleration;
+			this.maxAcceleration = maxAcceleration;
+			this.minTurn = minTurn;
+			this.maxTurn = maxTurn;
+			this.speedFactor = speedFactor;
 		}
-        textureManager.setBaseDirectoryPath(conf.valueOf("assets.textures.path"));
-		try {
-			heightMap = textureManager.getAssetByPath("height_map.png");
+
+		@Override
+		public String toString() {
+			return "accel x" + range(minAcceleration, maxAcceleration) + ", turn x" + range(minTurn, maxTurn)
+				+ ", speed x" + speedFactor;
 		}
-		catch (IOException e) {
-			e.printStackTrace(); return;
+
+		private static String range(float min, float max) {
+			return min == max ? String.valueOf(min) : min + "-" + max;
 		}
-		this.position = position;
-		this.rotation = rotation;
 	}
 
 	public void randomizeConstants() {
-		float n = random(0.8f, 1.2f);
+		randomizeConstants(Tuning.DEFAULT, new Random());
+	}
+
+	/**
+	 * Same as {@link #randomizeConstants()}, but reproducible from a seed.
+	 */
+	public void randomizeConstants(long seed) {
+		randomizeConstants(Tuning.DEFAULT, new Random(seed));
+	}
+
+	/**
+	 * Same as {@link #randomizeConstants(long)}, but drawn from the given
+	 * ranges instead of the default ones.
+	 */
+	public void randomizeConstants(Tuning tuning, long seed) {
+		randomizeConstants(tuning, new Random(seed));
+	}
+
+	private void randomizeConstants(Tuning tuning, Random random) {
+		float n = random(random, tuning.minAcceleration, tuning.maxAcceleration);
 		accelerationRate *= n;
 		deccelerationRate *= n;
-		n = random(1f, 1.15f);
+		n = random(random, tuning.minTurn, tuning.maxTurn);
 		TURN_RATE *= n;
 		DRIFTING_TURN_RATE *= n;
-		n *= 0.95f;
+		n *= tuning.speedFactor;
 		MAX_BASE_SPEED *= n;
 	}
 	
-	private float random(float min, float max) {
-		return (float) (min + Math.random() * (max - min));
+	private float random(Random random, float min, float max) {
+		return (float) (min + random.nextDouble() * (max - min));
 	}
 	
 	public void updatePhysics(float elapsedMS) {
+		savePreviousState();
 		updateTimers(elapsedMS);
 		float elapsedSec = elapsedMS / 1000;
-		Vector3 fv = direction.mult(rotation).column(2); // forward vector
+		// forward vector: (direction * rotation).column(2)
+		mult(direction, 0, rotation, 0, scratchA, 0);
+		toAxes(scratchA, 0, axes, 0);
+		float fvX = axes[3];
+		float fvY = axes[4];
+		float fvZ = axes[5];
 		
 		// Handle speed boost
-		setOnSpeedBoost(getIsSpeedBoost(position.x(), position.z(), fv, 1f));
+		setOnSpeedBoost(getIsSpeedBoost(posX, posZ, fvX, fvZ, 1f));
 		
 		// Handle collision spinning
-		if (isSpinning()) {
-			spinRotation = Matrix3f.createIdentityMatrix();
-			spinRotation = spinRotation.rotate(Degreef.createFrom(getSpinDirection()), Vector3f.createUnitVectorY());
-		}
-		else {
-			spinRotation = Matrix3f.createIdentityMatrix();
-		}
+		isSpinRotation = isSpinning();
+		spinRotationDegrees = getSpinDirection();
+		spinRotationView = null;
 		
 		// Handle turning
 		desiredTurnRollingAverage = desiredTurnRollingAverage * 0.9f + getDesiredTurn() * 0.1f;
@@ -114,8 +186,12 @@ public class PhysicsBody {
 			}
 		}
 		if (isOnGround) {
-			setDirection(direction.rotate(Degreef.createFrom(turnDegrees), Vector3f.createUnitVectorY()));
+			setRotationQuaternion(scratchA, 0, turnDegrees, 0f, 1f, 0f);
+			mult(direction, 0, scratchA, 0, scratchB, 0);
+			System.arraycopy(scratchB, 0, direction, 0, 4);
+			directionView = null;
 		}
+		toAxes(direction, 0, axes, 0);
 
 		// Handle forward movement
 		if (speedBoostTimer > 0f) {
@@ -138,35 +214,43 @@ public class PhysicsBody {
 				vForward = 0f;
 			}
 			else {
-				vForward += getGroundFriction(position.x(), position.z()) * elapsedSec;
+				vForward += getGroundFriction(posX, posZ) * elapsedSec;
 				vForward = Math.max(vForward, getMaxReverseSpeed());
 				vForward = Math.min(vForward, getMaxSpeed());
 			}
 		}
 		// apply forward velocity
-		fv = fv.mult((vForward + getGravityForce()) * elapsedSec);
+		float fvScale = (vForward + getGravityForce()) * elapsedSec;
+		fvX = fvX * fvScale;
+		fvY = fvY * fvScale;
+		fvZ = fvZ * fvScale;
 		
 		// Check if player is running into a wall by checking the angle of the avatar
-		float currentHeight = position.y();
+		float currentHeight = posY;
 		float tCAR_LENGTH = vForward > 0 ? 0.6f : -0.6f;
-		position = position.add(direction.column(2).mult(tCAR_LENGTH)); // Move forward
-		Vector3 newLP = position;
-		position = position.add(direction.column(2).mult(-tCAR_LENGTH)); // Move backward
-		float heightDifferential = (getGroundHeight(newLP.x(), newLP.z())) - currentHeight;
-		float tpitchAngle = (float) Math.toDegrees(Math.atan(Math.abs(heightDifferential) / Math.abs(tCAR_LENGTH)));
+		// Move forward, then back (kept as two steps to match the original rounding)
+		float newLPX = posX + axes[3] * tCAR_LENGTH;
+		float newLPZ = posZ + axes[5] * tCAR_LENGTH;
+		posX = newLPX + axes[3] * -tCAR_LENGTH;
+		posY = (posY + axes[4] * tCAR_LENGTH) + axes[4] * -tCAR_LENGTH;
+		posZ = newLPZ + axes[5] * -tCAR_LENGTH;
+		float heightDifferential = (getGroundHeight(newLPX, newLPZ)) - currentHeight;
+		float tpitchAngle = atanDegrees(Math.abs(heightDifferential) / Math.abs(tCAR_LENGTH));
 		if (heightDifferential > 0f && tpitchAngle > 45f) {
 			// Calculate angle and set new angle and velocity
 			vForward = -vForward / 10;
 		}
 		else {
 			// Move forward
-			position = position.add(fv);
+			posX = posX + fvX;
+			posY = posY + fvY;
+			posZ = posZ + fvZ;
 		}
 
 		
 		// Handle new location's height
-		float groundHeight = getGroundHeight(position.x(), position.z());
-		currentHeight = position.y();
+		float groundHeight = getGroundHeight(posX, posZ);
+		currentHeight = posY;
 		// If avatar was already on the ground, and the ground is near, "snap" the avatar to the ground
 		if (isOnGround && (currentHeight - groundHeight) < 0.2f) {
 			currentHeight = groundHeight;
@@ -190,55 +274,293 @@ public class PhysicsBody {
 			}
 			currentHeight = groundHeight;
 		}
-		position = Vector3f.createFrom(position.x(), currentHeight, position.z());
+		posY = currentHeight;
 		
 		// Change the avatar's angle
 		if (isOnGround) {
-			Vector3 heading;
+			float headingX;
+			float headingZ;
 			float heightChange;
-			Matrix3 newRotation = Matrix3f.createIdentityMatrix();
 			// Calculate pitch
 			float CAR_LENGTH = 0.6f;
-			position = position.add(direction.column(2).mult(CAR_LENGTH)); // Move forward
-			heading = position;
-			position = position.add(direction.column(2).mult(-CAR_LENGTH)); // Move backward
-			heightChange = (getGroundHeight(heading.x(), heading.z())) - currentHeight;
+			headingX = posX + axes[3] * CAR_LENGTH; // Move forward
+			headingZ = posZ + axes[5] * CAR_LENGTH;
+			posX = headingX + axes[3] * -CAR_LENGTH; // Move backward
+			posY = (posY + axes[4] * CAR_LENGTH) + axes[4] * -CAR_LENGTH;
+			posZ = headingZ + axes[5] * -CAR_LENGTH;
+			heightChange = (getGroundHeight(headingX, headingZ)) - currentHeight;
 			if (heightChange < -0.5f) {
 				// if falling, don't correct pitch much
-				float pitchAngle = (float) Math.toDegrees(Math.atan(heightChange / CAR_LENGTH));
+				float pitchAngle = atanDegrees(heightChange / CAR_LENGTH);
 				float newPitch = (pitchAngle - currentPitch) * elapsedSec / 3 + currentPitch;
-				rotation = newRotation.rotate(Degreef.createFrom(-newPitch), Vector3f.createUnitVectorX());
+				setRotationQuaternion(scratchA, 0, -newPitch, 1f, 0f, 0f);
 				currentPitch = newPitch;
 			}
 			else {
-				float pitchAngle = (float) Math.toDegrees(Math.atan(heightChange / CAR_LENGTH));
+				float pitchAngle = atanDegrees(heightChange / CAR_LENGTH);
 				float newPitch = (pitchAngle - currentPitch) * elapsedSec * 3 + currentPitch;
-				rotation = newRotation.rotate(Degreef.createFrom(-newPitch), Vector3f.createUnitVectorX());
+				setRotationQuaternion(scratchA, 0, -newPitch, 1f, 0f, 0f);
 				currentPitch = newPitch;
 			}
 			
 			// Calculate roll
 			float CAR_WIDTH = 0.3f;
-			position = position.add(direction.column(0).mult(CAR_LENGTH)); // Move right
-			heading = position;
-			position = position.add(direction.column(0).mult(-CAR_LENGTH)); // Move left
-			heightChange = (getGroundHeight(heading.x(), heading.z())) - currentHeight;
-			float rollAngle = (float) Math.toDegrees(Math.atan(heightChange / CAR_WIDTH)) * 0.6f; // car rolls too much, damp it
+			headingX = posX + axes[0] * CAR_LENGTH; // Move right
+			headingZ = posZ + axes[2] * CAR_LENGTH;
+			posX = headingX + axes[0] * -CAR_LENGTH; // Move left
+			posY = (posY + axes[1] * CAR_LENGTH) + axes[1] * -CAR_LENGTH;
+			posZ = headingZ + axes[2] * -CAR_LENGTH;
+			heightChange = (getGroundHeight(headingX, headingZ)) - currentHeight;
+			float rollAngle = atanDegrees(heightChange / CAR_WIDTH) * 0.6f; // car rolls too much, damp it
 			float newRoll = (rollAngle - currentRoll) * elapsedSec * 5 + currentRoll;
-			rotation = rotation.rotate(Degreef.createFrom(newRoll), Vector3f.createUnitVectorZ());
+			setRotationQuaternion(scratchB, 0, newRoll, 0f, 0f, 1f);
+			mult(scratchA, 0, scratchB, 0, rotation, 0);
 			currentRoll = newRoll;
 		}
 		// If in air, straighten car out
 		else {
-			Matrix3 newRotation = Matrix3f.createIdentityMatrix();
 			float newPitch = -currentPitch * elapsedSec + currentPitch;
-			rotation = newRotation.rotate(Degreef.createFrom(-newPitch), Vector3f.createUnitVectorX());
+			setRotationQuaternion(scratchA, 0, -newPitch, 1f, 0f, 0f);
 			currentPitch = newPitch;
 
 			float newRoll = -currentRoll * elapsedSec + currentRoll;
-			rotation = rotation.rotate(Degreef.createFrom(newRoll), Vector3f.createUnitVectorZ());
+			setRotationQuaternion(scratchB, 0, newRoll, 0f, 0f, 1f);
+			mult(scratchA, 0, scratchB, 0, rotation, 0);
 			currentRoll = newRoll;
 		}
+		rotationView = null;
+		positionView = null;
+	}
+
+	private float sin(float radians) {
+		return isDeterministic ? (float) StrictMath.sin(radians) : FastMath.sin(radians);
+	}
+
+	private float cos(float radians) {
+		return isDeterministic ? (float) StrictMath.cos(radians) : FastMath.cos(radians);
+	}
+
+	private float atanDegrees(float a) {
+		return isDeterministic ? (float) Math.toDegrees(StrictMath.atan(a)) : FastMath.toDegrees(FastMath.atan(a));
+	}
+
+	public boolean isDeterministic() {
+		return isDeterministic;
+	}
+
+	/**
+	 * In deterministic mode all transcendental functions go through
+	 * StrictMath, so the same state, inputs and step sizes give bit-identical
+	 * results on every JVM and platform, and match earlier recordings.
+	 * Otherwise they go through FastMath, which is faster and off from
+	 * StrictMath by a bit or two at most.
+	 */
+	public void setDeterministic(boolean isDeterministic) {
+		this.isDeterministic = isDeterministic;
+	}
+
+	/**
+	 * Writes everything that affects future steps, including tuning
+	 * constants and current inputs, into <code>out</code>
+	 * ({@link #STATE_SIZE} floats).
+	 */
+	public void writeState(float[] out) {
+		int i = 0;
+		out[i++] = posX;
+		out[i++] = posY;
+		out[i++] = posZ;
+		System.arraycopy(direction, 0, out, i, 4);
+		i += 4;
+		System.arraycopy(rotation, 0, out, i, 4);
+		i += 4;
+		out[i++] = isSpinRotation ? 1f : 0f;
+		out[i++] = spinRotationDegrees;
+		out[i++] = isOnGround ? 1f : 0f;
+		out[i++] = isAccelerating ? 1f : 0f;
+		out[i++] = isDeccelerating ? 1f : 0f;
+		out[i++] = isBraking ? 1f : 0f;
+		out[i++] = isOnSpeedBoost ? 1f : 0f;
+		out[i++] = accelerationRate;
+		out[i++] = deccelerationRate;
+		out[i++] = TURN_RATE;
+		out[i++] = DRIFTING_TURN_RATE;
+		out[i++] = MAX_BASE_SPEED;
+		out[i++] = spinDirection;
+		out[i++] = spinoutTimer;
+		out[i++] = speedBoostTimer;
+		out[i++] = isDrifting ? 1f : 0f;
+		out[i++] = driftingDirection;
+		out[i++] = desiredTurn;
+		out[i++] = desiredTurnRollingAverage;
+		out[i++] = actualTurn;
+		out[i++] = vForward;
+		out[i++] = vUp;
+		out[i++] = currentPitch;
+		out[i++] = currentRoll;
+	}
+
+	/**
+	 * Restores a state written by {@link #writeState(float[])}.
+	 */
+	public void readState(float[] in) {
+		int i = 0;
+		posX = in[i++];
+		posY = in[i++];
+		posZ = in[i++];
+		System.arraycopy(in, i, direction, 0, 4);
+		i += 4;
+		System.arraycopy(in, i, rotation, 0, 4);
+		i += 4;
+		isSpinRotation = in[i++] != 0f;
+		spinRotationDegrees = in[i++];
+		isOnGround = in[i++] != 0f;
+		isAccelerating = in[i++] != 0f;
+		isDeccelerating = in[i++] != 0f;
+		isBraking = in[i++] != 0f;
+		isOnSpeedBoost = in[i++] != 0f;
+		accelerationRate = in[i++];
+		deccelerationRate = in[i++];
+		TURN_RATE = in[i++];
+		DRIFTING_TURN_RATE = in[i++];
+		MAX_BASE_SPEED = in[i++];
+		spinDirection = in[i++];
+		spinoutTimer = in[i++];
+		speedBoostTimer = in[i++];
+		isDrifting = in[i++] != 0f;
+		driftingDirection = in[i++];
+		desiredTurn = in[i++];
+		desiredTurnRollingAverage = in[i++];
+		actualTurn = in[i++];
+		vForward = in[i++];
+		vUp = in[i++];
+		currentPitch = in[i++];
+		currentRoll = in[i++];
+		positionView = null;
+		directionView = null;
+		rotationView = null;
+		spinRotationView = null;
+		savePreviousState();
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the exact bits of {@link #writeState(float[])}.
+	 * Two bodies with equal hashes after the same tick have, with
+	 * overwhelming probability, simulated identically.
+	 */
+	public long getStateHash() {
+		writeState(stateScratch);
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < STATE_SIZE; i++) {
+			int bits = Float.floatToIntBits(stateScratch[i]);
+			for (int b = 0; b < 4; b++) {
+				hash ^= (bits >>> (b * 8)) & 0xFF;
+				hash *= 0x100000001b3L;
+			}
+		}
+		return hash;
+	}
+
+	private void savePreviousState() {
+		prevPosX = posX;
+		prevPosY = posY;
+		prevPosZ = posZ;
+		System.arraycopy(direction, 0, prevDirection, 0, 4);
+		System.arraycopy(rotation, 0, prevRotation, 0, 4);
+		prevIsSpinRotation = isSpinRotation;
+		prevSpinRotationDegrees = spinRotationDegrees;
+	}
+
+	/**
+	 * @param alpha
+	 *            0 for the state before the last step, 1 for the current
+	 *            state.
+	 */
+	public Vector3 getInterpolatedPosition(float alpha) {
+		return Vector3f.createFrom(
+			prevPosX + (posX - prevPosX) * alpha,
+			prevPosY + (posY - prevPosY) * alpha,
+			prevPosZ + (posZ - prevPosZ) * alpha
+		);
+	}
+
+	public Quaternion getInterpolatedDirection(float alpha) {
+		return interpolate(prevDirection, direction, alpha);
+	}
+
+	public Quaternion getInterpolatedRotation(float alpha) {
+		return interpolate(prevRotation, rotation, alpha);
+	}
+
+	public Quaternion getInterpolatedSpinRotation(float alpha) {
+		if (!prevIsSpinRotation && !isSpinRotation) {
+			return getSpinOrientation();
+		}
+		setRotationQuaternion(scratchA, 0, prevIsSpinRotation ? prevSpinRotationDegrees : 0f, 0f, 1f, 0f);
+		setRotationQuaternion(scratchB, 0, isSpinRotation ? spinRotationDegrees : 0f, 0f, 1f, 0f);
+		return interpolate(scratchA, scratchB, alpha);
+	}
+
+	private static Quaternion interpolate(float[] from, float[] to, float alpha) {
+		Quaternion end = Quaternionf.createFrom(to);
+		if (alpha >= 1f) {
+			return end;
+		}
+		return Quaternionf.createFrom(from).slerp(end, alpha);
+	}
+
+	/**
+	 * Writes the rotation of <code>degrees</code> about the unit axis (x, y, z)
+	 * into <code>out</code> as a unit quaternion, like
+	 * {@link Quaternionf#createFrom(ray.rml.Angle, Vector3)}.
+	 */
+	private void setRotationQuaternion(float[] out, int o, float degrees, float x, float y, float z) {
+		final float halfRadians = degrees * DEGREE_TO_RADIAN * 0.5f;
+		final float sin = sin(halfRadians);
+		out[o] = cos(halfRadians);
+		out[o + 1] = x * sin;
+		out[o + 2] = y * sin;
+		out[o + 3] = z * sin;
+	}
+
+	/**
+	 * <code>out = a * b</code>, renormalized, the same as
+	 * {@link Quaternionf#mult(Quaternion)}. <code>out</code> must not alias an
+	 * input.
+	 */
+	static void mult(float[] a, int ao, float[] b, int bo, float[] out, int oo) {
+		final float aw = a[ao], ax = a[ao + 1], ay = a[ao + 2], az = a[ao + 3];
+		final float bw = b[bo], bx = b[bo + 1], by = b[bo + 2], bz = b[bo + 3];
+		final float w = aw * bw - ax * bx - ay * by - az * bz;
+		final float x = aw * bx + ax * bw + ay * bz - az * by;
+		final float y = aw * by - ax * bz + ay * bw + az * bx;
+		final float z = aw * bz + ax * by - ay * bx + az * bw;
+		final float invLength = 1f / (float) Math.sqrt(w * w + x * x + y * y + z * z);
+		out[oo] = w * invLength;
+		out[oo + 1] = x * invLength;
+		out[oo + 2] = y * invLength;
+		out[oo + 3] = z * invLength;
+	}
+
+	/**
+	 * Writes the right and forward axes of a unit quaternion, i.e. columns 0
+	 * and 2 of {@link Quaternion#toMatrix3()}, into <code>out</code> as
+	 * <code>[rightX, rightY, rightZ, forwardX, forwardY, forwardZ]</code>.
+	 */
+	static void toAxes(float[] q, int qo, float[] out, int oo) {
+		final float w = q[qo], x = q[qo + 1], y = q[qo + 2], z = q[qo + 3];
+		out[oo] = 1f - 2f * (y * y + z * z);
+		out[oo + 1] = 2f * (x * y + w * z);
+		out[oo + 2] = 2f * (x * z - w * y);
+		out[oo + 3] = 2f * (w * y + x * z);
+		out[oo + 4] = 2f * (y * z - w * x);
+		out[oo + 5] = 1f - 2f * (x * x + y * y);
+	}
+
+	private static void copyInto(Quaternion q, float[] out) {
+		out[0] = q.w();
+		out[1] = q.x();
+		out[2] = q.y();
+		out[3] = q.z();
 	}
 	
 
@@ -267,7 +589,10 @@ public class PhysicsBody {
 	}
 	
 	protected float getGravityForce() {
-		return (float) Math.sin(Math.toRadians(currentPitch)) * gravity;
+		if (isDeterministic) {
+			return (float) StrictMath.sin(Math.toRadians(currentPitch)) * gravity;
+		}
+		return FastMath.sin(FastMath.toRadians(currentPitch)) * gravity;
 	}
 	
 	protected float getMaxSpeed() {
@@ -327,6 +652,27 @@ public class PhysicsBody {
 
     public void handleCollision() {
     	setSpinoutTimer(SPINOUT_DURATION);
+    	collisionCount++;
+    }
+
+    /**
+     * Response to running into another kart: nudges the body along the ground
+     * and replaces its forward velocity. Unlike setPosition this is not a
+     * teleport, so rendering still interpolates from the previous step.
+     */
+    public void applyBump(float pushX, float pushZ, float vForward) {
+    	posX += pushX;
+    	posZ += pushZ;
+    	positionView = null;
+    	this.vForward = Math.max(getMaxReverseSpeed(), Math.min(vForward, getMaxSpeed()));
+    }
+
+    /**
+     * @return How many times {@link #handleCollision()} has been called, so a
+     *         recorder can tell which ticks were hit.
+     */
+    public int getCollisionCount() {
+    	return collisionCount;
     }
 
     private void setSpinoutTimer(float f) {
@@ -386,130 +732,110 @@ public class PhysicsBody {
 	}
 
 	public Vector3 getPosition() {
-		return position;
+		if (positionView == null) {
+			positionView = Vector3f.createFrom(posX, posY, posZ);
+		}
+		return positionView;
 	}
 
 
 	public void setPosition(Vector3 position) {
-		this.position = position;
+		posX = position.x();
+		posY = position.y();
+		posZ = position.z();
+		positionView = position;
+		savePreviousState(); // don't interpolate across a teleport
 	}
 
 
 	public Matrix3 getRotation() {
-		return rotation;
+		if (rotationView == null) {
+			rotationView = Quaternionf.createFrom(rotation).toMatrix3();
+		}
+		return rotationView;
 	}
 
 
 	public void setRotation(Matrix3 rotation) {
-		this.rotation = rotation;
+		setRotation(rotation.toQuaternion());
+	}
+
+	public void setRotation(Quaternion rotation) {
+		copyInto(rotation, this.rotation);
+		rotationView = null;
+		savePreviousState(); // don't interpolate across a teleport
 	}
 
 	public Matrix3 getSpinRotation() {
-		return spinRotation;
+		if (spinRotationView == null) {
+			spinRotationView = getSpinOrientation().toMatrix3();
+		}
+		return spinRotationView;
 	}
 
 	public void setSpinRotation(Matrix3 spinRotation) {
-		this.spinRotation = spinRotation;
+		this.spinRotationView = spinRotation;
+	}
+
+	/**
+	 * @return The spin of a kart that was hit, about its up axis.
+	 */
+	public Quaternion getSpinOrientation() {
+		if (!isSpinRotation) {
+			return Quaternionf.createIdentityQuaternion();
+		}
+		setRotationQuaternion(scratchC, 0, spinRotationDegrees, 0f, 1f, 0f);
+		return Quaternionf.createFrom(scratchC);
+	}
+
+	/**
+	 * @return The direction times the rotation, i.e. the orientation of the
+	 *         kart without its spin.
+	 */
+	public Quaternion getOrientation() {
+		mult(direction, 0, rotation, 0, scratchC, 0);
+		return Quaternionf.createFrom(scratchC);
 	}
 
 	public Matrix3 getDirection() {
-		return direction;
+		if (directionView == null) {
+			directionView = Quaternionf.createFrom(direction).toMatrix3();
+		}
+		return directionView;
 	}
 
 	public void setDirection(Matrix3 direction) {
-		this.direction = direction;
+		setDirection(direction.toQuaternion());
+	}
+
+	public void setDirection(Quaternion direction) {
+		copyInto(direction, this.direction);
+		directionView = null;
+		savePreviousState(); // don't interpolate across a teleport
 	}
 
 	protected float getGroundHeight(float x, float z) {
 		return getWorldHeight(x, z);
 	}
 
-	protected boolean getIsSpeedBoost(float x, float z, Vector3 facing, float scale) {
+	protected boolean getIsSpeedBoost(float x, float z, float facingX, float facingZ, float scale) {
 		return (
-			getIsSpeedBoost(x + facing.x() * scale, z + facing.z() * scale) ||
+			getIsSpeedBoost(x + facingX * scale, z + facingZ * scale) ||
 			getIsSpeedBoost(x, z) ||
-			getIsSpeedBoost(x - facing.x() * scale, z - facing.z() * scale)
+			getIsSpeedBoost(x - facingX * scale, z - facingZ * scale)
 		);
 	}
 	
 	public float getWorldHeight(float globalX, float globalZ) {
-		float scale = 250f;
-
-		// Get size bounds
-		float targetX;
-		float targetZ;
-		
-		// Normalize the target values
-		targetX = globalX / scale + 0.5f;
-		targetZ = 1 - (globalZ / scale + 0.5f);
-		// Now that the user's provided coordinates have been converted to local coordinates, perform the height estimation.
-		return getAverageHeight(targetX, targetZ);
+		return surface.getWorldHeight(globalX, globalZ);
 	}
 	
 	public boolean getIsSpeedBoost(float globalX, float globalZ) {
-		float scale = 250f;
-
-		// Get size bounds
-		float targetX;
-		float targetZ;
-		
-		// Normalize the target values
-		targetX = globalX / scale + 0.5f;
-		targetZ = 1 - (globalZ / scale + 0.5f);
-
-		// Z Hack, since the tessellation shaders are apparently not perfectly centered. Depends on Patch Sizes
-		targetZ += targetZ / 500f + 0.0015f;
-		
-		// Normalize parameters (and constrain invalid parameters between 0.0 and 1.0)
-		while (targetX < 0.0f) {targetX += 1.0f;}
-		while (targetX > 1.0f) {targetX -= 1.0f;}
-		while (targetZ < 0.0f) {targetZ += 1.0f;}
-		while (targetZ > 1.0f) {targetZ -= 1.0f;}
-
-		// Obtain the buffered image
-		BufferedImage img = heightMap.getImage();
-		
-		// Estimate the closest HeightMap pixel
-		float xPixel  = (img.getWidth()  - 1) * targetX;
-		float zPixel  = (img.getHeight() - 1) * targetZ;
-		int   xPixelT = (int) xPixel;
-		int   zPixelT = (int) zPixel;
-
-		float blue = new Color(img.getRGB(xPixelT, zPixelT)).getBlue() / 255.0f;
-		return (blue > 0.9f);
+		return surface.isSpeedBoost(globalX, globalZ);
 	}
 	
 	public float getGroundFriction(float globalX, float globalZ) {
-		float scale = 250f;
-
-		// Get size bounds
-		float targetX;
-		float targetZ;
-		
-		// Normalize the target values
-		targetX = globalX / scale + 0.5f;
-		targetZ = 1 - (globalZ / scale + 0.5f);
-
-		// Z Hack, since the tessellation shaders are apparently not perfectly centered. Depends on Patch Sizes
-		targetZ += targetZ / 500f + 0.0015f;
-		
-		// Normalize parameters (and constrain invalid parameters between 0.0 and 1.0)
-		while (targetX < 0.0f) {targetX += 1.0f;}
-		while (targetX > 1.0f) {targetX -= 1.0f;}
-		while (targetZ < 0.0f) {targetZ += 1.0f;}
-		while (targetZ > 1.0f) {targetZ -= 1.0f;}
-
-		// Obtain the buffered image
-		BufferedImage img = heightMap.getImage();
-		
-		// Estimate the closest HeightMap pixel
-		float xPixel  = (img.getWidth()  - 1) * targetX;
-		float zPixel  = (img.getHeight() - 1) * targetZ;
-		int   xPixelT = (int) xPixel;
-		int   zPixelT = (int) zPixel;
-
-		float green = new Color(img.getRGB(xPixelT, zPixelT)).getGreen() / 255.0f;
-		float friction = (green > 0.9f) ? vForward * 3.0f : vForward * 0.5f;
+		float friction = surface.isHighFriction(globalX, globalZ) ? vForward * 3.0f : vForward * 0.5f;
 		friction = Math.max(10f, friction);
 		if (vForward > 0f) {
 			friction = -friction;
@@ -518,76 +844,7 @@ public class PhysicsBody {
 	}
 
     public float getAverageHeight(float xPercent, float zPercent) {
-    	float amount = 0f;
-
-		// Z Hack, since the tessellation shaders are apparently not perfectly centered. Depends on Patch Sizes
-    	zPercent += zPercent / 500f + 0.0015f;
-		// negative is less
-		// positive is more
-
-		// Normalize parameters (and constrain invalid parameters between 0.0 and 1.0)
-		while (xPercent < 0.0f) {xPercent += 1.0f;}
-		while (xPercent > 1.0f) {xPercent -= 1.0f;}
-		while (zPercent < 0.0f) {zPercent += 1.0f;}
-		while (zPercent > 1.0f) {zPercent -= 1.0f;}
-
-		// Obtain the buffered image
-		BufferedImage img = heightMap.getImage();
-		
-		// Estimate the closest HeightMap pixel
-		float xPixel  = (img.getWidth()  - 1) * xPercent;
-		float zPixel  = (img.getHeight() - 1) * zPercent;
-		int   xPixelT = (int) xPixel;
-		int   zPixelT = (int) zPixel;
-
-		// Estimate how exact the position is
-		float xDepth = xPixel % 1.0f;
-		float zDepth = zPixel % 1.0f;
-		
-		// Discover how much weight to put on the targeted pixel
-		float xWeightT = getWeight(xDepth);
-		float zWeightT = getWeight(zDepth);
-		
-		// Discover nearest neighbors
-		int xPixelN;
-		int zPixelN;
-		if      (xDepth <  0.5f)  xPixelN = (int) xPixelT - 1;
-		else if (xDepth == 0.5f)  xPixelN = (int) xPixelT    ;
-		else                      xPixelN = (int) xPixelT + 1;
-		
-		if      (zDepth <  0.5f)  zPixelN = (int) zPixelT - 1;
-		else if (zDepth == 0.5f)  zPixelN = (int) zPixelT    ;
-		else                      zPixelN = (int) zPixelT + 1;
-		
-		// Verify neighboring pixels exist, if they don't, wrap around
-		if      (xPixelN < 0)                xPixelN = img.getWidth()  - 1;
-		else if (xPixelN >= img.getWidth() ) xPixelN = 0;
-		if      (zPixelN < 0)                zPixelN = img.getHeight() - 1;
-		else if (zPixelN >= img.getHeight()) zPixelN = 0;
-		
-		// Average the weighted heights
-		{
-			// Calculate target pixel's height
-			float total0 = new Color(img.getRGB(xPixelT, zPixelT)).getRed() / 255.0f;
-			float total1 = new Color(img.getRGB(xPixelN, zPixelT)).getRed() / 255.0f;
-			float total2 = new Color(img.getRGB(xPixelT, zPixelN)).getRed() / 255.0f;
-			float total3 = new Color(img.getRGB(xPixelN, zPixelN)).getRed() / 255.0f;
-			
-			// Weight the heights of the target and neighboring pixels
-			float weightXZ = (xWeightT + zWeightT) / 2;
-			float avgX     = ((xWeightT * total0) + ((1.0f - xWeightT) * total1));
-			float avgZ     = ((zWeightT * total0) + ((1.0f - zWeightT) * total2));
-			float avgXZ    = ((weightXZ * total0) + ((1.0f - weightXZ) * total3));
-			
-			// Get the final total
-			amount = (avgX + avgZ + avgXZ) / (3.0f);
-		}
-    	
-    	return (amount * 10);
-    }
-    
-    private float getWeight(float depth) {
-    	return 1.0f - Math.abs(depth - 0.5f);
+    	return surface.getAverageHeight(xPercent, zPercent);
     }
     
     public void resetInputs() {
@@ -598,8 +855,8 @@ public class PhysicsBody {
 	}
 
 	public void reset(Vector3 position, Matrix3 rotation) {
-		this.position = position;
-		this.rotation = rotation;
+		setPosition(position);
+		setRotation(rotation);
 		isOnGround = true;
 		isAccelerating = false;
 		isDeccelerating = false;
@@ -0,0 +1,122 @@
+package a3;
+
+import java.util.Arrays;
+
+/**
+ * Records the inputs fed to a {@link PhysicsBody} on every fixed step, plus a
+ * hash of the resulting state, so the run can later be re-simulated and
+ * checked tick by tick instead of storing full snapshots.
+ *
+ * Start the recording after the body has been placed (e.g. on the starting
+ * grid) and call {@link #recordTick(PhysicsBody)} right after each
+ * {@link PhysicsBody#updatePhysics(float)}. Kart bumps must be reported with
+ * {@link #recordBump(float, float, float)} as they are applied. Teleporting the
+ * body with setPosition or setRotation mid-recording cannot be replayed.
+ */
+public class PhysicsRecording {
+	private static final int ACCELERATING = 1;
+	private static final int DECCELERATING = 2;
+	private static final int DRIFTING = 4;
+	private static final int BRAKING = 8;
+	private static final int COLLISION = 16;
+
+	private final float stepMS;
+	private final boolean isDeterministic;
+	private final float[] initialState = new float[PhysicsBody.STATE_SIZE];
+	private byte[] inputs = new byte[1024];
+	private float[] desiredTurns = new float[1024];
+	private long[] stateHashes = new long[1024];
+	private int ticks = 0;
+	private int lastCollisionCount;
+	// Bumps are rare, so they are kept as a sparse list of (tick, values)
+	private int[] bumpTicks = new int[16];
+	private float[] bumpValues = new float[16 * 3];
+	private int bumps = 0;
+
+	public PhysicsRecording(PhysicsBody body, float stepMS) {
+		this.stepMS = stepMS;
+		this.isDeterministic = body.isDeterministic();
+		body.writeState(initialState);
+		lastCollisionCount = body.getCollisionCount();
+	}
+
+	public void recordTick(PhysicsBody body) {
+		if (ticks == inputs.length) {
+			int capacity = ticks * 2;
+			inputs = Arrays.copyOf(inputs, capacity);
+			desiredTurns = Arrays.copyOf(desiredTurns, capacity);
+			stateHashes = Arrays.copyOf(stateHashes, capacity);
+		}
+		int flags = 0;
+		if (body.isAccelerating()) flags |= ACCELERATING;
+		if (body.isDeccelerating()) flags |= DECCELERATING;
+		if (body.isDrifting()) flags |= DRIFTING;
+		if (body.isBraking()) flags |= BRAKING;
+		if (body.getCollisionCount() != lastCollisionCount) {
+			flags |= COLLISION;
+			lastCollisionCount = body.getCollisionCount();
+		}
+		inputs[ticks] = (byte) flags;
+		desiredTurns[ticks] = body.getDesiredTurn();
+		stateHashes[ticks] = body.getStateHash();
+		ticks++;
+	}
+
+	/**
+	 * Records a {@link PhysicsBody#applyBump(float, float, float)} made
+	 * before the next tick.
+	 */
+	public void recordBump(float pushX, float pushZ, float vForward) {
+		if (bumps == bumpTicks.length) {
+			bumpTicks = Arrays.copyOf(bumpTicks, bumps * 2);
+			bumpValues = Arrays.copyOf(bumpValues, bumps * 2 * 3);
+		}
+		bumpTicks[bumps] = ticks;
+		bumpValues[bumps * 3] = pushX;
+		bumpValues[bumps * 3 + 1] = pushZ;
+		bumpValues[bumps * 3 + 2] = vForward;
+		bumps++;
+	}
+
+	public int getTicks() {
+		return ticks;
+	}
+
+	public long getStateHash(int tick) {
+		return stateHashes[tick];
+	}
+
+	/**
+	 * Re-simulates the recorded inputs on <code>body</code>, starting from the
+	 * recorded initial state, and compares the state hash after every tick.
+	 *
+	 * @return The first tick whose state differs, or -1 if the whole recording
+	 *         was reproduced bit for bit.
+	 */
+	public int replay(PhysicsBody body) {
+		body.setDeterministic(isDeterministic);
+		body.readState(initialState);
+		int bump = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			while (bump < bumps && bumpTicks[bump] == tick) {
+				body.applyBump(bumpValues[bump * 3], bumpValues[bump * 3 + 1], bumpValues[bump * 3 + 2]);
+				bump++;
+			}
+			int flags = inputs[tick];
+			body.resetInputs();
+			body.setAccelerating((flags & ACCELERATING) != 0);
+			body.setDeccelerating((flags & DECCELERATING) != 0);
+			body.setDrifting((flags & DRIFTING) != 0);
+			body.setBraking((flags & BRAKING) != 0);
+			body.setDesiredTurn(desiredTurns[tick]);
+			if ((flags & COLLISION) != 0) {
+				body.handleCollision();
+			}
+			body.updatePhysics(stepMS);
+			if (body.getStateHash() != stateHashes[tick]) {
+				return tick;
+			}
+		}
+		return -1;
+	}
+}
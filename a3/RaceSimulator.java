@@ -0,0 +1,276 @@
+package a3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ray.rml.Matrix3f;
+import ray.rml.Vector3;
+
+/**
+ * Runs NPC-only races without a server, sockets or rendering, to tune the
+ * NPC driving offline. Each parameter set is raced several times with
+ * different kart seeds, races run in parallel, and the lap times of every
+ * set are printed as a distribution.
+ *
+ * A parameter set holds both the NPC driving tunables and the ranges
+ * {@link PhysicsBody#randomizeConstants(PhysicsBody.Tuning, long)} draws the
+ * kart constants from, so physics tunings can be compared against each other
+ * as well as driving ones.
+ *
+ * NPCs are driven by the same {@link NPCDriver} the server uses, on the same
+ * fixed step, with kart-to-kart collisions and standings as on the server.
+ * Item boxes and items are not simulated.
+ *
+ * Usage: RaceSimulator [races per set] [laps] [seed]
+ * Run from the project root so the track height map can be found.
+ */
+public class RaceSimulator {
+	private static final float STEPS_PER_SECOND = 60f;
+	private static final int KARTS = 8;
+	private static final float KART_RADIUS = 0.8f;
+	// Races that go on this long are stuck and are cut short
+	private static final float MAX_RACE_SECONDS = 600f;
+
+	/**
+	 * One combination of NPC tunables and kart physics tuning to race.
+	 */
+	public static class ParameterSet {
+		private final String name;
+		private final float lookaheadDistance;
+		private final float lookaheadTime;
+		private final float steeringGain;
+		private final float maxTurn;
+		private final float yawRateDegrees;
+		private final PhysicsBody.Tuning tuning;
+		private RacingLine racingLine = null;
+
+		/**
+		 * Races with the server's physics tuning, {@link PhysicsBody.Tuning#DEFAULT}.
+		 *
+		 * @param yawRateDegrees Turn rate the racing line's corner speeds are planned for.
+		 */
+		public ParameterSet(String name, float lookaheadDistance, float lookaheadTime, float steeringGain, float maxTurn, float yawRateDegrees) {
+			this(name, lookaheadDistance, lookaheadTime, steeringGain, maxTurn, yawRateDegrees, PhysicsBody.Tuning.DEFAULT);
+		}
+
+		/**
+		 * @param yawRateDegrees Turn rate the racing line's corner speeds are planned for.
+		 * @param tuning Ranges each kart's constants are drawn from.
+		 */
+		public ParameterSet(String name, float lookaheadDistance, float lookaheadTime, float steeringGain, float maxTurn, float yawRateDegrees, PhysicsBody.Tuning tuning) {
+			this.name = name;
+			this.lookaheadDistance = lookaheadDistance;
+			this.lookaheadTime = lookaheadTime;
+			this.steeringGain = steeringGain;
+			this.maxTurn = maxTurn;
+			this.yawRateDegrees = yawRateDegrees;
+			this.tuning = tuning;
+		}
+
+		private synchronized RacingLine getRacingLine() {
+			if (racingLine == null) {
+				Vector3[] points = new Vector3[Track1.NUM_WAYPOINTS];
+				for (int i = 0; i < points.length; i++) {
+					points[i] = Track1.getWaypoint(i);
+				}
+				racingLine = new RacingLine(points, 0.5f, 20f, (float) Math.toRadians(yawRateDegrees), 10f);
+			}
+			return racingLine;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name + " (lookahead " + lookaheadDistance + " + " + lookaheadTime + "s, gain " + steeringGain
+				+ ", max turn " + maxTurn + ", yaw " + yawRateDegrees + "; " + tuning + ")";
+		}
+	}
+
+	/**
+	 * Lap times of one race, in seconds.
+	 */
+	public static class RaceResult {
+		private final float[] lapTimes;
+		private final float raceSeconds;
+
+		private RaceResult(float[] lapTimes, float raceSeconds) {
+			this.lapTimes = lapTimes;
+			this.raceSeconds = raceSeconds;
+		}
+
+		public float[] getLapTimes() {
+			return lapTimes;
+		}
+	}
+
+	/**
+	 * Races 8 NPCs from the grid until all have done <code>laps</code> laps
+	 * after the first crossing of the finish line.
+	 *
+	 * @param seed Seeds each kart's constants, drawn from the set's tuning.
+	 */
+	public static RaceResult race(ParameterSet parameters, int laps, long seed) {
+		RacingLine racingLine = parameters.getRacingLine();
+		GameState gameState = new GameState();
+		// Unlimited budget: every decision is made when due, so runs repeat exactly
+		NPCDriver driver = new NPCDriver(gameState, racingLine, Long.MAX_VALUE);
+		driver.setLookahead(parameters.lookaheadDistance, parameters.lookaheadTime);
+		driver.setSteering(parameters.steeringGain, parameters.maxTurn);
+		KartCollider kartCollider = KartCollider.forTrack1(KART_RADIUS);
+		RaceStandings raceStandings = new RaceStandings(racingLine, -40f, -85.36f);
+
+		GhostAvatar[] karts = new GhostAvatar[KARTS];
+		for (int i = 0; i < KARTS; i++) {
+			// UUIDs from the seed keep the avatar map's iteration order repeatable
+			karts[i] = new GhostAvatar(new UUID(seed, i));
+			karts[i].setNPC(true);
+			karts[i].setPos(Track1.getPosition(KARTS - i));
+			PhysicsBody physicsBody = new PhysicsBody(Track1.getPosition(KARTS - i), Matrix3f.createIdentityMatrix());
+			physicsBody.setDeterministic(true);
+			physicsBody.randomizeConstants(parameters.tuning, seed + i);
+			karts[i].setPhysicsBody(physicsBody);
+			driver.attach(karts[i]);
+			gameState.getGhostAvatars().put(karts[i].getId(), karts[i]);
+		}
+		gameState.setRaceState(RaceState.RACING);
+
+		float stepMS = 1000f / STEPS_PER_SECOND;
+		int maxSteps = (int) (MAX_RACE_SECONDS * STEPS_PER_SECOND);
+		int[] lastLap = new int[KARTS];
+		float[] lapStart = new float[KARTS];
+		List<Float> lapTimes = new ArrayList<Float>();
+		int finished = 0;
+		int step = 0;
+		while (finished < KARTS && step < maxSteps) {
+			driver.beginTick();
+			for (GhostAvatar ga : gameState.getGhostAvatars().values()) {
+				driver.update(ga, 1, stepMS);
+			}
+			driver.endTick(1);
+			kartCollider.resolve(gameState.getGhostAvatars().values(), null);
+			raceStandings.update(gameState.getGhostAvatars().values());
+			step++;
+			float now = step / STEPS_PER_SECOND;
+			for (int i = 0; i < KARTS; i++) {
+				int lap = karts[i].getLap();
+				if (lap <= lastLap[i]) {
+					continue;
+				}
+				// Lap 1 begins at the first crossing, so only later crossings end a lap
+				if (lastLap[i] >= 1 && lastLap[i] <= laps) {
+					lapTimes.add(now - lapStart[i]);
+					if (lastLap[i] == laps) {
+						finished++;
+					}
+				}
+				lastLap[i] = lap;
+				lapStart[i] = now;
+			}
+		}
+
+		float[] times = new float[lapTimes.size()];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = lapTimes.get(i);
+		}
+		return new RaceResult(times, step / STEPS_PER_SECOND);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int races = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int laps = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+
+		final ParameterSet[] sets = {
+			new ParameterSet("default", 4f, 0.4f, 4f, 2f, 200f),
+			new ParameterSet("short lookahead", 3f, 0.3f, 4f, 2f, 200f),
+			new ParameterSet("long lookahead", 5f, 0.5f, 4f, 2f, 200f),
+			new ParameterSet("soft steering", 4f, 0.4f, 3f, 1.5f, 200f),
+			new ParameterSet("cautious line", 4f, 0.4f, 4f, 2f, 160f),
+			new ParameterSet("aggressive line", 4f, 0.4f, 4f, 2f, 240f),
+			new ParameterSet("fixed average karts", 4f, 0.4f, 4f, 2f, 200f,
+				new PhysicsBody.Tuning(1f, 1f, 1.075f, 1.075f, 0.95f)),
+			new ParameterSet("narrow spread", 4f, 0.4f, 4f, 2f, 200f,
+				new PhysicsBody.Tuning(0.9f, 1.1f, 1.05f, 1.1f, 0.95f)),
+			new ParameterSet("quick turning", 4f, 0.4f, 4f, 2f, 200f,
+				new PhysicsBody.Tuning(0.8f, 1.2f, 1.1f, 1.25f, 0.9f)),
+			new ParameterSet("full speed", 4f, 0.4f, 4f, 2f, 200f,
+				new PhysicsBody.Tuning(0.8f, 1.2f, 1f, 1.15f, 1f)),
+		};
+
+		// Loads the height map once, before the races share it
+		TrackSurface.getTrack1Surface();
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		System.out.println("Racing " + sets.length + " parameter sets, " + races + " races of " + laps
+			+ " laps each, on " + threads + " threads");
+		long start = System.nanoTime();
+		List<List<Future<RaceResult>>> futures = new ArrayList<List<Future<RaceResult>>>();
+		for (final ParameterSet parameters : sets) {
+			List<Future<RaceResult>> setFutures = new ArrayList<Future<RaceResult>>();
+			for (int i = 0; i < races; i++) {
+				final long raceSeed = seed + i * KARTS;
+				final int raceLaps = laps;
+				setFutures.add(executor.submit(new Callable<RaceResult>() {
+					public RaceResult call() {
+						return race(parameters, raceLaps, raceSeed);
+					}
+				}));
+			}
+			futures.add(setFutures);
+		}
+
+		double simulatedSeconds = 0;
+		for (int s = 0; s < sets.length; s++) {
+			List<Float> all = new ArrayList<Float>();
+			for (Future<RaceResult> future : futures.get(s)) {
+				RaceResult result = future.get();
+				simulatedSeconds += result.raceSeconds;
+				for (float t : result.lapTimes) {
+					all.add(t);
+				}
+			}
+			System.out.println(sets[s]);
+			System.out.println("    " + summarize(all, races * KARTS * laps));
+		}
+		executor.shutdown();
+		double wallSeconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Simulated %.0f s of racing in %.2f s (%.0fx real time)%n",
+			simulatedSeconds, wallSeconds, simulatedSeconds / wallSeconds);
+	}
+
+	private static String summarize(List<Float> lapTimes, int expected) {
+		if (lapTimes.isEmpty()) {
+			return "no laps completed";
+		}
+		float[] sorted = new float[lapTimes.size()];
+		double sum = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = lapTimes.get(i);
+			sum += sorted[i];
+		}
+		Arrays.sort(sorted);
+		double mean = sum / sorted.length;
+		double variance = 0;
+		for (float t : sorted) {
+			variance += (t - mean) * (t - mean);
+		}
+		double stddev = Math.sqrt(variance / sorted.length);
+		return String.format("laps %d/%d  mean %.2f  sd %.2f  min %.2f  p10 %.2f  median %.2f  p90 %.2f  max %.2f",
+			sorted.length, expected, mean, stddev, sorted[0], percentile(sorted, 0.1f),
+			percentile(sorted, 0.5f), percentile(sorted, 0.9f), sorted[sorted.length - 1]);
+	}
+
+	private static float percentile(float[] sorted, float p) {
+		int i = Math.round(p * (sorted.length - 1));
+		return sorted[i];
+	}
+}
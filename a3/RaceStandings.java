@@ -0,0 +1,178 @@
+package a3;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import ray.rml.Vector3;
+
+/**
+ * Keeps the running order of a race, server side.
+ *
+ * A kart's progress is the distance it has driven along the racing line since
+ * the finish line, so a kart on its second lap is a full track length ahead of
+ * one at the same spot on its first. Progress is accumulated from the change
+ * in racing-line sample each tick, so no lap or zone bookkeeping is needed.
+ *
+ * The order is kept sorted between ticks and repaired with adjacent swaps,
+ * one per overtake, so a tick with no overtakes costs a single pass.
+ */
+public class RaceStandings {
+	private static final float LOST_DISTANCE = 20f;
+	private final RacingLine line;
+	private final int finishIndex;
+	private final Set<GhostAvatar> tracked = new HashSet<GhostAvatar>();
+	private GhostAvatar[] order = new GhostAvatar[8];
+	private float[] progress = new float[8];
+	private int[] lineIndex = new int[8];
+	private int count = 0;
+
+	/**
+	 * @param finishX World X of a point on the finish line.
+	 * @param finishZ World Z of a point on the finish line.
+	 */
+	public RaceStandings(RacingLine line, float finishX, float finishZ) {
+		this.line = line;
+		this.finishIndex = line.project(finishX, finishZ, -1);
+	}
+
+	public static RaceStandings forTrack1() {
+		// Same line the client uses to count laps (zone 3 to zone 0)
+		return new RaceStandings(RacingLine.getTrack1Line(), -40f, -85.36f);
+	}
+
+	/**
+	 * Advances every kart's progress from its current position and repairs
+	 * the order. Karts missing from <code>avatars</code> are dropped.
+	 *
+	 * @return Whether the order changed, including karts joining or leaving.
+	 */
+	public boolean update(Collection<GhostAvatar> avatars) {
+		boolean isChanged = syncMembership(avatars);
+		int samples = line.getSampleCount();
+		float spacing = line.getLength() / samples;
+		for (int i = 0; i < count; i++) {
+			Vector3 pos = order[i].getPos();
+			int index = line.project(pos.x(), pos.z(), lineIndex[i]);
+			float dx = line.getX(index) - pos.x();
+			float dz = line.getZ(index) - pos.z();
+			if (dx * dx + dz * dz > LOST_DISTANCE * LOST_DISTANCE) {
+				// Moved further than the local search covers, e.g. a late first update
+				index = line.project(pos.x(), pos.z(), -1);
+			}
+			int delta = index - lineIndex[i];
+			// Moving across the wrap of the sample table
+			if (delta > samples / 2) {
+				delta -= samples;
+			}
+			else if (delta < -samples / 2) {
+				delta += samples;
+			}
+			progress[i] += delta * spacing;
+			lineIndex[i] = index;
+		}
+
+		// Insertion sort, leader first; each shift is one overtake
+		for (int i = 1; i < count; i++) {
+			float p = progress[i];
+			if (progress[i - 1] >= p) {
+				continue;
+			}
+			GhostAvatar ga = order[i];
+			int index = lineIndex[i];
+			int j = i - 1;
+			while (j >= 0 && progress[j] < p) {
+				order[j + 1] = order[j];
+				progress[j + 1] = progress[j];
+				lineIndex[j + 1] = lineIndex[j];
+				j--;
+			}
+			order[j + 1] = ga;
+			progress[j + 1] = p;
+			lineIndex[j + 1] = index;
+			isChanged = true;
+		}
+
+		for (int i = 0; i < count; i++) {
+			order[i].setPlace(i + 1);
+			order[i].setLap(getLap(i));
+		}
+		return isChanged;
+	}
+
+	private boolean syncMembership(Collection<GhostAvatar> avatars) {
+		boolean isChanged = false;
+		Set<GhostAvatar> present = new HashSet<GhostAvatar>(avatars);
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (present.contains(order[i]) && !order[i].isShouldRemove()) {
+				order[kept] = order[i];
+				progress[kept] = progress[i];
+				lineIndex[kept] = lineIndex[i];
+				kept++;
+			}
+			else {
+				tracked.remove(order[i]);
+				isChanged = true;
+			}
+		}
+		Arrays.fill(order, kept, count, null);
+		count = kept;
+		for (GhostAvatar ga : avatars) {
+			if (ga.isShouldRemove() || !tracked.add(ga)) {
+				continue;
+			}
+			if (count == order.length) {
+				order = Arrays.copyOf(order, count * 2);
+				progress = Arrays.copyOf(progress, count * 2);
+				lineIndex = Arrays.copyOf(lineIndex, count * 2);
+			}
+			// Karts join on the grid, just behind the finish line, so start
+			// them at their signed distance from it
+			int index = line.project(ga.getPos().x(), ga.getPos().z(), -1);
+			int offset = index - finishIndex;
+			if (offset > line.getSampleCount() / 2) {
+				offset -= line.getSampleCount();
+			}
+			else if (offset < -line.getSampleCount() / 2) {
+				offset += line.getSampleCount();
+			}
+			order[count] = ga;
+			progress[count] = offset * line.getLength() / line.getSampleCount();
+			lineIndex[count] = index;
+			count++;
+			isChanged = true;
+		}
+		return isChanged;
+	}
+
+	private int getLap(int i) {
+		// Lap 1 starts at the first crossing of the finish line
+		return (int) Math.floor(progress[i] / line.getLength()) + 1;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param place 1 for the leader.
+	 */
+	public GhostAvatar get(int place) {
+		return order[place - 1];
+	}
+
+	/**
+	 * @return Distance driven since the finish line, for the kart in <code>place</code>.
+	 */
+	public float getProgress(int place) {
+		return progress[place - 1];
+	}
+
+	public void clear() {
+		tracked.clear();
+		Arrays.fill(order, 0, count, null);
+		count = 0;
+	}
+}
@@ -0,0 +1,220 @@
+package a3;
+
+import ray.rml.Vector3;
+
+/**
+ * A track's driving line, compiled once from its waypoints into a closed
+ * Catmull-Rom spline resampled at equal arc-length spacing.
+ *
+ * Because the samples are evenly spaced, "the point N meters ahead" is an
+ * index offset, and the nearest sample to a kart can be found by searching a
+ * few samples around where it was last tick. Each sample also carries a
+ * target speed, limited by how tightly the line curves there and by how
+ * hard a kart can brake for the corners ahead.
+ */
+public class RacingLine {
+	private static final int SUBDIVISIONS = 32;
+	private static final int SEARCH_WINDOW = 24;
+	private static RacingLine track1Line = null;
+
+	private final float spacing;
+	private final int count;
+	private final float length;
+	private final float[] x;
+	private final float[] z;
+	private final float[] targetSpeed;
+	private final int[] waypoint;
+
+	/**
+	 * @param points Waypoints in driving order; the line loops back to the first.
+	 * @param spacing Distance between samples, in world units.
+	 * @param maxSpeed Top speed on straights.
+	 * @param maxYawRate How fast a kart can turn, in radians per second.
+	 * @param brakeRate How fast a kart slows down when it stops accelerating.
+	 */
+	public RacingLine(Vector3[] points, float spacing, float maxSpeed, float maxYawRate, float brakeRate) {
+		if (points.length < 3) {
+			throw new IllegalArgumentException("Need at least 3 points: " + points.length);
+		}
+		if (spacing <= 0f) {
+			throw new IllegalArgumentException("Spacing must be positive: " + spacing);
+		}
+		// Densely sample the spline and measure it
+		int denseCount = points.length * SUBDIVISIONS;
+		float[] denseX = new float[denseCount + 1];
+		float[] denseZ = new float[denseCount + 1];
+		float[] denseS = new float[denseCount + 1];
+		for (int i = 0; i < denseCount; i++) {
+			int segment = i / SUBDIVISIONS;
+			float t = (i % SUBDIVISIONS) / (float) SUBDIVISIONS;
+			Vector3 p0 = points[(segment + points.length - 1) % points.length];
+			Vector3 p1 = points[segment];
+			Vector3 p2 = points[(segment + 1) % points.length];
+			Vector3 p3 = points[(segment + 2) % points.length];
+			denseX[i] = catmullRom(p0.x(), p1.x(), p2.x(), p3.x(), t);
+			denseZ[i] = catmullRom(p0.z(), p1.z(), p2.z(), p3.z(), t);
+		}
+		denseX[denseCount] = denseX[0];
+		denseZ[denseCount] = denseZ[0];
+		for (int i = 1; i <= denseCount; i++) {
+			float dx = denseX[i] - denseX[i - 1];
+			float dz = denseZ[i] - denseZ[i - 1];
+			denseS[i] = denseS[i - 1] + (float) Math.sqrt(dx * dx + dz * dz);
+		}
+
+		// Resample at equal arc-length spacing
+		this.length = denseS[denseCount];
+		this.count = Math.max(3, (int) (length / spacing));
+		this.spacing = length / count;
+		x = new float[count];
+		z = new float[count];
+		targetSpeed = new float[count];
+		waypoint = new int[count];
+		int dense = 0;
+		for (int i = 0; i < count; i++) {
+			float s = i * this.spacing;
+			while (denseS[dense + 1] < s) {
+				dense++;
+			}
+			float span = denseS[dense + 1] - denseS[dense];
+			float t = span > 0f ? (s - denseS[dense]) / span : 0f;
+			x[i] = denseX[dense] + (denseX[dense + 1] - denseX[dense]) * t;
+			z[i] = denseZ[dense] + (denseZ[dense + 1] - denseZ[dense]) * t;
+			// The spline passes through point k at dense sample k * SUBDIVISIONS
+			waypoint[i] = dense / SUBDIVISIONS;
+		}
+
+		buildSpeedProfile(maxSpeed, maxYawRate, brakeRate);
+	}
+
+	public static synchronized RacingLine getTrack1Line() {
+		if (track1Line == null) {
+			Vector3[] points = new Vector3[Track1.NUM_WAYPOINTS];
+			for (int i = 0; i < points.length; i++) {
+				points[i] = Track1.getWaypoint(i);
+			}
+			// Yaw rate tuned by simulating laps with the NPC steering; it is well
+			// above the base turn rate because NPCs drift and over-steer in corners.
+			// 10 is the kart's minimum coasting friction.
+			track1Line = new RacingLine(points, 0.5f, 20f, (float) Math.toRadians(200f), 10f);
+		}
+		return track1Line;
+	}
+
+	private static float catmullRom(float p0, float p1, float p2, float p3, float t) {
+		float t2 = t * t;
+		float t3 = t2 * t;
+		return 0.5f * (
+			2f * p1
+			+ (p2 - p0) * t
+			+ (2f * p0 - 5f * p1 + 4f * p2 - p3) * t2
+			+ (3f * p1 - p0 - 3f * p2 + p3) * t3
+		);
+	}
+
+	private void buildSpeedProfile(float maxSpeed, float maxYawRate, float brakeRate) {
+		// Corner speed: turning at maxYawRate along a curve of curvature k
+		// needs speed maxYawRate / k
+		for (int i = 0; i < count; i++) {
+			float curvature = getCurvature(i);
+			targetSpeed[i] = curvature > 0f ? Math.min(maxSpeed, maxYawRate / curvature) : maxSpeed;
+		}
+		// Braking: walk backwards so each sample is slow enough to reach the
+		// next one's speed. Twice around covers the wrap at the finish line.
+		for (int pass = 0; pass < 2 * count; pass++) {
+			int i = count - 1 - (pass % count);
+			float next = targetSpeed[(i + 1) % count];
+			float reachable = (float) Math.sqrt(next * next + 2f * brakeRate * spacing);
+			if (reachable < targetSpeed[i]) {
+				targetSpeed[i] = reachable;
+			}
+		}
+	}
+
+	// Curvature from the circle through a sample and its neighbours a few
+	// meters away, which smooths out resampling noise
+	private float getCurvature(int i) {
+		int reach = Math.max(1, (int) (2f / spacing));
+		int a = wrap(i - reach);
+		int c = wrap(i + reach);
+		float abx = x[i] - x[a], abz = z[i] - z[a];
+		float bcx = x[c] - x[i], bcz = z[c] - z[i];
+		float acx = x[c] - x[a], acz = z[c] - z[a];
+		float cross = Math.abs(abx * bcz - abz * bcx);
+		float product = (float) Math.sqrt((abx * abx + abz * abz) * (bcx * bcx + bcz * bcz) * (acx * acx + acz * acz));
+		return product > 0f ? 2f * cross / product : 0f;
+	}
+
+	/**
+	 * Finds the sample nearest to a point. With a valid <code>hint</code>
+	 * (the result from the previous tick) only the samples around it are
+	 * checked; otherwise the whole line is searched.
+	 */
+	public int project(float px, float pz, int hint) {
+		int start, end;
+		if (hint < 0 || hint >= count) {
+			start = 0;
+			end = count - 1;
+		}
+		else {
+			start = hint - SEARCH_WINDOW;
+			end = hint + SEARCH_WINDOW;
+		}
+		int best = hint < 0 ? 0 : hint;
+		float bestDistSq = Float.MAX_VALUE;
+		for (int j = start; j <= end; j++) {
+			int i = wrap(j);
+			float dx = x[i] - px;
+			float dz = z[i] - pz;
+			float distSq = dx * dx + dz * dz;
+			if (distSq < bestDistSq) {
+				bestDistSq = distSq;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return The sample <code>distance</code> world units further along the line.
+	 */
+	public int ahead(int index, float distance) {
+		return wrap(index + (int) (distance / spacing));
+	}
+
+	public float getX(int index) {
+		return x[index];
+	}
+
+	public float getZ(int index) {
+		return z[index];
+	}
+
+	public float getDistance(int index) {
+		return index * spacing;
+	}
+
+	public float getTargetSpeed(int index) {
+		return targetSpeed[index];
+	}
+
+	/**
+	 * @return The last waypoint passed at this sample.
+	 */
+	public int getWaypoint(int index) {
+		return waypoint[index];
+	}
+
+	public float getLength() {
+		return length;
+	}
+
+	public int getSampleCount() {
+		return count;
+	}
+
+	private int wrap(int i) {
+		i %= count;
+		return i < 0 ? i + count : i;
+	}
+}
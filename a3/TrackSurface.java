@@ -0,0 +1,166 @@
+package a3;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import ray.rage.asset.texture.Texture;
+import ray.rage.asset.texture.TextureManager;
+import ray.rage.asset.texture.loaders.RgbaTextureLoader;
+import ray.rage.util.Configuration;
+
+/**
+ * Read-only copy of a track's height map, sampled by the kart physics.
+ *
+ * The pixels are copied out of the texture once, so lookups are plain array
+ * reads instead of going through BufferedImage and Color, and every kart
+ * shares the same copy instead of loading its own.
+ *
+ * Channels: red is height, green marks high-friction ground and blue marks
+ * speed boost pads.
+ */
+public class TrackSurface {
+	private static final float WORLD_SCALE = 250f;
+	private static final float HEIGHT_MULTIPLIER = 10f;
+	private static TrackSurface track1Surface = null;
+
+	private final int[] pixels;
+	private final int width;
+	private final int height;
+
+	public TrackSurface(BufferedImage img) {
+		width = img.getWidth();
+		height = img.getHeight();
+		pixels = img.getRGB(0, 0, width, height, null, 0, width);
+	}
+
+	public static synchronized TrackSurface getTrack1Surface() {
+		if (track1Surface == null) {
+			track1Surface = load("height_map.png");
+		}
+		return track1Surface;
+	}
+
+	private static TrackSurface load(String path) {
+		TextureManager textureManager = new TextureManager();
+        textureManager.addAssetLoader(new RgbaTextureLoader());
+        Configuration conf = new Configuration();
+        try {
+			conf.load();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+        textureManager.setBaseDirectoryPath(conf.valueOf("assets.textures.path"));
+		try {
+			Texture heightMap = textureManager.getAssetByPath(path);
+			return new TrackSurface(heightMap.getImage());
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public float getWorldHeight(float globalX, float globalZ) {
+		// Normalize the target values
+		float targetX = globalX / WORLD_SCALE + 0.5f;
+		float targetZ = 1 - (globalZ / WORLD_SCALE + 0.5f);
+		// Now that the user's provided coordinates have been converted to local coordinates, perform the height estimation.
+		return getAverageHeight(targetX, targetZ);
+	}
+
+	public boolean isSpeedBoost(float globalX, float globalZ) {
+		float blue = (getNearestPixel(globalX, globalZ) & 0xFF) / 255.0f;
+		return (blue > 0.9f);
+	}
+
+	public boolean isHighFriction(float globalX, float globalZ) {
+		float green = ((getNearestPixel(globalX, globalZ) >> 8) & 0xFF) / 255.0f;
+		return (green > 0.9f);
+	}
+
+	private int getNearestPixel(float globalX, float globalZ) {
+		// Normalize the target values
+		float targetX = globalX / WORLD_SCALE + 0.5f;
+		float targetZ = 1 - (globalZ / WORLD_SCALE + 0.5f);
+
+		// Z Hack, since the tessellation shaders are apparently not perfectly centered. Depends on Patch Sizes
+		targetZ += targetZ / 500f + 0.0015f;
+
+		// Normalize parameters (and constrain invalid parameters between 0.0 and 1.0)
+		while (targetX < 0.0f) {targetX += 1.0f;}
+		while (targetX > 1.0f) {targetX -= 1.0f;}
+		while (targetZ < 0.0f) {targetZ += 1.0f;}
+		while (targetZ > 1.0f) {targetZ -= 1.0f;}
+
+		// Estimate the closest HeightMap pixel
+		int xPixelT = (int) ((width  - 1) * targetX);
+		int zPixelT = (int) ((height - 1) * targetZ);
+		return pixels[zPixelT * width + xPixelT];
+	}
+
+    public float getAverageHeight(float xPercent, float zPercent) {
+		// Z Hack, since the tessellation shaders are apparently not perfectly centered. Depends on Patch Sizes
+    	zPercent += zPercent / 500f + 0.0015f;
+
+		// Normalize parameters (and constrain invalid parameters between 0.0 and 1.0)
+		while (xPercent < 0.0f) {xPercent += 1.0f;}
+		while (xPercent > 1.0f) {xPercent -= 1.0f;}
+		while (zPercent < 0.0f) {zPercent += 1.0f;}
+		while (zPercent > 1.0f) {zPercent -= 1.0f;}
+
+		// Estimate the closest HeightMap pixel
+		float xPixel  = (width  - 1) * xPercent;
+		float zPixel  = (height - 1) * zPercent;
+		int   xPixelT = (int) xPixel;
+		int   zPixelT = (int) zPixel;
+
+		// Estimate how exact the position is
+		float xDepth = xPixel % 1.0f;
+		float zDepth = zPixel % 1.0f;
+
+		// Discover how much weight to put on the targeted pixel
+		float xWeightT = getWeight(xDepth);
+		float zWeightT = getWeight(zDepth);
+
+		// Discover nearest neighbors
+		int xPixelN;
+		int zPixelN;
+		if      (xDepth <  0.5f)  xPixelN = xPixelT - 1;
+		else if (xDepth == 0.5f)  xPixelN = xPixelT    ;
+		else                      xPixelN = xPixelT + 1;
+
+		if      (zDepth <  0.5f)  zPixelN = zPixelT - 1;
+		else if (zDepth == 0.5f)  zPixelN = zPixelT    ;
+		else                      zPixelN = zPixelT + 1;
+
+		// Verify neighboring pixels exist, if they don't, wrap around
+		if      (xPixelN < 0)       xPixelN = width  - 1;
+		else if (xPixelN >= width)  xPixelN = 0;
+		if      (zPixelN < 0)       zPixelN = height - 1;
+		else if (zPixelN >= height) zPixelN = 0;
+
+		// Calculate target pixel's height
+		float total0 = getRed(xPixelT, zPixelT);
+		float total1 = getRed(xPixelN, zPixelT);
+		float total2 = getRed(xPixelT, zPixelN);
+		float total3 = getRed(xPixelN, zPixelN);
+
+		// Weight the heights of the target and neighboring pixels
+		float weightXZ = (xWeightT + zWeightT) / 2;
+		float avgX     = ((xWeightT * total0) + ((1.0f - xWeightT) * total1));
+		float avgZ     = ((zWeightT * total0) + ((1.0f - zWeightT) * total2));
+		float avgXZ    = ((weightXZ * total0) + ((1.0f - weightXZ) * total3));
+
+		// Get the final total
+		float amount = (avgX + avgZ + avgXZ) / (3.0f);
+    	return (amount * HEIGHT_MULTIPLIER);
+    }
+
+    private float getRed(int x, int z) {
+    	return ((pixels[z * width + x] >> 16) & 0xFF) / 255.0f;
+    }
+
+    private float getWeight(float depth) {
+    	return 1.0f - Math.abs(depth - 0.5f);
+    }
+}
@@ -9,23 +9,25 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
 
+import a3.FixedTimestep;
 import a3.GameState;
 import a3.GhostAvatar;
 import a3.Item;
+import a3.KartCollider;
+import a3.NPCDriver;
 import a3.ItemBox;
 import a3.ItemType;
 import a3.PhysicsBody;
+import a3.RaceStandings;
+import a3.RacingLine;
 import a3.RaceState;
 import a3.Track1;
 import ray.networking.server.GameConnectionServer;
 import ray.networking.server.IClientInfo;
 import ray.rml.Matrix3f;
-import ray.rml.Vector2;
-import ray.rml.Vector2f;
+import ray.rml.Quaternionf;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
-import ray.rml.Vector4;
-import ray.rml.Vector4f;
 
 public class GameServerUDP extends GameConnectionServer<UUID> {
 	private GameState gameState = null;
@@ -38,10 +40,39 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 	private int MAX_PLAYERS_PER_TRACK = 8;
 	private boolean shouldInitRace = false;
 	private boolean isRaceInited = false;
+	// NPC physics runs on fixed steps in deterministic mode, seeded per race,
+	// so a race can be re-simulated from its seed and inputs
+	private FixedTimestep npcTimestep = new FixedTimestep(TICK_RATE, 5);
+	private long raceSeed = 0;
+	private static final float KART_RADIUS = 0.8f;
+	private KartCollider kartCollider = KartCollider.forTrack1(KART_RADIUS);
+	private final KartCollider.BumpListener bumpListener = new KartCollider.BumpListener() {
+		public void onPlayerBumped(GhostAvatar avatar, float pushX, float pushZ, float vForward) {
+			try {
+				String message = new String(
+					"bump," + avatar.getId() +
+					"," + pushX +
+					"," + pushZ +
+					"," + vForward
+				);
+				sendPacket(message, avatar.getId());
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	};
+	// NPC decisions are time-sliced under this budget; physics still runs every step
+	private static final long AI_BUDGET_NANOS = 2000000L;
+	private NPCDriver npcDriver = null;
+	// Standings are sent when the order changes, and once a second in case a packet was lost
+	private RaceStandings raceStandings = RaceStandings.forTrack1();
+	private long ticksSinceStandings = 0;
 
 	public GameServerUDP(int localPort, ProtocolType protocolType, GameState gameState) throws IOException {
 		super(localPort, protocolType);
 		this.gameState = gameState;
+		this.npcDriver = new NPCDriver(gameState, RacingLine.getTrack1Line(), AI_BUDGET_NANOS);
 		initTrack(1);
 		TimerTask updateServer = new TimerTask() {
 			public void run() {
@@ -81,25 +112,21 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 			int color = Integer.parseInt(messageTokens[5]);
 			claimedColors[color - 1] = true;
 			gameState.createGhostAvatar(clientID, Vector3f.createFrom(pos));
-			gameState.getGhostAvatars().get(clientID).setPhysicsBody(
-				new PhysicsBody(Vector3f.createFrom(0f, 0f, 0f), Matrix3f.createIdentityMatrix())
-			);
+			PhysicsBody physicsBody = new PhysicsBody(Vector3f.createFrom(0f, 0f, 0f), Matrix3f.createIdentityMatrix());
+			physicsBody.setDeterministic(true);
+			gameState.getGhostAvatars().get(clientID).setPhysicsBody(physicsBody);
 		}
 		else if (messageTokens[0].compareTo("update") == 0) {
 			UUID clientID = UUID.fromString(messageTokens[1]);
 			String[] pos = { messageTokens[2], messageTokens[3], messageTokens[4] };
-			String[] rot = {
-				messageTokens[5], messageTokens[6], messageTokens[7],
-				messageTokens[8], messageTokens[9], messageTokens[10],
-				messageTokens[11], messageTokens[12], messageTokens[13]
-			};
-			float vForward = Float.parseFloat(messageTokens[14]);
-			float actualTurn = Float.parseFloat(messageTokens[15]);
-			int color = Integer.parseInt(messageTokens[16]);
+			String[] rot = { messageTokens[5], messageTokens[6], messageTokens[7], messageTokens[8] };
+			float vForward = Float.parseFloat(messageTokens[9]);
+			float actualTurn = Float.parseFloat(messageTokens[10]);
+			int color = Integer.parseInt(messageTokens[11]);
 			gameState.updateGhostAvatar(
 				clientID,
 				Vector3f.createFrom(pos),
-				Matrix3f.createFrom(rot),
+				Quaternionf.createNormalizedFrom(rot),
 				vForward,
 				actualTurn,
 				0
@@ -141,15 +168,11 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 		else if (messageTokens[0].compareTo("updateItem") == 0) {
 			UUID itemID = UUID.fromString(messageTokens[1]);
 			String[] pos = { messageTokens[2], messageTokens[3], messageTokens[4] };
-			String[] rot = {
-				messageTokens[5], messageTokens[6], messageTokens[7],
-				messageTokens[8], messageTokens[9], messageTokens[10],
-				messageTokens[11], messageTokens[12], messageTokens[13]
-			};
+			String[] rot = { messageTokens[5], messageTokens[6], messageTokens[7], messageTokens[8] };
 			gameState.updateItem(
 				itemID,
 				Vector3f.createFrom(pos),
-				Matrix3f.createFrom(rot)
+				Quaternionf.createNormalizedFrom(rot)
 			);
 		}
 		else if (messageTokens[0].compareTo("startRace") == 0) {
@@ -161,7 +184,8 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 			UUID clientID = UUID.fromString(messageTokens[1]);
 			GhostAvatar ga = gameState.getGhostAvatars().get(clientID);
 			ga.getPhysicsBody().setPosition(ga.getPos());
-			ga.getPhysicsBody().setRotation(ga.getRot());
+			ga.getPhysicsBody().setRotation(ga.getOrientation());
+			npcDriver.attach(ga);
 			ga.setNPC(true);
 		}
 	}
@@ -175,6 +199,8 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 	private void generateNPCs() {
 		synchronized (gameState) {
 			int players = gameState.getGhostAvatars().size();
+			raceSeed = System.currentTimeMillis();
+			System.out.println("NPC seed: " + raceSeed);
 			for (int i = 0; i < MAX_PLAYERS_PER_TRACK - players; i++) {
 				UUID ghostID = UUID.randomUUID();
 				GhostAvatar npc = new GhostAvatar(ghostID);
@@ -182,133 +208,15 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 				npc.setPos(Track1.getPosition(MAX_PLAYERS_PER_TRACK - i));
 				npc.setColor(getNextColor());
 				gameState.getGhostAvatars().put(ghostID, npc);
-				gameState.getGhostAvatars().get(ghostID).setPhysicsBody(
-					new PhysicsBody(Track1.getPosition(MAX_PLAYERS_PER_TRACK - i), Matrix3f.createIdentityMatrix())
-				);
-				gameState.getGhostAvatars().get(ghostID).getPhysicsBody().randomizeConstants();
-			}
-		}
-	}
-
-	private void updateNPC(GhostAvatar ga, long elapsedTime) {
-		PhysicsBody physicsBody = ga.getPhysicsBody();
-		setInputs(physicsBody, ga);
-		physicsBody.updatePhysics(elapsedTime);
-		ga.setPos(physicsBody.getPosition());
-		ga.setRot(physicsBody.getDirection().mult(physicsBody.getRotation().mult(physicsBody.getSpinRotation())));
-		ga.setVelocityForward(physicsBody.getVForward());
-		ga.setActualTurn(physicsBody.getActualTurn());
-		int newWaypoint = determineWaypoint(ga);
-		// System.out.println("Waypoint: " + newWaypoint);
-		ga.setWaypoint(newWaypoint);
-		if (ga.hasItem()) {
-			Item item = ga.getItem();
-			item.setRot(physicsBody.getDirection().mult(physicsBody.getRotation()));
-			item.setPos(physicsBody.getPosition());
-			item.setPos(item.getPos().add(item.getRot().column(2).mult(-1.1f)));
-		}
-	}
-
-	private int determineWaypoint(GhostAvatar ga) {
-		int nextWaypoint = (ga.getWaypoint() + 1) % Track1.NUM_WAYPOINTS;
-		Vector4 nextWaypointLine = Track1.getWaypointLine(nextWaypoint);
-		Vector3 pos = ga.getPos();
-		boolean sign = getSign(Vector2f.createFrom(pos.x(), pos.z()), nextWaypointLine);
-		return (sign == getSign(Track1.getPointInWaypoint(nextWaypoint), nextWaypointLine))
-			? nextWaypoint : 
-			ga.getWaypoint();
-	}
-	
-	private boolean getSign(Vector2 a, Vector4 b) {
-		return (
-			(a.x() - b.x()) * (b.w() - b.y())
-			-
-			(a.y() - b.y()) * (b.z() - b.x())
-		) < 0;
-	}
-
-	private void setInputs(PhysicsBody pb, GhostAvatar ga) {
-		pb.resetInputs();
-		if (isRacingInputDisabled(pb)) {
-			return;
-		}
-		else {
-			pb.setDesiredTurn(computeTurnAndSetAcceleration(ga, pb));
-		}
-	}
-	
-	private float computeTurnAndSetAcceleration(GhostAvatar ga, PhysicsBody pb) {
-		Vector3 nextWaypoint = Track1.getWaypoint((ga.getWaypoint() + 1) % Track1.NUM_WAYPOINTS);
-		Vector3 pos = ga.getPos();
-		Vector3 heading = pos.add(ga.getRot().column(2));
-		Vector4 playerLine = Vector4f.createFrom(pos.x(), pos.z(), heading.x(), heading.z());
-		float sign =
-			(nextWaypoint.x() - playerLine.x()) * (playerLine.w() - playerLine.y())
-			-
-			(nextWaypoint.z() - playerLine.y()) * (playerLine.z() - playerLine.x())
-		;
-		double dist = calcDistance(
-			pos.x(), pos.z(),
-			nextWaypoint.x(), nextWaypoint.z()
-		);
-		float angle1 = (float) Math.atan2(playerLine.y() - nextWaypoint.z(), playerLine.x() - nextWaypoint.x());
-		float carAngle = (float) Math.atan2(pos.z() - heading.z(), pos.x() - heading.x());
-		angle1 = (float) (angle1 * 180 / Math.PI);
-		carAngle = (float) (carAngle * 180 / Math.PI);
-		float angleDif1 = Math.abs(Math.abs(angle1) - Math.abs(carAngle));
-		
-		sign = (sign > 0) ? 1f : -1f;
-		float damping1 = 1f;
-		if (angleDif1 < 30f) {
-			damping1 = angleDif1 / 30f;
-		}
-		final float DISTANCE = 30f;
-		float factor1 = (float) (dist / DISTANCE);
-		float turn = sign * factor1 * damping1;
-		if (dist < DISTANCE && dist > 0f) {
-			Vector3 nextWaypoint2 = Track1.getWaypoint((ga.getWaypoint() + 2) % Track1.NUM_WAYPOINTS);
-			float sign2 =
-				(nextWaypoint2.x() - playerLine.x()) * (playerLine.w() - playerLine.y())
-				-
-				(nextWaypoint2.z() - playerLine.y()) * (playerLine.z() - playerLine.x())
-			;
-			sign2 = (sign2 > 0) ? 1f : -1f;
-			float factor2 = 1 - factor1;
-			
-			float angle2 = (float) Math.atan2(playerLine.y() - nextWaypoint2.z(), playerLine.x() - nextWaypoint2.x());
-			angle2 = (float) (angle2 * 180 / Math.PI);
-			float damping2 = 1f;
-			float angleDif2 = Math.abs(Math.abs(angle2) - Math.abs(carAngle));
-			if (angleDif2 < 30f) {
-				damping2 = angleDif2 / 30f;
+				PhysicsBody physicsBody = new PhysicsBody(Track1.getPosition(MAX_PLAYERS_PER_TRACK - i), Matrix3f.createIdentityMatrix());
+				physicsBody.setDeterministic(true);
+				physicsBody.randomizeConstants(raceSeed + i);
+				npc.setPhysicsBody(physicsBody);
+				npcDriver.attach(npc);
 			}
-			turn = sign * factor1 * damping1 + sign2 * factor2 * damping2;
-		}
-		if (angleDif1 > 30f) {
-			pb.setDrifting(true);
-		}
-		if (angleDif1 < 45f){
-			pb.setAccelerating(true);
-		}
-		if (pb.getVForward() < 3f) {
-			pb.setAccelerating(true);
 		}
-		return turn;
 	}
 
-	private boolean isRacingInputDisabled(PhysicsBody pb) {
-		if (gameState.getRaceState() == RaceState.LOBBY) {
-			return true;
-		}
-		if (gameState.getRaceState() == RaceState.COUNTDOWN) {
-			return true;
-		}
-		if (pb.isSpinning()) {
-			return true;
-		}
-		return false;
-	}
-	
 	private void updateRaceState() {
 		if (gameState.getRaceState() != RaceState.LOBBY) {
 			if (serverState.getConnectedPlayers().size() <= 0) {
@@ -360,7 +268,10 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 			e.printStackTrace();
 		}
     	checkCollisions();
+    	checkKartCollisions();
     	updateItemBoxTimers();
+    	int npcSteps = npcTimestep.advance(elapsedTime);
+    	npcDriver.beginTick();
     	try {
         	String message = new String();
     		synchronized(gameState.getGhostAvatars()) {
@@ -371,23 +282,31 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 	                GhostAvatar ga = pair.getValue();
 	                if (ga.isShouldRemove()) {
 	        			sendByeMessages(ga.getId());
+	        			npcDriver.forget(ga);
 	                	avatarIter.remove();
 	                	continue;
 	                }
 	                if (ga.isNPC()) {
-	                	updateNPC(ga, elapsedTime);
+	                	npcDriver.update(ga, npcSteps, npcTimestep.getStepMS());
 	                }
 	                if (message.length() > 0) {
 	                	message += '\0';
 	                }
 	    			message += "update," + id.toString() + "," + newTime + ",";
 	    			message += ga.getPos().serialize();
-	    			message += "," + ga.getRot().serialize();
+	    			message += "," + ga.getOrientation().serialize();
 	    			message += "," + ga.getVelocityForward();
 	    			message += "," + ga.getActualTurn();
 	    			message += "," + ga.getColor(); // getNextColor();
 	        	}
     		}
+    		npcDriver.endTick(npcSteps);
+    		if (gameState.getRaceState() == RaceState.RACING) {
+    			boolean isChanged = raceStandings.update(gameState.getGhostAvatars().values());
+    			if (isChanged || ++ticksSinceStandings >= TICK_RATE) {
+    				sendStandings();
+    			}
+    		}
         	sendPacketToAll(message);
 		}
 		catch (IOException e) {
@@ -426,7 +345,7 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
                 }
                 message += "itemUpdate," + id.toString() + ",";
                 message += item.getPos().serialize();
-    			message += "," + item.getRot().serialize();
+    			message += "," + item.getOrientation().serialize();
     			message += "," + ItemType.getValue(item.getType());
             }
 			sendPacketToAll(message);
@@ -436,6 +355,24 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 		}
 	}
 
+	private void sendStandings() {
+		// format: standings, place
+		// each client only needs its own place, so that's all it's sent;
+		// packets for NPCs without a client are dropped by sendPacket
+		StringBuilder message = new StringBuilder();
+		for (int place = 1; place <= raceStandings.size(); place++) {
+			message.setLength(0);
+			message.append("standings,").append(place);
+			try {
+				sendPacket(message.toString(), raceStandings.get(place).getId());
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		ticksSinceStandings = 0;
+	}
+
 	private int getNextColor() {
 		for (int i = 0; i < 8; i++) {
 			if (!claimedColors[i]) {
@@ -606,6 +543,12 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 		}
 	}
 	
+	private void checkKartCollisions() {
+		synchronized(gameState.getGhostAvatars()) {
+			kartCollider.resolve(gameState.getGhostAvatars().values(), bumpListener);
+		}
+	}
+	
 	protected void removeItemFromAvatar(UUID itemID) {
 		Iterator<Entry<UUID, GhostAvatar>> avatarIter = gameState.getGhostAvatars().entrySet().iterator();
 		while (avatarIter.hasNext()) {
@@ -679,6 +622,10 @@ public class GameServerUDP extends GameConnectionServer<UUID> {
 	private void resetTrack(int trackID) {
 		System.out.println("Resetting track 1");
 		isRaceInited = false;
+		npcTimestep.reset();
+		kartCollider.clear();
+		npcDriver.clear();
+		raceStandings.clear();
 		resetClaimedColors();
 		synchronized(gameState.getGhostAvatars()) {
 			Iterator<Entry<UUID, GhostAvatar>> avatarIter = gameState.getGhostAvatars().entrySet().iterator();
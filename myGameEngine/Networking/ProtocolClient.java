@@ -7,8 +7,8 @@ import java.util.UUID;
 import a3.ItemType;
 import a3.MyGame;
 import ray.networking.client.GameConnectionClient;
-import ray.rml.Matrix3;
-import ray.rml.Matrix3f;
+import ray.rml.Quaternion;
+import ray.rml.Quaternionf;
 import ray.rml.Vector3;
 import ray.rml.Vector3f;
 
@@ -65,7 +65,7 @@ public class ProtocolClient extends GameConnectionClient {
 				game.createGhostAvatar(ghostID, ghostPosition, color);
 			}
 			else if(messageTokens[0].compareTo("update") == 0) { // etc..
-				// format: update, remoteId, x,y,z, rot
+				// format: update, remoteId, time, x,y,z, w,x,y,z (orientation), vForward, actualTurn, color
 				UUID ghostID = UUID.fromString(messageTokens[1]);
 				long time = Long.parseLong(messageTokens[2]);
 				if (time < lastUpdateTime) {
@@ -78,14 +78,14 @@ public class ProtocolClient extends GameConnectionClient {
 					messageTokens[4],
 					messageTokens[5]
 				);
-				float[] floats = new float[9];
-				for (int i = 0; i < 9; i++){
+				float[] floats = new float[4];
+				for (int i = 0; i < 4; i++){
 				    floats[i] = Float.parseFloat(messageTokens[i + 6]);
 				}
-				Matrix3 ghostRotation = Matrix3f.createFrom(floats);
-				float vForward = Float.parseFloat(messageTokens[15]);
-				float actualTurn = Float.parseFloat(messageTokens[16]);
-				int color = Integer.parseInt(messageTokens[17]);
+				Quaternion ghostRotation = Quaternionf.createNormalizedFrom(floats);
+				float vForward = Float.parseFloat(messageTokens[10]);
+				float actualTurn = Float.parseFloat(messageTokens[11]);
+				int color = Integer.parseInt(messageTokens[12]);
 				if (ghostID.equals(id)) {
 					if (game.hasRaceFinished()) {
 						game.updateAvatar(ghostPosition, ghostRotation);
@@ -151,6 +151,17 @@ public class ProtocolClient extends GameConnectionClient {
 				}
 				game.removeItem(itemID, force);
 			}
+			else if(messageTokens[0].compareTo("bump") == 0) { 
+				// format: bump, playerId, pushX, pushZ, vForward
+				UUID playerID = UUID.fromString(messageTokens[1]);
+				if (playerID.equals(id)) {
+					game.handlePlayerBump(
+						Float.parseFloat(messageTokens[2]),
+						Float.parseFloat(messageTokens[3]),
+						Float.parseFloat(messageTokens[4])
+					);
+				}
+			}
 			else if(messageTokens[0].compareTo("itemUpdate") == 0) { 
 				UUID itemID = UUID.fromString(messageTokens[1]);
 				if (game.hasItem() && itemID.equals(game.getItem().getID())) {
@@ -161,12 +172,12 @@ public class ProtocolClient extends GameConnectionClient {
 					messageTokens[3],
 					messageTokens[4]
 				);
-				float[] floats = new float[9];
-				for (int i = 0; i < 9; i++){
+				float[] floats = new float[4];
+				for (int i = 0; i < 4; i++){
 				    floats[i] = Float.parseFloat(messageTokens[i + 5]);
 				}
-				Matrix3 itemRot = Matrix3f.createFrom(floats);
-				int itemType = Integer.parseInt(messageTokens[14]);
+				Quaternion itemRot = Quaternionf.createNormalizedFrom(floats);
+				int itemType = Integer.parseInt(messageTokens[9]);
 				game.updateItem(itemID, itemPos, itemRot, itemType);
 			}
 			else if(messageTokens[0].compareTo("removeItem") == 0) { 
@@ -186,6 +197,10 @@ public class ProtocolClient extends GameConnectionClient {
 				);
 				game.itemBoxExplosion(itemPos, force);
 			}
+			else if(messageTokens[0].compareTo("standings") == 0) { 
+				// format: standings, place
+				game.setRacePlace(Integer.parseInt(messageTokens[1]));
+			}
 			else if(messageTokens[0].compareTo("raceTime") == 0) { 
 				long raceTime = Long.parseLong(messageTokens[1]);
 				game.updateRaceTime(raceTime);
@@ -232,7 +247,7 @@ public class ProtocolClient extends GameConnectionClient {
 		}
 	}
 
-	public void updatePlayerInformation(Vector3 pos, Matrix3 rot, float vForward, float actualTurn, int carTextureNum) {
+	public void updatePlayerInformation(Vector3 pos, Quaternion rot, float vForward, float actualTurn, int carTextureNum) {
 		try {
 			String message = new String("update," + id.toString());
 			message += "," + pos.x()+"," + pos.y() + "," + pos.z();
@@ -282,7 +297,7 @@ public class ProtocolClient extends GameConnectionClient {
 		}
 	}
 
-	public void updateItem(UUID itemID, Vector3 itemPos, Matrix3 itemRot, ItemType type) {
+	public void updateItem(UUID itemID, Vector3 itemPos, Quaternion itemRot, ItemType type) {
 		try {
 			String message = new String("updateItem," + itemID.toString());
 			message += "," + itemPos.x()+"," + itemPos.y() + "," + itemPos.z();
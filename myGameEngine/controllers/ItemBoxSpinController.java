@@ -0,0 +1,29 @@
+package myGameEngine.controllers;
+
+import ray.rage.scene.Node;
+import ray.rage.scene.controllers.AbstractController;
+import ray.rml.Angle;
+import ray.rml.Degreef;
+import ray.rml.Vector3;
+import ray.rml.Vector3f;
+
+/**
+ * Spins an item box about its X and Y axes at once. One controller does
+ * both, so the scheduler can update every box in the same concurrent batch.
+ */
+public class ItemBoxSpinController extends AbstractController {
+	private static final Vector3 VERTICAL_AXIS = Vector3f.createUnitVectorX();
+	private static final Vector3 HORIZONTAL_AXIS = Vector3f.createUnitVectorY();
+	private final float VERTICAL_SPEED = 0.04f;
+	private final float HORIZONTAL_SPEED = 0.07f;
+
+	@Override
+	protected void updateImpl(float elapsedTimeMillis) {
+		Angle vertical = Degreef.createFrom(VERTICAL_SPEED * elapsedTimeMillis);
+		Angle horizontal = Degreef.createFrom(HORIZONTAL_SPEED * elapsedTimeMillis);
+		for (Node n : super.controlledNodesList) {
+			n.rotate(vertical, VERTICAL_AXIS);
+			n.rotate(horizontal, HORIZONTAL_AXIS);
+		}
+	}
+}
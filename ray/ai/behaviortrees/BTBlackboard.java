@@ -0,0 +1,65 @@
+package ray.ai.behaviortrees;
+
+import java.util.Arrays;
+
+/**
+ * A <code>BTBlackboard</code> holds everything one agent needs to run a
+ * {@link BTProgram}: which composites are part way through their children,
+ * repeat counters, a handful of numbered float slots that tasks and
+ * predicates use to share data, and a reference back to the agent itself.
+ * 
+ * One blackboard is created per agent, while the program is shared.
+ */
+public class BTBlackboard
+{
+	private final BTProgram program;
+	private final Object agent;
+	private final float[] values;
+	final int[] resume;		// Child to resume from per composite, or -1
+	final int[] counters;	// Iterations done per repeat node
+	
+	/**
+	 * Constructs a <code>BTBlackboard</code> for an agent.
+	 * 
+	 * @param program The program this blackboard will be ticked with.
+	 * @param agent The agent, made available to tasks through {@link #getAgent()}.
+	 * @param slots The number of float slots to allocate.
+	 */
+	public BTBlackboard(BTProgram program, Object agent, int slots)
+	{
+		this.program = program;
+		this.agent = agent;
+		this.values = new float[slots];
+		this.resume = new int[program.size()];
+		this.counters = new int[program.size()];
+		Arrays.fill(resume, -1);
+	}
+	
+	/**
+	 * @return The program this blackboard belongs to.
+	 */
+	public BTProgram getProgram() { return program; }
+	
+	/**
+	 * @return The agent this blackboard belongs to.
+	 */
+	public Object getAgent() { return agent; }
+	
+	public float get(int slot) { return values[slot]; }
+	
+	public void set(int slot, float value) { values[slot] = value; }
+	
+	public boolean getFlag(int slot) { return values[slot] != 0f; }
+	
+	public void setFlag(int slot, boolean value) { values[slot] = value ? 1f : 0f; }
+	
+	/**
+	 * Forgets any running composites and repeat counts, so the next tick
+	 * starts from the top of the tree. Slot values are kept.
+	 */
+	public void reset()
+	{
+		Arrays.fill(resume, -1);
+		Arrays.fill(counters, 0);
+	}
+}
@@ -0,0 +1,168 @@
+package ray.ai.behaviortrees;
+
+import java.util.ArrayList;
+
+/**
+ * <code>BTCompiler</code> describes a behavior tree with nested builder calls
+ * and compiles it into a shared {@link BTProgram}. Composites and repeats are
+ * opened with {@link #sequence()}, {@link #selector()} or {@link #repeat(int)}
+ * and closed with {@link #end()}; the outermost node is the root.
+ * 
+ * <pre>
+ * BTProgram program = new BTCompiler()
+ *     .selector()
+ *         .sequence()
+ *             .condition(isHungry)
+ *             .action(eat)
+ *         .end()
+ *         .action(wander)
+ *     .end()
+ *     .compile();
+ * </pre>
+ */
+public class BTCompiler
+{
+	private final ArrayList<Byte> ops = new ArrayList<Byte>();
+	private final ArrayList<Integer> args = new ArrayList<Integer>();
+	private final ArrayList<BTPredicate> predicates = new ArrayList<BTPredicate>();
+	private final ArrayList<BTTask> tasks = new ArrayList<BTTask>();
+	private final ArrayList<Integer> ends = new ArrayList<Integer>();
+	private final ArrayList<Integer> open = new ArrayList<Integer>();	// Unclosed composites and repeats
+	private boolean hasRoot = false;
+	
+	/**
+	 * Opens a {@link BTSequence}-style composite.
+	 */
+	public BTCompiler sequence()
+	{
+		return openNode(BTProgram.SEQUENCE, 0);
+	}
+	
+	/**
+	 * Opens a {@link BTSelector}-style composite.
+	 */
+	public BTCompiler selector()
+	{
+		return openNode(BTProgram.SELECTOR, 0);
+	}
+	
+	/**
+	 * Opens a {@link BTRepeat}-style decorator. It must be given exactly one child.
+	 * 
+	 * @param repeatCount The number of times the child must succeed.
+	 */
+	public BTCompiler repeat(int repeatCount)
+	{
+		if(repeatCount < 1)
+			throw new IllegalArgumentException("Repeat count must be positive: " + repeatCount);
+		
+		return openNode(BTProgram.REPEAT, repeatCount);
+	}
+	
+	public BTCompiler condition(BTPredicate predicate)
+	{
+		return condition(predicate, false);
+	}
+	
+	/**
+	 * Adds a condition leaf.
+	 * 
+	 * @param predicate The check to run.
+	 * @param toNegate TRUE if the result of the check should be NOTed.
+	 */
+	public BTCompiler condition(BTPredicate predicate, boolean toNegate)
+	{
+		if(predicate == null)
+			throw new IllegalArgumentException("Predicate is null");
+		
+		int node = addNode(BTProgram.CONDITION, toNegate ? 1 : 0);
+		predicates.set(node, predicate);
+		ends.set(node, node + 1);
+		return this;
+	}
+	
+	/**
+	 * Adds an action leaf.
+	 */
+	public BTCompiler action(BTTask task)
+	{
+		if(task == null)
+			throw new IllegalArgumentException("Task is null");
+		
+		int node = addNode(BTProgram.ACTION, 0);
+		tasks.set(node, task);
+		ends.set(node, node + 1);
+		return this;
+	}
+	
+	/**
+	 * Closes the most recently opened composite or repeat.
+	 */
+	public BTCompiler end()
+	{
+		if(open.isEmpty())
+			throw new IllegalStateException("end() without a matching open node");
+		
+		int node = open.remove(open.size() - 1);
+		if(ops.get(node) == BTProgram.REPEAT && ops.size() - node < 2)
+			throw new IllegalStateException("Repeat at node " + node + " has no child");
+		
+		ends.set(node, ops.size());
+		return this;
+	}
+	
+	/**
+	 * @return The compiled program.
+	 */
+	public BTProgram compile()
+	{
+		if(!open.isEmpty())
+			throw new IllegalStateException(open.size() + " node(s) were never closed");
+		
+		int size = ops.size();
+		byte[] op = new byte[size];
+		int[] end = new int[size];
+		int[] arg = new int[size];
+		for(int i = 0; i < size; i++)
+		{
+			op[i] = ops.get(i);
+			end[i] = ends.get(i);
+			arg[i] = args.get(i);
+		}
+		return new BTProgram(
+			op, end, arg,
+			predicates.toArray(new BTPredicate[size]),
+			tasks.toArray(new BTTask[size])
+		);
+	}
+	
+	private BTCompiler openNode(byte type, int arg)
+	{
+		open.add(addNode(type, arg));
+		return this;
+	}
+	
+	private int addNode(byte type, int arg)
+	{
+		if(open.isEmpty())
+		{
+			if(hasRoot)
+				throw new IllegalStateException("A tree can only have one root");
+			hasRoot = true;
+		}
+		else
+		{
+			int parent = open.get(open.size() - 1);
+			if(ops.get(parent) == BTProgram.REPEAT && ops.size() > parent + 1)
+				throw new IllegalStateException("Repeat at node " + parent + " can only have one child");
+		}
+		
+		int node = ops.size();
+		ops.add(type);
+		args.add(arg);
+		predicates.add(null);
+		tasks.add(null);
+		ends.add(node + 1);
+		return node;
+	}
+}
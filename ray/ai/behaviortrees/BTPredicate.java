@@ -0,0 +1,14 @@
+package ray.ai.behaviortrees;
+
+/**
+ * <code>BTPredicate</code> is the condition leaf of a compiled {@link BTProgram},
+ * the shared, stateless counterpart of a {@link BTCondition}.
+ */
+public interface BTPredicate
+{
+	/**
+	 * @param blackboard The agent's blackboard.
+	 * @return TRUE if the condition passes; FALSE otherwise.
+	 */
+	boolean check(BTBlackboard blackboard);
+}
@@ -0,0 +1,145 @@
+package ray.ai.behaviortrees;
+
+/**
+ * A <code>BTProgram</code> is a behavior tree flattened by a {@link BTCompiler}
+ * into parallel arrays, laid out in pre-order so that a node's first child
+ * is the next entry and <code>end[node]</code> is the entry just past its
+ * subtree (its next sibling).
+ * 
+ * The program is immutable and can be shared by any number of agents. All
+ * per-agent state lives in a {@link BTBlackboard}, so ticking an agent
+ * walks a few arrays instead of a tree of objects and allocates nothing.
+ */
+public final class BTProgram
+{
+	static final byte SEQUENCE = 0;
+	static final byte SELECTOR = 1;
+	static final byte CONDITION = 2;
+	static final byte ACTION = 3;
+	static final byte REPEAT = 4;
+	
+	private final byte[] op;
+	private final int[] end;
+	private final int[] arg;				// Repeat limit, or 1 to negate a condition
+	private final BTPredicate[] predicates;	// Per node, set for conditions
+	private final BTTask[] tasks;			// Per node, set for actions
+	
+	BTProgram(byte[] op, int[] end, int[] arg, BTPredicate[] predicates, BTTask[] tasks)
+	{
+		this.op = op;
+		this.end = end;
+		this.arg = arg;
+		this.predicates = predicates;
+		this.tasks = tasks;
+	}
+	
+	/**
+	 * @return The number of nodes in the program.
+	 */
+	public int size() { return op.length; }
+	
+	/**
+	 * Ticks the program for one agent, starting from the root.
+	 * 
+	 * @param blackboard The agent's blackboard, created for this program.
+	 * @param elapsedTime Time since the last tick.
+	 * @return The return {@link BTStatus} of the root node.
+	 */
+	public BTStatus tick(BTBlackboard blackboard, float elapsedTime)
+	{
+		if(blackboard.getProgram() != this)
+			throw new IllegalArgumentException("Blackboard was created for another program");
+		
+		if(op.length == 0)
+			return BTStatus.BH_SUCCESS;
+		
+		return run(0, blackboard, elapsedTime);
+	}
+	
+	private BTStatus run(int node, BTBlackboard bb, float elapsedTime)
+	{
+		switch(op[node])
+		{
+		case SEQUENCE:
+			return runComposite(node, bb, elapsedTime, BTStatus.BH_SUCCESS);
+			
+		case SELECTOR:
+			return runComposite(node, bb, elapsedTime, BTStatus.BH_FAILURE);
+			
+		case CONDITION:
+			boolean result = predicates[node].check(bb);
+			if(arg[node] != 0)
+				result = !result;
+			return result ? BTStatus.BH_SUCCESS : BTStatus.BH_FAILURE;
+			
+		case ACTION:
+			return tasks[node].run(bb, elapsedTime);
+			
+		case REPEAT:
+			return runRepeat(node, bb, elapsedTime);
+			
+		default:
+			throw new IllegalStateException("Unknown opcode " + op[node] + " at node " + node);
+		}
+	}
+	
+	/**
+	 * A sequence keeps going while its children return BH_SUCCESS and a
+	 * selector while they return BH_FAILURE; any other status ends the
+	 * composite with that status. A BH_RUNNING child is resumed next tick.
+	 */
+	private BTStatus runComposite(int node, BTBlackboard bb, float elapsedTime, BTStatus keepGoing)
+	{
+		int child = bb.resume[node] >= 0 ? bb.resume[node] : node + 1;
+		bb.resume[node] = -1;
+		
+		while(child < end[node])
+		{
+			BTStatus s = run(child, bb, elapsedTime);
+			
+			if(s == BTStatus.BH_RUNNING)
+			{
+				bb.resume[node] = child;
+				return s;
+			}
+			
+			if(s != keepGoing)
+				return s;
+			
+			child = end[child];
+		}
+		
+		// Every child gave keepGoing (or there were none)
+		return keepGoing;
+	}
+	
+	/**
+	 * Runs its child until it has succeeded <code>arg[node]</code> times.
+	 * Fails as soon as the child fails, and picks up where it left off
+	 * if the child is still running.
+	 */
+	private BTStatus runRepeat(int node, BTBlackboard bb, float elapsedTime)
+	{
+		int child = node + 1;
+		
+		while(true)
+		{
+			BTStatus s = run(child, bb, elapsedTime);
+			
+			if(s == BTStatus.BH_RUNNING)
+				return s;
+			
+			if(s == BTStatus.BH_FAILURE)
+			{
+				bb.counters[node] = 0;
+				return s;
+			}
+			
+			if(++bb.counters[node] >= arg[node])
+			{
+				bb.counters[node] = 0;
+				return BTStatus.BH_SUCCESS;
+			}
+		}
+	}
+}
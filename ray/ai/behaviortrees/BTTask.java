@@ -0,0 +1,19 @@
+package ray.ai.behaviortrees;
+
+/**
+ * <code>BTTask</code> is the action leaf of a compiled {@link BTProgram}.
+ * Unlike a {@link BTAction}, a task is shared by every agent running the
+ * program, so it must keep all of its per-agent state in the
+ * {@link BTBlackboard} it is given.
+ */
+public interface BTTask
+{
+	/**
+	 * Runs the task for one agent.
+	 * 
+	 * @param blackboard The agent's blackboard.
+	 * @param elapsedTime Time since the last tick.
+	 * @return The return {@link BTStatus} of the task.
+	 */
+	BTStatus run(BTBlackboard blackboard, float elapsedTime);
+}
@@ -24,7 +24,9 @@ import ray.rage.asset.material.*;
 import ray.rage.asset.mesh.Mesh;
 import ray.rage.asset.mesh.MeshManager;
 import ray.rage.asset.mesh.SubMesh;
+import ray.rage.math.*;
 import ray.rage.scene.*;
+import ray.rml.*;
 
 /**
  * A <i>mesh</i> is an {@link Asset asset} holding data about a <i>discrete</i>
@@ -55,6 +57,10 @@ public final class Mesh extends AbstractAsset {
     // #getSubMesh(int)
     private Map<String, SubMesh> subMeshMap = new LinkedHashMap<>();
 
+    // union of the sub-mesh bounds; null until requested or after the
+    // geometry changes
+    private BoundingSphere       bounds;
+
     Mesh(MeshManager manager, String name) {
         super(manager, name);
     }
@@ -77,6 +83,7 @@ public final class Mesh extends AbstractAsset {
     public SubMesh createSubMesh(String name) {
         SubMesh sm = new SubMesh(this, name);
         subMeshMap.put(name, sm);
+        bounds = null;
         return sm;
     }
 
@@ -129,6 +136,30 @@ public final class Mesh extends AbstractAsset {
         return subMeshMap.size();
     }
 
+    /**
+     * Gets the {@link BoundingSphere bounding-sphere} enclosing all the
+     * {@link SubMesh sub-meshes} of <code>this</code> {@link Mesh mesh}, in
+     * model space.
+     * <p>
+     * It's computed once and kept until the geometry changes.
+     *
+     * @return The {@link BoundingSphere bounding-sphere}.
+     */
+    public BoundingSphere getBounds() {
+        if (bounds == null) {
+            BoundingSphere union = null;
+            for (SubMesh sm : subMeshMap.values())
+                union = union == null ? sm.getBounds() : union.union(sm.getBounds());
+
+            bounds = union != null ? union : BoundingSphere.createFrom(Vector3f.createZeroVector(), 0f);
+        }
+        return bounds;
+    }
+
+    void notifyBoundsChanged() {
+        bounds = null;
+    }
+
     @Override
     public void notifyDispose() {
         for (SubMesh sm : subMeshMap.values())
@@ -23,6 +23,7 @@ import ray.rage.asset.material.*;
 import ray.rage.asset.mesh.Mesh;
 import ray.rage.asset.mesh.SubMesh;
 import ray.rage.common.*;
+import ray.rage.math.*;
 import ray.rage.scene.*;
 import ray.rage.util.*;
 import ray.rml.*;
@@ -50,6 +51,7 @@ public final class SubMesh implements Nameable, Disposable {
     private String      materialFilename;
 
     private FloatBuffer vertexBuffer;
+    private BoundingSphere bounds;
     private FloatBuffer normalBuffer;
     private FloatBuffer texCoordBuffer;
     private IntBuffer   indexBuffer;
@@ -97,7 +99,8 @@ public final class SubMesh implements Nameable, Disposable {
     }
 
     /**
-     * Sets the {@link FloatBuffer} with vertex data.
+     * Sets the {@link FloatBuffer} with vertex data. The
+     * {@link #getBounds() bounds} are computed from it here, once.
      *
      * @param vb
      *            The vertex buffer.
@@ -111,6 +114,9 @@ public final class SubMesh implements Nameable, Disposable {
             throw new IllegalArgumentException("Buffer is not direct. Use " + BufferUtil.class.getName());
 
         vertexBuffer = vb;
+        bounds = BoundingSphere.createFrom(vb.duplicate());
+        if (parentMesh != null)
+            parentMesh.notifyBoundsChanged();
     }
 
     /**
@@ -126,6 +132,21 @@ public final class SubMesh implements Nameable, Disposable {
         return null;
     }
 
+    /**
+     * Gets the {@link BoundingSphere bounding-sphere} enclosing the vertices of
+     * <code>this</code> {@link SubMesh sub-mesh}, in model space. For skinned
+     * sub-meshes, this is the bind pose.
+     *
+     * @return The {@link BoundingSphere bounding-sphere}, with a radius of
+     *         zero if no vertex buffer has been set.
+     */
+    public BoundingSphere getBounds() {
+        if (bounds == null)
+            return BoundingSphere.createFrom(Vector3f.createZeroVector(), 0f);
+
+        return bounds;
+    }
+
     /**
      * Sets the {@link FloatBuffer} with normal vector data.
      *
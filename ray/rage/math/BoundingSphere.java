@@ -0,0 +1,192 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.math;
+
+import java.nio.*;
+
+import ray.rml.*;
+
+/**
+ * A <i>bounding-sphere</i> is a center and a radius that enclose a set of
+ * points, such as the vertices of a mesh.
+ * <p>
+ * Spheres are cheap to move, rotate, and test against planes, which makes them
+ * a good fit for visibility tests on objects that move every frame.
+ *
+ * @see FrustumPlanes
+ */
+public final class BoundingSphere {
+
+    private static final BoundingSphere EMPTY = new BoundingSphere(0f, 0f, 0f, 0f);
+
+    private final float centerX;
+    private final float centerY;
+    private final float centerZ;
+    private final float radius;
+
+    private BoundingSphere(float cx, float cy, float cz, float r) {
+        centerX = cx;
+        centerY = cy;
+        centerZ = cz;
+        radius = r;
+    }
+
+    /**
+     * Creates a new {@link BoundingSphere bounding-sphere} with the given
+     * center and radius.
+     *
+     * @param center
+     *            The center of the sphere.
+     * @param radius
+     *            The radius of the sphere.
+     * @return A new {@link BoundingSphere bounding-sphere}.
+     * @throws IllegalArgumentException
+     *             If the radius is negative.
+     */
+    public static BoundingSphere createFrom(Vector3 center, float radius) {
+        if (radius < 0f)
+            throw new IllegalArgumentException("Radius must be >= 0");
+
+        return new BoundingSphere(center.x(), center.y(), center.z(), radius);
+    }
+
+    /**
+     * Creates a new {@link BoundingSphere bounding-sphere} around the
+     * positions in the given buffer, which holds consecutive <i>x</i>,
+     * <i>y</i>, <i>z</i> triplets.
+     * <p>
+     * The sphere is centered on the axis-aligned box around the positions,
+     * which is not the smallest possible sphere but is close for typical
+     * meshes and only needs two passes over the data.
+     *
+     * @param positions
+     *            The vertex positions. Its position and limit are not
+     *            changed.
+     * @return A new {@link BoundingSphere bounding-sphere}, with a radius of
+     *         zero if there are no positions.
+     */
+    public static BoundingSphere createFrom(FloatBuffer positions) {
+        final int count = positions.remaining() / 3;
+        if (count == 0)
+            return EMPTY;
+
+        final int start = positions.position();
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            float x = positions.get(start + i * 3);
+            float y = positions.get(start + i * 3 + 1);
+            float z = positions.get(start + i * 3 + 2);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        final float cx = (minX + maxX) * 0.5f;
+        final float cy = (minY + maxY) * 0.5f;
+        final float cz = (minZ + maxZ) * 0.5f;
+        float radiusSq = 0f;
+        for (int i = 0; i < count; i++) {
+            float dx = positions.get(start + i * 3) - cx;
+            float dy = positions.get(start + i * 3 + 1) - cy;
+            float dz = positions.get(start + i * 3 + 2) - cz;
+            radiusSq = Math.max(radiusSq, dx * dx + dy * dy + dz * dz);
+        }
+        return new BoundingSphere(cx, cy, cz, (float) Math.sqrt(radiusSq));
+    }
+
+    /**
+     * Creates a new {@link BoundingSphere bounding-sphere} that encloses both
+     * <code>this</code> sphere and the given one.
+     *
+     * @param other
+     *            The other {@link BoundingSphere bounding-sphere}.
+     * @return A new {@link BoundingSphere bounding-sphere}.
+     */
+    public BoundingSphere union(BoundingSphere other) {
+        final float dx = other.centerX - centerX;
+        final float dy = other.centerY - centerY;
+        final float dz = other.centerZ - centerZ;
+        final float dist = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        // one already encloses the other
+        if (dist + other.radius <= radius)
+            return this;
+        if (dist + radius <= other.radius)
+            return other;
+
+        final float r = (dist + radius + other.radius) * 0.5f;
+        final float t = (r - radius) / dist;
+        return new BoundingSphere(centerX + dx * t, centerY + dy * t, centerZ + dz * t, r);
+    }
+
+    /**
+     * Creates a new {@link BoundingSphere bounding-sphere} that encloses
+     * <code>this</code> sphere after it's been transformed by the given
+     * matrix.
+     * <p>
+     * The radius grows with the largest scale in the matrix, so the result
+     * stays conservative under non-uniform scaling.
+     *
+     * @param xform
+     *            A translation, rotation, and scale {@link Matrix4 matrix},
+     *            such as a node's world transform.
+     * @return A new {@link BoundingSphere bounding-sphere}.
+     */
+    public BoundingSphere transform(Matrix4 xform) {
+        final float x = xform.value(0, 0) * centerX + xform.value(0, 1) * centerY + xform.value(0, 2) * centerZ + xform.value(0, 3);
+        final float y = xform.value(1, 0) * centerX + xform.value(1, 1) * centerY + xform.value(1, 2) * centerZ + xform.value(1, 3);
+        final float z = xform.value(2, 0) * centerX + xform.value(2, 1) * centerY + xform.value(2, 2) * centerZ + xform.value(2, 3);
+
+        float scaleSq = 0f;
+        for (int col = 0; col < 3; col++) {
+            float sx = xform.value(0, col);
+            float sy = xform.value(1, col);
+            float sz = xform.value(2, col);
+            scaleSq = Math.max(scaleSq, sx * sx + sy * sy + sz * sz);
+        }
+        return new BoundingSphere(x, y, z, radius * (float) Math.sqrt(scaleSq));
+    }
+
+    public float getCenterX() {
+        return centerX;
+    }
+
+    public float getCenterY() {
+        return centerY;
+    }
+
+    public float getCenterZ() {
+        return centerZ;
+    }
+
+    public Vector3 getCenter() {
+        return Vector3f.createFrom(centerX, centerY, centerZ);
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingSphere[(" + centerX + ", " + centerY + ", " + centerZ + "), " + radius + "]";
+    }
+
+}
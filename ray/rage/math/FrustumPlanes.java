@@ -0,0 +1,156 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.math;
+
+import ray.rml.*;
+
+/**
+ * The six world-space planes bounding a camera's view volume, for testing
+ * whether objects can be seen.
+ * <p>
+ * The planes are extracted from a combined projection and view matrix, so any
+ * projection works, and all face inwards. Instances are meant to be reused:
+ * {@link #set(Matrix4, Matrix4)} overwrites the planes in place.
+ *
+ * @see BoundingSphere
+ */
+public final class FrustumPlanes {
+
+    /**
+     * How a volume relates to the {@link FrustumPlanes frustum}.
+     */
+    public enum Containment {
+        OUTSIDE, INTERSECTS, INSIDE
+    }
+
+    private static final int LEFT   = 0;
+    private static final int RIGHT  = 1;
+    private static final int BOTTOM = 2;
+    private static final int TOP    = 3;
+    private static final int NEAR   = 4;
+    private static final int FAR    = 5;
+
+    // a, b, c, d per plane, with (a, b, c) of unit length so that
+    // a*x + b*y + c*z + d is the signed distance of a point
+    private final float[] planes = new float[6 * 4];
+
+    private final MutableMatrix4f clip = new MutableMatrix4f();
+
+    /**
+     * Replaces the planes with the ones of the given view and projection.
+     *
+     * @param view
+     *            The view {@link Matrix4 matrix}.
+     * @param proj
+     *            The projection {@link Matrix4 matrix}.
+     */
+    public void set(Matrix4 view, Matrix4 proj) {
+        final MutableMatrix4f m = clip.set(proj).mult(view);
+
+        // a point is inside when -w <= x, y, z <= w in clip space, and each
+        // of those inequalities is a plane built from the rows of the matrix
+        for (int col = 0; col < 4; col++) {
+            final float w = m.value(3, col);
+            final float x = m.value(0, col);
+            final float y = m.value(1, col);
+            final float z = m.value(2, col);
+            planes[LEFT * 4 + col] = w + x;
+            planes[RIGHT * 4 + col] = w - x;
+            planes[BOTTOM * 4 + col] = w + y;
+            planes[TOP * 4 + col] = w - y;
+            planes[NEAR * 4 + col] = w + z;
+            planes[FAR * 4 + col] = w - z;
+        }
+
+        for (int p = 0; p < 6; p++) {
+            final int i = p * 4;
+            final float len = (float) Math.sqrt(planes[i] * planes[i] + planes[i + 1] * planes[i + 1] + planes[i + 2] * planes[i + 2]);
+            if (len > 0f) {
+                planes[i] /= len;
+                planes[i + 1] /= len;
+                planes[i + 2] /= len;
+                planes[i + 3] /= len;
+            }
+        }
+    }
+
+    /**
+     * Tests the {@link BoundingSphere sphere} against the planes.
+     *
+     * @param sphere
+     *            The {@link BoundingSphere sphere} to test.
+     * @return Whether the sphere is completely outside, partially inside, or
+     *         completely inside.
+     */
+    public Containment test(BoundingSphere sphere) {
+        return test(sphere.getCenterX(), sphere.getCenterY(), sphere.getCenterZ(), sphere.getRadius());
+    }
+
+    /**
+     * Tests the sphere with the given center and radius against the planes.
+     *
+     * @return Whether the sphere is completely outside, partially inside, or
+     *         completely inside.
+     */
+    public Containment test(float x, float y, float z, float radius) {
+        Containment result = Containment.INSIDE;
+        for (int p = 0; p < 6; p++) {
+            final int i = p * 4;
+            final float dist = planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+            if (dist < -radius)
+                return Containment.OUTSIDE;
+            if (dist < radius)
+                result = Containment.INTERSECTS;
+        }
+        return result;
+    }
+
+    /**
+     * Tests the axis-aligned box with the given center and half-size along
+     * each axis against the planes.
+     *
+     * @return Whether the box is completely outside, partially inside, or
+     *         completely inside.
+     */
+    public Containment testBox(float x, float y, float z, float halfX, float halfY, float halfZ) {
+        Containment result = Containment.INSIDE;
+        for (int p = 0; p < 6; p++) {
+            final int i = p * 4;
+            final float dist = planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3];
+
+            // how far the box reaches along the plane normal
+            final float reach = halfX * Math.abs(planes[i]) + halfY * Math.abs(planes[i + 1]) + halfZ * Math.abs(planes[i + 2]);
+            if (dist < -reach)
+                return Containment.OUTSIDE;
+            if (dist < reach)
+                result = Containment.INTERSECTS;
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the {@link BoundingSphere sphere} is at least partially
+     * inside the planes.
+     *
+     * @param sphere
+     *            The {@link BoundingSphere sphere} to test.
+     * @return True if any part of the sphere may be visible. Otherwise false.
+     */
+    public boolean intersects(BoundingSphere sphere) {
+        return test(sphere) != Containment.OUTSIDE;
+    }
+
+}
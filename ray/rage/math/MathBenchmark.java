@@ -0,0 +1,198 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.math;
+
+import ray.rage.util.MicroBenchmark;
+import ray.rml.*;
+
+/**
+ * Reports the time per operation, and the bytes allocated per operation, of
+ * the {@link ray.rml} types and {@link Transform transforms}, as a baseline
+ * for changes to them.
+ * <p>
+ * <code>java ray.rage.math.MathBenchmark [filter]</code>
+ *
+ * @see MicroBenchmark
+ */
+public final class MathBenchmark {
+
+    private static final Vector3 A_VECTOR  = Vector3f.createFrom(1f, 2f, 3f);
+    private static final Vector3 B_VECTOR  = Vector3f.createFrom(-2f, 0.5f, 4f);
+    private static final Vector3 Y_AXIS    = Vector3f.createUnitVectorY();
+    private static final Angle   ANGLE     = Degreef.createFrom(37f);
+
+    private static final Matrix3 A_MATRIX3 = Matrix3f.createRotationFrom(ANGLE, B_VECTOR.normalize());
+    private static final Matrix3 B_MATRIX3 = Matrix3f.createRotationFrom(Degreef.createFrom(-12f), A_VECTOR.normalize());
+
+    // a node-like transform, and a projection, which isn't affine
+    private static final Matrix4 A_MATRIX4 = Matrix4f.createTransformFrom(A_VECTOR, A_MATRIX3, Vector3f.createFrom(1f, 2f, 1f));
+    private static final Matrix4 B_MATRIX4 = Matrix4f.createTransformFrom(B_VECTOR, B_MATRIX3, Vector3f.createFrom(0.5f, 0.5f, 0.5f));
+    private static final Matrix4 PROJ      = Matrix4f.createPerspectiveMatrix(Degreef.createFrom(60f), 16f / 9f, 0.1f, 1000f);
+
+    public static void main(String[] args) {
+        MicroBenchmark bench = new MicroBenchmark(args);
+
+        bench.measure("Vector3f.add", new MicroBenchmark.Operation() {
+            Vector3 result;
+
+            @Override
+            public void run() {
+                result = A_VECTOR.add(B_VECTOR);
+            }
+        });
+        bench.measure("Vector3f.cross", new MicroBenchmark.Operation() {
+            Vector3 result;
+
+            @Override
+            public void run() {
+                result = A_VECTOR.cross(B_VECTOR);
+            }
+        });
+        bench.measure("Vector3f.normalize", new MicroBenchmark.Operation() {
+            Vector3 result;
+
+            @Override
+            public void run() {
+                result = A_VECTOR.normalize();
+            }
+        });
+
+        bench.measure("Matrix3f.mult", new MicroBenchmark.Operation() {
+            Matrix3 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX3.mult(B_MATRIX3);
+            }
+        });
+        bench.measure("Matrix3f.mult(Vector3)", new MicroBenchmark.Operation() {
+            Vector3 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX3.mult(A_VECTOR);
+            }
+        });
+        bench.measure("Matrix3f.rotate", new MicroBenchmark.Operation() {
+            Matrix3 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX3.rotate(ANGLE, Y_AXIS);
+            }
+        });
+        bench.measure("Matrix3f.inverse", new MicroBenchmark.Operation() {
+            Matrix3 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX3.inverse();
+            }
+        });
+
+        bench.measure("Matrix4f.mult", new MicroBenchmark.Operation() {
+            Matrix4 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX4.mult(B_MATRIX4);
+            }
+        });
+        bench.measure("Matrix4f.mult (projective)", new MicroBenchmark.Operation() {
+            Matrix4 result;
+
+            @Override
+            public void run() {
+                result = PROJ.mult(A_MATRIX4);
+            }
+        });
+        bench.measure("Matrix4f.inverse", new MicroBenchmark.Operation() {
+            Matrix4 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX4.inverse();
+            }
+        });
+        bench.measure("Matrix4f.inverse (projective)", new MicroBenchmark.Operation() {
+            Matrix4 result;
+
+            @Override
+            public void run() {
+                result = PROJ.inverse();
+            }
+        });
+        bench.measure("Matrix4f.rotate", new MicroBenchmark.Operation() {
+            Matrix4 result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX4.rotate(ANGLE, Y_AXIS);
+            }
+        });
+        bench.measure("Matrix4f.toFloatArray", new MicroBenchmark.Operation() {
+            float[] result;
+
+            @Override
+            public void run() {
+                result = A_MATRIX4.toFloatArray();
+            }
+        });
+        bench.measure("Matrix4f.toFloatArray(dest)", new MicroBenchmark.Operation() {
+            final float[] result = new float[16];
+
+            @Override
+            public void run() {
+                A_MATRIX4.toFloatArray(result, 0);
+            }
+        });
+
+        bench.measure("MutableMatrix4f.mult", new MicroBenchmark.Operation() {
+            final MutableMatrix4f a      = new MutableMatrix4f().set(A_MATRIX4);
+            final MutableMatrix4f b      = new MutableMatrix4f().set(B_MATRIX4);
+            final MutableMatrix4f result = new MutableMatrix4f();
+
+            @Override
+            public void run() {
+                a.mult(b, result);
+            }
+        });
+
+        bench.measure("Transform.toMatrixTRS", new MicroBenchmark.Operation() {
+            final Transform xform = Transform.createFrom(A_VECTOR, A_MATRIX3, B_VECTOR);
+            Matrix4         result;
+            boolean         flip;
+
+            @Override
+            public void run() {
+                // a changed position makes the matrix be built again
+                flip = !flip;
+                xform.setPosition(flip ? A_VECTOR : B_VECTOR);
+                result = xform.toMatrixTRS();
+            }
+        });
+        bench.measure("Transform.toMatrixTRS (cached)", new MicroBenchmark.Operation() {
+            final Transform xform = Transform.createFrom(A_VECTOR, A_MATRIX3, B_VECTOR);
+            Matrix4         result;
+
+            @Override
+            public void run() {
+                result = xform.toMatrixTRS();
+            }
+        });
+    }
+
+}
@@ -23,29 +23,35 @@ import ray.rml.*;
 /**
  * A <i>transform</i> represents a translation, rotation, and scale as a single
  * object.
+ * <p>
+ * The rotation is kept as a unit {@link Quaternion quaternion}, which is
+ * cheaper to compose and renormalize than a {@link Matrix3 matrix}. A rotation
+ * {@link Matrix3 matrix} is only derived from it when asked for, and kept
+ * until the rotation changes.
  *
  * @author Raymond L. Rivera
  *
  */
 public class Transform {
 
-    private Vector3 position;
-    private Matrix3 rotation;
-    private Vector3 scale;
+    private Vector3    position;
+    private Quaternion orientation;
+    private Vector3    scale;
 
-    private Matrix4 cachedXform = Matrix4f.createIdentityMatrix();
-    private boolean needsUpdate = true;
+    private Matrix3    cachedRotation = null;
+    private Matrix4    cachedXform    = Matrix4f.createIdentityMatrix();
+    private boolean    needsUpdate    = true;
 
-    private Transform(Vector3 position, Matrix3 rotation, Vector3 scale) {
+    private Transform(Vector3 position, Quaternion orientation, Vector3 scale) {
         if (position == null)
             throw new NullPointerException("Null position " + Vector3.class.getSimpleName());
-        if (rotation == null)
-            throw new NullPointerException("Null rotation " + Matrix3.class.getSimpleName());
+        if (orientation == null)
+            throw new NullPointerException("Null orientation " + Quaternion.class.getSimpleName());
         if (scale == null)
             throw new NullPointerException("Null scale " + Vector3.class.getSimpleName());
 
         this.position = position;
-        this.rotation = rotation;
+        this.orientation = orientation;
         this.scale = scale;
     }
 
@@ -60,7 +66,7 @@ public class Transform {
      *             If the argument is <code>null</code>.
      */
     public static Transform createFrom(Transform xform) {
-        return createFrom(xform.position, xform.rotation, xform.scale);
+        return createFrom(xform.position, xform.orientation, xform.scale);
     }
 
     /**
@@ -78,7 +84,28 @@ public class Transform {
      *             If any of the arguments is <code>null</code>.
      */
     public static Transform createFrom(Vector3 position, Matrix3 rotation, Vector3 scale) {
-        return new Transform(position, rotation, scale);
+        if (rotation == null)
+            throw new NullPointerException("Null rotation " + Matrix3.class.getSimpleName());
+
+        return new Transform(position, rotation.toQuaternion(), scale);
+    }
+
+    /**
+     * Creates a new {@link Transform transform} with the given position,
+     * orientation, and scaling.
+     *
+     * @param position
+     *            The position {@link Vector3 vector}.
+     * @param orientation
+     *            The orientation, as a unit {@link Quaternion quaternion}.
+     * @param scale
+     *            The scaling {@link Vector3 vector}.
+     * @return A new {@link Transform transform}.
+     * @throws NullPointerException
+     *             If any of the arguments is <code>null</code>.
+     */
+    public static Transform createFrom(Vector3 position, Quaternion orientation, Vector3 scale) {
+        return new Transform(position, orientation, scale);
     }
 
     /**
@@ -108,7 +135,7 @@ public class Transform {
      *             If the argument is <code>null</code>.
      */
     public static Transform createFrom(Vector3 position) {
-        return createFrom(position, Matrix3f.createIdentityMatrix());
+        return createFrom(position, Quaternionf.createIdentityQuaternion(), Vector3f.createFrom(1, 1, 1));
     }
 
     /**
@@ -170,9 +197,13 @@ public class Transform {
     /**
      * Sets the rotation {@link Matrix3 matrix} of <code>this</code>
      * {@link Transform transform}.
+     * <p>
+     * The {@link Matrix3 matrix} is converted to a {@link Quaternion
+     * quaternion}, so {@link #rotation()} returns an orthonormal
+     * {@link Matrix3 matrix} even if this one had drifted.
      *
      * @param rotation
-     *            The position {@link Matrix3 matrix}.
+     *            The rotation {@link Matrix3 matrix}.
      * @return This {@link Transform transform} for method chaining.
      * @throws NullPointerException
      *             If the argument is <code>null</code>.
@@ -181,10 +212,7 @@ public class Transform {
         if (rotation == null)
             throw new NullPointerException("Null rotation " + Matrix3.class.getSimpleName());
 
-        this.rotation = rotation;
-        needsUpdate = true;
-
-        return this;
+        return setOrientation(rotation.toQuaternion());
     }
 
     /**
@@ -194,7 +222,39 @@ public class Transform {
      * @return The rotation {@link Matrix3 matrix}.
      */
     public Matrix3 rotation() {
-        return rotation;
+        if (cachedRotation == null)
+            cachedRotation = orientation.toMatrix3();
+
+        return cachedRotation;
+    }
+
+    /**
+     * Sets the orientation of <code>this</code> {@link Transform transform}.
+     *
+     * @param orientation
+     *            The orientation, as a unit {@link Quaternion quaternion}.
+     * @return This {@link Transform transform} for method chaining.
+     * @throws NullPointerException
+     *             If the argument is <code>null</code>.
+     */
+    public Transform setOrientation(Quaternion orientation) {
+        if (orientation == null)
+            throw new NullPointerException("Null orientation " + Quaternion.class.getSimpleName());
+
+        this.orientation = orientation;
+        cachedRotation = null;
+        needsUpdate = true;
+
+        return this;
+    }
+
+    /**
+     * Gets the orientation of <code>this</code> {@link Transform transform}.
+     *
+     * @return The orientation, as a unit {@link Quaternion quaternion}.
+     */
+    public Quaternion orientation() {
+        return orientation;
     }
 
     /**
@@ -253,10 +313,7 @@ public class Transform {
      */
     public Matrix4 toMatrixTRS() {
         if (needsUpdate) {
-            Matrix4 t = Matrix4f.createTranslationFrom(position);
-            Matrix4 r = Matrix4f.createFrom(rotation);
-            Matrix4 s = Matrix4f.createScalingFrom(scale);
-            cachedXform = t.mult(r).mult(s);
+            cachedXform = Matrix4f.createTransformFrom(position, orientation, scale);
             needsUpdate = false;
         }
         return cachedXform;
@@ -267,7 +324,7 @@ public class Transform {
         final int prime = 31;
         int result = 3;
         result = prime * result + position.hashCode();
-        result = prime * result + rotation.hashCode();
+        result = prime * result + orientation.hashCode();
         result = prime * result + scale.hashCode();
         return result;
     }
@@ -282,7 +339,7 @@ public class Transform {
         Transform other = (Transform) obj;
         if (!position.equals(other.position))
             return false;
-        if (!rotation.equals(other.rotation))
+        if (!orientation.equals(other.orientation))
             return false;
         if (!scale.equals(other.scale))
             return false;
@@ -150,8 +150,28 @@ public interface RenderQueue extends Iterable<Renderable> {
     boolean isEmpty();
 
     /**
-     * Removes all the {@link Renderable renderables} from <code>this</code>
-     * {@link RenderQueue queue}.
+     * Adds a {@link Renderable renderable} that's outside the view, but may
+     * still cast a shadow into it. It's only drawn into the shadow map, and
+     * it's not part of the iteration over <code>this</code> {@link RenderQueue
+     * queue}.
+     *
+     * @param r
+     *            The {@link Renderable renderable} to add.
+     * @see ShadowVolume
+     */
+    void addShadowCaster(Renderable r);
+
+    /**
+     * Gets the {@link Renderable renderables} added with
+     * {@link #addShadowCaster(Renderable)}.
+     *
+     * @return The shadow casters outside the view.
+     */
+    Iterable<Renderable> getShadowCasters();
+
+    /**
+     * Removes all the {@link Renderable renderables}, including the shadow
+     * casters, from <code>this</code> {@link RenderQueue queue}.
      */
     void clear();
 
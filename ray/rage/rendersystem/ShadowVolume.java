@@ -0,0 +1,70 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.rendersystem;
+
+import ray.rml.*;
+
+/**
+ * The box around the camera that shadows are drawn over: an orthographic
+ * volume seen from a point a few units towards the light, looking back at the
+ * camera.
+ * <p>
+ * The {@link RenderSystem render-system} renders its depth map over this
+ * volume, and the scene manager uses the same volume to decide which objects
+ * outside the view can still cast a shadow into it, so the two always agree.
+ */
+public final class ShadowVolume {
+
+    /**
+     * Half the width and height of the volume, in world units.
+     */
+    public static final float    BOX_SIZE     = 40f;
+
+    /**
+     * Half the depth of the volume, along the direction to the light, in
+     * world units. The depth is measured from the point the volume is seen
+     * from.
+     */
+    public static final float    CLIP_SIZE    = 60f;
+
+    private static final Vector3 LIGHT_OFFSET = Vector3f.createFrom(0.5f, 3f, 4f);
+    private static final Vector3 UP           = Vector3f.createUnitVectorY();
+    private static final Matrix4 PROJECTION   = Matrix4f.createOrthographicMatrix(-BOX_SIZE, BOX_SIZE, -BOX_SIZE,
+            BOX_SIZE, -CLIP_SIZE, CLIP_SIZE);
+
+    private ShadowVolume() {}
+
+    /**
+     * Creates the view {@link Matrix4 matrix} of the volume around a camera.
+     *
+     * @param cameraPos
+     *            The world position of the camera.
+     * @return The light's view {@link Matrix4 matrix}.
+     */
+    public static Matrix4 createViewMatrix(Vector3 cameraPos) {
+        return Matrix4f.createViewMatrix(cameraPos, cameraPos.add(LIGHT_OFFSET), UP);
+    }
+
+    /**
+     * Gets the orthographic projection {@link Matrix4 matrix} of the volume.
+     *
+     * @return The light's projection {@link Matrix4 matrix}.
+     */
+    public static Matrix4 getProjectionMatrix() {
+        return PROJECTION;
+    }
+
+}
@@ -34,7 +34,8 @@ import ray.rage.rendersystem.*;
  */
 public final class GL4RenderQueue implements RenderQueue {
 
-    private Queue<Renderable> q = new ArrayDeque<>();
+    private Queue<Renderable> q             = new ArrayDeque<>();
+    private List<Renderable>  shadowCasters = new ArrayList<>();
 
     @Override
     public void add(Renderable r) {
@@ -51,9 +52,20 @@ public final class GL4RenderQueue implements RenderQueue {
         q.remove(r);
     }
 
+    @Override
+    public void addShadowCaster(Renderable r) {
+        shadowCasters.add(r);
+    }
+
+    @Override
+    public Iterable<Renderable> getShadowCasters() {
+        return shadowCasters;
+    }
+
     @Override
     public void clear() {
         q.clear();
+        shadowCasters.clear();
     }
 
     @Override
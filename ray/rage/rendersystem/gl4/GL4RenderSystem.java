@@ -49,6 +49,7 @@ import ray.rage.rendersystem.RenderQueue;
 import ray.rage.rendersystem.RenderSystem;
 import ray.rage.rendersystem.RenderWindow;
 import ray.rage.rendersystem.Renderable;
+import ray.rage.rendersystem.ShadowVolume;
 import ray.rage.rendersystem.Viewport;
 import ray.rage.rendersystem.Renderable.DataSource;
 import ray.rage.rendersystem.Renderable.Primitive;
@@ -531,18 +532,11 @@ public final class GL4RenderSystem implements RenderSystem, GLEventListener {
         GL4 gl = (GL4) glad.getGL();
         gl.glClearColor(0.2f, 0.3f, 0.3f, 1.0f);
 
-        Vector3 lightOffset = Vector3f.createFrom(0.5f, 3f, 4f); // -2.0f, 4.0f, -1.0f
-        final float BOX_SIZE = 40f;
-        final float CLIP_SIZE = 60f;
-        Matrix4 lightProjection = Matrix4f.createOrthographicMatrix(-BOX_SIZE, BOX_SIZE, -BOX_SIZE, BOX_SIZE, -CLIP_SIZE, CLIP_SIZE);
+        // the scene manager picks shadow casters outside the view with the
+        // same volume
+        Matrix4 lightProjection = ShadowVolume.getProjectionMatrix();
         Matrix4 orthoProjection = Matrix4f.createOrthographicMatrix(-boxSize, boxSize, -boxSize, boxSize, -clipSize, clipSize);
-        Vector3 lightPos = posVector.add(lightOffset);
-        Vector3 up = Vector3f.createFrom(0f, 1f, 0f);
-        Matrix4 lightView  = Matrix4f.createViewMatrix(
-        	posVector,
-        	lightPos,
-    		up
-        );
+        Matrix4 lightView  = ShadowVolume.createViewMatrix(posVector);
         Matrix4 lightSpaceMatrix = lightProjection.mult(lightView);
 
      // 1. First pass
@@ -553,49 +547,10 @@ public final class GL4RenderSystem implements RenderSystem, GLEventListener {
 	        gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, depthMapFBO[0]);
 	        gl.glClear(GL4.GL_COLOR_BUFFER_BIT | GL4.GL_DEPTH_BUFFER_BIT);
 	        for (Renderable r : renderQueue) {
-		        GpuShaderProgram program = r.getGpuShaderProgram();
-	            if (program == null) {
-	                logger.severe(Renderable.class.getSimpleName() + " skipped. No "
-	                        + GpuShaderProgram.class.getSimpleName() + " set");
-	                continue;
-	            }
-	            if (program.getType() == Type.SKYBOX || program.getType() == Type.GUI) {
-	            	continue;
-	            }
-	            if (!(program.getType() == Type.TESSELLATION)) {
-		            program = getGpuShaderProgram(GpuShaderProgram.Type.DEPTH);
-		            if (program == null) {
-		                logger.severe(Renderable.class.getSimpleName() + " skipped. No "
-		                        + GpuShaderProgram.class.getSimpleName() + " set");
-		                continue;
-		            }
-		            final GpuShaderProgram.Context ctx = program.createContext();
-		            ctx.setRenderable(r);
-		            ctx.setLightSpaceMatrix(lightSpaceMatrix);
-		
-		            program.bind();
-		            program.fetch(ctx);
-		            drawRenderable(gl, r);
-		            program.unbind();
-		            ctx.notifyDispose();
-	            }
-	            else {
-	            	setRenderStates(r);
-		            final GpuShaderProgram.Context ctx = program.createContext();
-		            ctx.setRenderable(r);
-		            ctx.setViewMatrix(lightView);
-		            ctx.setProjectionMatrix(lightProjection);
-		            ctx.setLightsList(lightsList);
-		            ctx.setAmbientLight(ambientLight);
-		            ctx.setLightSpaceMatrix(lightSpaceMatrix);
-		
-		            program.bind();
-		            program.fetch(ctx);
-		            drawRenderable(gl, r);
-		            program.unbind();
-		
-		            ctx.notifyDispose();
-	            }
+	        	drawDepth(gl, r, lightView, lightProjection, lightSpaceMatrix);
+	        }
+	        for (Renderable r : renderQueue.getShadowCasters()) {
+	        	drawDepth(gl, r, lightView, lightProjection, lightSpaceMatrix);
 	        }
 	        gl.glBindFramebuffer(GL4.GL_FRAMEBUFFER, 0);
             gl.glViewport(
@@ -937,6 +892,53 @@ public final class GL4RenderSystem implements RenderSystem, GLEventListener {
         }
     }
 
+    // draws a renderable into the shadow map
+    private void drawDepth(GL4 gl, Renderable r, Matrix4 lightView, Matrix4 lightProjection, Matrix4 lightSpaceMatrix) {
+        GpuShaderProgram program = r.getGpuShaderProgram();
+        if (program == null) {
+            logger.severe(Renderable.class.getSimpleName() + " skipped. No "
+                    + GpuShaderProgram.class.getSimpleName() + " set");
+            return;
+        }
+        if (program.getType() == Type.SKYBOX || program.getType() == Type.GUI) {
+            return;
+        }
+        if (!(program.getType() == Type.TESSELLATION)) {
+            program = getGpuShaderProgram(GpuShaderProgram.Type.DEPTH);
+            if (program == null) {
+                logger.severe(Renderable.class.getSimpleName() + " skipped. No "
+                        + GpuShaderProgram.class.getSimpleName() + " set");
+                return;
+            }
+            final GpuShaderProgram.Context ctx = program.createContext();
+            ctx.setRenderable(r);
+            ctx.setLightSpaceMatrix(lightSpaceMatrix);
+
+            program.bind();
+            program.fetch(ctx);
+            drawRenderable(gl, r);
+            program.unbind();
+            ctx.notifyDispose();
+        }
+        else {
+            setRenderStates(r);
+            final GpuShaderProgram.Context ctx = program.createContext();
+            ctx.setRenderable(r);
+            ctx.setViewMatrix(lightView);
+            ctx.setProjectionMatrix(lightProjection);
+            ctx.setLightsList(lightsList);
+            ctx.setAmbientLight(ambientLight);
+            ctx.setLightSpaceMatrix(lightSpaceMatrix);
+
+            program.bind();
+            program.fetch(ctx);
+            drawRenderable(gl, r);
+            program.unbind();
+
+            ctx.notifyDispose();
+        }
+    }
+
     private void drawRenderable(GL4 gl, Renderable r) {
         final DataSource source = r.getDataSource();
         final int primitive = getGLPrimitive(r.getPrimitive());
@@ -36,6 +36,9 @@ import ray.rml.*;
  */
 final class GlslProgramUniformMat4 extends AbstractGlslProgramUniform<Matrix4> {
 
+    // reused for every upload, since the driver copies the values anyway
+    private final float[] values = new float[16];
+
     GlslProgramUniformMat4(GpuShaderProgram parent, GLCanvas canvas, String name) {
         super(parent, canvas, name);
     }
@@ -43,7 +46,7 @@ final class GlslProgramUniformMat4 extends AbstractGlslProgramUniform<Matrix4> {
     @Override
     protected void setImpl(GL4 gl, Matrix4 m) {
         // location, mat4 object count, should transpose?, mat4 values, offset
-        gl.glUniformMatrix4fv(getLocationId(), 1, false, m.toFloatArray(), 0);
+        gl.glUniformMatrix4fv(getLocationId(), 1, false, m.toFloatArray(values, 0), 0);
     }
 
 }
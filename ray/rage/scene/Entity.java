@@ -19,6 +19,7 @@ package ray.rage.scene;
 
 import ray.rage.asset.material.*;
 import ray.rage.asset.mesh.*;
+import ray.rage.math.*;
 import ray.rage.rendersystem.*;
 import ray.rage.rendersystem.Renderable.*;
 import ray.rage.rendersystem.shader.*;
@@ -185,6 +186,33 @@ public interface Entity extends SceneObject {
      */
     void setRenderState(RenderState rs);
 
+    /**
+     * Gets the {@link BoundingSphere bounding-sphere} of the {@link Mesh mesh}
+     * in world space, as placed by the parent {@link SceneNode node}.
+     * <p>
+     * It's only recomputed after the node's world transform changes, so
+     * asking for it every frame is cheap for objects that don't move.
+     *
+     * @return The world-space {@link BoundingSphere bounding-sphere}.
+     * @throws IllegalStateException
+     *             If <code>this</code> {@link Entity entity} is not attached to
+     *             a {@link SceneNode node}.
+     */
+    BoundingSphere getWorldBounds();
+
+    /**
+     * Gets the handle the {@link SceneManager manager} issued for
+     * <code>this</code> {@link Entity entity} when it was created.
+     * <p>
+     * The handle stays the same for the life of the {@link Entity entity} and
+     * stops working once it's destroyed, even if a new {@link Entity entity}
+     * is created with the same name.
+     *
+     * @return The handle, which is never zero.
+     * @see SceneManager#getEntity(int)
+     */
+    int getHandle();
+
 	void setDepthShaderProgram(GpuShaderProgram gpuShaderProgram);
 
 	void setCanReceiveShadows(boolean b);
@@ -67,7 +67,9 @@ public interface Node extends Nameable {
          * {@link Node#update(boolean, boolean)}, which generally takes place
          * when the scene graph is being updated. This is not triggered by
          * simple state changes made to the {@link Node node} outside of its
-         * update method.
+         * update method, and implementations that skip unchanged
+         * {@link Node nodes} only invoke it when the derived transforms
+         * have changed since the previous update.
          *
          * @param n
          *            The updated {@link Node node}.
@@ -180,6 +182,60 @@ public interface Node extends Nameable {
 		boolean isShouldDelete();
     }
 
+    /**
+     * A {@link Controller controller} that tells the {@link SceneManager
+     * scene-manager} how often and in what order it wants to be updated.
+     * <p>
+     * Since not all {@link Controller controllers} need this, the
+     * {@link SceneManager scene-manager} updates the ones that don't implement
+     * it every frame, after the ones with a higher priority.
+     */
+    public interface ScheduledController extends Controller {
+
+        /**
+         * Gets the minimum time between two updates of <code>this</code>
+         * {@link Controller controller}. The time of the frames in between is
+         * added up and passed to the next update, so slower updates are
+         * coarser but never lose time.
+         *
+         * @return The interval, in milliseconds. Zero to update every frame.
+         */
+        float getUpdateIntervalMillis();
+
+        /**
+         * Gets the priority of <code>this</code> {@link Controller controller}.
+         * Higher priorities are updated first, and are the last to be put off
+         * when the frame runs out of time for controllers.
+         *
+         * @return The priority. Zero is the default.
+         */
+        int getUpdatePriority();
+
+        /**
+         * Gets whether <code>this</code> {@link Controller controller} can be
+         * updated on another thread, at the same time as other
+         * {@link Controller controllers} that control different
+         * {@link Node nodes}.
+         * <p>
+         * That is only safe if its update does nothing but read and change
+         * the local transforms of its own {@link Node nodes}. Anything that
+         * reads world transforms, creates or destroys objects, or touches
+         * game state must return false.
+         *
+         * @return True if the update can run concurrently. Otherwise false.
+         */
+        boolean isConcurrent();
+
+        /**
+         * Lets the caller iterate over the {@link Node nodes} under the
+         * control of <code>this</code> {@link Controller controller}.
+         *
+         * @return An {@link Iterable} of {@link Node nodes}.
+         */
+        Iterable<Node> getControlledNodes();
+
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -282,6 +338,27 @@ public interface Node extends Nameable {
      */
     Matrix3 getLocalRotation();
 
+    /**
+     * Sets the orientation of <code>this</code> {@link Node node} relative to
+     * its parent.
+     * <p>
+     * This is the same as {@link #setLocalRotation(Matrix3)}, but skips the
+     * conversion from a {@link Matrix3 matrix}.
+     *
+     * @param q
+     *            The orientation, as a unit {@link Quaternion quaternion}.
+     */
+    void setLocalOrientation(Quaternion q);
+
+    /**
+     * Gets <code>this</code> {@link Node node's} orientation relative to its
+     * parent.
+     *
+     * @return The orientation, as a unit {@link Quaternion quaternion}, in
+     *         parent-space.
+     */
+    Quaternion getLocalOrientation();
+
     /**
      * Gets the combined <i>relative</i> translation, rotation, and scaling
      * transforms of <code>this</code> {@link Node node}.
@@ -310,6 +387,15 @@ public interface Node extends Nameable {
      */
     Matrix3 getWorldRotation();
 
+    /**
+     * Gets <code>this</code> {@link Node node's} orientation, as derived from
+     * all of its parents.
+     *
+     * @return The derived orientation of <code>this</code> {@link Node node},
+     *         as a unit {@link Quaternion quaternion}.
+     */
+    Quaternion getWorldOrientation();
+
     /**
      * Gets <code>this</code> {@link Node node's} {@link Vector3 scaling}, as
      * derived from all of its parents.
@@ -0,0 +1,170 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene;
+
+import ray.rage.asset.material.*;
+import ray.rage.rendersystem.*;
+import ray.rage.rendersystem.shader.*;
+import ray.rage.rendersystem.states.*;
+
+/**
+ * A <i>particle-system</i> simulates many small, short-lived, tumbling quads
+ * and draws all of them as a single {@link Renderable renderable}.
+ * <p>
+ * Unlike an {@link Entity entity} per particle, a <i>particle-system</i> has
+ * no {@link SceneNode node}, render states, or controller per particle. The
+ * particles live in primitive arrays sized when the system is created, so
+ * emitting, updating, and expiring them allocates nothing, and the whole
+ * system costs one draw call no matter how many particles are alive.
+ * <p>
+ * Particle positions are in the space of the {@link SceneNode node} the
+ * system is attached to. Attaching it to a child of the root node at the
+ * origin makes them world positions.
+ * <p>
+ * The {@link SceneManager scene-manager} that created a <i>particle-system</i>
+ * advances it every time it updates its controllers.
+ *
+ * @see SceneManager#createParticleSystem(String, int)
+ */
+public interface ParticleSystem extends SceneObject {
+
+    /**
+     * Adds a new particle, if there's room for it.
+     * <p>
+     * The particle starts facing a random direction and tumbles about a
+     * random axis.
+     *
+     * @param x
+     *            The starting position along the x-axis.
+     * @param y
+     *            The starting position along the y-axis.
+     * @param z
+     *            The starting position along the z-axis.
+     * @param vx
+     *            The starting velocity along the x-axis, in units per second.
+     * @param vy
+     *            The starting velocity along the y-axis, in units per second.
+     * @param vz
+     *            The starting velocity along the z-axis, in units per second.
+     * @param size
+     *            Half the width of the particle's quad.
+     * @param spin
+     *            How fast the particle tumbles, in degrees per second.
+     * @param lifeMillis
+     *            How long the particle lives, in milliseconds.
+     * @return True if the particle was added. False if the system already
+     *         holds {@link #getMaxParticles()} particles.
+     * @throws IllegalArgumentException
+     *             If the life is not positive.
+     */
+    boolean emit(float x, float y, float z, float vx, float vy, float vz, float size, float spin, float lifeMillis);
+
+    /**
+     * Advances every particle by the given time and removes the ones that
+     * have expired.
+     *
+     * @param elapsedMillis
+     *            The time since the last update, in milliseconds.
+     */
+    void update(float elapsedMillis);
+
+    /**
+     * Removes all the particles.
+     */
+    void clear();
+
+    /**
+     * Gets the number of particles currently alive.
+     *
+     * @return The number of particles.
+     */
+    int getParticleCount();
+
+    /**
+     * Gets the number of particles <code>this</code> system can hold at the
+     * same time.
+     *
+     * @return The maximum number of particles.
+     */
+    int getMaxParticles();
+
+    /**
+     * Sets the downward acceleration applied to every particle.
+     *
+     * @param gravity
+     *            The acceleration, in units per second squared. Defaults to
+     *            zero.
+     */
+    void setGravity(float gravity);
+
+    float getGravity();
+
+    /**
+     * Sets the point in a particle's life at which it starts shrinking.
+     * Particles keep their size until then and shrink linearly to nothing by
+     * the time they expire.
+     *
+     * @param fraction
+     *            The fraction of the particle's life, from 0 to 1. Defaults
+     *            to 1, so particles never shrink.
+     * @throws IllegalArgumentException
+     *             If the fraction is not between 0 and 1.
+     */
+    void setShrinkStart(float fraction);
+
+    float getShrinkStart();
+
+    /**
+     * Gets the {@link Renderable renderable} that draws all the particles.
+     *
+     * @return The {@link Renderable renderable}.
+     */
+    Renderable getRenderable();
+
+    /**
+     * Sets the {@link RenderState render-state} used to draw the particles.
+     *
+     * @param rs
+     *            The {@link RenderState render-state}.
+     * @throws NullPointerException
+     *             If the argument is <code>null</code>.
+     */
+    void setRenderState(RenderState rs);
+
+    /**
+     * Sets the {@link Material material} used to draw the particles.
+     *
+     * @param mat
+     *            The {@link Material material}.
+     * @throws NullPointerException
+     *             If the argument is <code>null</code>.
+     */
+    void setMaterial(Material mat);
+
+    /**
+     * Sets the {@link GpuShaderProgram shader-program} used to draw the
+     * particles.
+     *
+     * @param prog
+     *            The {@link GpuShaderProgram shader-program}.
+     * @throws NullPointerException
+     *             If the argument is <code>null</code>.
+     */
+    void setGpuShaderProgram(GpuShaderProgram prog);
+
+    void setCanReceiveShadows(boolean b);
+
+}
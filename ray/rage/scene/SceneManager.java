@@ -28,6 +28,7 @@ import ray.rage.asset.texture.*;
 import ray.rage.common.*;
 import ray.rage.rendersystem.*;
 import ray.rage.rendersystem.shader.*;
+import ray.rage.rendersystem.states.*;
 import ray.rage.scene.AmbientLight;
 import ray.rage.scene.Camera;
 import ray.rage.scene.Entity;
@@ -272,6 +273,35 @@ public interface SceneManager extends Disposable {
      */
     Entity getEntity(String name);
 
+    /**
+     * Checks whether the {@link Entity entity} with the specified
+     * {@link Entity#getHandle() handle} still exists.
+     *
+     * @param handle
+     *            The handle of the {@link Entity entity}.
+     * @return True if the handle was issued by <code>this</code>
+     *         {@link SceneManager manager} and its {@link Entity entity} has
+     *         not been destroyed. Otherwise false.
+     */
+    boolean hasEntity(int handle);
+
+    /**
+     * Gets the {@link Entity entity} with the specified
+     * {@link Entity#getHandle() handle}.
+     * <p>
+     * Unlike {@link #getEntity(String)}, this is an array access, so it's
+     * meant for code that runs every frame.
+     *
+     * @param handle
+     *            The handle of the {@link Entity entity}.
+     * @return The {@link Entity entity}.
+     * @throws RuntimeException
+     *             If the {@link Entity entity} has been destroyed, or the
+     *             handle was not issued by <code>this</code>
+     *             {@link SceneManager manager}.
+     */
+    Entity getEntity(int handle);
+
     /**
      * Lets the caller iterate over all the {@link Entity entities} owned by
      * <code>this</code> {@link SceneManager manager}.
@@ -570,6 +600,103 @@ public interface SceneManager extends Disposable {
      */
     void destroyTessellation(Tessellation to);
 
+    // ------------------------------------------------------------------------
+    // ParticleSystem region
+    // ------------------------------------------------------------------------
+
+    /**
+     * Creates a new {@link ParticleSystem particle-system} with the specified
+     * name and room for the specified number of particles.
+     * <p>
+     * The {@link SceneManager manager} advances every {@link ParticleSystem
+     * particle-system} it owns in {@link #updateControllers(float)}, and only
+     * queues the ones that have live particles for rendering.
+     *
+     * @param name
+     *            The name that will identify the new {@link ParticleSystem
+     *            particle-system}.
+     * @param maxParticles
+     *            The number of particles it can hold at the same time.
+     * @return A new {@link ParticleSystem particle-system}.
+     * @throws RuntimeException
+     *             If the name already exists.
+     * @throws IllegalArgumentException
+     *             If the name is empty or the maximum is not positive.
+     */
+    ParticleSystem createParticleSystem(String name, int maxParticles);
+
+    /**
+     * Checks whether <code>this</code> {@link SceneManager manager} owns a
+     * {@link ParticleSystem particle-system} with the specified name.
+     *
+     * @param name
+     *            The name of the {@link ParticleSystem particle-system}.
+     * @return True if the {@link ParticleSystem particle-system} is owned by
+     *         <code>this</code> {@link SceneManager manager}. Otherwise false.
+     */
+    boolean hasParticleSystem(String name);
+
+    /**
+     * Gets the {@link ParticleSystem particle-system} with the specified name.
+     *
+     * @param name
+     *            The name of the {@link ParticleSystem particle-system}.
+     * @return The {@link ParticleSystem particle-system}.
+     * @throws RuntimeException
+     *             If the {@link SceneManager manager} does not own a
+     *             {@link ParticleSystem particle-system} with the specified
+     *             name.
+     */
+    ParticleSystem getParticleSystem(String name);
+
+    /**
+     * Lets the caller iterate over all the {@link ParticleSystem
+     * particle-systems} owned by <code>this</code> {@link SceneManager
+     * manager}.
+     *
+     * @return An {@link Iterable} of {@link ParticleSystem particle-systems}.
+     */
+    Iterable<ParticleSystem> getParticleSystems();
+
+    /**
+     * Gets the number of {@link ParticleSystem particle-systems} owned by
+     * <code>this</code> {@link SceneManager manager}.
+     *
+     * @return The number of {@link ParticleSystem particle-systems}.
+     */
+    int getParticleSystemCount();
+
+    /**
+     * Destroys the {@link ParticleSystem particle-system} by the specified
+     * name.
+     * <p>
+     * The {@link SceneManager manager} destroys the instance by removing it
+     * from its internal map and invoking its {@link Disposable#notifyDispose()}
+     * method.
+     *
+     * @param name
+     *            The name of the {@link ParticleSystem particle-system} to be
+     *            destroyed.
+     * @throws RuntimeException
+     *             If no {@link ParticleSystem particle-system} by the
+     *             specified name exists.
+     */
+    void destroyParticleSystem(String name);
+
+    /**
+     * Destroys the {@link ParticleSystem particle-system}.
+     *
+     * @param ps
+     *            The {@link ParticleSystem particle-system} to be destroyed.
+     * @throws RuntimeException
+     *             If it is not owned by <code>this</code> {@link SceneManager
+     *             manager}.
+     * @throws NullPointerException
+     *             If the {@link ParticleSystem particle-system} is
+     *             <code>null</code>.
+     */
+    void destroyParticleSystem(ParticleSystem ps);
+
     // ------------------------------------------------------------------------
     // SkyBox region
     // ------------------------------------------------------------------------
@@ -706,6 +833,20 @@ public interface SceneManager extends Disposable {
      */
     SceneNode getRootSceneNode();
 
+    /**
+     * Gets the {@link SpatialIndex spatial-index} of the {@link Entity
+     * entities} in the scene, for finding what's in a region without visiting
+     * every {@link Entity entity}.
+     * <p>
+     * The index is brought up to date as part of
+     * {@link #updateSceneGraph()}, and is used by the
+     * {@link SceneManager scene-manager} itself to find what each
+     * {@link Camera camera} can see.
+     *
+     * @return The {@link SpatialIndex spatial-index}.
+     */
+    SpatialIndex getSpatialIndex();
+
     /**
      * Creates a new {@link SceneNode scene-node} <i>without adding it to the
      * scene graph</i>.
@@ -755,6 +896,35 @@ public interface SceneManager extends Disposable {
      */
     SceneNode getSceneNode(String name);
 
+    /**
+     * Checks whether the {@link SceneNode scene-node} with the specified
+     * {@link SceneNode#getHandle() handle} still exists.
+     *
+     * @param handle
+     *            The handle of the {@link SceneNode scene-node}.
+     * @return True if the handle was issued by <code>this</code>
+     *         {@link SceneManager manager} and its {@link SceneNode
+     *         scene-node} has not been destroyed. Otherwise false.
+     */
+    boolean hasSceneNode(int handle);
+
+    /**
+     * Gets the {@link SceneNode scene-node} with the specified
+     * {@link SceneNode#getHandle() handle}.
+     * <p>
+     * Unlike {@link #getSceneNode(String)}, this is an array access, so it's
+     * meant for code that runs every frame.
+     *
+     * @param handle
+     *            The handle of the {@link SceneNode scene-node}.
+     * @return The {@link SceneNode scene-node}.
+     * @throws RuntimeException
+     *             If the {@link SceneNode scene-node} has been destroyed, or
+     *             the handle was not issued by <code>this</code>
+     *             {@link SceneManager manager}.
+     */
+    SceneNode getSceneNode(int handle);
+
     /**
      * Lets the caller iterate over all the {@link SceneNode scene-nodes} owned
      * by <code>this</code> {@link SceneManager manager}.
@@ -811,6 +981,54 @@ public interface SceneManager extends Disposable {
      */
     void destroySceneNode(SceneNode sn);
 
+    /**
+     * Creates a copy of the {@link SceneNode scene-node} and everything below
+     * it, to stamp out many instances of the same object from one template.
+     * <p>
+     * Every copied {@link SceneNode node} and {@link Entity entity} is named
+     * after the original followed by the suffix, and keeps the original's
+     * local position, rotation, and scale. The copied {@link Entity entities}
+     * share the original's {@link Mesh meshes}, {@link Material materials},
+     * and {@link RenderState render-states} instead of loading or creating
+     * their own, so the template must not be destroyed while any of its
+     * instances still exist.
+     * <p>
+     * Like {@link #createSceneNode(String)}, the new {@link SceneNode
+     * scene-node} does not have a parent. The template itself is usually left
+     * without one too, so that it doesn't get rendered.
+     *
+     * @param template
+     *            The {@link SceneNode scene-node} to copy.
+     * @param nameSuffix
+     *            The text appended to every copied name.
+     * @return The copy of the template.
+     * @throws RuntimeException
+     *             If any of the new names already exists.
+     * @throws IllegalArgumentException
+     *             If the template has attached {@link SceneObject objects}
+     *             other than non-skeletal {@link Entity entities}, or the
+     *             suffix is empty.
+     * @throws NullPointerException
+     *             If any of the arguments is <code>null</code>.
+     * @see #destroySceneNodeTree(SceneNode)
+     */
+    SceneNode instantiate(SceneNode template, String nameSuffix);
+
+    /**
+     * Destroys the {@link SceneNode scene-node}, all the {@link SceneNode
+     * nodes} below it, and every {@link Entity entity} attached to any of
+     * them.
+     *
+     * @param root
+     *            The top {@link SceneNode scene-node} to be destroyed.
+     * @throws NullPointerException
+     *             If the {@link SceneNode scene-node} is <code>null</code>.
+     * @throws IllegalArgumentException
+     *             If the root {@link SceneNode scene-node} is specified.
+     * @see #instantiate(SceneNode, String)
+     */
+    void destroySceneNodeTree(SceneNode root);
+
     // ------------------------------------------------------------------------
     // Lights region
     // ------------------------------------------------------------------------
@@ -936,6 +1154,33 @@ public interface SceneManager extends Disposable {
      */
     void destroyAllSceneObjects();
 
+    /**
+     * Sets how many destroyed {@link SceneNode scene-nodes}, and how many
+     * destroyed {@link Entity entities} per {@link Mesh mesh}, are kept for
+     * reuse instead of being thrown away.
+     * <p>
+     * A kept object is reset to the state it was created in: it's detached,
+     * visible, has no listener, and has the render states, materials, and
+     * {@link GpuShaderProgram programs} it was originally given, with any
+     * others disposed of. Creating an object with a matching
+     * {@link Mesh mesh} then hands it out again under the new name, which
+     * skips loading, allocating, and creating render states.
+     * <p>
+     * Only {@link Entity entities} created while pooling is enabled can be
+     * kept, and {@link SkeletalEntity skeletal-entities} never are. A
+     * destroyed object must not be used after it's destroyed, since it may
+     * be handed out again. The capacity defaults to zero, which disables
+     * pooling; lowering it disposes of the objects that no longer fit.
+     *
+     * @param capacity
+     *            The maximum number of objects kept of each kind.
+     * @throws IllegalArgumentException
+     *             If the capacity is negative.
+     */
+    void setPoolCapacity(int capacity);
+
+    int getPoolCapacity();
+
     // ------------------------------------------------------------------------
     // Controllers
     // ------------------------------------------------------------------------
@@ -974,9 +1219,10 @@ public interface SceneManager extends Disposable {
     int getControllerCount();
 
     /**
-     * Invokes {@link Node.Controller#update(float)} on every
+     * Invokes {@link Node.Controller#update(float)} on every enabled
      * {@link Node.Controller controller} <code>this</code> {@link SceneManager
-     * scene-manager} has.
+     * scene-manager} has, as scheduled by the ones that are
+     * {@link Node.ScheduledController scheduled}.
      *
      * @param elapsedTimeMillis
      *            The amount of time since the last update, in milliseconds.
@@ -1000,6 +1246,36 @@ public interface SceneManager extends Disposable {
      */
     void removeAllControllers();
 
+    /**
+     * Sets how many threads update {@link Node.ScheduledController#isConcurrent()
+     * concurrent} {@link Node.Controller controllers}, counting the one that
+     * calls {@link #updateControllers(float)}.
+     *
+     * @param count
+     *            The number of threads. One or zero updates every
+     *            {@link Node.Controller controller} on the calling thread.
+     * @throws IllegalArgumentException
+     *             If the count is negative.
+     */
+    void setControllerThreadCount(int count);
+
+    int getControllerThreadCount();
+
+    /**
+     * Sets how much time {@link #updateControllers(float)} may spend before
+     * putting off the remaining, lower priority, {@link Node.Controller
+     * controllers} to the next frame. A {@link Node.Controller controller} is
+     * never put off two frames in a row.
+     *
+     * @param budgetMillis
+     *            The time, in milliseconds. Zero for no limit.
+     * @throws IllegalArgumentException
+     *             If the budget is negative.
+     */
+    void setControllerTimeBudgetMillis(float budgetMillis);
+
+    float getControllerTimeBudgetMillis();
+
     // ------------------------------------------------------------------------
     // Scene rendering, etc
     // ------------------------------------------------------------------------
@@ -196,6 +196,19 @@ public interface SceneNode extends Node, Managed<SceneManager> {
      */
     void notifyInSceneGraph(boolean inGraph);
 
+    /**
+     * Gets the handle the {@link SceneManager manager} issued for
+     * <code>this</code> {@link SceneNode scene-node} when it was created.
+     * <p>
+     * The handle stays the same for the life of the {@link SceneNode
+     * scene-node} and stops working once it's destroyed, even if a new
+     * {@link SceneNode scene-node} is created with the same name.
+     *
+     * @return The handle, which is never zero.
+     * @see SceneManager#getSceneNode(int)
+     */
+    int getHandle();
+
     /**
      * Checks whether <code>this</code> {@link SceneNode scene-node} is in the
      * scene graph or not.
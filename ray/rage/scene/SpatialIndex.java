@@ -0,0 +1,90 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene;
+
+import java.util.*;
+
+import ray.rage.math.*;
+import ray.rml.*;
+
+/**
+ * A <i>spatial-index</i> finds the {@link Entity entities} in a region of the
+ * scene without visiting every {@link Entity entity} the
+ * {@link SceneManager scene-manager} owns.
+ * <p>
+ * {@link Entity Entities} are indexed by their
+ * {@link Entity#getWorldBounds() world bounds}. Only those that are in the
+ * scene graph are returned, whether visible or not. The index is kept up to
+ * date by the {@link SceneManager scene-manager} as nodes move, so results
+ * reflect the scene as of the last {@link SceneManager#updateSceneGraph()
+ * scene graph update}.
+ * <p>
+ * Queries add their results to a collection provided by the caller, so that
+ * it can be reused from one query to the next.
+ *
+ * @see SceneManager#getSpatialIndex()
+ */
+public interface SpatialIndex {
+
+    /**
+     * Finds the {@link Entity entities} whose bounds are at least partially
+     * inside the given planes.
+     *
+     * @param planes
+     *            The {@link FrustumPlanes planes}, such as a camera's view
+     *            volume.
+     * @param results
+     *            The collection the {@link Entity entities} found are added to.
+     */
+    void queryFrustum(FrustumPlanes planes, Collection<? super Entity> results);
+
+    /**
+     * Finds the {@link Entity entities} whose bounds overlap the given
+     * {@link BoundingSphere sphere}.
+     *
+     * @param sphere
+     *            The region to search, in world space.
+     * @param results
+     *            The collection the {@link Entity entities} found are added to.
+     */
+    void querySphere(BoundingSphere sphere, Collection<? super Entity> results);
+
+    /**
+     * Finds the {@link Entity entities} whose bounds are hit by the given ray,
+     * nearest first.
+     *
+     * @param origin
+     *            The start of the ray, in world space.
+     * @param direction
+     *            The direction of the ray. It does not need to be normalized.
+     * @param maxDistance
+     *            How far along the ray to search.
+     * @param results
+     *            The collection the {@link Entity entities} found are added to,
+     *            in order of the distance to where the ray enters their
+     *            bounds.
+     */
+    void queryRay(Vector3 origin, Vector3 direction, float maxDistance, Collection<? super Entity> results);
+
+    /**
+     * Gets the number of {@link Entity entities} in <code>this</code>
+     * {@link SpatialIndex index}.
+     *
+     * @return The number of {@link Entity entities}.
+     */
+    int size();
+
+}
@@ -27,11 +27,15 @@ import ray.rage.scene.*;
  * @author Raymond L. Rivera
  *
  */
-public abstract class AbstractController implements Node.Controller {
+public abstract class AbstractController implements Node.ScheduledController {
 
     protected List<Node> controlledNodesList = new ArrayList<>();
+    private List<Node>   controlledNodesView = Collections.unmodifiableList(controlledNodesList);
     private boolean      isEnabled           = true;
     private boolean      shouldDelete        = false;
+    private float        updateInterval      = 0f;
+    private int          updatePriority      = 0;
+    private boolean      isConcurrent        = false;
 
     @Override
     public void addNode(Node node) {
@@ -101,11 +105,62 @@ public abstract class AbstractController implements Node.Controller {
         return isEnabled;
     }
 
+    @Override
+    public Iterable<Node> getControlledNodes() {
+        return controlledNodesView;
+    }
+
+    /**
+     * Sets the minimum time between two updates. Controllers whose motion
+     * doesn't need to be smooth, like far-away decorations, can be updated a
+     * few times per second instead of every frame.
+     *
+     * @param intervalMillis
+     *            The interval, in milliseconds. Zero to update every frame.
+     * @throws IllegalArgumentException
+     *             If the interval is negative.
+     */
+    public void setUpdateIntervalMillis(float intervalMillis) {
+        if (intervalMillis < 0)
+            throw new IllegalArgumentException("Update interval must be >= 0");
+
+        updateInterval = intervalMillis;
+    }
+
+    @Override
+    public float getUpdateIntervalMillis() {
+        return updateInterval;
+    }
+
+    public void setUpdatePriority(int priority) {
+        updatePriority = priority;
+    }
+
+    @Override
+    public int getUpdatePriority() {
+        return updatePriority;
+    }
+
+    /**
+     * Sets whether updates may run on another thread.
+     *
+     * @see Node.ScheduledController#isConcurrent()
+     */
+    public void setConcurrent(boolean concurrent) {
+        isConcurrent = concurrent;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return isConcurrent;
+    }
+
     @Override
     public void notifyDispose() {
         isEnabled = false;
         controlledNodesList.clear();
         controlledNodesList = null;
+        controlledNodesView = null;
     }
 
 	public boolean isShouldDelete() {
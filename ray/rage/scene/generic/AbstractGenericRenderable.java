@@ -36,6 +36,17 @@ abstract class AbstractGenericRenderable implements Renderable {
 
 	private Map<RenderState.Type, RenderState> renderStatesMap = new HashMap<>();
 
+    // when set, these are the states and material the renderable was created
+    // with; they survive being replaced so that restoreDefaults() can bring
+    // them back without creating new ones
+    private Map<RenderState.Type, RenderState> defaultStatesMap;
+    private Material                           defaultMaterial;
+    private Primitive                          defaultPrimitive;
+
+    // states borrowed from another renderable by shareStatesOf(); the other
+    // renderable owns them, so they are never disposed from here
+    private Map<RenderState.Type, RenderState> sharedStatesMap;
+
     @Override
     public void setPrimitive(Primitive type) {
         if (type == null)
@@ -131,19 +142,92 @@ abstract class AbstractGenericRenderable implements Renderable {
 
         RenderState state = renderStatesMap.remove(type);
 
-        if (state != null)
+        if (state != null && !isDefaultState(state) && isOwned(state))
             state.notifyDispose();
     }
 
+    /**
+     * Makes <code>this</code> renderable draw with the same
+     * {@link RenderState render-states}, {@link Material material}, and
+     * shader programs as the given one, without copying them.
+     * <p>
+     * The borrowed {@link RenderState render-states} still belong to the
+     * source: they are not disposed when <code>this</code> renderable replaces
+     * them or gets disposed, so the source must outlive <code>this</code> one.
+     */
+    void shareStatesOf(AbstractGenericRenderable src) {
+        sharedStatesMap = new HashMap<>(src.renderStatesMap);
+        renderStatesMap.putAll(src.renderStatesMap);
+        material = src.material;
+        primitiveType = src.primitiveType;
+        dataSource = src.dataSource;
+        gpuProgram = src.gpuProgram;
+        depthProgram = src.depthProgram;
+        canReceiveShadows = src.canReceiveShadows;
+    }
+
+    /**
+     * Remembers the current {@link RenderState render-states} and
+     * {@link Material material} as the ones {@link #restoreDefaults()} goes
+     * back to.
+     */
+    void markDefaults() {
+        defaultStatesMap = new HashMap<>(renderStatesMap);
+        defaultMaterial = material;
+        defaultPrimitive = primitiveType;
+    }
+
+    boolean hasDefaults() {
+        return defaultStatesMap != null;
+    }
+
+    /**
+     * Disposes every {@link RenderState render-state} set since
+     * {@link #markDefaults()} and puts the remembered ones back, along with
+     * the remembered {@link Material material} and {@link Primitive
+     * primitive}.
+     */
+    void restoreDefaults() {
+        for (RenderState rs : renderStatesMap.values())
+            if (!isDefaultState(rs) && isOwned(rs))
+                rs.notifyDispose();
+
+        renderStatesMap.clear();
+        renderStatesMap.putAll(defaultStatesMap);
+        material = defaultMaterial;
+        primitiveType = defaultPrimitive;
+        canReceiveShadows = true;
+    }
+
+    private boolean isDefaultState(RenderState state) {
+        return defaultStatesMap != null && defaultStatesMap.get(state.getType()) == state;
+    }
+
+    private boolean isOwned(RenderState state) {
+        return sharedStatesMap == null || sharedStatesMap.get(state.getType()) != state;
+    }
+
     @Override
     public void notifyDispose() {
         material = null;
 
         for (RenderState rs : renderStatesMap.values())
-            rs.notifyDispose();
+            if (isOwned(rs))
+                rs.notifyDispose();
+
+        // defaults that were replaced are not in the map above
+        if (defaultStatesMap != null) {
+            for (RenderState rs : defaultStatesMap.values())
+                if (renderStatesMap.get(rs.getType()) != rs && isOwned(rs))
+                    rs.notifyDispose();
+
+            defaultStatesMap = null;
+            defaultMaterial = null;
+        }
 
         renderStatesMap.clear();
         renderStatesMap = null;
+        sharedStatesMap = null;
 
         // do NOT notifyDispose the program, which is likely to be shared with
         // other renderables; let the render system clean them up when it gets
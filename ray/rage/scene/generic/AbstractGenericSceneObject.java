@@ -17,7 +17,9 @@
 
 package ray.rage.scene.generic;
 
+import ray.rage.math.*;
 import ray.rage.scene.*;
+import ray.rml.*;
 
 /**
  * An abstract base implementation of a {@link SceneObject}.
@@ -36,6 +38,12 @@ abstract class AbstractGenericSceneObject implements SceneObject {
 
     private SceneObject.Listener sceneListener   = null;
 
+    // world bounds and the world transform they were computed from; nodes
+    // hand out a new matrix whenever they move, so comparing references is
+    // enough to tell if the bounds are stale
+    private BoundingSphere       worldBounds     = null;
+    private Matrix4              worldBoundsXform = null;
+
     /**
      * Constructs a new instance with the given parent {@link SceneManger
      * manager} and name.
@@ -135,6 +143,30 @@ abstract class AbstractGenericSceneObject implements SceneObject {
         return isAttached() && parentSceneNode.isInSceneGraph();
     }
 
+    /**
+     * Gets the given model-space {@link BoundingSphere bounds} in world space,
+     * reusing the previous result until the parent {@link SceneNode node}
+     * moves.
+     *
+     * @param localBounds
+     *            The model-space {@link BoundingSphere bounds}.
+     * @return The world-space {@link BoundingSphere bounds}.
+     * @throws IllegalStateException
+     *             If <code>this</code> is not attached to a {@link SceneNode
+     *             node}.
+     */
+    BoundingSphere toWorldBounds(BoundingSphere localBounds) {
+        if (!isAttached())
+            throw new IllegalStateException(getName() + " is not attached to a " + SceneNode.class.getSimpleName());
+
+        Matrix4 xform = parentSceneNode.getWorldTransform();
+        if (xform != worldBoundsXform) {
+            worldBounds = localBounds.transform(xform);
+            worldBoundsXform = xform;
+        }
+        return worldBounds;
+    }
+
     @Override
     public void setListener(SceneObject.Listener listener) {
         sceneListener = listener;
@@ -145,10 +177,34 @@ abstract class AbstractGenericSceneObject implements SceneObject {
         return sceneListener;
     }
 
+    /**
+     * Puts <code>this</code> object back in the state it was created in,
+     * instead of disposing of it, so that its manager can keep it for reuse.
+     */
+    void notifyPooled() {
+        detachFromParent();
+        setListener(null);
+        isVisible = true;
+        worldBounds = null;
+        worldBoundsXform = null;
+    }
+
+    /**
+     * Gives a pooled object the name it's being reused under.
+     */
+    void notifyReused(String newName) {
+        if (newName.isEmpty())
+            throw new IllegalArgumentException("Name is empty");
+
+        name = newName;
+    }
+
     @Override
     public void notifyDispose() {
         detachFromParent();
         setListener(null);
+        worldBounds = null;
+        worldBoundsXform = null;
         sceneManager = null;
         name = null;
     }
@@ -0,0 +1,311 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import ray.rage.scene.*;
+
+/**
+ * Decides which {@link Node.Controller controllers} get updated each frame,
+ * in what order, and on which thread.
+ * <p>
+ * {@link Node.ScheduledController Scheduled} controllers are updated in order
+ * of priority, no more often than their interval allows, and with all the
+ * time that passed since their last update. When a time budget is set and the
+ * frame has used it up, the remaining controllers are put off until the next
+ * frame, but never for two frames in a row.
+ * <p>
+ * Consecutive {@link Node.ScheduledController#isConcurrent() concurrent}
+ * controllers that don't share any {@link Node nodes} are updated at the same
+ * time on worker threads, with the calling thread taking one of them. Any
+ * other controller waits for them to finish, so the priority order is kept.
+ */
+final class GenericControllerScheduler {
+
+    private static final class Entry {
+        final Node.Controller          controller;
+        final Node.ScheduledController scheduled;
+        final int                      order;
+        float                          pendingMillis;
+        boolean                        deferred;
+        Runnable                       task;
+        Throwable                      error;
+
+        Entry(Node.Controller controller, int order) {
+            this.controller = controller;
+            this.scheduled = controller instanceof Node.ScheduledController ? (Node.ScheduledController) controller : null;
+            this.order = order;
+        }
+
+        int priority() {
+            return scheduled != null ? scheduled.getUpdatePriority() : 0;
+        }
+
+        float interval() {
+            return scheduled != null ? scheduled.getUpdateIntervalMillis() : 0f;
+        }
+
+        boolean isConcurrent() {
+            return scheduled != null && scheduled.isConcurrent();
+        }
+    }
+
+    // in the order they were added, for index-based access
+    private final List<Node.Controller> controllers  = new ArrayList<>();
+
+    // in the order they are updated
+    private Entry[]                     entries      = new Entry[16];
+    private int                         entryCount   = 0;
+    private int                         nextOrder    = 0;
+
+    private Entry[]                     batch        = new Entry[16];
+    private int                         batchCount   = 0;
+    private final Set<Node>             claimedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+    // the calling thread stays registered; each worker task registers for
+    // its batch and deregisters when done
+    private final Phaser                batchPhaser  = new Phaser(1);
+
+    private ExecutorService             executor;
+    private int                         threadCount  = 1;
+    private long                        budgetNanos  = 0;
+
+    void add(Node.Controller ctrl) {
+        if (entryCount == entries.length) {
+            entries = Arrays.copyOf(entries, entryCount * 2);
+            batch = Arrays.copyOf(batch, entryCount * 2);
+        }
+
+        final Entry e = new Entry(ctrl, nextOrder++);
+        e.task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    updateEntry(e);
+                } catch (Throwable t) {
+                    e.error = t;
+                } finally {
+                    batchPhaser.arriveAndDeregister();
+                }
+            }
+        };
+
+        controllers.add(ctrl);
+        entries[entryCount++] = e;
+    }
+
+    Node.Controller get(int index) {
+        return controllers.get(index);
+    }
+
+    int size() {
+        return controllers.size();
+    }
+
+    List<Node.Controller> getControllers() {
+        return controllers;
+    }
+
+    void clear() {
+        controllers.clear();
+        Arrays.fill(entries, 0, entryCount, null);
+        entryCount = 0;
+    }
+
+    /**
+     * Sets how many threads update concurrent controllers, counting the one
+     * calling {@link #update(float)}. One or less turns concurrency off.
+     */
+    void setThreadCount(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Thread count must be >= 0");
+
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+
+        threadCount = Math.max(count, 1);
+        if (threadCount > 1) {
+            executor = Executors.newFixedThreadPool(threadCount - 1, new ThreadFactory() {
+                private int created = 0;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "rage-controllers-" + (++created));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets how much time a frame may spend on controllers before the rest are
+     * put off. Zero means no limit.
+     */
+    void setTimeBudgetMillis(float budgetMillis) {
+        if (budgetMillis < 0)
+            throw new IllegalArgumentException("Time budget must be >= 0");
+
+        budgetNanos = (long) (budgetMillis * 1000000.0);
+    }
+
+    float getTimeBudgetMillis() {
+        return budgetNanos / 1000000f;
+    }
+
+    void update(float elapsedMillis) {
+        sortByPriority();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < entryCount; i++) {
+            final Entry e = entries[i];
+            if (!e.controller.isEnabled()) {
+                e.pendingMillis = 0f;
+                continue;
+            }
+
+            e.pendingMillis += elapsedMillis;
+            if (e.pendingMillis < e.interval())
+                continue;
+
+            if (budgetNanos > 0 && !e.deferred && System.nanoTime() - start > budgetNanos) {
+                e.deferred = true;
+                continue;
+            }
+            e.deferred = false;
+
+            if (executor != null && e.isConcurrent()) {
+                if (!claimNodes(e)) {
+                    runBatch();
+                    claimNodes(e);
+                }
+                batch[batchCount++] = e;
+            } else {
+                runBatch();
+                updateEntry(e);
+            }
+        }
+        runBatch();
+
+        removeDeleted();
+    }
+
+    void dispose() {
+        clear();
+        setThreadCount(1);
+    }
+
+    private void updateEntry(Entry e) {
+        final float elapsed = e.pendingMillis;
+        e.pendingMillis = 0f;
+        e.controller.update(elapsed);
+    }
+
+    private boolean claimNodes(Entry e) {
+        for (Node n : e.scheduled.getControlledNodes())
+            if (claimedNodes.contains(n))
+                return false;
+
+        for (Node n : e.scheduled.getControlledNodes())
+            claimedNodes.add(n);
+
+        return true;
+    }
+
+    private void runBatch() {
+        if (batchCount == 0)
+            return;
+
+        try {
+            if (batchCount == 1)
+                updateEntry(batch[0]);
+            else
+                runBatchConcurrently();
+        } finally {
+            Arrays.fill(batch, 0, batchCount, null);
+            batchCount = 0;
+            claimedNodes.clear();
+        }
+    }
+
+    private void runBatchConcurrently() {
+        batchPhaser.bulkRegister(batchCount - 1);
+        for (int i = 1; i < batchCount; i++)
+            executor.execute(batch[i].task);
+
+        // the workers must be done before anything else touches the scene,
+        // even if this thread's own update fails
+        try {
+            updateEntry(batch[0]);
+        } finally {
+            batchPhaser.arriveAndAwaitAdvance();
+        }
+
+        for (int i = 1; i < batchCount; i++) {
+            final Throwable t = batch[i].error;
+            if (t == null)
+                continue;
+
+            batch[i].error = null;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new RuntimeException(t);
+        }
+    }
+
+    private void removeDeleted() {
+        int kept = 0;
+        for (int i = 0; i < entryCount; i++) {
+            final Entry e = entries[i];
+            if (e.controller.isEnabled() && e.controller.isShouldDelete())
+                controllers.remove(e.controller);
+            else
+                entries[kept++] = e;
+        }
+
+        Arrays.fill(entries, kept, entryCount, null);
+        entryCount = kept;
+    }
+
+    private void sortByPriority() {
+        // priorities rarely change, so this is usually a single pass
+        for (int i = 1; i < entryCount; i++) {
+            final Entry e = entries[i];
+            int j = i - 1;
+            while (j >= 0 && comesBefore(e, entries[j])) {
+                entries[j + 1] = entries[j];
+                j--;
+            }
+            entries[j + 1] = e;
+        }
+    }
+
+    private static boolean comesBefore(Entry a, Entry b) {
+        final int pa = a.priority();
+        final int pb = b.priority();
+        return pa != pb ? pa > pb : a.order < b.order;
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.*;
 
 import ray.rage.asset.material.*;
 import ray.rage.asset.mesh.*;
+import ray.rage.math.*;
 import ray.rage.rendersystem.Renderable.*;
 import ray.rage.rendersystem.shader.*;
 import ray.rage.rendersystem.states.*;
@@ -38,6 +39,7 @@ final class GenericEntity extends AbstractGenericSceneObject implements Entity {
 
     private Mesh            mesh;
     private List<SubEntity> subEntityList;
+    private int             handle = 0;
 
     /**
      * Creates a new {@link Entity entity} with the given parent
@@ -75,6 +77,20 @@ final class GenericEntity extends AbstractGenericSceneObject implements Entity {
         return mesh;
     }
 
+    @Override
+    public BoundingSphere getWorldBounds() {
+        return toWorldBounds(mesh.getBounds());
+    }
+
+    @Override
+    public int getHandle() {
+        return handle;
+    }
+
+    void notifyHandle(int h) {
+        handle = h;
+    }
+
     @Override
     public Iterable<SubEntity> getSubEntities() {
         return subEntityList;
@@ -120,6 +136,40 @@ final class GenericEntity extends AbstractGenericSceneObject implements Entity {
             se.setRenderState(rs);
     }
 
+    /**
+     * Remembers the current render states and materials of the
+     * sub-entities, so that <code>this</code> entity can be pooled later.
+     */
+    void markDefaults() {
+        for (SubEntity se : subEntityList)
+            ((AbstractGenericRenderable) se).markDefaults();
+    }
+
+    boolean canBePooled() {
+        for (SubEntity se : subEntityList)
+            if (!((AbstractGenericRenderable) se).hasDefaults())
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Makes every sub-entity draw with the render states and material of the
+     * matching sub-entity of the given entity, which must use the same mesh.
+     */
+    void shareStatesOf(GenericEntity src) {
+        for (int i = 0; i < subEntityList.size(); i++)
+            ((AbstractGenericRenderable) subEntityList.get(i)).shareStatesOf((AbstractGenericRenderable) src.subEntityList.get(i));
+    }
+
+    @Override
+    void notifyPooled() {
+        super.notifyPooled();
+        handle = 0;
+        for (SubEntity se : subEntityList)
+            ((AbstractGenericRenderable) se).restoreDefaults();
+    }
+
     @Override
     public void notifyDispose() {
         // meshes/sub-meshes are shared assets and may be in use by multiple
@@ -0,0 +1,112 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.util.*;
+
+/**
+ * Issues integer handles for objects and finds the objects from them with an
+ * array access.
+ * <p>
+ * The low bits of a handle are a slot in the table and the high bits are the
+ * slot's generation, which changes every time the slot is freed. A handle to
+ * a removed object therefore never finds the object that reuses its slot.
+ * Zero is never issued, so it can be used to mean "no handle".
+ *
+ * @param <T>
+ *            The type of the objects.
+ */
+final class GenericHandleTable<T> {
+
+    private static final int SLOT_BITS       = 20;
+    private static final int SLOT_MASK       = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (32 - SLOT_BITS)) - 1;
+
+    private Object[]         items           = new Object[64];
+    private int[]            generations     = new int[64];
+    private int[]            freeSlots       = new int[64];
+    private int              freeCount       = 0;
+    private int              count           = 0;
+
+    /**
+     * Stores the object and returns a new handle for it.
+     *
+     * @throws IllegalStateException
+     *             If the table is full.
+     */
+    int add(T item) {
+        if (item == null)
+            throw new NullPointerException("Null item");
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (count > SLOT_MASK)
+                throw new IllegalStateException("Out of handles");
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+                generations = Arrays.copyOf(generations, count * 2);
+            }
+            slot = count++;
+            generations[slot] = 1;
+        }
+
+        items[slot] = item;
+        return (generations[slot] << SLOT_BITS) | slot;
+    }
+
+    /**
+     * Gets the object with the given handle.
+     *
+     * @return The object, or <code>null</code> if the handle was never issued
+     *         or its object has been removed.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int handle) {
+        final int slot = handle & SLOT_MASK;
+        if (slot >= count || generations[slot] != (handle >>> SLOT_BITS))
+            return null;
+
+        return (T) items[slot];
+    }
+
+    /**
+     * Removes the object with the given handle, which then stops working.
+     *
+     * @return The removed object, or <code>null</code> if the handle was not
+     *         valid.
+     */
+    T remove(int handle) {
+        final T item = get(handle);
+        if (item == null)
+            return null;
+
+        final int slot = handle & SLOT_MASK;
+        items[slot] = null;
+
+        // skip zero so that a handle is never zero
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        if (generations[slot] == 0)
+            generations[slot] = 1;
+
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        return item;
+    }
+
+}
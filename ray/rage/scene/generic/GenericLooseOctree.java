@@ -0,0 +1,424 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.util.*;
+
+import ray.rage.math.*;
+import ray.rage.scene.*;
+import ray.rml.*;
+
+/**
+ * A loose octree implementation of a {@link SpatialIndex spatial-index}.
+ * <p>
+ * Every cell covers a cubic region, split into eight octants by its children,
+ * but its bounds for queries are twice as large as the region. An
+ * {@link Entity entity} goes in the deepest cell whose region holds its center
+ * and whose half-size is at least the entity's radius, so it is always inside
+ * that cell's bounds and never needs to be split across cells. A moving
+ * {@link Entity entity} only changes cells when it leaves its cell's region.
+ * <p>
+ * Cells are created as needed and removed once empty. {@link Entity Entities}
+ * outside the root region, such as objects parked far away, are kept in a
+ * separate list that's tested one by one.
+ *
+ * @see GenericSceneManager#getSpatialIndex()
+ */
+final class GenericLooseOctree implements SpatialIndex {
+
+    private static final Comparator<Entry> BY_DISTANCE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return Float.compare(a.distance, b.distance);
+        }
+    };
+
+    private final Cell               root;
+    private final int                maxDepth;
+    private final List<Entry>        outsiders = new ArrayList<>();
+    private final Map<Entity, Entry> entryMap  = new IdentityHashMap<>();
+    private final List<Entry>        rayHits   = new ArrayList<>();
+
+    /**
+     * Creates an empty octree.
+     *
+     * @param center
+     *            The center of the root region.
+     * @param halfSize
+     *            Half the width of the root region.
+     * @param maxDepth
+     *            How many times the root can be subdivided. The smallest cells
+     *            have a half-size of <code>halfSize / 2^maxDepth</code>.
+     */
+    GenericLooseOctree(Vector3 center, float halfSize, int maxDepth) {
+        if (halfSize <= 0f)
+            throw new IllegalArgumentException("Size must be > 0");
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("Depth must be >= 0");
+
+        root = new Cell(null, -1, center.x(), center.y(), center.z(), halfSize);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Adds the {@link Entity entity} with the given world bounds, or moves it
+     * if it's already in <code>this</code> octree.
+     */
+    void update(Entity entity, BoundingSphere bounds) {
+        Entry entry = entryMap.get(entity);
+        if (entry == null) {
+            entry = new Entry(entity);
+            entry.bounds = bounds;
+            entryMap.put(entity, entry);
+            insert(entry);
+            return;
+        }
+
+        if (entry.bounds == bounds)
+            return;
+
+        entry.bounds = bounds;
+        if (!fits(entry.cell, bounds)) {
+            unlink(entry);
+            insert(entry);
+        }
+    }
+
+    /**
+     * Removes the {@link Entity entity}, if it's in <code>this</code> octree.
+     */
+    void remove(Entity entity) {
+        Entry entry = entryMap.remove(entity);
+        if (entry != null)
+            unlink(entry);
+    }
+
+    void clear() {
+        entryMap.clear();
+        outsiders.clear();
+        root.entries.clear();
+        Arrays.fill(root.children, null);
+        root.count = 0;
+    }
+
+    @Override
+    public int size() {
+        return entryMap.size();
+    }
+
+    @Override
+    public void queryFrustum(FrustumPlanes planes, Collection<? super Entity> results) {
+        for (Entry e : outsiders)
+            if (planes.intersects(e.bounds))
+                addResult(e, results);
+
+        queryFrustum(root, planes, results);
+    }
+
+    private void queryFrustum(Cell cell, FrustumPlanes planes, Collection<? super Entity> results) {
+        if (cell.count == 0)
+            return;
+
+        final float loose = cell.half * 2f;
+        switch (planes.testBox(cell.centerX, cell.centerY, cell.centerZ, loose, loose, loose)) {
+            case OUTSIDE:
+                return;
+            case INSIDE:
+                // everything below is inside as well
+                addAll(cell, results);
+                return;
+            default:
+                break;
+        }
+
+        for (Entry e : cell.entries)
+            if (planes.intersects(e.bounds))
+                addResult(e, results);
+
+        for (Cell child : cell.children)
+            if (child != null)
+                queryFrustum(child, planes, results);
+    }
+
+    @Override
+    public void querySphere(BoundingSphere sphere, Collection<? super Entity> results) {
+        for (Entry e : outsiders)
+            if (overlaps(e.bounds, sphere))
+                addResult(e, results);
+
+        querySphere(root, sphere, results);
+    }
+
+    private void querySphere(Cell cell, BoundingSphere sphere, Collection<? super Entity> results) {
+        if (cell.count == 0)
+            return;
+
+        // squared distance from the sphere's center to the loose bounds
+        final float loose = cell.half * 2f;
+        final float dx = Math.max(0f, Math.abs(sphere.getCenterX() - cell.centerX) - loose);
+        final float dy = Math.max(0f, Math.abs(sphere.getCenterY() - cell.centerY) - loose);
+        final float dz = Math.max(0f, Math.abs(sphere.getCenterZ() - cell.centerZ) - loose);
+        if (dx * dx + dy * dy + dz * dz > sphere.getRadius() * sphere.getRadius())
+            return;
+
+        for (Entry e : cell.entries)
+            if (overlaps(e.bounds, sphere))
+                addResult(e, results);
+
+        for (Cell child : cell.children)
+            if (child != null)
+                querySphere(child, sphere, results);
+    }
+
+    @Override
+    public void queryRay(Vector3 origin, Vector3 direction, float maxDistance, Collection<? super Entity> results) {
+        final float length = direction.length();
+        if (length == 0f)
+            return;
+
+        final float ox = origin.x(), oy = origin.y(), oz = origin.z();
+        final float dx = direction.x() / length, dy = direction.y() / length, dz = direction.z() / length;
+
+        rayHits.clear();
+        for (Entry e : outsiders)
+            if (hit(e, ox, oy, oz, dx, dy, dz, maxDistance))
+                rayHits.add(e);
+
+        queryRay(root, ox, oy, oz, dx, dy, dz, maxDistance);
+
+        Collections.sort(rayHits, BY_DISTANCE);
+        for (Entry e : rayHits)
+            addResult(e, results);
+        rayHits.clear();
+    }
+
+    private void queryRay(Cell cell, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+        if (cell.count == 0)
+            return;
+
+        // slab test against the loose bounds
+        final float loose = cell.half * 2f;
+        float near = 0f;
+        float far = maxDistance;
+        if (dx != 0f) {
+            final float t0 = (cell.centerX - loose - ox) / dx;
+            final float t1 = (cell.centerX + loose - ox) / dx;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        } else if (Math.abs(ox - cell.centerX) > loose) {
+            return;
+        }
+        if (dy != 0f) {
+            final float t0 = (cell.centerY - loose - oy) / dy;
+            final float t1 = (cell.centerY + loose - oy) / dy;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        } else if (Math.abs(oy - cell.centerY) > loose) {
+            return;
+        }
+        if (dz != 0f) {
+            final float t0 = (cell.centerZ - loose - oz) / dz;
+            final float t1 = (cell.centerZ + loose - oz) / dz;
+            near = Math.max(near, Math.min(t0, t1));
+            far = Math.min(far, Math.max(t0, t1));
+        } else if (Math.abs(oz - cell.centerZ) > loose) {
+            return;
+        }
+        if (near > far)
+            return;
+
+        for (Entry e : cell.entries)
+            if (hit(e, ox, oy, oz, dx, dy, dz, maxDistance))
+                rayHits.add(e);
+
+        for (Cell child : cell.children)
+            if (child != null)
+                queryRay(child, ox, oy, oz, dx, dy, dz, maxDistance);
+    }
+
+    private static boolean hit(Entry e, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+        final BoundingSphere b = e.bounds;
+        final float cx = b.getCenterX() - ox;
+        final float cy = b.getCenterY() - oy;
+        final float cz = b.getCenterZ() - oz;
+        final float r = b.getRadius();
+
+        // distance along the ray to the point closest to the center
+        final float along = cx * dx + cy * dy + cz * dz;
+        final float missSq = cx * cx + cy * cy + cz * cz - along * along;
+        if (missSq > r * r)
+            return false;
+
+        final float half = (float) Math.sqrt(r * r - missSq);
+        if (along + half < 0f)
+            return false;
+
+        final float enter = Math.max(0f, along - half);
+        if (enter > maxDistance)
+            return false;
+
+        e.distance = enter;
+        return true;
+    }
+
+    private static boolean overlaps(BoundingSphere a, BoundingSphere b) {
+        final float dx = a.getCenterX() - b.getCenterX();
+        final float dy = a.getCenterY() - b.getCenterY();
+        final float dz = a.getCenterZ() - b.getCenterZ();
+        final float r = a.getRadius() + b.getRadius();
+        return dx * dx + dy * dy + dz * dz <= r * r;
+    }
+
+    private static void addResult(Entry e, Collection<? super Entity> results) {
+        // entities stay indexed while their node is out of the graph, since
+        // detached nodes don't report moves
+        if (e.entity.isInScene())
+            results.add(e.entity);
+    }
+
+    private static void addAll(Cell cell, Collection<? super Entity> results) {
+        if (cell.count == 0)
+            return;
+
+        for (Entry e : cell.entries)
+            addResult(e, results);
+
+        for (Cell child : cell.children)
+            if (child != null)
+                addAll(child, results);
+    }
+
+    private boolean fits(Cell cell, BoundingSphere bounds) {
+        if (cell == null)
+            return !contains(root, bounds);
+
+        return contains(cell, bounds) && (cell.depth == maxDepth || bounds.getRadius() > cell.half * 0.5f);
+    }
+
+    private static boolean contains(Cell cell, BoundingSphere bounds) {
+        return bounds.getRadius() <= cell.half
+                && Math.abs(bounds.getCenterX() - cell.centerX) <= cell.half
+                && Math.abs(bounds.getCenterY() - cell.centerY) <= cell.half
+                && Math.abs(bounds.getCenterZ() - cell.centerZ) <= cell.half;
+    }
+
+    private void insert(Entry entry) {
+        final BoundingSphere b = entry.bounds;
+        if (!contains(root, b)) {
+            entry.cell = null;
+            entry.slot = outsiders.size();
+            outsiders.add(entry);
+            return;
+        }
+
+        Cell cell = root;
+        while (cell.depth < maxDepth && b.getRadius() <= cell.half * 0.5f) {
+            int octant = 0;
+            if (b.getCenterX() >= cell.centerX)
+                octant |= 1;
+            if (b.getCenterY() >= cell.centerY)
+                octant |= 2;
+            if (b.getCenterZ() >= cell.centerZ)
+                octant |= 4;
+
+            Cell child = cell.children[octant];
+            if (child == null) {
+                final float q = cell.half * 0.5f;
+                child = new Cell(cell, octant,
+                        cell.centerX + ((octant & 1) != 0 ? q : -q),
+                        cell.centerY + ((octant & 2) != 0 ? q : -q),
+                        cell.centerZ + ((octant & 4) != 0 ? q : -q),
+                        q);
+                cell.children[octant] = child;
+            }
+            cell = child;
+        }
+
+        entry.cell = cell;
+        entry.slot = cell.entries.size();
+        cell.entries.add(entry);
+        for (Cell c = cell; c != null; c = c.parent)
+            c.count++;
+    }
+
+    private void unlink(Entry entry) {
+        final List<Entry> list = entry.cell != null ? entry.cell.entries : outsiders;
+        final Entry last = list.remove(list.size() - 1);
+        if (last != entry) {
+            list.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+
+        if (entry.cell == null)
+            return;
+
+        for (Cell c = entry.cell; c != null; c = c.parent)
+            c.count--;
+
+        // drop the cells that no longer hold anything
+        Cell c = entry.cell;
+        while (c.parent != null && c.count == 0) {
+            c.parent.children[c.octant] = null;
+            c = c.parent;
+        }
+        entry.cell = null;
+    }
+
+    private static final class Cell {
+
+        final Cell        parent;
+        final int         octant;
+        final int         depth;
+        final float       centerX;
+        final float       centerY;
+        final float       centerZ;
+        // half the width of the region; the bounds used for queries are twice
+        // as wide
+        final float       half;
+        final Cell[]      children = new Cell[8];
+        final List<Entry> entries  = new ArrayList<>(0);
+        // entries in this cell and all the cells below it
+        int               count    = 0;
+
+        Cell(Cell parent, int octant, float cx, float cy, float cz, float half) {
+            this.parent = parent;
+            this.octant = octant;
+            this.depth = parent != null ? parent.depth + 1 : 0;
+            this.centerX = cx;
+            this.centerY = cy;
+            this.centerZ = cz;
+            this.half = half;
+        }
+
+    }
+
+    private static final class Entry {
+
+        final Entity   entity;
+        BoundingSphere bounds;
+        // null when outside the root region
+        Cell           cell;
+        int            slot;
+        // set by ray queries, for sorting
+        float          distance;
+
+        Entry(Entity entity) {
+            this.entity = entity;
+        }
+
+    }
+
+}
@@ -0,0 +1,431 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.nio.*;
+import java.util.*;
+
+import ray.rage.asset.material.*;
+import ray.rage.rendersystem.*;
+import ray.rage.rendersystem.shader.*;
+import ray.rage.rendersystem.states.*;
+import ray.rage.scene.*;
+import ray.rage.util.*;
+import ray.rml.*;
+
+/**
+ * A generic {@link ParticleSystem} implementation.
+ * <p>
+ * Every particle attribute is kept in its own primitive array, indexed by
+ * particle, so the update loop walks memory linearly. Expired particles are
+ * replaced by the last live one, which keeps the live particles packed at the
+ * front of the arrays and of the vertex buffers built from them.
+ */
+final class GenericParticleSystem extends AbstractGenericSceneObject implements ParticleSystem {
+
+    private static final int VERTICES_PER_PARTICLE = 4;
+    private static final int INDICES_PER_PARTICLE  = 6;
+
+    private final int        maxParticles;
+    private int              count                 = 0;
+
+    private float            gravity               = 0f;
+    private float            shrinkStart           = 1f;
+
+    // position and velocity
+    private float[]          px, py, pz;
+    private float[]          vx, vy, vz;
+
+    // the quad is spanned by the tumbling edge, which turns about the axis,
+    // and by the axis itself; both are unit length and perpendicular
+    private float[]          ux, uy, uz;
+    private float[]          ax, ay, az;
+    private float[]          angle;
+    private float[]          spin;
+
+    private float[]          size;
+    private float[]          age;
+    private float[]          life;
+
+    private final Random     random                = new Random();
+    private ParticleBatch    batch;
+
+    /**
+     * Creates a new {@link ParticleSystem particle-system} with room for the
+     * given number of particles.
+     *
+     * @param sm
+     *            The parent {@link SceneManager manager}.
+     * @param name
+     *            The name for <code>this</code> {@link ParticleSystem
+     *            particle-system}.
+     * @param maxParticles
+     *            The number of particles it can hold at the same time.
+     * @throws IllegalArgumentException
+     *             If the name is empty or the maximum is not positive.
+     */
+    GenericParticleSystem(SceneManager sm, String name, int maxParticles) {
+        super(sm, name);
+        if (maxParticles <= 0)
+            throw new IllegalArgumentException("Max particles must be > 0");
+
+        this.maxParticles = maxParticles;
+        px = new float[maxParticles];
+        py = new float[maxParticles];
+        pz = new float[maxParticles];
+        vx = new float[maxParticles];
+        vy = new float[maxParticles];
+        vz = new float[maxParticles];
+        ux = new float[maxParticles];
+        uy = new float[maxParticles];
+        uz = new float[maxParticles];
+        ax = new float[maxParticles];
+        ay = new float[maxParticles];
+        az = new float[maxParticles];
+        angle = new float[maxParticles];
+        spin = new float[maxParticles];
+        size = new float[maxParticles];
+        age = new float[maxParticles];
+        life = new float[maxParticles];
+
+        batch = new ParticleBatch(maxParticles);
+    }
+
+    @Override
+    public boolean emit(float x, float y, float z, float vx, float vy, float vz, float size, float spin, float lifeMillis) {
+        if (lifeMillis <= 0f)
+            throw new IllegalArgumentException("Life must be > 0");
+        if (count == maxParticles)
+            return false;
+
+        final int i = count++;
+        px[i] = x;
+        py[i] = y;
+        pz[i] = z;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.vz[i] = vz;
+        this.size[i] = size;
+        this.spin[i] = (float) Math.toRadians(spin) / 1000f;
+        angle[i] = random.nextFloat() * (float) (2 * Math.PI);
+        age[i] = 0f;
+        life[i] = lifeMillis;
+
+        // a uniformly distributed axis, and an edge perpendicular to it
+        float rx, ry, rz, lenSq;
+        do {
+            rx = random.nextFloat() * 2f - 1f;
+            ry = random.nextFloat() * 2f - 1f;
+            rz = random.nextFloat() * 2f - 1f;
+            lenSq = rx * rx + ry * ry + rz * rz;
+        } while (lenSq > 1f || lenSq < 1e-4f);
+
+        float len = (float) Math.sqrt(lenSq);
+        ax[i] = rx / len;
+        ay[i] = ry / len;
+        az[i] = rz / len;
+
+        // cross with whichever world axis is least parallel to the axis
+        if (Math.abs(ax[i]) < 0.9f) {
+            rx = 0f;
+            ry = az[i];
+            rz = -ay[i];
+        } else {
+            rx = -az[i];
+            ry = 0f;
+            rz = ax[i];
+        }
+        len = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+        ux[i] = rx / len;
+        uy[i] = ry / len;
+        uz[i] = rz / len;
+
+        return true;
+    }
+
+    @Override
+    public void update(float elapsedMillis) {
+        final float dt = elapsedMillis / 1000f;
+        final float dv = gravity * dt;
+
+        // every particle is moved first, one attribute at a time, and the
+        // expired ones are removed after; moving them too is cheaper than
+        // checking each one in between
+        BatchMath.add(age, 0, elapsedMillis, count);
+        BatchMath.add(vy, 0, -dv, count);
+        BatchMath.addScaled(px, 0, vx, 0, dt, count);
+        BatchMath.addScaled(py, 0, vy, 0, dt, count);
+        BatchMath.addScaled(pz, 0, vz, 0, dt, count);
+        BatchMath.addScaled(angle, 0, spin, 0, elapsedMillis, count);
+
+        int i = 0;
+        while (i < count) {
+            if (age[i] >= life[i]) {
+                // the last live particle takes this slot and is checked next
+                moveParticle(--count, i);
+                continue;
+            }
+            i++;
+        }
+
+        batch.fill();
+    }
+
+    private void moveParticle(int from, int to) {
+        if (from == to)
+            return;
+
+        px[to] = px[from];
+        py[to] = py[from];
+        pz[to] = pz[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        vz[to] = vz[from];
+        ux[to] = ux[from];
+        uy[to] = uy[from];
+        uz[to] = uz[from];
+        ax[to] = ax[from];
+        ay[to] = ay[from];
+        az[to] = az[from];
+        angle[to] = angle[from];
+        spin[to] = spin[from];
+        size[to] = size[from];
+        age[to] = age[from];
+        life[to] = life[from];
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        batch.fill();
+    }
+
+    @Override
+    public int getParticleCount() {
+        return count;
+    }
+
+    @Override
+    public int getMaxParticles() {
+        return maxParticles;
+    }
+
+    @Override
+    public void setGravity(float gravity) {
+        this.gravity = gravity;
+    }
+
+    @Override
+    public float getGravity() {
+        return gravity;
+    }
+
+    @Override
+    public void setShrinkStart(float fraction) {
+        if (fraction < 0f || fraction > 1f)
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+
+        shrinkStart = fraction;
+    }
+
+    @Override
+    public float getShrinkStart() {
+        return shrinkStart;
+    }
+
+    @Override
+    public Renderable getRenderable() {
+        return batch;
+    }
+
+    @Override
+    public void setRenderState(RenderState rs) {
+        batch.setRenderState(rs);
+    }
+
+    @Override
+    public void setMaterial(Material mat) {
+        batch.setMaterial(mat);
+    }
+
+    @Override
+    public void setGpuShaderProgram(GpuShaderProgram prog) {
+        batch.setGpuShaderProgram(prog);
+    }
+
+    @Override
+    public void setCanReceiveShadows(boolean b) {
+        batch.setCanReceiveShadows(b);
+    }
+
+    @Override
+    public void notifyDispose() {
+        batch.notifyDispose();
+        batch = null;
+
+        px = py = pz = null;
+        vx = vy = vz = null;
+        ux = uy = uz = null;
+        ax = ay = az = null;
+        angle = spin = size = age = life = null;
+
+        super.notifyDispose();
+    }
+
+    /**
+     * The {@link Renderable renderable} holding one quad per live particle.
+     * <p>
+     * The buffers are sized for the maximum number of particles when the
+     * system is created. The index buffer handed to the render system is a
+     * view covering only the live particles, and those views are kept so
+     * that drawing does not allocate once each count has been seen.
+     */
+    private final class ParticleBatch extends AbstractGenericRenderable {
+
+        private final FloatBuffer vertices;
+        private final FloatBuffer normals;
+        private final FloatBuffer texcoords;
+        private final IntBuffer   indices;
+        private final IntBuffer[] indexViews;
+
+        ParticleBatch(int maxParticles) {
+            vertices = BufferUtil.directFloatBuffer(maxParticles * VERTICES_PER_PARTICLE * 3);
+            normals = BufferUtil.directFloatBuffer(maxParticles * VERTICES_PER_PARTICLE * 3);
+            texcoords = BufferUtil.directFloatBuffer(maxParticles * VERTICES_PER_PARTICLE * 2);
+            indices = BufferUtil.directIntBuffer(maxParticles * INDICES_PER_PARTICLE);
+            indexViews = new IntBuffer[maxParticles + 1];
+
+            for (int p = 0; p < maxParticles; p++) {
+                final int v = p * VERTICES_PER_PARTICLE;
+                texcoords.put(0f).put(0f);
+                texcoords.put(1f).put(0f);
+                texcoords.put(1f).put(1f);
+                texcoords.put(0f).put(1f);
+                indices.put(v).put(v + 1).put(v + 2);
+                indices.put(v).put(v + 2).put(v + 3);
+            }
+            texcoords.rewind();
+            indices.rewind();
+
+            setPrimitive(Primitive.TRIANGLES);
+            setDataSource(DataSource.INDEX_BUFFER);
+        }
+
+        /**
+         * Writes the quads of the live particles into the vertex and normal
+         * buffers.
+         */
+        void fill() {
+            vertices.clear();
+            normals.clear();
+
+            for (int i = 0; i < count; i++) {
+                // the edge turned about the axis by the current angle
+                final float cos = (float) Math.cos(angle[i]);
+                final float sin = (float) Math.sin(angle[i]);
+                final float bx = ay[i] * uz[i] - az[i] * uy[i];
+                final float by = az[i] * ux[i] - ax[i] * uz[i];
+                final float bz = ax[i] * uy[i] - ay[i] * ux[i];
+                final float ex = cos * ux[i] + sin * bx;
+                final float ey = cos * uy[i] + sin * by;
+                final float ez = cos * uz[i] + sin * bz;
+
+                float s = size[i];
+                final float t = age[i] / life[i];
+                if (t > shrinkStart)
+                    s *= (1f - t) / (1f - shrinkStart);
+
+                final float e1x = ex * s, e1y = ey * s, e1z = ez * s;
+                final float e2x = ax[i] * s, e2y = ay[i] * s, e2z = az[i] * s;
+
+                vertices.put(px[i] - e1x - e2x).put(py[i] - e1y - e2y).put(pz[i] - e1z - e2z);
+                vertices.put(px[i] + e1x - e2x).put(py[i] + e1y - e2y).put(pz[i] + e1z - e2z);
+                vertices.put(px[i] + e1x + e2x).put(py[i] + e1y + e2y).put(pz[i] + e1z + e2z);
+                vertices.put(px[i] - e1x + e2x).put(py[i] - e1y + e2y).put(pz[i] - e1z + e2z);
+
+                // edge x axis, both unit length and perpendicular
+                final float nx = ey * az[i] - ez * ay[i];
+                final float ny = ez * ax[i] - ex * az[i];
+                final float nz = ex * ay[i] - ey * ax[i];
+                for (int v = 0; v < VERTICES_PER_PARTICLE; v++)
+                    normals.put(nx).put(ny).put(nz);
+            }
+
+            vertices.clear();
+            normals.clear();
+        }
+
+        @Override
+        public FloatBuffer getVertexBuffer() {
+            return vertices;
+        }
+
+        @Override
+        public FloatBuffer getTextureCoordsBuffer() {
+            return texcoords;
+        }
+
+        @Override
+        public FloatBuffer getNormalsBuffer() {
+            return normals;
+        }
+
+        @Override
+        public IntBuffer getIndexBuffer() {
+            IntBuffer view = indexViews[count];
+            if (view == null) {
+                IntBuffer dup = indices.duplicate();
+                dup.limit(count * INDICES_PER_PARTICLE);
+                view = dup.slice();
+                indexViews[count] = view;
+            }
+            return view;
+        }
+
+        @Override
+        public FloatBuffer getBoneWeightBuffer() {
+            return null;
+        }
+
+        @Override
+        public FloatBuffer getBoneIndexBuffer() {
+            return null;
+        }
+
+        @Override
+        public void setPoseSkinMatrices(Matrix4[] psm) {}
+
+        @Override
+        public Matrix4[] getPoseSkinMatrices() {
+            return null;
+        }
+
+        @Override
+        public void setPoseSkinMatricesIT(Matrix3[] psmIT) {}
+
+        @Override
+        public Matrix3[] getPoseSkinMatricesIT() {
+            return null;
+        }
+
+        @Override
+        public Matrix4 getWorldTransformMatrix() {
+            return getParentSceneNode().getWorldTransform();
+        }
+
+    }
+
+}
@@ -26,6 +26,7 @@ import ray.rage.asset.material.*;
 import ray.rage.asset.mesh.*;
 import ray.rage.asset.skeleton.*;
 import ray.rage.asset.texture.*;
+import ray.rage.math.*;
 import ray.rage.rendersystem.*;
 import ray.rage.rendersystem.shader.*;
 import ray.rage.scene.*;
@@ -34,6 +35,7 @@ import ray.rage.scene.generic.GenericCamera;
 import ray.rage.scene.generic.GenericEntity;
 import ray.rage.scene.generic.GenericLight;
 import ray.rage.scene.generic.GenericManualObject;
+import ray.rage.scene.generic.GenericParticleSystem;
 import ray.rage.scene.generic.GenericPerspectiveFrustum;
 import ray.rage.scene.generic.GenericSceneNode;
 import ray.rage.scene.generic.GenericSkeletalEntity;
@@ -75,11 +77,20 @@ final class GenericSceneManager implements SceneManager {
     private Map<String, SceneNode>      sceneNodeMap          = new HashMap<>();
     private Map<String, SkyBox>         skyBoxMap             = new HashMap<>();
     private Map<String, Tessellation>   tessellationMap       = new HashMap<>(); 
+    private Map<String, ParticleSystem> particleSystemMap     = new HashMap<>();
     private Map<String, Light>          lightMap              = new HashMap<>();
 
     private SkyBox                      activeSkyBox;
     private SceneNode                   rootSceneNode;
 
+    // optional; see setConfiguration(Configuration)
+    private GenericTransformStore       transformStore;
+
+    // destroyed objects kept for reuse; see setPoolCapacity(int)
+    private int                                   poolCapacity    = 0;
+    private ArrayDeque<GenericSceneNode>          sceneNodePool   = new ArrayDeque<>();
+    private Map<Mesh, ArrayDeque<GenericEntity>>  entityPools     = new HashMap<>();
+
     private MeshManager                 meshManager;
     private SkeletonManager             skeletonManager;
     private AnimationManager            animationManager;
@@ -91,7 +102,26 @@ final class GenericSceneManager implements SceneManager {
     private RenderQueue                 renderQueue;
     private List<RenderQueue.Listener>  renderQueueListeners  = new ArrayList<>();
     private List<SceneManager.Listener> sceneManagerListeners = new ArrayList<>();
-    private List<Node.Controller>       nodeControllers       = new ArrayList<>();
+    private GenericControllerScheduler  nodeControllers       = new GenericControllerScheduler();
+
+    // entities are queued if they're in the view; the ones outside it are
+    // still drawn into the shadow map if they're in the light's volume
+    private final FrustumPlanes         cullingPlanes         = new FrustumPlanes();
+    private final FrustumPlanes         shadowPlanes          = new FrustumPlanes();
+
+    // entities are indexed by their world bounds; nodes report the objects
+    // that moved, and the index catches up with them once per update
+    private static final float          INDEX_HALF_SIZE       = 1024f;
+    private static final int            INDEX_DEPTH           = 8;
+    private final GenericLooseOctree    spatialIndex          = new GenericLooseOctree(Vector3f.createZeroVector(), INDEX_HALF_SIZE, INDEX_DEPTH);
+    private final Set<Entity>           movedEntities         = new LinkedHashSet<>();
+    private final Set<Entity>           screenSpaceEntities   = new LinkedHashSet<>();
+    private final List<Entity>          visibleEntities       = new ArrayList<>();
+
+    // handles give hot code array access to nodes and entities; the maps
+    // above remain the owners and keep the lookups by name
+    private GenericHandleTable<SceneNode> sceneNodeHandles = new GenericHandleTable<>();
+    private GenericHandleTable<Entity>    entityHandles    = new GenericHandleTable<>();
 
     // The ambient light is a singleton object, but I avoid using the Singleton
     // Design (Anti-)Pattern to avoid having the equivalent of global variables,
@@ -172,13 +202,24 @@ final class GenericSceneManager implements SceneManager {
             throw new IllegalArgumentException("Path is empty");
 
         Mesh mesh = meshManager.getAsset(Paths.get(path));
-        Entity entity = new GenericEntity(this, name, mesh);
+        GenericEntity entity = takePooledEntity(mesh);
+        final boolean reused = entity != null;
+        if (reused)
+            entity.notifyReused(name);
+        else
+            entity = new GenericEntity(this, name, mesh);
+
+        entity.notifyHandle(entityHandles.add(entity));
 
         entity.setGpuShaderProgram(renderSystem.getGpuShaderProgram(GpuShaderProgram.Type.RENDERING));
         entity.setDepthShaderProgram(renderSystem.getGpuShaderProgram(GpuShaderProgram.Type.DEPTH));
 
         entityMap.put(name, entity);
 
+        // a pooled entity still has the render states it was created with
+        if (reused)
+            return entity;
+
         SubEntity.Visitor depthVisitor = new SubEntityZBufferStateVisitor(this);
         SubEntity.Visitor textureVisitor = new SubEntityTextureStateVisitor(this);
         SubEntity.Visitor faceVisitor = new SubEntityFrontFaceStateVisitor(this);
@@ -187,6 +228,9 @@ final class GenericSceneManager implements SceneManager {
         entity.visitSubEntities(textureVisitor);
         entity.visitSubEntities(faceVisitor);
 
+        if (poolCapacity > 0)
+            entity.markDefaults();
+
         return entity;
     }
 
@@ -203,6 +247,20 @@ final class GenericSceneManager implements SceneManager {
         return ent;
     }
 
+    @Override
+    public boolean hasEntity(int handle) {
+        return entityHandles.get(handle) != null;
+    }
+
+    @Override
+    public Entity getEntity(int handle) {
+        Entity ent = entityHandles.get(handle);
+        if (ent == null)
+            throw new RuntimeException(Entity.class.getSimpleName() + " not found: handle " + handle);
+
+        return ent;
+    }
+
     @Override
     public Iterable<Entity> getEntities() {
         return entityMap.values();
@@ -215,12 +273,47 @@ final class GenericSceneManager implements SceneManager {
 
     @Override
     public void destroyEntity(String name) {
+        Entity ent = entityMap.get(name);
+        if (ent != null) {
+            entityHandles.remove(ent.getHandle());
+            if (poolEntity(ent)) {
+                entityMap.remove(name);
+                return;
+            }
+        }
+
         destroySceneObject(name, entityMap);
     }
 
+    private boolean poolEntity(Entity ent) {
+        if (poolCapacity == 0 || !(ent instanceof GenericEntity))
+            return false;
+
+        GenericEntity ge = (GenericEntity) ent;
+        if (!ge.canBePooled())
+            return false;
+
+        ArrayDeque<GenericEntity> pool = entityPools.get(ge.getMesh());
+        if (pool == null) {
+            pool = new ArrayDeque<>();
+            entityPools.put(ge.getMesh(), pool);
+        }
+        if (pool.size() >= poolCapacity)
+            return false;
+
+        ge.notifyPooled();
+        pool.push(ge);
+        return true;
+    }
+
+    private GenericEntity takePooledEntity(Mesh mesh) {
+        ArrayDeque<GenericEntity> pool = entityPools.get(mesh);
+        return pool != null ? pool.poll() : null;
+    }
+
     @Override
     public void destroyEntity(Entity e) {
-        destroySceneObject(e.getName(), entityMap);
+        destroyEntity(e.getName());
     }
 
     @Override
@@ -237,7 +330,8 @@ final class GenericSceneManager implements SceneManager {
 
         Mesh mesh = meshManager.getAsset(Paths.get(meshPath));
         Skeleton skeleton = skeletonManager.getAsset(Paths.get(skeletonPath));
-        SkeletalEntity skeletalEntity = new GenericSkeletalEntity(this, name, mesh, skeleton);
+        GenericSkeletalEntity skeletalEntity = new GenericSkeletalEntity(this, name, mesh, skeleton);
+        skeletalEntity.notifyHandle(entityHandles.add(skeletalEntity));
         skeletalEntity.setGpuShaderProgram(renderSystem.getGpuShaderProgram(GpuShaderProgram.Type.SKELETAL_RENDERING));
         skeletalEntity.setDepthShaderProgram(renderSystem.getGpuShaderProgram(GpuShaderProgram.Type.DEPTH));
         
@@ -436,6 +530,59 @@ final class GenericSceneManager implements SceneManager {
         destroySceneObject(obj.getName(), tessellationMap);
     }
 
+    @Override
+    public ParticleSystem createParticleSystem(String name, int maxParticles) {
+        if (name.isEmpty())
+            throw new IllegalArgumentException("Name is empty");
+        if (particleSystemMap.containsKey(name))
+            throw new RuntimeException(ParticleSystem.class.getSimpleName() + " already exists: " + name);
+
+        ParticleSystem ps = new GenericParticleSystem(this, name, maxParticles);
+        ps.setGpuShaderProgram(renderSystem.getGpuShaderProgram(GpuShaderProgram.Type.RENDERING));
+        try {
+            ps.setMaterial(materialManager.getAssetByPath("default.mtl"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        particleSystemMap.put(name, ps);
+        return ps;
+    }
+
+    @Override
+    public boolean hasParticleSystem(String name) {
+        return particleSystemMap.containsKey(name);
+    }
+
+    @Override
+    public ParticleSystem getParticleSystem(String name) {
+        ParticleSystem ps = particleSystemMap.get(name);
+        if (ps == null)
+            throw new RuntimeException(ParticleSystem.class.getSimpleName() + " not found: " + name);
+
+        return ps;
+    }
+
+    @Override
+    public Iterable<ParticleSystem> getParticleSystems() {
+        return particleSystemMap.values();
+    }
+
+    @Override
+    public int getParticleSystemCount() {
+        return particleSystemMap.size();
+    }
+
+    @Override
+    public void destroyParticleSystem(String name) {
+        destroySceneObject(name, particleSystemMap);
+    }
+
+    @Override
+    public void destroyParticleSystem(ParticleSystem ps) {
+        destroySceneObject(ps.getName(), particleSystemMap);
+    }
+
     @Override
     public SceneNode getRootSceneNode() {
         return rootSceneNode;
@@ -446,7 +593,16 @@ final class GenericSceneManager implements SceneManager {
         if (sceneNodeMap.containsKey(name))
             throw new RuntimeException(SceneNode.class.getSimpleName() + " already exists: " + name);
 
-        SceneNode sn = new GenericSceneNode(this, name);
+        GenericSceneNode sn = sceneNodePool.poll();
+        if (sn != null)
+            sn.notifyReused(name);
+        else
+            sn = new GenericSceneNode(this, name);
+
+        sn.notifyHandle(sceneNodeHandles.add(sn));
+        if (transformStore != null)
+            sn.useTransformStore(transformStore);
+
         sceneNodeMap.put(name, sn);
         return sn;
     }
@@ -465,6 +621,20 @@ final class GenericSceneManager implements SceneManager {
         return sn;
     }
 
+    @Override
+    public boolean hasSceneNode(int handle) {
+        return sceneNodeHandles.get(handle) != null;
+    }
+
+    @Override
+    public SceneNode getSceneNode(int handle) {
+        SceneNode sn = sceneNodeHandles.get(handle);
+        if (sn == null)
+            throw new RuntimeException(SceneNode.class.getSimpleName() + " not found: handle " + handle);
+
+        return sn;
+    }
+
     @Override
     public Iterable<SceneNode> getSceneNodes() {
         return sceneNodeMap.values();
@@ -490,6 +660,17 @@ final class GenericSceneManager implements SceneManager {
 
         sn.detachAllChildren();
         sn.detachAllObjects();
+        ((GenericSceneNode) sn).releaseTransformSlot();
+        sceneNodeHandles.remove(sn.getHandle());
+
+        // a controller still holding the node would keep changing it after
+        // it's handed out again by createSceneNode
+        removeNodeFromControllers(sn);
+
+        if (sceneNodePool.size() < poolCapacity) {
+            ((GenericSceneNode) sn).notifyPooled();
+            sceneNodePool.push((GenericSceneNode) sn);
+        }
     }
 
     @Override
@@ -497,6 +678,84 @@ final class GenericSceneManager implements SceneManager {
         destroySceneNode(sn.getName());
     }
 
+    @Override
+    public SceneNode instantiate(SceneNode template, String nameSuffix) {
+        if (template == null)
+            throw new NullPointerException("Null template");
+        if (nameSuffix.isEmpty())
+            throw new IllegalArgumentException("Name suffix is empty");
+
+        // check everything before creating anything, so that a bad template
+        // doesn't leave half an instance behind
+        List<SceneNode> nodes = new ArrayList<>();
+        collectSubtree(template, nodes);
+        for (SceneNode sn : nodes) {
+            if (sceneNodeMap.containsKey(sn.getName() + nameSuffix))
+                throw new RuntimeException(SceneNode.class.getSimpleName() + " already exists: " + sn.getName() + nameSuffix);
+
+            for (SceneObject so : sn.getAttachedObjects()) {
+                if (!(so instanceof GenericEntity))
+                    throw new IllegalArgumentException("Cannot instantiate " + so.getClass().getSimpleName() + ": " + so.getName());
+                if (entityMap.containsKey(so.getName() + nameSuffix))
+                    throw new RuntimeException(so.getName() + nameSuffix + " already exists");
+            }
+        }
+
+        return instantiateNode(template, nameSuffix);
+    }
+
+    private SceneNode instantiateNode(SceneNode src, String nameSuffix) {
+        SceneNode sn = createSceneNode(src.getName() + nameSuffix);
+        sn.setLocalPosition(src.getLocalPosition());
+        sn.setLocalRotation(src.getLocalRotation());
+        sn.setLocalScale(src.getLocalScale());
+
+        for (SceneObject so : src.getAttachedObjects()) {
+            GenericEntity srcEntity = (GenericEntity) so;
+            GenericEntity entity = new GenericEntity(this, srcEntity.getName() + nameSuffix, srcEntity.getMesh());
+            entity.notifyHandle(entityHandles.add(entity));
+            entity.shareStatesOf(srcEntity);
+            entity.setVisible(srcEntity.isVisible());
+            entityMap.put(entity.getName(), entity);
+            sn.attachObject(entity);
+        }
+
+        for (Node child : src.getChildNodes())
+            sn.attachChild(instantiateNode((SceneNode) child, nameSuffix));
+
+        return sn;
+    }
+
+    @Override
+    public void destroySceneNodeTree(SceneNode root) {
+        if (root == rootSceneNode)
+            throw new IllegalArgumentException("Cannot destroy the root " + SceneNode.class.getSimpleName());
+
+        List<SceneNode> nodes = new ArrayList<>();
+        collectSubtree(root, nodes);
+
+        List<SceneObject> objects = new ArrayList<>();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            SceneNode sn = nodes.get(i);
+            objects.clear();
+            for (SceneObject so : sn.getAttachedObjects())
+                objects.add(so);
+
+            sn.detachAllObjects();
+            for (SceneObject so : objects)
+                if (so instanceof Entity)
+                    destroyEntity((Entity) so);
+
+            destroySceneNode(sn);
+        }
+    }
+
+    private static void collectSubtree(SceneNode sn, List<SceneNode> nodes) {
+        nodes.add(sn);
+        for (Node child : sn.getChildNodes())
+            collectSubtree((SceneNode) child, nodes);
+    }
+
     @Override
     public AmbientLight getAmbientLight() {
         return ambientLight;
@@ -557,13 +816,23 @@ final class GenericSceneManager implements SceneManager {
     @Override
     public void destroyAllSceneObjects() {
         destroySceneObjectsMap(cameraMap);
+        for (Entity e : entityMap.values())
+            entityHandles.remove(e.getHandle());
         destroySceneObjectsMap(entityMap);
         destroySceneObjectsMap(manualObjMap);
         destroySceneObjectsMap(skyBoxMap);
         destroySceneObjectsMap(tessellationMap);
+        destroySceneObjectsMap(particleSystemMap);
         destroySceneObjectsMap(lightMap);
 
         // detach everything from everything, but always keep the root node
+        for (SceneNode sn : sceneNodeMap.values()) {
+            if (sn != rootSceneNode) {
+                ((GenericSceneNode) sn).releaseTransformSlot();
+                sceneNodeHandles.remove(sn.getHandle());
+            }
+        }
+
         destroySceneNodesMap(sceneNodeMap);
         sceneNodeMap.put(rootSceneNode.getName(), rootSceneNode);
 
@@ -572,9 +841,37 @@ final class GenericSceneManager implements SceneManager {
         removeNodesFromControllers();
         removeAllControllers();
 
+        spatialIndex.clear();
+        movedEntities.clear();
+        screenSpaceEntities.clear();
+        trimPools(0);
+
         ambientLight.notifyDispose();
     }
 
+    @Override
+    public void setPoolCapacity(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Pool capacity must be >= 0");
+
+        poolCapacity = capacity;
+        trimPools(capacity);
+    }
+
+    @Override
+    public int getPoolCapacity() {
+        return poolCapacity;
+    }
+
+    private void trimPools(int capacity) {
+        while (sceneNodePool.size() > capacity)
+            sceneNodePool.pop();
+
+        for (ArrayDeque<GenericEntity> pool : entityPools.values())
+            while (pool.size() > capacity)
+                pool.pop().notifyDispose();
+    }
+
     @Override
     public void addController(Node.Controller ctrl) {
         if (ctrl == null)
@@ -595,21 +892,15 @@ final class GenericSceneManager implements SceneManager {
 
     @Override
     public void updateControllers(float time) {
-    	Iterator<Node.Controller> iter = nodeControllers.iterator();
-    	while (iter.hasNext()) {
-    		Node.Controller nc = iter.next();
-    		if (nc.isEnabled()) {
-                nc.update(time);
-        		if (nc.isShouldDelete()) {
-        			iter.remove();
-            	}
-            }
-    	}
+        nodeControllers.update(time);
+
+        for (ParticleSystem ps : particleSystemMap.values())
+            ps.update(time);
     }
 
     @Override
     public Iterable<Node.Controller> getControllers() {
-        return nodeControllers;
+        return nodeControllers.getControllers();
     }
 
     @Override
@@ -617,43 +908,96 @@ final class GenericSceneManager implements SceneManager {
         nodeControllers.clear();
     }
 
+    @Override
+    public void setControllerThreadCount(int count) {
+        nodeControllers.setThreadCount(count);
+    }
+
+    @Override
+    public int getControllerThreadCount() {
+        return nodeControllers.getThreadCount();
+    }
+
+    @Override
+    public void setControllerTimeBudgetMillis(float budgetMillis) {
+        nodeControllers.setTimeBudgetMillis(budgetMillis);
+    }
+
+    @Override
+    public float getControllerTimeBudgetMillis() {
+        return nodeControllers.getTimeBudgetMillis();
+    }
+
     private void removeNodesFromControllers() {
-        for (Node.Controller c : nodeControllers)
+        for (Node.Controller c : nodeControllers.getControllers())
             c.removeAllNodes();
     }
 
+    private void removeNodeFromControllers(Node node) {
+        for (Node.Controller c : nodeControllers.getControllers())
+            c.removeNode(node);
+    }
+
     @Override
     public void updateSceneGraph() {
         emitPreUpdateSceneGraph();
 
-        // For this implementation, we update the entire graph starting at the
-        // root. A smarter manager might want to focus on updating specific
-        // branches of the graph.
+        // For this implementation, we update the graph starting at the root.
+        // Nodes keep track of which branches have changed, so only those are
+        // visited.
         rootSceneNode.update();
+        refreshSpatialIndex();
 
         emitPostUpdateSceneGraph();
     }
 
+    @Override
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * Called by nodes when an object is attached to or detached from them, and
+     * when their world transform changes, so that the object can be moved in
+     * the {@link SpatialIndex index}.
+     */
+    void notifyObjectMoved(SceneObject so) {
+        if (so instanceof Entity)
+            movedEntities.add((Entity) so);
+    }
+
+    private void refreshSpatialIndex() {
+        if (movedEntities.isEmpty())
+            return;
+
+        for (Entity e : movedEntities) {
+            if (!e.isAttached()) {
+                spatialIndex.remove(e);
+                screenSpaceEntities.remove(e);
+            } else if (isScreenSpace(e)) {
+                spatialIndex.remove(e);
+                screenSpaceEntities.add(e);
+            } else {
+                screenSpaceEntities.remove(e);
+                spatialIndex.update(e, e.getWorldBounds());
+            }
+        }
+        movedEntities.clear();
+    }
+
     @Override
     public void renderScene() {
         setRenderSystemLights();
 
-        // TODO: use separate queues
-        prepareSkyBoxRenderQueue();
-        prepareManualObjectsQueue();
-        prepareEntityRenderQueue();
-        prepareTessellationQueue();
-
         emitPreRenderQueues();
 
         // cameras render the scenes from their own perspectives, invoke
-        // registered listeners, and notify the scene manager
-        
+        // registered listeners, and notify the scene manager, which fills
+        // the render queue with what each camera can see
         for (Camera c : cameraMap.values())
             c.renderScene();
 
         emitPostRenderQueues();
-        renderQueue.clear();
 
         // the render system is expected to have automatic buffer swapping
         // disabled by default to avoid swapping buffers repeatedly if there're
@@ -677,7 +1021,22 @@ final class GenericSceneManager implements SceneManager {
 
         renderSystem.clearViewport(vp);
         Camera.Frustum frustum = cam.getFrustum();
-        processRenderQueue(renderQueue, vp, cam.getParentNode().getWorldPosition(), frustum.getViewMatrix(), frustum.getProjectionMatrix());
+        Matrix4 view = frustum.getViewMatrix();
+        Matrix4 proj = frustum.getProjectionMatrix();
+        cullingPlanes.set(view, proj);
+        shadowPlanes.set(ShadowVolume.createViewMatrix(cam.getParentNode().getWorldPosition()),
+                ShadowVolume.getProjectionMatrix());
+        refreshSpatialIndex();
+
+        // TODO: use separate queues
+        prepareSkyBoxRenderQueue();
+        prepareManualObjectsQueue();
+        prepareEntityRenderQueue();
+        prepareTessellationQueue();
+        prepareParticleSystemQueue();
+
+        processRenderQueue(renderQueue, vp, cam.getParentNode().getWorldPosition(), view, proj);
+        renderQueue.clear();
     }
 
     @Override
@@ -769,6 +1128,21 @@ final class GenericSceneManager implements SceneManager {
             throw new NullPointerException("Null " + Configuration.class.getSimpleName());
 
         configuration = conf;
+
+        // node transforms can be kept in flat arrays instead of per-node
+        // objects; this must be decided before any nodes other than the root
+        // have been created
+        if (transformStore == null && Boolean.parseBoolean(conf.valueOf("scene.transforms.flat"))) {
+            if (sceneNodeMap.size() > 1)
+                throw new IllegalStateException("Flat transforms must be enabled before creating scene nodes");
+
+            transformStore = new GenericTransformStore();
+            ((GenericSceneNode) rootSceneNode).useTransformStore(transformStore);
+        }
+
+        setPoolCapacity(Integer.parseInt(conf.valueOf("scene.pool.capacity")));
+        setControllerThreadCount(Integer.parseInt(conf.valueOf("scene.controllers.threads")));
+        setControllerTimeBudgetMillis(Float.parseFloat(conf.valueOf("scene.controllers.budget")));
     }
 
     @Override
@@ -821,7 +1195,12 @@ final class GenericSceneManager implements SceneManager {
         cameraMap = null;
         entityMap = null;
         manualObjMap = null;
+        particleSystemMap = null;
         lightMap = null;
+        sceneNodePool = null;
+        entityPools = null;
+        nodeControllers.dispose();
+        nodeControllers = null;
         renderQueue = null;
         renderQueueListeners = null;
         meshManager = null;
@@ -834,10 +1213,41 @@ final class GenericSceneManager implements SceneManager {
     }
 
     private void prepareEntityRenderQueue() {
-        for (Entity e : entityMap.values())
-            if (e.isVisible() && e.isInScene())
+        // entities outside the view are left out of the colour pass;
+        // overlays are kept out of the index and always queued
+        visibleEntities.clear();
+        spatialIndex.queryFrustum(cullingPlanes, visibleEntities);
+        for (Entity e : screenSpaceEntities)
+            if (e.isInScene())
+                visibleEntities.add(e);
+
+        for (Entity e : visibleEntities)
+            if (e.isVisible())
                 for (Renderable se : e.getSubEntities())
                     renderQueue.add(se);
+        visibleEntities.clear();
+
+        // entities behind or beside the camera can still cast a shadow into
+        // the view; the index holds their current world bounds, so the
+        // second test agrees with the first query
+        spatialIndex.queryFrustum(shadowPlanes, visibleEntities);
+        for (Entity e : visibleEntities)
+            if (e.isVisible() && !cullingPlanes.intersects(e.getWorldBounds()))
+                for (Renderable se : e.getSubEntities())
+                    renderQueue.addShadowCaster(se);
+        visibleEntities.clear();
+    }
+
+    private static boolean isScreenSpace(Entity e) {
+        // overlays are placed in screen space by their shaders, so their world
+        // bounds say nothing about whether they can be seen
+        for (Renderable se : e.getSubEntities()) {
+            GpuShaderProgram program = se.getGpuShaderProgram();
+            if (program != null && (program.getType() == GpuShaderProgram.Type.GUI
+                    || program.getType() == GpuShaderProgram.Type.GUI_BACKGROUND))
+                return true;
+        }
+        return false;
     }
 
     private void prepareSkyBoxRenderQueue() {
@@ -859,6 +1269,12 @@ final class GenericSceneManager implements SceneManager {
             	renderQueue.add(t.getTessellationBody());
     }
 
+    private void prepareParticleSystemQueue() {
+        for (ParticleSystem ps : particleSystemMap.values())
+            if (ps.getParticleCount() > 0 && ps.isVisible() && ps.isInScene())
+                renderQueue.add(ps.getRenderable());
+    }
+
     private void setRenderSystemLights() {
         renderSystem.setAmbientLight(ambientLight);
 
@@ -46,6 +46,12 @@ import ray.rml.*;
  */
 final class GenericSceneNode implements SceneNode {
 
+    // the local transform of a new node; vectors and quaternions are
+    // immutable, so pooled nodes can be reset to these without allocating
+    private static final Vector3     DEFAULT_POSITION    = Vector3f.createZeroVector();
+    private static final Quaternion  DEFAULT_ORIENTATION = Quaternionf.createIdentityQuaternion();
+    private static final Vector3     DEFAULT_SCALE       = Vector3f.createFrom(1f, 1f, 1f);
+
     private String                   name;
     private SceneManager             sceneManager;
     private Node                     parentNode;
@@ -58,8 +64,21 @@ final class GenericSceneNode implements SceneNode {
     private Transform                localTransform  = Transform.createDefault();
     private Transform                worldTransform  = Transform.createDefault();
 
+    // world transforms are derived lazily; changing a local transform only
+    // marks this node and its subtree as out of sync, and marks the ancestors
+    // so that the next update can skip the branches where nothing changed.
+    // if a node is out of sync, then so is its whole subtree
     private boolean                  isInSceneGraph  = false;
     private boolean                  parentOutOfSync = true;
+    private boolean                  childOutOfSync  = false;
+    private boolean                  worldChanged    = false;
+
+    // when set, the transforms live in the store's flat arrays instead of the
+    // objects above, and the store does the bookkeeping
+    private GenericTransformStore    transformStore  = null;
+    private int                      transformSlot   = -1;
+
+    private int                      handle          = 0;
 
     // The LHM implementations are used to guarantee that keys are always
     // returned in the order in which they were inserted; this makes the
@@ -97,6 +116,44 @@ final class GenericSceneNode implements SceneNode {
         return name;
     }
 
+    @Override
+    public int getHandle() {
+        return handle;
+    }
+
+    void notifyHandle(int h) {
+        handle = h;
+    }
+
+    /**
+     * Puts <code>this</code> node back in the state it was created in, so
+     * that its manager can keep it for reuse. The node must already be
+     * detached, have no children or objects, and have no transform slot.
+     */
+    void notifyPooled() {
+        nodeListener = null;
+        physicsObject = null;
+        handle = 0;
+
+        localTransform.setPosition(DEFAULT_POSITION);
+        localTransform.setOrientation(DEFAULT_ORIENTATION);
+        localTransform.setScale(DEFAULT_SCALE);
+        isInSceneGraph = false;
+        parentOutOfSync = true;
+        childOutOfSync = false;
+        worldChanged = false;
+    }
+
+    /**
+     * Gives a pooled node the name it's being reused under.
+     */
+    void notifyReused(String newName) {
+        if (newName.isEmpty())
+            throw new IllegalArgumentException("Empty name");
+
+        name = newName;
+    }
+
     @Override
     public SceneManager getManager() {
         return sceneManager;
@@ -121,13 +178,19 @@ final class GenericSceneNode implements SceneNode {
 
     @Override
     public void setLocalPosition(Vector3 pv) {
+        if (transformStore != null) {
+            transformStore.setLocalPosition(transformSlot, pv);
+            return;
+        }
         localTransform.setPosition(pv);
-        updateWorldPosition();
-        parentOutOfSync = true;
+        invalidateWorld();
     }
 
     @Override
     public Vector3 getLocalPosition() {
+        if (transformStore != null)
+            return transformStore.getLocalPosition(transformSlot);
+
         return localTransform.position();
     }
 
@@ -138,50 +201,108 @@ final class GenericSceneNode implements SceneNode {
 
     @Override
     public void setLocalScale(Vector3 sv) {
+        if (transformStore != null) {
+            transformStore.setLocalScale(transformSlot, sv);
+            return;
+        }
         localTransform.setScale(sv);
-        updateWorldScale();
-        parentOutOfSync = true;
+        invalidateWorld();
     }
 
     @Override
     public Vector3 getLocalScale() {
+        if (transformStore != null)
+            return transformStore.getLocalScale(transformSlot);
+
         return localTransform.scale();
     }
 
     @Override
     public void setLocalRotation(Matrix3 rm) {
+        if (transformStore != null) {
+            transformStore.setLocalRotation(transformSlot, rm);
+            return;
+        }
         localTransform.setRotation(rm);
-        updateWorldRotation();
-        parentOutOfSync = true;
+        invalidateWorld();
     }
 
     @Override
     public Matrix3 getLocalRotation() {
+        if (transformStore != null)
+            return transformStore.getLocalRotation(transformSlot);
+
         return localTransform.rotation();
     }
 
+    @Override
+    public void setLocalOrientation(Quaternion q) {
+        if (transformStore != null) {
+            transformStore.setLocalOrientation(transformSlot, q);
+            return;
+        }
+        localTransform.setOrientation(q);
+        invalidateWorld();
+    }
+
+    @Override
+    public Quaternion getLocalOrientation() {
+        if (transformStore != null)
+            return transformStore.getLocalOrientation(transformSlot);
+
+        return localTransform.orientation();
+    }
+
     @Override
     public Matrix4 getLocalTransform() {
+        if (transformStore != null)
+            return transformStore.getLocalTransform(transformSlot);
+
         return localTransform.toMatrixTRS();
     }
 
     @Override
     public Vector3 getWorldPosition() {
+        if (transformStore != null)
+            return transformStore.getWorldPosition(transformSlot);
+
+        syncWorld();
         return worldTransform.position();
     }
 
     @Override
     public Matrix3 getWorldRotation() {
+        if (transformStore != null)
+            return transformStore.getWorldRotation(transformSlot);
+
+        syncWorld();
         return worldTransform.rotation();
     }
 
+    @Override
+    public Quaternion getWorldOrientation() {
+        if (transformStore != null)
+            return transformStore.getWorldOrientation(transformSlot);
+
+        syncWorld();
+        return worldTransform.orientation();
+    }
+
     @Override
     public Vector3 getWorldScale() {
+        if (transformStore != null)
+            return transformStore.getWorldScale(transformSlot);
+
+        syncWorld();
         return worldTransform.scale();
     }
 
     @Override
     public Matrix4 getWorldTransform() {
+        if (transformStore != null)
+            return transformStore.getWorldTransform(transformSlot);
+
+        syncWorld();
         return worldTransform.toMatrixTRS();
     }
 
@@ -222,9 +343,7 @@ final class GenericSceneNode implements SceneNode {
 
     @Override
     public void translate(Vector3 tv) {
-        localTransform.setPosition(localTransform.position().add(tv));
-        updateWorldPosition();
-        parentOutOfSync = true;
+        setLocalPosition(getLocalPosition().add(tv));
     }
 
     @Override
@@ -248,10 +367,10 @@ final class GenericSceneNode implements SceneNode {
             throw new NullPointerException("Null rotation " + Angle.class.getSimpleName());
         if (axis == null)
             throw new NullPointerException("Null rotation axis " + Vector3.class.getSimpleName());
-        
-        localTransform.setRotation(localTransform.rotation().rotate(angle, axis));
-        updateWorldRotation();
-        parentOutOfSync = true;
+
+        // composing quaternions renormalizes the result, so repeated small
+        // rotations don't drift away from a pure rotation
+        setLocalOrientation(getLocalOrientation().mult(Quaternionf.createFrom(angle, axis.normalize())));
     }
 
     @Override
@@ -264,9 +383,7 @@ final class GenericSceneNode implements SceneNode {
         if (sv == null)
             throw new NullPointerException("Null scaling " + Vector3.class.getSimpleName());
 
-        localTransform.setScale(localTransform.scale().mult(sv));
-        updateWorldScale();
-        parentOutOfSync = true;
+        setLocalScale(getLocalScale().mult(sv));
     }
 
     @Override
@@ -286,9 +403,7 @@ final class GenericSceneNode implements SceneNode {
         if (up == null)
             throw new NullPointerException("Null up direction " + Vector3.class.getSimpleName());
 
-        localTransform.setRotation(Matrix4f.createLookAtMatrix(worldTransform.position(), target, up).toMatrix3());
-        updateWorldRotation();
-        parentOutOfSync = true;
+        setLocalRotation(Matrix4f.createLookAtMatrix(getWorldPosition(), target, up).toMatrix3());
     }
 
     @Override
@@ -303,32 +418,32 @@ final class GenericSceneNode implements SceneNode {
 
     @Override
     public Vector3 getLocalRightAxis() {
-        return localTransform.rotation().column(0);  // scott
+        return getLocalRotation().column(0);  // scott
     }
 
     @Override
     public Vector3 getLocalUpAxis() {
-        return localTransform.rotation().column(1);
+        return getLocalRotation().column(1);
     }
 
     @Override
     public Vector3 getLocalForwardAxis() {
-        return localTransform.rotation().column(2); // scott
+        return getLocalRotation().column(2); // scott
     }
 
     @Override
     public Vector3 getWorldRightAxis() {
-        return worldTransform.rotation().column(0);  // scott
+        return getWorldRotation().column(0);  // scott
     }
 
     @Override
     public Vector3 getWorldUpAxis() {
-        return worldTransform.rotation().column(1);
+        return getWorldRotation().column(1);
     }
 
     @Override
     public Vector3 getWorldForwardAxis() {
-        return worldTransform.rotation().column(2); // scott
+        return getWorldRotation().column(2); // scott
     }
 
     @Override
@@ -406,7 +521,7 @@ final class GenericSceneNode implements SceneNode {
                 notifyInSceneGraph(false);
             }
             emitNodeAttached(this, newParent);
-            parentOutOfSync = true;
+            invalidateWorld();
         }
     }
 
@@ -421,7 +536,7 @@ final class GenericSceneNode implements SceneNode {
             parentNode = null;
             notifyInSceneGraph(false);
             emitNodeDetached(this, oldParent);
-            parentOutOfSync = true;
+            invalidateWorld();
         }
     }
 
@@ -431,7 +546,7 @@ final class GenericSceneNode implements SceneNode {
             throw new RuntimeException(name + " is a child of '" + parentNode.getName() + "' and cannot be root");
 
         isInSceneGraph = true;
-        parentOutOfSync = true;
+        invalidateWorld();
     }
 
     @Override
@@ -441,25 +556,47 @@ final class GenericSceneNode implements SceneNode {
 
     @Override
     public void update(boolean updateChildren, boolean parentHasChanged) {
+        if (transformStore != null) {
+            // a single pass over the store updates every node in it
+            transformStore.update();
+            return;
+        }
+
         // account for previous changes the caller may not be accounting for
         boolean updateRequired = parentHasChanged || parentOutOfSync;
 
         if (updateRequired)
             updateFromParent();
 
-        if (updateChildren)
+        // unchanged branches are skipped entirely, so static parts of the
+        // graph cost nothing per frame
+        if (updateChildren && (updateRequired || childOutOfSync)) {
             for (Node n : childNodesMap.values())
                 n.update(updateChildren, updateRequired);
 
-        emitNodeUpdated(this);
+            childOutOfSync = false;
+        }
+
+        // the world transforms may also have been brought up to date by a
+        // getter since the last update; report them here either way
+        if (worldChanged) {
+            worldChanged = false;
+            emitNodeUpdated(this);
+        }
     }
 
     @Override
     public void updateFromParent() {
+        if (transformStore != null) {
+            transformStore.sync(transformSlot);
+            return;
+        }
+
         updateWorldPosition();
         updateWorldRotation();
         updateWorldScale();
         parentOutOfSync = false;
+        worldChanged = true;
     }
 
     @Override
@@ -492,6 +629,7 @@ final class GenericSceneNode implements SceneNode {
 
         sceneObjMap.put(obj.getName(), obj);
         obj.notifyAttached(this);
+        notifyObjectMoved(obj);
     }
 
     @Override
@@ -540,6 +678,7 @@ final class GenericSceneNode implements SceneNode {
             throw new RuntimeException(name + " is not attached to " + getName());
 
         obj.notifyDetached();
+        notifyObjectMoved(obj);
         return obj;
     }
 
@@ -547,8 +686,10 @@ final class GenericSceneNode implements SceneNode {
     public void detachAllObjects() {
         // avoid detachObject(SceneObject) to avoid
         // ConcurrentModificationException
-        for (SceneObject obj : sceneObjMap.values())
+        for (SceneObject obj : sceneObjMap.values()) {
             obj.notifyDetached();
+            notifyObjectMoved(obj);
+        }
 
         sceneObjMap.clear();
     }
@@ -577,41 +718,147 @@ final class GenericSceneNode implements SceneNode {
         StringBuilder sb = new StringBuilder();
 
         sb.append(GenericSceneNode.class.getSimpleName() + "=" + name);
-        sb.append(": LocalPosition=" + localTransform.position());
+        sb.append(": LocalPosition=" + getLocalPosition());
         sb.append(", LocalForward=" + getLocalForwardAxis());
         sb.append(", LocalRight=" + getLocalRightAxis());
         sb.append(", LocalUp=" + getLocalUpAxis());
-        sb.append(", LocalScale=" + localTransform.scale());
-        sb.append(", WorldPosition=" + worldTransform.position());
+        sb.append(", LocalScale=" + getLocalScale());
+        sb.append(", WorldPosition=" + getWorldPosition());
         sb.append(", WorldForward=" + getWorldForwardAxis());
         sb.append(", WorldRight=" + getWorldRightAxis());
         sb.append(", WorldUp=" + getWorldUpAxis());
-        sb.append(", WorldScale=" + worldTransform.scale());
+        sb.append(", WorldScale=" + getWorldScale());
         sb.append(", InGraph=" + (isInSceneGraph ? "True" : "False"));
         sb.append(", Parent=" + (parentNode != null ? parentNode.getName() : "N/A"));
 
         return sb.toString();
     }
 
+    private void syncWorld() {
+        // the parent's getters bring the ancestors up to date first
+        if (parentOutOfSync)
+            updateFromParent();
+    }
+
+    private void invalidateWorld() {
+        if (transformStore != null) {
+            transformStore.setParent(transformSlot, getParentSlot());
+            return;
+        }
+
+        invalidateSubtree();
+
+        // let the ancestors know that this branch needs to be visited by the
+        // next update; stop at the first one that already knows
+        Node n = parentNode;
+        while (n instanceof GenericSceneNode) {
+            GenericSceneNode sn = (GenericSceneNode) n;
+            if (sn.childOutOfSync)
+                break;
+
+            sn.childOutOfSync = true;
+            n = sn.parentNode;
+        }
+    }
+
+    private void invalidateSubtree() {
+        // an out of sync node's subtree is already out of sync
+        if (parentOutOfSync)
+            return;
+
+        parentOutOfSync = true;
+
+        // a getter may sync this node before the next update does, and the
+        // update must still visit the children so they report their moves
+        if (!childNodesMap.isEmpty())
+            childOutOfSync = true;
+
+        for (Node n : childNodesMap.values())
+            if (n instanceof GenericSceneNode)
+                ((GenericSceneNode) n).invalidateSubtree();
+    }
+
+    /**
+     * Moves <code>this</code> {@link SceneNode scene-node's} transforms into
+     * the given store. This must be done before it is attached anywhere.
+     *
+     * @param store
+     *            The {@link GenericTransformStore store} shared by the nodes
+     *            of the same {@link SceneManager manager}.
+     * @throws IllegalStateException
+     *             If <code>this</code> node has a parent or any children.
+     */
+    void useTransformStore(GenericTransformStore store) {
+        if (parentNode != null || !childNodesMap.isEmpty())
+            throw new IllegalStateException(name + " is already part of a graph");
+
+        transformStore = store;
+        transformSlot = store.add(this);
+        store.setLocalPosition(transformSlot, localTransform.position());
+        store.setLocalOrientation(transformSlot, localTransform.orientation());
+        store.setLocalScale(transformSlot, localTransform.scale());
+    }
+
+    /**
+     * Gives <code>this</code> node's slot back to its store, keeping the
+     * current local transform, so the node still works if it is used after
+     * being destroyed. The node must not have any children.
+     */
+    void releaseTransformSlot() {
+        if (transformStore == null)
+            return;
+
+        localTransform = Transform.createFrom(getLocalPosition(), getLocalOrientation(), getLocalScale());
+        transformStore.remove(transformSlot);
+        transformStore = null;
+        transformSlot = -1;
+        parentOutOfSync = true;
+    }
+
+    /**
+     * Called by the store when it moves <code>this</code> node's transforms
+     * to a different slot.
+     */
+    void notifyTransformSlot(int slot) {
+        transformSlot = slot;
+    }
+
+    private int getParentSlot() {
+        if (parentNode == null)
+            return -1;
+
+        if (!(parentNode instanceof GenericSceneNode) || ((GenericSceneNode) parentNode).transformStore != transformStore)
+            throw new IllegalArgumentException(parentNode.getName() + " does not share the transform store of " + name);
+
+        return ((GenericSceneNode) parentNode).transformSlot;
+    }
+
     private void updateWorldPosition() {
         // @formatter:off
-        // worldPosition = parent.worldPosition + parent.worldRotation * (parent.worldScale * localPosition)
+        // worldPosition = parent.worldPosition + parent.worldOrientation * (parent.worldScale * localPosition)
         // @formatter:on
         if (parentNode != null) {
-            Vector3 scaledPos = parentNode.getWorldScale().mult(localTransform.position());
-            Vector3 worldPos = parentNode.getWorldPosition().add(parentNode.getWorldRotation().mult(scaledPos));
-            worldTransform.setPosition(worldPos);
+            // only the result is kept, so the steps use temporaries
+            final MathStack stack = MathStack.current();
+            stack.push();
+            try {
+                final MutableVector3f pos = stack.vector3().set(localTransform.position()).mult(parentNode.getWorldScale());
+                pos.rotate(parentNode.getWorldOrientation()).add(parentNode.getWorldPosition());
+                worldTransform.setPosition(pos.toVector3());
+            } finally {
+                stack.pop();
+            }
         } else {
             worldTransform.setPosition(localTransform.position());
         }
     }
 
     private void updateWorldRotation() {
-        // worldRotation = parent.worldRotation * localRotation
+        // worldOrientation = parent.worldOrientation * localOrientation
         if (parentNode != null)
-            worldTransform.setRotation(parentNode.getWorldRotation().mult(localTransform.rotation()));
+            worldTransform.setOrientation(parentNode.getWorldOrientation().mult(localTransform.orientation()));
         else
-            worldTransform.setRotation(localTransform.rotation());
+            worldTransform.setOrientation(localTransform.orientation());
     }
 
     private void updateWorldScale() {
@@ -627,11 +874,21 @@ final class GenericSceneNode implements SceneNode {
             nodeListener.onNodeAttached(child, newParent);
     }
 
-    private void emitNodeUpdated(Node n) {
+    void emitNodeUpdated(Node n) {
+        // attached objects moved along with this node
+        for (SceneObject obj : sceneObjMap.values())
+            notifyObjectMoved(obj);
+
         if (nodeListener != null)
             nodeListener.onNodeUpdated(n);
     }
 
+    private void notifyObjectMoved(SceneObject obj) {
+        // lets the manager keep its spatial index up to date
+        if (sceneManager instanceof GenericSceneManager)
+            ((GenericSceneManager) sceneManager).notifyObjectMoved(obj);
+    }
+
     private void emitNodeDetached(Node orphan, Node oldParent) {
         if (nodeListener != null)
             nodeListener.onNodeDetached(orphan, oldParent);
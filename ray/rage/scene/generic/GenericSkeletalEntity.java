@@ -30,6 +30,7 @@ import ray.rage.asset.material.Material;
 import ray.rage.asset.mesh.Mesh;
 import ray.rage.asset.mesh.SubMesh;
 import ray.rage.asset.skeleton.Skeleton;
+import ray.rage.math.BoundingSphere;
 import ray.rage.rendersystem.Renderable;
 import ray.rage.rendersystem.shader.GpuShaderProgram;
 import ray.rage.rendersystem.states.RenderState;
@@ -52,6 +53,7 @@ final class GenericSkeletalEntity extends AbstractGenericSceneObject implements
     private Mesh mesh;
     private Skeleton skeleton;
     private List<SubEntity> subEntityList;
+    private int handle = 0;
 
     private HashMap<String, Animation> animationsList = new HashMap<>();
 
@@ -446,6 +448,20 @@ final class GenericSkeletalEntity extends AbstractGenericSceneObject implements
         return mesh;
     }
 
+    @Override
+    public BoundingSphere getWorldBounds() {
+        return toWorldBounds(mesh.getBounds());
+    }
+
+    @Override
+    public int getHandle() {
+        return handle;
+    }
+
+    void notifyHandle(int h) {
+        handle = h;
+    }
+
     @Override
     public Iterable<SubEntity> getSubEntities() {
         return subEntityList;
@@ -0,0 +1,422 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.util.Arrays;
+
+import ray.rml.*;
+
+/**
+ * Keeps the local and world transforms of many {@link GenericSceneNode
+ * scene-nodes} in flat float arrays, one slot per node, instead of in
+ * per-node objects.
+ * <p>
+ * Slots are kept in topological order: a node's parent always has a lower
+ * slot than the node itself. World transforms can therefore be brought up to
+ * date with a single pass from the first slot to the last, where each slot
+ * only needs its parent's world transform, which the pass has already
+ * visited. Only slots whose local transform changed, or whose parent's world
+ * transform changed in the same pass, are recomputed.
+ * <p>
+ * Attaching a node under a parent with a higher slot breaks the order, and
+ * removing a node leaves a hole. Both are repaired by re-sorting the slots at
+ * the start of the next {@link #update()}.
+ * <p>
+ * Rotations are stored as unit quaternions, in the order
+ * <code>[w, x, y, z]</code> of {@link Quaternionf#toFloatArray()}, and
+ * renormalized whenever they're composed. Rotation {@link Matrix3 matrices}
+ * are only derived from them when asked for.
+ *
+ * @see GenericSceneNode
+ */
+final class GenericTransformStore {
+
+    private static final int    INITIAL_CAPACITY = 64;
+
+    private int                 count            = 0;
+    private GenericSceneNode[]  nodes            = new GenericSceneNode[INITIAL_CAPACITY];
+    private int[]               parent           = new int[INITIAL_CAPACITY];
+
+    private float[]             localPosition    = new float[INITIAL_CAPACITY * 3];
+    private float[]             localRotation    = new float[INITIAL_CAPACITY * 4];
+    private float[]             localScale       = new float[INITIAL_CAPACITY * 3];
+    private float[]             worldPosition    = new float[INITIAL_CAPACITY * 3];
+    private float[]             worldRotation    = new float[INITIAL_CAPACITY * 4];
+    private float[]             worldScale       = new float[INITIAL_CAPACITY * 3];
+
+    // the composed world matrices are built on request and kept until the
+    // world transform changes
+    private Matrix4[]           worldMatrix      = new Matrix4[INITIAL_CAPACITY];
+
+    // dirty: the local transform changed since the last update
+    // moved: the world transform changed during the last update
+    private boolean[]           dirty            = new boolean[INITIAL_CAPACITY];
+    private boolean[]           moved            = new boolean[INITIAL_CAPACITY];
+
+    private boolean             isChanged        = false;
+    private boolean             isOrderStale     = false;
+    private int[]               chain            = new int[16];
+
+    /**
+     * Gives the node a slot with an identity local transform and no parent.
+     *
+     * @return The node's slot.
+     */
+    int add(GenericSceneNode node) {
+        if (count == nodes.length)
+            grow();
+
+        int slot = count++;
+        nodes[slot] = node;
+        parent[slot] = -1;
+        setIdentity(localPosition, localRotation, localScale, slot);
+        setIdentity(worldPosition, worldRotation, worldScale, slot);
+        worldMatrix[slot] = null;
+        dirty[slot] = false;
+        moved[slot] = false;
+        return slot;
+    }
+
+    /**
+     * Frees the node's slot. The node must not have any children.
+     */
+    void remove(int slot) {
+        nodes[slot] = null;
+        parent[slot] = -1;
+        worldMatrix[slot] = null;
+        isOrderStale = true;
+    }
+
+    /**
+     * @param parentSlot
+     *            The parent's slot, or -1 to make the node a root.
+     */
+    void setParent(int slot, int parentSlot) {
+        parent[slot] = parentSlot;
+        if (parentSlot > slot)
+            isOrderStale = true;
+
+        markDirty(slot);
+    }
+
+    void setLocalPosition(int slot, Vector3 pv) {
+        int i = slot * 3;
+        localPosition[i] = pv.x();
+        localPosition[i + 1] = pv.y();
+        localPosition[i + 2] = pv.z();
+        markDirty(slot);
+    }
+
+    void setLocalRotation(int slot, Matrix3 rm) {
+        setLocalOrientation(slot, rm.toQuaternion());
+    }
+
+    void setLocalOrientation(int slot, Quaternion q) {
+        int i = slot * 4;
+        localRotation[i] = q.w();
+        localRotation[i + 1] = q.x();
+        localRotation[i + 2] = q.y();
+        localRotation[i + 3] = q.z();
+        markDirty(slot);
+    }
+
+    void setLocalScale(int slot, Vector3 sv) {
+        int i = slot * 3;
+        localScale[i] = sv.x();
+        localScale[i + 1] = sv.y();
+        localScale[i + 2] = sv.z();
+        markDirty(slot);
+    }
+
+    Vector3 getLocalPosition(int slot) {
+        return toVector3(localPosition, slot * 3);
+    }
+
+    Matrix3 getLocalRotation(int slot) {
+        return getLocalOrientation(slot).toMatrix3();
+    }
+
+    Quaternion getLocalOrientation(int slot) {
+        return toQuaternion(localRotation, slot * 4);
+    }
+
+    Vector3 getLocalScale(int slot) {
+        return toVector3(localScale, slot * 3);
+    }
+
+    Matrix4 getLocalTransform(int slot) {
+        return toMatrixTRS(localPosition, localRotation, localScale, slot);
+    }
+
+    Vector3 getWorldPosition(int slot) {
+        sync(slot);
+        return toVector3(worldPosition, slot * 3);
+    }
+
+    Matrix3 getWorldRotation(int slot) {
+        return getWorldOrientation(slot).toMatrix3();
+    }
+
+    Quaternion getWorldOrientation(int slot) {
+        sync(slot);
+        return toQuaternion(worldRotation, slot * 4);
+    }
+
+    Vector3 getWorldScale(int slot) {
+        sync(slot);
+        return toVector3(worldScale, slot * 3);
+    }
+
+    Matrix4 getWorldTransform(int slot) {
+        sync(slot);
+        if (worldMatrix[slot] == null)
+            worldMatrix[slot] = toMatrixTRS(worldPosition, worldRotation, worldScale, slot);
+
+        return worldMatrix[slot];
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Brings every world transform up to date in one pass over the slots,
+     * then notifies the listeners of the nodes that moved.
+     */
+    void update() {
+        if (isOrderStale)
+            sortSlots();
+
+        if (!isChanged)
+            return;
+
+        for (int i = 0; i < count; i++) {
+            int p = parent[i];
+            if (dirty[i] || (p >= 0 && moved[p])) {
+                computeWorld(i, p);
+                dirty[i] = false;
+                moved[i] = true;
+            } else {
+                moved[i] = false;
+            }
+        }
+        isChanged = false;
+
+        // listeners are notified after the pass, so they see a consistent
+        // graph
+        for (int i = 0; i < count; i++)
+            if (moved[i])
+                nodes[i].emitNodeUpdated(nodes[i]);
+    }
+
+    /**
+     * Brings the world transform of one slot up to date ahead of the next
+     * {@link #update()}, by recomputing it and its ancestors from the
+     * top-most one that changed. The slots stay dirty, so the next update
+     * still reaches their descendants.
+     */
+    void sync(int slot) {
+        if (!isChanged)
+            return;
+
+        int length = 0;
+        int top = -1;
+        for (int i = slot; i >= 0; i = parent[i]) {
+            if (length == chain.length)
+                chain = Arrays.copyOf(chain, length * 2);
+
+            chain[length++] = i;
+            if (dirty[i])
+                top = length;
+        }
+
+        for (int k = top - 1; k >= 0; k--)
+            computeWorld(chain[k], parent[chain[k]]);
+    }
+
+    private void markDirty(int slot) {
+        dirty[slot] = true;
+        isChanged = true;
+    }
+
+    private void computeWorld(int i, int p) {
+        int i3 = i * 3;
+        int i4 = i * 4;
+        if (p < 0) {
+            System.arraycopy(localPosition, i3, worldPosition, i3, 3);
+            System.arraycopy(localRotation, i4, worldRotation, i4, 4);
+            System.arraycopy(localScale, i3, worldScale, i3, 3);
+        } else {
+            int p3 = p * 3;
+            int p4 = p * 4;
+            float pw = worldRotation[p4];
+            float px = worldRotation[p4 + 1];
+            float py = worldRotation[p4 + 2];
+            float pz = worldRotation[p4 + 3];
+
+            // @formatter:off
+            // worldPosition = parent.worldPosition + parent.worldRotation * (parent.worldScale * localPosition)
+            // @formatter:on
+            float sx = worldScale[p3] * localPosition[i3];
+            float sy = worldScale[p3 + 1] * localPosition[i3 + 1];
+            float sz = worldScale[p3 + 2] * localPosition[i3 + 2];
+            // v' = v + w * t + (q.xyz x t), where t = 2 * (q.xyz x v)
+            float tx = 2f * (py * sz - pz * sy);
+            float ty = 2f * (pz * sx - px * sz);
+            float tz = 2f * (px * sy - py * sx);
+            worldPosition[i3] = worldPosition[p3] + sx + pw * tx + (py * tz - pz * ty);
+            worldPosition[i3 + 1] = worldPosition[p3 + 1] + sy + pw * ty + (pz * tx - px * tz);
+            worldPosition[i3 + 2] = worldPosition[p3 + 2] + sz + pw * tz + (px * ty - py * tx);
+
+            // worldRotation = parent.worldRotation * localRotation, renormalized
+            // so that rounding errors don't build up down the hierarchy
+            float lw = localRotation[i4];
+            float lx = localRotation[i4 + 1];
+            float ly = localRotation[i4 + 2];
+            float lz = localRotation[i4 + 3];
+            float w = pw * lw - px * lx - py * ly - pz * lz;
+            float x = pw * lx + px * lw + py * lz - pz * ly;
+            float y = pw * ly - px * lz + py * lw + pz * lx;
+            float z = pw * lz + px * ly - py * lx + pz * lw;
+            float invLength = 1f / (float) Math.sqrt(w * w + x * x + y * y + z * z);
+            worldRotation[i4] = w * invLength;
+            worldRotation[i4 + 1] = x * invLength;
+            worldRotation[i4 + 2] = y * invLength;
+            worldRotation[i4 + 3] = z * invLength;
+
+            // worldScale = parent.worldScale * localScale
+            for (int r = 0; r < 3; r++)
+                worldScale[i3 + r] = worldScale[p3 + r] * localScale[i3 + r];
+        }
+        worldMatrix[i] = null;
+    }
+
+    // Re-sorts the slots by depth in the tree, which puts every parent ahead
+    // of its children, and drops removed slots. The sort is stable, so
+    // siblings stay next to each other.
+    private void sortSlots() {
+        int[] depth = new int[count];
+        int maxDepth = 0;
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (nodes[i] == null) {
+                depth[i] = -1;
+                continue;
+            }
+            int d = 0;
+            for (int p = parent[i]; p >= 0; p = parent[p])
+                d++;
+
+            depth[i] = d;
+            maxDepth = Math.max(maxDepth, d);
+            live++;
+        }
+
+        int[] start = new int[maxDepth + 2];
+        for (int i = 0; i < count; i++)
+            if (depth[i] >= 0)
+                start[depth[i] + 1]++;
+
+        for (int d = 1; d < start.length; d++)
+            start[d] += start[d - 1];
+
+        int[] newSlot = new int[count];
+        int[] oldSlot = new int[live];
+        for (int i = 0; i < count; i++) {
+            if (depth[i] < 0) {
+                newSlot[i] = -1;
+                continue;
+            }
+            int s = start[depth[i]]++;
+            newSlot[i] = s;
+            oldSlot[s] = i;
+        }
+
+        GenericSceneNode[] sortedNodes = new GenericSceneNode[nodes.length];
+        int[] sortedParent = new int[parent.length];
+        float[] sortedLocalPosition = new float[localPosition.length];
+        float[] sortedLocalRotation = new float[localRotation.length];
+        float[] sortedLocalScale = new float[localScale.length];
+        float[] sortedWorldPosition = new float[worldPosition.length];
+        float[] sortedWorldRotation = new float[worldRotation.length];
+        float[] sortedWorldScale = new float[worldScale.length];
+        Matrix4[] sortedWorldMatrix = new Matrix4[worldMatrix.length];
+        boolean[] sortedDirty = new boolean[dirty.length];
+        for (int s = 0; s < live; s++) {
+            int i = oldSlot[s];
+            sortedNodes[s] = nodes[i];
+            sortedParent[s] = parent[i] < 0 ? -1 : newSlot[parent[i]];
+            System.arraycopy(localPosition, i * 3, sortedLocalPosition, s * 3, 3);
+            System.arraycopy(localRotation, i * 4, sortedLocalRotation, s * 4, 4);
+            System.arraycopy(localScale, i * 3, sortedLocalScale, s * 3, 3);
+            System.arraycopy(worldPosition, i * 3, sortedWorldPosition, s * 3, 3);
+            System.arraycopy(worldRotation, i * 4, sortedWorldRotation, s * 4, 4);
+            System.arraycopy(worldScale, i * 3, sortedWorldScale, s * 3, 3);
+            sortedWorldMatrix[s] = worldMatrix[i];
+            sortedDirty[s] = dirty[i];
+            sortedNodes[s].notifyTransformSlot(s);
+        }
+
+        nodes = sortedNodes;
+        parent = sortedParent;
+        localPosition = sortedLocalPosition;
+        localRotation = sortedLocalRotation;
+        localScale = sortedLocalScale;
+        worldPosition = sortedWorldPosition;
+        worldRotation = sortedWorldRotation;
+        worldScale = sortedWorldScale;
+        worldMatrix = sortedWorldMatrix;
+        dirty = sortedDirty;
+        count = live;
+        isOrderStale = false;
+    }
+
+    private void grow() {
+        int capacity = nodes.length * 2;
+        nodes = Arrays.copyOf(nodes, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        localPosition = Arrays.copyOf(localPosition, capacity * 3);
+        localRotation = Arrays.copyOf(localRotation, capacity * 4);
+        localScale = Arrays.copyOf(localScale, capacity * 3);
+        worldPosition = Arrays.copyOf(worldPosition, capacity * 3);
+        worldRotation = Arrays.copyOf(worldRotation, capacity * 4);
+        worldScale = Arrays.copyOf(worldScale, capacity * 3);
+        worldMatrix = Arrays.copyOf(worldMatrix, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        moved = Arrays.copyOf(moved, capacity);
+    }
+
+    private static void setIdentity(float[] position, float[] rotation, float[] scale, int slot) {
+        Arrays.fill(position, slot * 3, slot * 3 + 3, 0f);
+        Arrays.fill(rotation, slot * 4, slot * 4 + 4, 0f);
+        rotation[slot * 4] = 1f;
+        Arrays.fill(scale, slot * 3, slot * 3 + 3, 1f);
+    }
+
+    private static Vector3 toVector3(float[] values, int i) {
+        return Vector3f.createFrom(values[i], values[i + 1], values[i + 2]);
+    }
+
+    private static Quaternion toQuaternion(float[] values, int i) {
+        return Quaternionf.createFrom(values[i], values[i + 1], values[i + 2], values[i + 3]);
+    }
+
+    private static Matrix4 toMatrixTRS(float[] position, float[] rotation, float[] scale, int slot) {
+        return Matrix4f.createTransformFrom(toVector3(position, slot * 3), toQuaternion(rotation, slot * 4),
+                toVector3(scale, slot * 3));
+    }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.io.*;
+import java.util.*;
+
+import ray.rage.scene.*;
+import ray.rage.util.*;
+import ray.rml.*;
+
+/**
+ * Reports the time, and the bytes allocated, per world transform update of
+ * {@link GenericSceneNode nodes} in deep and wide hierarchies, and per
+ * {@link SceneManager#updateSceneGraph()} of a scene with thousands of nodes,
+ * as a baseline for changes to the scene graph.
+ * <p>
+ * Every scene is measured with node transforms kept in per-node objects and
+ * in a {@link GenericTransformStore flat transform store}.
+ * <p>
+ * Run from the project root (for the default configuration):
+ * <code>java ray.rage.scene.generic.SceneGraphBenchmark [filter]</code>
+ *
+ * @see MicroBenchmark
+ * @see TransformStoreBenchmark
+ */
+public final class SceneGraphBenchmark {
+
+    private static final int     DEPTH            = 64;
+    private static final int     WIDTH            = 1024;
+
+    // a track's worth of props, each a small hierarchy
+    private static final int     PROPS            = 1250;
+    private static final int     PARTS_PER_PROP   = 7;
+    private static final float[] MOVING_FRACTIONS = { 0f, 0.05f, 1f };
+
+    public static void main(String[] args) throws IOException {
+        MicroBenchmark bench = new MicroBenchmark(args);
+        for (boolean isFlat : new boolean[] { false, true }) {
+            final String kind = isFlat ? " (flat)" : "";
+
+            bench.measure("node world, deep, leaf" + kind, new Hierarchy(isFlat, DEPTH, 1) {
+                @Override
+                public void run() {
+                    move();
+                    result = leaves[0].getWorldTransform();
+                }
+            });
+            bench.measure("node world, wide, all" + kind, new Hierarchy(isFlat, 1, WIDTH) {
+                @Override
+                public void run() {
+                    move();
+                    for (SceneNode leaf : leaves)
+                        result = leaf.getWorldTransform();
+                }
+            });
+            bench.measure("updateSceneGraph, deep" + kind, new Hierarchy(isFlat, DEPTH, 1) {
+                @Override
+                public void run() {
+                    move();
+                    sm.updateSceneGraph();
+                }
+            });
+            bench.measure("updateSceneGraph, wide" + kind, new Hierarchy(isFlat, 1, WIDTH) {
+                @Override
+                public void run() {
+                    move();
+                    sm.updateSceneGraph();
+                }
+            });
+
+            final int nodes = PROPS * (PARTS_PER_PROP + 1);
+            for (final float fraction : MOVING_FRACTIONS) {
+                final String name = String.format("updateSceneGraph, %d nodes, %.0f%% moving%s", nodes,
+                        fraction * 100, kind);
+                bench.measure(name, new Track(isFlat, fraction));
+            }
+        }
+    }
+
+    private static GenericSceneManager createSceneManager(boolean isFlat) throws IOException {
+        Configuration conf = new Configuration();
+        conf.load();
+        conf.setKeyValuePair("scene.transforms.flat", Boolean.toString(isFlat));
+
+        GenericSceneManager sm = new GenericSceneManager();
+        sm.setConfiguration(conf);
+        return sm;
+    }
+
+    /**
+     * A node under the root with <code>width</code> chains of
+     * <code>depth</code> nodes below it. Moving the top node moves every
+     * other one.
+     */
+    private static abstract class Hierarchy implements MicroBenchmark.Operation {
+
+        final GenericSceneManager sm;
+        final SceneNode           top;
+        final SceneNode[]         leaves;
+        Matrix4                   result;
+        private boolean           flip;
+
+        Hierarchy(boolean isFlat, int depth, int width) throws IOException {
+            sm = createSceneManager(isFlat);
+            top = sm.getRootSceneNode().createChildSceneNode("Top");
+            leaves = new SceneNode[width];
+            for (int w = 0; w < width; w++) {
+                SceneNode parent = top;
+                for (int d = 0; d < depth; d++) {
+                    parent = parent.createChildSceneNode("Node" + w + "_" + d);
+                    parent.setLocalPosition(0f, 1f, 0f);
+                    parent.yaw(Degreef.createFrom(5f));
+                }
+                leaves[w] = parent;
+            }
+            sm.updateSceneGraph();
+        }
+
+        void move() {
+            flip = !flip;
+            top.setLocalPosition(flip ? 1f : 0f, 0f, 0f);
+        }
+    }
+
+    /**
+     * Props scattered around the root, a few of which move every frame.
+     */
+    private static final class Track implements MicroBenchmark.Operation {
+
+        private final GenericSceneManager sm;
+        private final List<SceneNode>     props  = new ArrayList<>();
+        private final Random              random = new Random(2);
+        private final int                 moving;
+
+        Track(boolean isFlat, float movingFraction) throws IOException {
+            sm = createSceneManager(isFlat);
+
+            Random layout = new Random(0);
+            SceneNode root = sm.getRootSceneNode();
+            for (int p = 0; p < PROPS; p++) {
+                SceneNode prop = root.createChildSceneNode("Prop" + p);
+                prop.setLocalPosition(layout.nextFloat() * 400 - 200, 0, layout.nextFloat() * 400 - 200);
+                prop.yaw(Degreef.createFrom(layout.nextFloat() * 360));
+                props.add(prop);
+
+                // a chain a few levels deep, like a kart with wheels and items
+                SceneNode parent = prop;
+                for (int c = 0; c < PARTS_PER_PROP; c++) {
+                    SceneNode part = parent.createChildSceneNode("Prop" + p + "Part" + c);
+                    part.setLocalPosition(layout.nextFloat(), layout.nextFloat(), layout.nextFloat());
+                    part.setLocalScale(0.9f, 0.9f, 0.9f);
+                    if (c % 3 == 2)
+                        parent = part;
+                }
+            }
+            moving = (int) (props.size() * movingFraction);
+            sm.updateSceneGraph();
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < moving; i++)
+                props.get(random.nextInt(props.size())).moveForward(0.1f);
+
+            sm.updateSceneGraph();
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.io.*;
+
+import ray.rage.scene.*;
+import ray.rage.util.Configuration;
+import ray.rml.*;
+
+/**
+ * Checks that {@link SceneManager#updateSceneGraph()} reports every node
+ * whose world transforms changed, even when a getter brought some of them up
+ * to date first.
+ * <p>
+ * A parent with a child and a grandchild is moved every frame, and before the
+ * update the parent's world position is read, as the game does with the
+ * player and camera nodes. On some frames the child's is read as well. The
+ * descendants must be reported once per frame in which they moved, and not
+ * at all in frames in which nothing moved.
+ * <p>
+ * Run from the project root (for the default configuration):
+ * <code>java ray.rage.scene.generic.SceneNodeUpdateCheck</code>
+ *
+ * @see TransformStoreBenchmark
+ */
+public final class SceneNodeUpdateCheck {
+
+    private static final int FRAMES = 10;
+
+    public static void main(String[] args) throws IOException {
+        Configuration conf = new Configuration();
+        conf.load();
+        conf.setKeyValuePair("scene.transforms.flat", "false");
+        GenericSceneManager sm = new GenericSceneManager();
+        sm.setConfiguration(conf);
+
+        SceneNode parent = sm.getRootSceneNode().createChildSceneNode("Parent");
+        SceneNode child = parent.createChildSceneNode("Child");
+        SceneNode grandchild = child.createChildSceneNode("Grandchild");
+        child.setLocalPosition(0f, 1f, 0f);
+        grandchild.setLocalPosition(0f, 0f, 1f);
+        sm.updateSceneGraph();
+
+        final int[] updates = new int[2];
+        child.setListener(new Counter(updates, 0));
+        grandchild.setListener(new Counter(updates, 1));
+
+        boolean ok = true;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            final boolean moves = frame % 3 != 2;
+            if (moves)
+                parent.setLocalPosition(frame, 0f, 0f);
+
+            parent.getWorldPosition();
+            if (frame % 2 == 1)
+                child.getWorldPosition();
+
+            updates[0] = 0;
+            updates[1] = 0;
+            sm.updateSceneGraph();
+
+            final int expected = moves ? 1 : 0;
+            final Vector3 expectedPosition = Vector3f.createFrom(parent.getLocalPosition().x(), 1f, 1f);
+            final boolean frameOk = updates[0] == expected && updates[1] == expected
+                    && grandchild.getWorldPosition().equals(expectedPosition);
+            if (!frameOk)
+                System.out.println("frame " + frame + ": child updated " + updates[0] + ", grandchild updated "
+                        + updates[1] + ", expected " + expected + " each");
+            ok &= frameOk;
+        }
+
+        if (!ok) {
+            System.out.println("Nodes moved without being reported by updateSceneGraph");
+            System.exit(1);
+        }
+        System.out.println("updateSceneGraph reports every moved node");
+    }
+
+    private static final class Counter implements Node.Listener {
+
+        private final int[] counts;
+        private final int   index;
+
+        Counter(int[] counts, int index) {
+            this.counts = counts;
+            this.index = index;
+        }
+
+        @Override
+        public void onNodeAttached(Node child, Node newParent) {}
+
+        @Override
+        public void onNodeUpdated(Node n) {
+            counts[index]++;
+        }
+
+        @Override
+        public void onNodeDetached(Node orphan, Node oldParent) {}
+    }
+
+}
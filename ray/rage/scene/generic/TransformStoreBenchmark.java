@@ -0,0 +1,161 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.scene.generic;
+
+import java.io.*;
+import java.util.*;
+
+import ray.rage.scene.*;
+import ray.rage.util.Configuration;
+import ray.rml.*;
+
+/**
+ * Compares {@link SceneManager#updateSceneGraph()} with node transforms kept
+ * in per-node objects against the same scene with a
+ * {@link GenericTransformStore flat transform store}.
+ * <p>
+ * First checks that both produce the same world transforms, then reports the
+ * time per frame for a scene of a few thousand nodes where none, some, or all
+ * of the nodes move every frame.
+ * <p>
+ * Run from the project root (for the default configuration):
+ * <code>java ray.rage.scene.generic.TransformStoreBenchmark</code>
+ *
+ * @see GenericTransformStore
+ */
+public final class TransformStoreBenchmark {
+
+    // a track's worth of props, each a small hierarchy
+    private static final int     PROPS            = 500;
+    private static final int     PARTS_PER_PROP   = 7;
+    private static final int     FRAMES           = 1000;
+    private static final int     ROUNDS           = 5;
+    private static final float[] MOVING_FRACTIONS = { 0f, 0.05f, 0.25f, 1f };
+
+    public static void main(String[] args) throws IOException {
+        float error = checkEquivalence(300);
+        if (error > 1e-3f) {
+            System.out.println("Flat transforms diverged from node transforms by " + error);
+            System.exit(1);
+        }
+        System.out.println("Flat transforms match node transforms (max difference " + error + ")");
+
+        int nodes = PROPS * (PARTS_PER_PROP + 1);
+        System.out.println(String.format("%d nodes, microseconds per frame", nodes));
+        System.out.println(String.format("%8s %12s %12s", "moving", "nodes", "flat"));
+        for (float fraction : MOVING_FRACTIONS) {
+            double objects = run(false, fraction);
+            double flat = run(true, fraction);
+            System.out.println(String.format("%7.0f%% %12.1f %12.1f", fraction * 100, objects, flat));
+        }
+    }
+
+    private static float checkEquivalence(int frames) throws IOException {
+        Scene objects = new Scene(false);
+        Scene flat = new Scene(true);
+        Random random = new Random(1);
+        for (int f = 0; f < frames; f++) {
+            long seed = random.nextLong();
+            objects.animate(0.25f, new Random(seed));
+            flat.animate(0.25f, new Random(seed));
+            objects.sm.updateSceneGraph();
+            flat.sm.updateSceneGraph();
+        }
+
+        float error = 0f;
+        for (int i = 0; i < objects.nodes.size(); i++) {
+            Node a = objects.nodes.get(i);
+            Node b = flat.nodes.get(i);
+            error = Math.max(error, a.getWorldPosition().sub(b.getWorldPosition()).length());
+            for (int c = 0; c < 3; c++)
+                error = Math.max(error, a.getWorldRotation().column(c).sub(b.getWorldRotation().column(c)).length());
+        }
+        return error;
+    }
+
+    private static double run(boolean isFlat, float movingFraction) throws IOException {
+        Scene scene = new Scene(isFlat);
+        Random random = new Random(2);
+        for (int f = 0; f < FRAMES; f++) {
+            scene.animate(movingFraction, random);
+            scene.sm.updateSceneGraph();
+        }
+
+        // best of a few rounds, to keep collections and other noise out
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long elapsed = 0;
+            for (int f = 0; f < FRAMES; f++) {
+                // only the graph update is timed; moving the nodes is the
+                // same work either way
+                scene.animate(movingFraction, random);
+                long start = System.nanoTime();
+                scene.sm.updateSceneGraph();
+                elapsed += System.nanoTime() - start;
+            }
+            best = Math.min(best, elapsed);
+        }
+        return best / 1e3 / FRAMES;
+    }
+
+    private static final class Scene {
+
+        final GenericSceneManager sm    = new GenericSceneManager();
+        final List<Node>          nodes = new ArrayList<>();
+        final List<Node>          props = new ArrayList<>();
+
+        Scene(boolean isFlat) throws IOException {
+            // setConfiguration reads scene.pool.capacity and the
+            // scene.controllers keys, so start from the defaults
+            Configuration conf = new Configuration();
+            conf.load();
+            conf.setKeyValuePair("scene.transforms.flat", Boolean.toString(isFlat));
+            sm.setConfiguration(conf);
+
+            Random random = new Random(0);
+            SceneNode root = sm.getRootSceneNode();
+            for (int p = 0; p < PROPS; p++) {
+                SceneNode prop = root.createChildSceneNode("Prop" + p);
+                prop.setLocalPosition(random.nextFloat() * 400 - 200, 0, random.nextFloat() * 400 - 200);
+                prop.yaw(Degreef.createFrom(random.nextFloat() * 360));
+                nodes.add(prop);
+                props.add(prop);
+
+                // a chain a few levels deep, like a kart with wheels and items
+                SceneNode parent = prop;
+                for (int c = 0; c < PARTS_PER_PROP; c++) {
+                    SceneNode part = parent.createChildSceneNode("Prop" + p + "Part" + c);
+                    part.setLocalPosition(random.nextFloat(), random.nextFloat(), random.nextFloat());
+                    part.setLocalScale(0.9f, 0.9f, 0.9f);
+                    part.pitch(Degreef.createFrom(random.nextFloat() * 30));
+                    nodes.add(part);
+                    if (c % 3 == 2)
+                        parent = part;
+                }
+            }
+        }
+
+        void animate(float fraction, Random random) {
+            int moving = (int) (props.size() * fraction);
+            for (int i = 0; i < moving; i++) {
+                Node prop = props.get(random.nextInt(props.size()));
+                prop.moveForward(0.1f);
+                prop.yaw(Degreef.createFrom(1f));
+            }
+        }
+    }
+
+}
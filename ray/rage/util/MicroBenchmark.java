@@ -0,0 +1,129 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rage.util;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Times small operations and counts what they allocate, for benchmarks that
+ * are run as plain programs.
+ * <p>
+ * Each {@link Operation operation} is first run until the JIT has had time to
+ * compile it, then timed over several rounds. The time per operation reported
+ * is the median of the rounds, along with the spread between the fastest and
+ * slowest round. Allocations are counted with the per-thread counters of
+ * HotSpot-based JVMs; on others they're reported as unavailable.
+ * <p>
+ * Benchmarks take an optional filter as their first argument, so only the
+ * operations whose names contain it are run.
+ */
+public final class MicroBenchmark {
+
+    /**
+     * Something to be measured.
+     * <p>
+     * Results should be stored in a field of the implementing object rather
+     * than thrown away, or the JIT may remove the work being measured.
+     */
+    public interface Operation {
+        void run();
+    }
+
+    private static final long                         WARMUP_NANOS      = 500000000L;
+    private static final long                         ROUND_NANOS       = 200000000L;
+    private static final long                         CALIBRATION_NANOS = 10000000L;
+    private static final int                          ROUNDS            = 7;
+
+    private final String                              filter;
+    private final com.sun.management.ThreadMXBean     allocations;
+
+    /**
+     * Creates a benchmark from the program arguments and prints the table
+     * header.
+     *
+     * @param args
+     *            The program arguments, where the first one, if any, is the
+     *            filter.
+     */
+    public MicroBenchmark(String[] args) {
+        filter = args.length > 0 ? args[0] : null;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            allocations = (com.sun.management.ThreadMXBean) threads;
+            allocations.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            allocations = null;
+        }
+
+        System.out.println(String.format("%-50s %12s %12s %12s", "operation", "ns/op", "spread", "bytes/op"));
+    }
+
+    /**
+     * Measures the operation and prints a line with the results, unless it's
+     * filtered out.
+     *
+     * @param name
+     *            The name to report the results under.
+     * @param op
+     *            The {@link Operation operation}.
+     */
+    public void measure(String name, Operation op) {
+        if (filter != null && !name.contains(filter))
+            return;
+
+        // enough operations per batch to make the timer's resolution and the
+        // loop around them negligible
+        int batch = 1;
+        while (time(op, batch) < CALIBRATION_NANOS && batch < (1 << 30))
+            batch *= 2;
+
+        final long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd)
+            time(op, batch);
+
+        final int perRound = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (long) batch * ROUND_NANOS / CALIBRATION_NANOS));
+        final double[] nanosPerOp = new double[ROUNDS];
+        long allocated = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long before = allocatedBytes();
+            nanosPerOp[round] = (double) time(op, perRound) / perRound;
+            allocated += allocatedBytes() - before;
+        }
+
+        Arrays.sort(nanosPerOp);
+        final double median = nanosPerOp[ROUNDS / 2];
+        final double spread = nanosPerOp[ROUNDS - 1] - nanosPerOp[0];
+        final String bytes = allocations != null ? String.format("%12.1f", (double) allocated / ROUNDS / perRound)
+                : String.format("%12s", "n/a");
+        System.out.println(String.format("%-50s %12.2f %12.2f %s", name, median, spread, bytes));
+    }
+
+    private static long time(Operation op, int count) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++)
+            op.run();
+
+        return System.nanoTime() - start;
+    }
+
+    private long allocatedBytes() {
+        return allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+}
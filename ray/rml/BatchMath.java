@@ -0,0 +1,246 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+/**
+ * Math on many values at once, stored back to back in float arrays instead of
+ * one immutable object each.
+ * <p>
+ * Matrices are 4x4 and column-major, like {@link Matrix4#toFloatArray()}, and
+ * take 16 elements each. Points, directions, and normals take 3 elements each,
+ * and boxes take 6: the minimum corner followed by the maximum corner.
+ * <p>
+ * The destination may be the same array, at the same offset, as one of the
+ * sources, in which case the values are replaced. Other overlaps give
+ * undefined results.
+ */
+public final class BatchMath {
+
+    private BatchMath() {}
+
+    /**
+     * Multiplies pairs of matrices, so that <code>dest[i] = lhs[i] * rhs[i]</code>
+     * for each of the <code>count</code> pairs.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             matrices after its offset.
+     */
+    public static void multMatrices(final float[] lhs, int lhsOffset, final float[] rhs, int rhsOffset,
+            final float[] dest, int destOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int l = lhsOffset + i * 16;
+            final int r = rhsOffset + i * 16;
+            final int d = destOffset + i * 16;
+
+            // @formatter:off
+            final float a00 = lhs[l],      a10 = lhs[l + 1],  a20 = lhs[l + 2],  a30 = lhs[l + 3];
+            final float a01 = lhs[l + 4],  a11 = lhs[l + 5],  a21 = lhs[l + 6],  a31 = lhs[l + 7];
+            final float a02 = lhs[l + 8],  a12 = lhs[l + 9],  a22 = lhs[l + 10], a32 = lhs[l + 11];
+            final float a03 = lhs[l + 12], a13 = lhs[l + 13], a23 = lhs[l + 14], a33 = lhs[l + 15];
+            // @formatter:on
+
+            for (int c = 0; c < 16; c += 4) {
+                final float b0 = rhs[r + c];
+                final float b1 = rhs[r + c + 1];
+                final float b2 = rhs[r + c + 2];
+                final float b3 = rhs[r + c + 3];
+                dest[d + c] = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+                dest[d + c + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+                dest[d + c + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+                dest[d + c + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
+            }
+        }
+    }
+
+    /**
+     * Transforms points by a matrix, as if each had a <code>w</code> of one.
+     * The bottom row of the matrix is ignored, so it should be affine.
+     *
+     * @param m
+     *            The array holding the matrix.
+     * @param mOffset
+     *            The index of the matrix in its array.
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             points after its offset.
+     */
+    public static void transformPoints(final float[] m, int mOffset, final float[] src, int srcOffset,
+            final float[] dest, int destOffset, int count) {
+        // @formatter:off
+        final float m00 = m[mOffset],     m10 = m[mOffset + 1],  m20 = m[mOffset + 2];
+        final float m01 = m[mOffset + 4], m11 = m[mOffset + 5],  m21 = m[mOffset + 6];
+        final float m02 = m[mOffset + 8], m12 = m[mOffset + 9],  m22 = m[mOffset + 10];
+        final float tx = m[mOffset + 12], ty  = m[mOffset + 13], tz  = m[mOffset + 14];
+        // @formatter:on
+
+        for (int i = 0; i < count; i++) {
+            final int s = srcOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final float x = src[s];
+            final float y = src[s + 1];
+            final float z = src[s + 2];
+            dest[d] = m00 * x + m01 * y + m02 * z + tx;
+            dest[d + 1] = m10 * x + m11 * y + m12 * z + ty;
+            dest[d + 2] = m20 * x + m21 * y + m22 * z + tz;
+        }
+    }
+
+    /**
+     * Transforms directions by a matrix, as if each had a <code>w</code> of
+     * zero, so the translation doesn't apply.
+     *
+     * @param m
+     *            The array holding the matrix.
+     * @param mOffset
+     *            The index of the matrix in its array.
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             directions after its offset.
+     */
+    public static void transformDirections(final float[] m, int mOffset, final float[] src, int srcOffset,
+            final float[] dest, int destOffset, int count) {
+        // @formatter:off
+        final float m00 = m[mOffset],     m10 = m[mOffset + 1], m20 = m[mOffset + 2];
+        final float m01 = m[mOffset + 4], m11 = m[mOffset + 5], m21 = m[mOffset + 6];
+        final float m02 = m[mOffset + 8], m12 = m[mOffset + 9], m22 = m[mOffset + 10];
+        // @formatter:on
+
+        for (int i = 0; i < count; i++) {
+            final int s = srcOffset + i * 3;
+            final int d = destOffset + i * 3;
+            final float x = src[s];
+            final float y = src[s + 1];
+            final float z = src[s + 2];
+            dest[d] = m00 * x + m01 * y + m02 * z;
+            dest[d + 1] = m10 * x + m11 * y + m12 * z;
+            dest[d + 2] = m20 * x + m21 * y + m22 * z;
+        }
+    }
+
+    /**
+     * Transforms normals by a matrix and scales them back to unit length.
+     * Normals that end up with zero length are left as zero.
+     * <p>
+     * The matrix should be the normal matrix, i.e. the inverse transpose of
+     * the one used for the points, or non-uniform scales will skew the
+     * normals. Only its upper left 3x3 part is used.
+     *
+     * @param m
+     *            The array holding the matrix.
+     * @param mOffset
+     *            The index of the matrix in its array.
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             normals after its offset.
+     */
+    public static void transformNormals(final float[] m, int mOffset, final float[] src, int srcOffset,
+            final float[] dest, int destOffset, int count) {
+        transformDirections(m, mOffset, src, srcOffset, dest, destOffset, count);
+
+        for (int i = 0; i < count; i++) {
+            final int d = destOffset + i * 3;
+            final float x = dest[d];
+            final float y = dest[d + 1];
+            final float z = dest[d + 2];
+            final float sqlen = x * x + y * y + z * z;
+            if (FloatUtil.isZero(sqlen))
+                continue;
+
+            final float oneOverLen = MathUtil.invSqrt(sqlen);
+            dest[d] = x * oneOverLen;
+            dest[d + 1] = y * oneOverLen;
+            dest[d + 2] = z * oneOverLen;
+        }
+    }
+
+    /**
+     * Transforms axis-aligned boxes by a matrix, giving the smallest
+     * axis-aligned boxes that hold the transformed ones. The bottom row of the
+     * matrix is ignored, so it should be affine.
+     *
+     * @param m
+     *            The array holding the matrix.
+     * @param mOffset
+     *            The index of the matrix in its array.
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             boxes after its offset.
+     */
+    public static void transformBoxes(final float[] m, int mOffset, final float[] src, int srcOffset,
+            final float[] dest, int destOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            final int s = srcOffset + i * 6;
+            final int d = destOffset + i * 6;
+            final float minX = src[s], minY = src[s + 1], minZ = src[s + 2];
+            final float maxX = src[s + 3], maxY = src[s + 4], maxZ = src[s + 5];
+
+            // each output axis starts at the translation and takes, from every
+            // input axis, whichever of the two products is smaller or larger
+            // Ref: J. Arvo, "Transforming Axis-Aligned Bounding Boxes", Graphics Gems, 1990
+            for (int r = 0; r < 3; r++) {
+                float lo = m[mOffset + 12 + r];
+                float hi = lo;
+
+                float a = m[mOffset + r] * minX;
+                float b = m[mOffset + r] * maxX;
+                lo += Math.min(a, b);
+                hi += Math.max(a, b);
+
+                a = m[mOffset + 4 + r] * minY;
+                b = m[mOffset + 4 + r] * maxY;
+                lo += Math.min(a, b);
+                hi += Math.max(a, b);
+
+                a = m[mOffset + 8 + r] * minZ;
+                b = m[mOffset + 8 + r] * maxZ;
+                lo += Math.min(a, b);
+                hi += Math.max(a, b);
+
+                dest[d + r] = lo;
+                dest[d + 3 + r] = hi;
+            }
+        }
+    }
+
+    /**
+     * Adds a value to each of the elements, so that
+     * <code>dest[i] += value</code>.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If the array is too short for <code>count</code> elements
+     *             after its offset.
+     */
+    public static void add(final float[] dest, int destOffset, float value, int count) {
+        for (int i = destOffset; i < destOffset + count; i++)
+            dest[i] += value;
+    }
+
+    /**
+     * Adds the scaled elements of one array to those of another, so that
+     * <code>dest[i] += src[i] * scale</code>.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If any of the arrays is too short for <code>count</code>
+     *             elements after its offset.
+     */
+    public static void addScaled(final float[] dest, int destOffset, final float[] src, int srcOffset, float scale,
+            int count) {
+        for (int i = 0; i < count; i++)
+            dest[destOffset + i] += src[srcOffset + i] * scale;
+    }
+
+}
@@ -0,0 +1,235 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+/**
+ * Single-precision trigonometry for code that calls it often enough for
+ * {@link Math} to show up, and primitive angle helpers that don't need an
+ * {@link Angle} object.
+ * <p>
+ * The functions are small polynomials evaluated in <code>float</code>, so
+ * they give the same result on every JVM and platform, unlike {@link Math}.
+ * Their accuracy, measured against {@link StrictMath} by
+ * {@link FastMathBenchmark}, is:
+ * <ul>
+ * <li>{@link #sin(float)} and {@link #cos(float)}: absolute error below
+ * <code>1e-7</code> for <code>|radians| &lt;= 8192</code>. Larger arguments
+ * go through {@link StrictMath}.</li>
+ * <li>{@link #atan(float)}: absolute error below <code>1.5e-7</code>
+ * radians.</li>
+ * <li>{@link #atan2(float, float)}: absolute error below <code>3e-7</code>
+ * radians, most of it from rounding results that are close to
+ * <code>pi</code>.</li>
+ * </ul>
+ * These bounds are absolute only. Near a zero of the function the result is
+ * tiny, so the same error can be large relative to it, especially for large
+ * arguments; don't rely on the relative error there.
+ */
+public final class FastMath {
+
+    public static final float  PI               = (float) Math.PI;
+    public static final float  HALF_PI          = (float) (Math.PI / 2);
+    public static final float  TWO_PI           = (float) (Math.PI * 2);
+
+    private static final float DEGREE_TO_RADIAN = PI / 180.0f;
+    private static final float RADIAN_TO_DEGREE = 180.0f / PI;
+    private static final float TWO_OVER_PI      = (float) (2 / Math.PI);
+    private static final float QUARTER_PI       = (float) (Math.PI / 4);
+
+    // pi/2 split in three, so the first two parts times any quadrant count up
+    // to 2^13 are exact
+    // Ref: W. J. Cody and W. Waite, "Software Manual for the Elementary Functions", 1980
+    private static final float HALF_PI_1        = 1.5703125f;
+    private static final float HALF_PI_2        = 4.837512969970703125e-4f;
+    private static final float HALF_PI_3        = 7.54978995489188216e-8f;
+    private static final float MAX_REDUCIBLE    = 8192f;
+
+    // tan(3pi/8) and tan(pi/8)
+    private static final float TAN_3_PI_8       = 2.414213562373095f;
+    private static final float TAN_PI_8         = 0.4142135623730950f;
+
+    private FastMath() {}
+
+    /**
+     * Gets the sine of an angle.
+     *
+     * @param radians
+     *            The angle, in radians.
+     * @return The sine of the angle.
+     */
+    public static float sin(float radians) {
+        if (!(Math.abs(radians) <= MAX_REDUCIBLE))
+            return (float) StrictMath.sin(radians);
+
+        final int quadrant = Math.round(radians * TWO_OVER_PI);
+        final float r = reduce(radians, quadrant);
+        switch (quadrant & 3) {
+            case 0:
+                return sinPoly(r);
+            case 1:
+                return cosPoly(r);
+            case 2:
+                return -sinPoly(r);
+            default:
+                return -cosPoly(r);
+        }
+    }
+
+    /**
+     * Gets the cosine of an angle.
+     *
+     * @param radians
+     *            The angle, in radians.
+     * @return The cosine of the angle.
+     */
+    public static float cos(float radians) {
+        if (!(Math.abs(radians) <= MAX_REDUCIBLE))
+            return (float) StrictMath.cos(radians);
+
+        final int quadrant = Math.round(radians * TWO_OVER_PI);
+        final float r = reduce(radians, quadrant);
+        switch (quadrant & 3) {
+            case 0:
+                return cosPoly(r);
+            case 1:
+                return -sinPoly(r);
+            case 2:
+                return -cosPoly(r);
+            default:
+                return sinPoly(r);
+        }
+    }
+
+    /**
+     * Gets the arc tangent of a value.
+     *
+     * @param value
+     *            The value.
+     * @return The angle, in radians, in the range <code>[-pi/2, pi/2]</code>.
+     */
+    public static float atan(float value) {
+        final float x = Math.abs(value);
+        final float result;
+        if (x > TAN_3_PI_8)
+            result = HALF_PI + atanPoly(-1f / x);
+        else if (x > TAN_PI_8)
+            result = QUARTER_PI + atanPoly((x - 1f) / (x + 1f));
+        else
+            result = atanPoly(x);
+
+        return value < 0f ? -result : result;
+    }
+
+    /**
+     * Gets the angle of the point <code>(x, y)</code> from the positive x axis,
+     * like {@link Math#atan2(double, double)}.
+     *
+     * @param y
+     *            The ordinate.
+     * @param x
+     *            The abscissa.
+     * @return The angle, in radians, in the range <code>[-pi, pi]</code>.
+     */
+    public static float atan2(float y, float x) {
+        if (x == 0f) {
+            if (y > 0f)
+                return HALF_PI;
+            if (y < 0f)
+                return -HALF_PI;
+            return Float.isNaN(y) ? y : (float) StrictMath.atan2(y, x);
+        }
+
+        if (Float.isInfinite(x) && Float.isInfinite(y))
+            return (float) StrictMath.atan2(y, x);
+
+        final float a = atan(y / x);
+        if (x > 0f)
+            return a;
+
+        // the left half-plane, where the tangent repeats with a period of pi
+        return y < 0f || (y == 0f && 1f / y < 0f) ? a - PI : a + PI;
+    }
+
+    /**
+     * Converts an angle in degrees to radians.
+     */
+    public static float toRadians(float degrees) {
+        return degrees * DEGREE_TO_RADIAN;
+    }
+
+    /**
+     * Converts an angle in radians to degrees.
+     */
+    public static float toDegrees(float radians) {
+        return radians * RADIAN_TO_DEGREE;
+    }
+
+    /**
+     * Wraps an angle in degrees into the range <code>[-180, 180)</code>.
+     */
+    public static float wrapDegrees(float degrees) {
+        if (degrees >= -180f && degrees < 180f)
+            return degrees;
+
+        // the remainder is exact, unlike shifting by 180 first
+        final float wrapped = degrees % 360f;
+        if (wrapped >= 180f)
+            return wrapped - 360f;
+        if (wrapped < -180f)
+            return wrapped + 360f;
+        return wrapped;
+    }
+
+    /**
+     * Wraps an angle in radians into the range <code>[-pi, pi)</code>.
+     */
+    public static float wrapRadians(float radians) {
+        if (radians >= -PI && radians < PI)
+            return radians;
+
+        final float wrapped = radians % TWO_PI;
+        if (wrapped >= PI)
+            return wrapped - TWO_PI;
+        if (wrapped < -PI)
+            return wrapped + TWO_PI;
+        return wrapped;
+    }
+
+    // x - quadrant * pi/2, in [-pi/4, pi/4]
+    private static float reduce(float x, int quadrant) {
+        final float q = quadrant;
+        return ((x - q * HALF_PI_1) - q * HALF_PI_2) - q * HALF_PI_3;
+    }
+
+    // minimax polynomials on [-pi/4, pi/4] and [-tan(pi/8), tan(pi/8)]
+    // Ref: S. L. Moshier, Cephes Math Library, sinf.c and atanf.c
+    private static float sinPoly(float x) {
+        final float z = x * x;
+        return x + x * z * ((-1.9515295891e-4f * z + 8.3321608736e-3f) * z - 1.6666654611e-1f);
+    }
+
+    private static float cosPoly(float x) {
+        final float z = x * x;
+        return 1f - 0.5f * z + z * z * ((2.443315711809948e-5f * z - 1.388731625493765e-3f) * z + 4.166664568298827e-2f);
+    }
+
+    private static float atanPoly(float x) {
+        final float z = x * x;
+        return (((8.05374449538e-2f * z - 1.38776856032e-1f) * z + 1.99777106478e-1f) * z - 3.33329491539e-1f) * z * x
+                + x;
+    }
+
+}
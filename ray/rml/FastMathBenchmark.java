@@ -0,0 +1,216 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+import java.util.*;
+
+/**
+ * Compares {@link FastMath} against {@link StrictMath} and {@link Math}.
+ * <p>
+ * First checks that every function stays within the error documented on
+ * {@link FastMath}, over an even sweep and random arguments, then reports the
+ * time per call of each implementation.
+ * <p>
+ * <code>java ray.rml.FastMathBenchmark</code>
+ *
+ * @see FastMath
+ */
+public final class FastMathBenchmark {
+
+    // the bounds documented on FastMath
+    private static final double SIN_ERROR   = 1e-7;
+    private static final double ATAN_ERROR  = 1.5e-7;
+    private static final double ATAN2_ERROR = 3e-7;
+    private static final int    SAMPLES     = 2000000;
+    private static final int    CALLS       = 10000000;
+    private static final int    ROUNDS      = 5;
+
+    // keeps the timed loops from being optimized away
+    private static float        sink;
+
+    public static void main(String[] args) {
+        boolean ok = true;
+        ok &= check("sin", new Function() {
+            @Override
+            public double error(float x) {
+                return Math.abs(FastMath.sin(x) - StrictMath.sin(x));
+            }
+        }, -8192f, 8192f, SIN_ERROR);
+        ok &= check("cos", new Function() {
+            @Override
+            public double error(float x) {
+                return Math.abs(FastMath.cos(x) - StrictMath.cos(x));
+            }
+        }, -8192f, 8192f, SIN_ERROR);
+        ok &= check("atan", new Function() {
+            @Override
+            public double error(float x) {
+                return Math.abs(FastMath.atan(x) - StrictMath.atan(x));
+            }
+        }, -1000f, 1000f, ATAN_ERROR);
+        ok &= check("atan2", new Function() {
+            @Override
+            public double error(float x) {
+                // points on circles of a few radii, all the way around
+                final double r = 1 + Math.abs(x) % 7;
+                final float px = (float) (r * StrictMath.cos(x));
+                final float py = (float) (r * StrictMath.sin(x));
+                return Math.abs(FastMath.atan2(py, px) - StrictMath.atan2(py, px));
+            }
+        }, -4f, 4f, ATAN2_ERROR);
+        ok &= checkSpecialValues();
+
+        if (!ok) {
+            System.out.println("FastMath is less accurate than documented");
+            System.exit(1);
+        }
+
+        System.out.println(String.format("%8s %12s %12s %12s", "ns/call", "FastMath", "Math", "StrictMath"));
+        report("sin", new float[] { timeFastSin(), timeMathSin(), timeStrictSin() });
+        report("atan2", new float[] { timeFastAtan2(), timeMathAtan2(), timeStrictAtan2() });
+    }
+
+    private interface Function {
+        double error(float x);
+    }
+
+    private static boolean check(String name, Function f, float min, float max, double maxError) {
+        double worst = 0;
+        float worstAt = 0f;
+        final Random random = new Random(1);
+        for (int i = 0; i <= SAMPLES; i++) {
+            final float x = i % 2 == 0 ? min + (max - min) * i / SAMPLES : min + (max - min) * random.nextFloat();
+            final double e = f.error(x);
+            if (e > worst || Double.isNaN(e)) {
+                worst = e;
+                worstAt = x;
+            }
+        }
+
+        final boolean ok = worst <= maxError;
+        System.out.println(String.format("%-6s max error %.3g at %s%s", name, worst, worstAt, ok ? "" : "  FAILED"));
+        return ok;
+    }
+
+    private static boolean checkSpecialValues() {
+        final float[][] cases = {
+            { 0f, 1f }, { 0f, -1f }, { -0f, -1f }, { 1f, 0f }, { -1f, 0f }, { 0f, 0f }, { -0f, -0f },
+            { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY },
+            { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY }, { 1f, Float.NEGATIVE_INFINITY }
+        };
+
+        boolean ok = true;
+        for (float[] c : cases) {
+            final float expected = (float) StrictMath.atan2(c[0], c[1]);
+            final float actual = FastMath.atan2(c[0], c[1]);
+            if (Math.abs(actual - expected) > ATAN2_ERROR
+                    || Float.floatToIntBits(Math.signum(actual)) != Float.floatToIntBits(Math.signum(expected))) {
+                System.out.println("atan2(" + c[0] + ", " + c[1] + ") = " + actual + ", expected " + expected);
+                ok = false;
+            }
+        }
+
+        ok &= Float.isNaN(FastMath.sin(Float.NaN)) && Float.isNaN(FastMath.cos(Float.POSITIVE_INFINITY));
+        ok &= FastMath.wrapDegrees(540f) == -180f && FastMath.wrapDegrees(-190f) == 170f;
+        ok &= FastMath.wrapRadians(FastMath.TWO_PI) == 0f;
+        return ok;
+    }
+
+    private static void report(String name, float[] nanos) {
+        System.out.println(String.format("%8s %12.2f %12.2f %12.2f", name, nanos[0], nanos[1], nanos[2]));
+    }
+
+    // each timer is a separate method so the JIT treats the loops alike
+
+    private static float timeFastSin() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += FastMath.sin((i & 0xffff) * 0.0001f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+    private static float timeMathSin() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += (float) Math.sin((i & 0xffff) * 0.0001f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+    private static float timeStrictSin() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += (float) StrictMath.sin((i & 0xffff) * 0.0001f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+    private static float timeFastAtan2() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += FastMath.atan2((i & 1023) - 512f, (i >> 10 & 1023) - 512f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+    private static float timeMathAtan2() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += (float) Math.atan2((i & 1023) - 512f, (i >> 10 & 1023) - 512f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+    private static float timeStrictAtan2() {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long start = System.nanoTime();
+            float acc = 0f;
+            for (int i = 0; i < CALLS; i++)
+                acc += (float) StrictMath.atan2((i & 1023) - 512f, (i >> 10 & 1023) - 512f);
+            best = Math.min(best, System.nanoTime() - start);
+            sink += acc;
+        }
+        return (float) best / CALLS;
+    }
+
+}
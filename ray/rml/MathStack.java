@@ -0,0 +1,167 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+import java.util.*;
+
+/**
+ * Hands out temporary {@link MutableVector3f vectors} and matrices that are
+ * reused instead of garbage collected.
+ * <p>
+ * A method that needs temporaries pushes a frame, takes what it needs, and
+ * pops the frame before returning, which makes everything taken since the
+ * push available again. For example:
+ *
+ * <pre>
+ * final MathStack stack = MathStack.current();
+ * stack.push();
+ * try {
+ *     MutableVector3f offset = stack.vector3().set(target).sub(position);
+ *     ...
+ * } finally {
+ *     stack.pop();
+ * }
+ * </pre>
+ *
+ * Temporaries must not be kept, or handed to anything that keeps them, after
+ * their frame is popped. Each thread has its own stack, so a stack must only
+ * be used by the thread that got it from {@link #current()}.
+ */
+public final class MathStack {
+
+    private static final ThreadLocal<MathStack> CURRENT = new ThreadLocal<MathStack>() {
+        @Override
+        protected MathStack initialValue() {
+            return new MathStack();
+        }
+    };
+
+    private MutableVector3f[] vectors    = new MutableVector3f[16];
+    private MutableMatrix3f[] matrices3  = new MutableMatrix3f[8];
+    private MutableMatrix4f[] matrices4  = new MutableMatrix4f[8];
+    private int               vectorTop  = 0;
+    private int               matrix3Top = 0;
+    private int               matrix4Top = 0;
+
+    // the tops saved by each push, three per frame
+    private int[]             frames     = new int[3 * 8];
+    private int               depth      = 0;
+
+    /**
+     * Gets the stack of the calling thread.
+     *
+     * @return The {@link MathStack stack}.
+     */
+    public static MathStack current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts a new frame. Everything taken after this is given back by the
+     * matching {@link #pop()}.
+     */
+    public void push() {
+        if (depth * 3 == frames.length)
+            frames = Arrays.copyOf(frames, frames.length * 2);
+
+        frames[depth * 3] = vectorTop;
+        frames[depth * 3 + 1] = matrix3Top;
+        frames[depth * 3 + 2] = matrix4Top;
+        depth++;
+    }
+
+    /**
+     * Ends the current frame, giving back everything taken since the matching
+     * {@link #push()}.
+     *
+     * @throws IllegalStateException
+     *             If there's no frame to end.
+     */
+    public void pop() {
+        if (depth == 0)
+            throw new IllegalStateException("No frame to pop");
+
+        depth--;
+        vectorTop = frames[depth * 3];
+        matrix3Top = frames[depth * 3 + 1];
+        matrix4Top = frames[depth * 3 + 2];
+    }
+
+    /**
+     * Gets the number of frames that have been pushed and not popped.
+     *
+     * @return The number of frames.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Takes a zero-length {@link MutableVector3f vector} for the current
+     * frame.
+     *
+     * @throws IllegalStateException
+     *             If no frame has been pushed.
+     */
+    public MutableVector3f vector3() {
+        checkFrame();
+        if (vectorTop == vectors.length)
+            vectors = Arrays.copyOf(vectors, vectors.length * 2);
+        if (vectors[vectorTop] == null)
+            vectors[vectorTop] = new MutableVector3f();
+
+        return vectors[vectorTop++].setZero();
+    }
+
+    /**
+     * Takes an identity {@link MutableMatrix3f matrix} for the current frame.
+     *
+     * @throws IllegalStateException
+     *             If no frame has been pushed.
+     */
+    public MutableMatrix3f matrix3() {
+        checkFrame();
+        if (matrix3Top == matrices3.length)
+            matrices3 = Arrays.copyOf(matrices3, matrices3.length * 2);
+        if (matrices3[matrix3Top] == null)
+            matrices3[matrix3Top] = new MutableMatrix3f();
+
+        return matrices3[matrix3Top++].setIdentity();
+    }
+
+    /**
+     * Takes an identity {@link MutableMatrix4f matrix} for the current frame.
+     *
+     * @throws IllegalStateException
+     *             If no frame has been pushed.
+     */
+    public MutableMatrix4f matrix4() {
+        checkFrame();
+        if (matrix4Top == matrices4.length)
+            matrices4 = Arrays.copyOf(matrices4, matrices4.length * 2);
+        if (matrices4[matrix4Top] == null)
+            matrices4[matrix4Top] = new MutableMatrix4f();
+
+        return matrices4[matrix4Top++].setIdentity();
+    }
+
+    private void checkFrame() {
+        // temporaries taken outside a frame would never be given back
+        if (depth == 0)
+            throw new IllegalStateException("No frame has been pushed");
+    }
+
+}
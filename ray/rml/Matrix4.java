@@ -320,4 +320,29 @@ public interface Matrix4 extends Matrix<Matrix4, Vector4>, AngleAxisRotatable<Ma
      */
     Quaternion toQuaternion();
 
+    /**
+     * Checks whether the bottom row of this {@link Matrix4 matrix} is
+     * <code>(0, 0, 0, 1)</code>, as it is for any combination of translations,
+     * rotations, and scales.
+     * <p>
+     * Such matrices can be multiplied and inverted with less work.
+     *
+     * @return True if this {@link Matrix4 matrix} is affine. Otherwise false.
+     */
+    boolean isAffine();
+
+    /**
+     * Copies the values of this {@link Matrix4 matrix} into the specified
+     * array, in column-major order, without allocating a new one.
+     *
+     * @param dest
+     *            The array to copy into.
+     * @param offset
+     *            The index at which the first value is copied.
+     * @return The destination array.
+     * @throws IndexOutOfBoundsException
+     *             If the array has less than 16 elements after the offset.
+     */
+    float[] toFloatArray(float[] dest, int offset);
+
 }
@@ -103,26 +103,23 @@ public final class Matrix4f implements Matrix4 {
     );
     // @formatter:on
 
-    private final float[][]       matrix          = new float[DIMENSIONS][DIMENSIONS];
+    // column-major, so it can be handed to OpenGL as is
+    private final float[]         matrix;
+
+    // whether the bottom row is (0, 0, 0, 1), as it is for anything built from
+    // translations, rotations, and scales
+    private final boolean         affine;
 
     private Matrix4f(float m00, float m01, float m02, float m03, float m10, float m11, float m12, float m13, float m20,
             float m21, float m22, float m23, float m30, float m31, float m32, float m33) {
-        matrix[0][0] = m00;
-        matrix[0][1] = m01;
-        matrix[0][2] = m02;
-        matrix[0][3] = m03;
-        matrix[1][0] = m10;
-        matrix[1][1] = m11;
-        matrix[1][2] = m12;
-        matrix[1][3] = m13;
-        matrix[2][0] = m20;
-        matrix[2][1] = m21;
-        matrix[2][2] = m22;
-        matrix[2][3] = m23;
-        matrix[3][0] = m30;
-        matrix[3][1] = m31;
-        matrix[3][2] = m32;
-        matrix[3][3] = m33;
+        // @formatter:off
+        this(new float[] {
+            m00, m01, m02, m03,
+            m10, m11, m12, m13,
+            m20, m21, m22, m23,
+            m30, m31, m32, m33
+        });
+        // @formatter:on
     }
 
     private Matrix4f(final float[][] data) {
@@ -136,15 +133,10 @@ public final class Matrix4f implements Matrix4 {
         // @formatter:on
     }
 
-    private Matrix4f(final float[] data) {
-        // @formatter:off
-        this(
-            data[0] , data[1] , data[2] , data[3] ,
-            data[4] , data[5] , data[6] , data[7] ,
-            data[8] , data[9] , data[10], data[11],
-            data[12], data[13], data[14], data[15]
-        );
-        // @formatter:on
+    // takes ownership of the array, which must not be changed afterwards
+    private Matrix4f(final float[] values) {
+        matrix = values;
+        affine = values[3] == 0f && values[7] == 0f && values[11] == 0f && values[15] == 1f;
     }
 
     /**
@@ -411,7 +403,9 @@ public final class Matrix4f implements Matrix4 {
      *             If the input array has less than 16 elements.
      */
     public static Matrix4 createFrom(final float[] values) {
-        return new Matrix4f(values);
+        final float[] copy = new float[DIMENSIONS * DIMENSIONS];
+        System.arraycopy(values, 0, copy, 0, copy.length);
+        return new Matrix4f(copy);
     }
 
     /**
@@ -534,6 +528,92 @@ public final class Matrix4f implements Matrix4 {
         return createFrom(c0, c1, c2, position);
     }
 
+    /**
+     * Creates a new {@link Matrix4 matrix} that combines <b>T</b>ranslation,
+     * <b>R</b>otation, and <b>S</b>caling, in that order.
+     * <p>
+     * This gives the same result as multiplying the translation, rotation, and
+     * scaling {@link Matrix4 matrices} together, without building them first.
+     *
+     * @param position
+     *            The translation.
+     * @param rotation
+     *            The rotation {@link Matrix3 matrix}.
+     * @param scale
+     *            The scaling factors along each axis.
+     * @return A new {@link Matrix4 matrix} with the combined transform.
+     */
+    public static Matrix4 createTransformFrom(final Vector3 position, final Matrix3 rotation, final Vector3 scale) {
+        final float sx = scale.x();
+        final float sy = scale.y();
+        final float sz = scale.z();
+        final float[] values = new float[DIMENSIONS * DIMENSIONS];
+        for (int r = 0; r < 3; r++) {
+            values[r] = rotation.value(r, 0) * sx;
+            values[4 + r] = rotation.value(r, 1) * sy;
+            values[8 + r] = rotation.value(r, 2) * sz;
+        }
+        values[12] = position.x();
+        values[13] = position.y();
+        values[14] = position.z();
+        values[15] = 1f;
+        return new Matrix4f(values);
+    }
+
+    /**
+     * Creates a new {@link Matrix4 matrix} that combines <b>T</b>ranslation,
+     * <b>R</b>otation, and <b>S</b>caling, in that order, with the rotation
+     * given as a unit {@link Quaternion quaternion}.
+     * <p>
+     * This gives the same result as
+     * {@link #createTransformFrom(Vector3, Matrix3, Vector3)} with
+     * {@link Quaternion#toMatrix3()}, without building the rotation
+     * {@link Matrix3 matrix} first.
+     *
+     * @param position
+     *            The translation.
+     * @param orientation
+     *            The rotation, as a unit {@link Quaternion quaternion}.
+     * @param scale
+     *            The scaling factors along each axis.
+     * @return A new {@link Matrix4 matrix} with the combined transform.
+     */
+    public static Matrix4 createTransformFrom(final Vector3 position, final Quaternion orientation, final Vector3 scale) {
+        final float w = orientation.w();
+        final float x = orientation.x();
+        final float y = orientation.y();
+        final float z = orientation.z();
+        final float sx = scale.x();
+        final float sy = scale.y();
+        final float sz = scale.z();
+
+        final float x2 = x * x;
+        final float y2 = y * y;
+        final float z2 = z * z;
+        final float wx = w * x;
+        final float wy = w * y;
+        final float wz = w * z;
+        final float xy = x * y;
+        final float xz = x * z;
+        final float yz = y * z;
+
+        final float[] values = new float[DIMENSIONS * DIMENSIONS];
+        values[0] = (1f - 2f * (y2 + z2)) * sx;
+        values[1] = 2f * (xy + wz) * sx;
+        values[2] = 2f * (xz - wy) * sx;
+        values[4] = 2f * (xy - wz) * sy;
+        values[5] = (1f - 2f * (x2 + z2)) * sy;
+        values[6] = 2f * (yz + wx) * sy;
+        values[8] = 2f * (wy + xz) * sz;
+        values[9] = 2f * (yz - wx) * sz;
+        values[10] = (1f - 2f * (x2 + y2)) * sz;
+        values[12] = position.x();
+        values[13] = position.y();
+        values[14] = position.z();
+        values[15] = 1f;
+        return new Matrix4f(values);
+    }
+
     /**
      * Creates a new inverse {@link Matrix4 matrix} from the specified values, if
      * possible.
@@ -816,17 +896,17 @@ public final class Matrix4f implements Matrix4 {
 
     @Override
     public float value(int row, int col) {
-        return matrix[col][row];
+        return matrix[col * 4 + row];
     }
 
     @Override
     public Vector4 row(int row) {
         // @formatter:off
         return Vector4f.createFrom(
-            matrix[0][row],
-            matrix[1][row],
-            matrix[2][row],
-            matrix[3][row]
+            matrix[row],
+            matrix[4 + row],
+            matrix[8 + row],
+            matrix[12 + row]
         );
         // @formatter:on
     }
@@ -835,123 +915,118 @@ public final class Matrix4f implements Matrix4 {
     public Vector4 column(int col) {
         // @formatter:off
         return Vector4f.createFrom(
-            matrix[col][0],
-            matrix[col][1],
-            matrix[col][2],
-            matrix[col][3]
+            matrix[col * 4],
+            matrix[col * 4 + 1],
+            matrix[col * 4 + 2],
+            matrix[col * 4 + 3]
         );
         // @formatter:on
     }
 
     @Override
     public Matrix4 add(final Matrix4 m) {
-        final float m00 = matrix[0][0] + m.value(0, 0);
-        final float m01 = matrix[0][1] + m.value(1, 0);
-        final float m02 = matrix[0][2] + m.value(2, 0);
-        final float m03 = matrix[0][3] + m.value(3, 0);
-        final float m10 = matrix[1][0] + m.value(0, 1);
-        final float m11 = matrix[1][1] + m.value(1, 1);
-        final float m12 = matrix[1][2] + m.value(2, 1);
-        final float m13 = matrix[1][3] + m.value(3, 1);
-        final float m20 = matrix[2][0] + m.value(0, 2);
-        final float m21 = matrix[2][1] + m.value(1, 2);
-        final float m22 = matrix[2][2] + m.value(2, 2);
-        final float m23 = matrix[2][3] + m.value(3, 2);
-        final float m30 = matrix[3][0] + m.value(0, 3);
-        final float m31 = matrix[3][1] + m.value(1, 3);
-        final float m32 = matrix[3][2] + m.value(2, 3);
-        final float m33 = matrix[3][3] + m.value(3, 3);
+        final float m00 = matrix[0] + m.value(0, 0);
+        final float m01 = matrix[1] + m.value(1, 0);
+        final float m02 = matrix[2] + m.value(2, 0);
+        final float m03 = matrix[3] + m.value(3, 0);
+        final float m10 = matrix[4] + m.value(0, 1);
+        final float m11 = matrix[5] + m.value(1, 1);
+        final float m12 = matrix[6] + m.value(2, 1);
+        final float m13 = matrix[7] + m.value(3, 1);
+        final float m20 = matrix[8] + m.value(0, 2);
+        final float m21 = matrix[9] + m.value(1, 2);
+        final float m22 = matrix[10] + m.value(2, 2);
+        final float m23 = matrix[11] + m.value(3, 2);
+        final float m30 = matrix[12] + m.value(0, 3);
+        final float m31 = matrix[13] + m.value(1, 3);
+        final float m32 = matrix[14] + m.value(2, 3);
+        final float m33 = matrix[15] + m.value(3, 3);
         return new Matrix4f(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
     }
 
     @Override
     public Matrix4 sub(final Matrix4 m) {
-        final float m00 = matrix[0][0] - m.value(0, 0);
-        final float m01 = matrix[0][1] - m.value(1, 0);
-        final float m02 = matrix[0][2] - m.value(2, 0);
-        final float m03 = matrix[0][3] - m.value(3, 0);
-        final float m10 = matrix[1][0] - m.value(0, 1);
-        final float m11 = matrix[1][1] - m.value(1, 1);
-        final float m12 = matrix[1][2] - m.value(2, 1);
-        final float m13 = matrix[1][3] - m.value(3, 1);
-        final float m20 = matrix[2][0] - m.value(0, 2);
-        final float m21 = matrix[2][1] - m.value(1, 2);
-        final float m22 = matrix[2][2] - m.value(2, 2);
-        final float m23 = matrix[2][3] - m.value(3, 2);
-        final float m30 = matrix[3][0] - m.value(0, 3);
-        final float m31 = matrix[3][1] - m.value(1, 3);
-        final float m32 = matrix[3][2] - m.value(2, 3);
-        final float m33 = matrix[3][3] - m.value(3, 3);
+        final float m00 = matrix[0] - m.value(0, 0);
+        final float m01 = matrix[1] - m.value(1, 0);
+        final float m02 = matrix[2] - m.value(2, 0);
+        final float m03 = matrix[3] - m.value(3, 0);
+        final float m10 = matrix[4] - m.value(0, 1);
+        final float m11 = matrix[5] - m.value(1, 1);
+        final float m12 = matrix[6] - m.value(2, 1);
+        final float m13 = matrix[7] - m.value(3, 1);
+        final float m20 = matrix[8] - m.value(0, 2);
+        final float m21 = matrix[9] - m.value(1, 2);
+        final float m22 = matrix[10] - m.value(2, 2);
+        final float m23 = matrix[11] - m.value(3, 2);
+        final float m30 = matrix[12] - m.value(0, 3);
+        final float m31 = matrix[13] - m.value(1, 3);
+        final float m32 = matrix[14] - m.value(2, 3);
+        final float m33 = matrix[15] - m.value(3, 3);
         return new Matrix4f(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
     }
 
     @Override
     public Matrix4 mult(float s) {
-        final float m00 = matrix[0][0] * s;
-        final float m01 = matrix[0][1] * s;
-        final float m02 = matrix[0][2] * s;
-        final float m03 = matrix[0][3] * s;
-        final float m10 = matrix[1][0] * s;
-        final float m11 = matrix[1][1] * s;
-        final float m12 = matrix[1][2] * s;
-        final float m13 = matrix[1][3] * s;
-        final float m20 = matrix[2][0] * s;
-        final float m21 = matrix[2][1] * s;
-        final float m22 = matrix[2][2] * s;
-        final float m23 = matrix[2][3] * s;
-        final float m30 = matrix[3][0] * s;
-        final float m31 = matrix[3][1] * s;
-        final float m32 = matrix[3][2] * s;
-        final float m33 = matrix[3][3] * s;
+        final float m00 = matrix[0] * s;
+        final float m01 = matrix[1] * s;
+        final float m02 = matrix[2] * s;
+        final float m03 = matrix[3] * s;
+        final float m10 = matrix[4] * s;
+        final float m11 = matrix[5] * s;
+        final float m12 = matrix[6] * s;
+        final float m13 = matrix[7] * s;
+        final float m20 = matrix[8] * s;
+        final float m21 = matrix[9] * s;
+        final float m22 = matrix[10] * s;
+        final float m23 = matrix[11] * s;
+        final float m30 = matrix[12] * s;
+        final float m31 = matrix[13] * s;
+        final float m32 = matrix[14] * s;
+        final float m33 = matrix[15] * s;
         return new Matrix4f(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
     }
 
     @Override
     public Vector4 mult(final Vector4 v) {
-        final float tx = matrix[0][0] * v.x() + matrix[1][0] * v.y() + matrix[2][0] * v.z() + matrix[3][0] * v.w();
-        final float ty = matrix[0][1] * v.x() + matrix[1][1] * v.y() + matrix[2][1] * v.z() + matrix[3][1] * v.w();
-        final float tz = matrix[0][2] * v.x() + matrix[1][2] * v.y() + matrix[2][2] * v.z() + matrix[3][2] * v.w();
-        final float tw = matrix[0][3] * v.x() + matrix[1][3] * v.y() + matrix[2][3] * v.z() + matrix[3][3] * v.w();
+        final float tx = matrix[0] * v.x() + matrix[4] * v.y() + matrix[8] * v.z() + matrix[12] * v.w();
+        final float ty = matrix[1] * v.x() + matrix[5] * v.y() + matrix[9] * v.z() + matrix[13] * v.w();
+        final float tz = matrix[2] * v.x() + matrix[6] * v.y() + matrix[10] * v.z() + matrix[14] * v.w();
+        final float tw = matrix[3] * v.x() + matrix[7] * v.y() + matrix[11] * v.z() + matrix[15] * v.w();
         return Vector4f.createFrom(tx, ty, tz, tw);
     }
 
     @Override
     public Matrix4 mult(final Matrix4 m) {
-        // @formatter:off
-        final float m00 = value(0, 0) * m.value(0, 0) + value(0, 1) * m.value(1, 0)
-                        + value(0, 2) * m.value(2, 0) + value(0, 3) * m.value(3, 0);
-        final float m10 = value(0, 0) * m.value(0, 1) + value(0, 1) * m.value(1, 1)
-                        + value(0, 2) * m.value(2, 1) + value(0, 3) * m.value(3, 1);
-        final float m20 = value(0, 0) * m.value(0, 2) + value(0, 1) * m.value(1, 2)
-                        + value(0, 2) * m.value(2, 2) + value(0, 3) * m.value(3, 2);
-        final float m30 = value(0, 0) * m.value(0, 3) + value(0, 1) * m.value(1, 3)
-                        + value(0, 2) * m.value(2, 3) + value(0, 3) * m.value(3, 3);
-        final float m01 = value(1, 0) * m.value(0, 0) + value(1, 1) * m.value(1, 0)
-                        + value(1, 2) * m.value(2, 0) + value(1, 3) * m.value(3, 0);
-        final float m11 = value(1, 0) * m.value(0, 1) + value(1, 1) * m.value(1, 1)
-                        + value(1, 2) * m.value(2, 1) + value(1, 3) * m.value(3, 1);
-        final float m21 = value(1, 0) * m.value(0, 2) + value(1, 1) * m.value(1, 2)
-                        + value(1, 2) * m.value(2, 2) + value(1, 3) * m.value(3, 2);
-        final float m31 = value(1, 0) * m.value(0, 3) + value(1, 1) * m.value(1, 3)
-                        + value(1, 2) * m.value(2, 3) + value(1, 3) * m.value(3, 3);
-        final float m02 = value(2, 0) * m.value(0, 0) + value(2, 1) * m.value(1, 0)
-                        + value(2, 2) * m.value(2, 0) + value(2, 3) * m.value(3, 0);
-        final float m12 = value(2, 0) * m.value(0, 1) + value(2, 1) * m.value(1, 1)
-                        + value(2, 2) * m.value(2, 1) + value(2, 3) * m.value(3, 1);
-        final float m22 = value(2, 0) * m.value(0, 2) + value(2, 1) * m.value(1, 2)
-                        + value(2, 2) * m.value(2, 2) + value(2, 3) * m.value(3, 2);
-        final float m32 = value(2, 0) * m.value(0, 3) + value(2, 1) * m.value(1, 3)
-                        + value(2, 2) * m.value(2, 3) + value(2, 3) * m.value(3, 3);
-        final float m03 = value(3, 0) * m.value(0, 0) + value(3, 1) * m.value(1, 0)
-                        + value(3, 2) * m.value(2, 0) + value(3, 3) * m.value(3, 0);
-        final float m13 = value(3, 0) * m.value(0, 1) + value(3, 1) * m.value(1, 1)
-                        + value(3, 2) * m.value(2, 1) + value(3, 3) * m.value(3, 1);
-        final float m23 = value(3, 0) * m.value(0, 2) + value(3, 1) * m.value(1, 2)
-                        + value(3, 2) * m.value(2, 2) + value(3, 3) * m.value(3, 2);
-        final float m33 = value(3, 0) * m.value(0, 3) + value(3, 1) * m.value(1, 3)
-                        + value(3, 2) * m.value(2, 3) + value(3, 3) * m.value(3, 3);
-        // @formatter:on
-        return new Matrix4f(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
+        if (!(m instanceof Matrix4f))
+            return multGeneric(m);
+
+        final float[] a = matrix;
+        final float[] b = ((Matrix4f) m).matrix;
+        final float[] dest = new float[DIMENSIONS * DIMENSIONS];
+        if (affine && ((Matrix4f) m).affine) {
+            // the bottom rows are known, so 36 of the 64 products can be skipped
+            for (int c = 0; c < 4; c++) {
+                final float b0 = b[c * 4];
+                final float b1 = b[c * 4 + 1];
+                final float b2 = b[c * 4 + 2];
+                for (int r = 0; r < 3; r++)
+                    dest[c * 4 + r] = a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2;
+            }
+            dest[12] += a[12];
+            dest[13] += a[13];
+            dest[14] += a[14];
+            dest[15] = 1f;
+        } else {
+            for (int c = 0; c < 4; c++) {
+                final float b0 = b[c * 4];
+                final float b1 = b[c * 4 + 1];
+                final float b2 = b[c * 4 + 2];
+                final float b3 = b[c * 4 + 3];
+                for (int r = 0; r < 4; r++)
+                    dest[c * 4 + r] = a[r] * b0 + a[4 + r] * b1 + a[8 + r] * b2 + a[12 + r] * b3;
+            }
+        }
+        return new Matrix4f(dest);
     }
 
     @Override
@@ -1006,16 +1081,19 @@ public final class Matrix4f implements Matrix4 {
     public float determinant() {
         // @formatter:off
         return getDeterminant(
-            matrix[0][0], matrix[0][1], matrix[0][2], matrix[0][3],
-            matrix[1][0], matrix[1][1], matrix[1][2], matrix[1][3],
-            matrix[2][0], matrix[2][1], matrix[2][2], matrix[2][3],
-            matrix[3][0], matrix[3][1], matrix[3][2], matrix[3][3]
+            matrix[0], matrix[1], matrix[2], matrix[3],
+            matrix[4], matrix[5], matrix[6], matrix[7],
+            matrix[8], matrix[9], matrix[10], matrix[11],
+            matrix[12], matrix[13], matrix[14], matrix[15]
         );
         // @formatter:on
     }
 
     @Override
     public Matrix4 inverse() {
+        if (affine)
+            return createAffineInverse(matrix);
+
         return createInverseFrom(matrix);
     }
 
@@ -1026,7 +1104,13 @@ public final class Matrix4f implements Matrix4 {
 
     @Override
     public Matrix3 toMatrix3() {
-        return Matrix3f.createFrom(matrix);
+        // @formatter:off
+        return Matrix3f.createFrom(new float[] {
+            matrix[0], matrix[1], matrix[2],
+            matrix[4], matrix[5], matrix[6],
+            matrix[8], matrix[9], matrix[10]
+        });
+        // @formatter:on
     }
 
     @Override
@@ -1041,7 +1125,18 @@ public final class Matrix4f implements Matrix4 {
      */
     @Override
     public float[] toFloatArray() {
-        return MatrixUtil.toFlatArray(matrix);
+        return matrix.clone();
+    }
+
+    @Override
+    public float[] toFloatArray(final float[] dest, int offset) {
+        System.arraycopy(matrix, 0, dest, offset, DIMENSIONS * DIMENSIONS);
+        return dest;
+    }
+
+    @Override
+    public boolean isAffine() {
+        return affine;
     }
 
     @Override
@@ -1073,14 +1168,52 @@ public final class Matrix4f implements Matrix4 {
 
         // @formatter:off
         return String.format(fmt.toString(),
-            matrix[0][0], matrix[1][0], matrix[2][0], matrix[3][0],
-            matrix[0][1], matrix[1][1], matrix[2][1], matrix[3][1],
-            matrix[0][2], matrix[1][2], matrix[2][2], matrix[3][2],
-            matrix[0][3], matrix[1][3], matrix[2][3], matrix[3][3]
+            matrix[0], matrix[4], matrix[8], matrix[12],
+            matrix[1], matrix[5], matrix[9], matrix[13],
+            matrix[2], matrix[6], matrix[10], matrix[14],
+            matrix[3], matrix[7], matrix[11], matrix[15]
         );
         // @formatter:on
     }
 
+    private Matrix4 multGeneric(final Matrix4 m) {
+        // @formatter:off
+        final float m00 = value(0, 0) * m.value(0, 0) + value(0, 1) * m.value(1, 0)
+                        + value(0, 2) * m.value(2, 0) + value(0, 3) * m.value(3, 0);
+        final float m10 = value(0, 0) * m.value(0, 1) + value(0, 1) * m.value(1, 1)
+                        + value(0, 2) * m.value(2, 1) + value(0, 3) * m.value(3, 1);
+        final float m20 = value(0, 0) * m.value(0, 2) + value(0, 1) * m.value(1, 2)
+                        + value(0, 2) * m.value(2, 2) + value(0, 3) * m.value(3, 2);
+        final float m30 = value(0, 0) * m.value(0, 3) + value(0, 1) * m.value(1, 3)
+                        + value(0, 2) * m.value(2, 3) + value(0, 3) * m.value(3, 3);
+        final float m01 = value(1, 0) * m.value(0, 0) + value(1, 1) * m.value(1, 0)
+                        + value(1, 2) * m.value(2, 0) + value(1, 3) * m.value(3, 0);
+        final float m11 = value(1, 0) * m.value(0, 1) + value(1, 1) * m.value(1, 1)
+                        + value(1, 2) * m.value(2, 1) + value(1, 3) * m.value(3, 1);
+        final float m21 = value(1, 0) * m.value(0, 2) + value(1, 1) * m.value(1, 2)
+                        + value(1, 2) * m.value(2, 2) + value(1, 3) * m.value(3, 2);
+        final float m31 = value(1, 0) * m.value(0, 3) + value(1, 1) * m.value(1, 3)
+                        + value(1, 2) * m.value(2, 3) + value(1, 3) * m.value(3, 3);
+        final float m02 = value(2, 0) * m.value(0, 0) + value(2, 1) * m.value(1, 0)
+                        + value(2, 2) * m.value(2, 0) + value(2, 3) * m.value(3, 0);
+        final float m12 = value(2, 0) * m.value(0, 1) + value(2, 1) * m.value(1, 1)
+                        + value(2, 2) * m.value(2, 1) + value(2, 3) * m.value(3, 1);
+        final float m22 = value(2, 0) * m.value(0, 2) + value(2, 1) * m.value(1, 2)
+                        + value(2, 2) * m.value(2, 2) + value(2, 3) * m.value(3, 2);
+        final float m32 = value(2, 0) * m.value(0, 3) + value(2, 1) * m.value(1, 3)
+                        + value(2, 2) * m.value(2, 3) + value(2, 3) * m.value(3, 3);
+        final float m03 = value(3, 0) * m.value(0, 0) + value(3, 1) * m.value(1, 0)
+                        + value(3, 2) * m.value(2, 0) + value(3, 3) * m.value(3, 0);
+        final float m13 = value(3, 0) * m.value(0, 1) + value(3, 1) * m.value(1, 1)
+                        + value(3, 2) * m.value(2, 1) + value(3, 3) * m.value(3, 1);
+        final float m23 = value(3, 0) * m.value(0, 2) + value(3, 1) * m.value(1, 2)
+                        + value(3, 2) * m.value(2, 2) + value(3, 3) * m.value(3, 2);
+        final float m33 = value(3, 0) * m.value(0, 3) + value(3, 1) * m.value(1, 3)
+                        + value(3, 2) * m.value(2, 3) + value(3, 3) * m.value(3, 3);
+        // @formatter:on
+        return new Matrix4f(m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23, m30, m31, m32, m33);
+    }
+
     private static float[] getAdjugate(float m00, float m01, float m02, float m03, float m10, float m11, float m12,
             float m13, float m20, float m21, float m22, float m23, float m30, float m31, float m32, float m33) {
 
@@ -1162,4 +1295,34 @@ public final class Matrix4f implements Matrix4 {
         // inverse(M) = 1/determinant(M) * adjugate(M)
         return adj.mult(1.0f / det);
     }
+
+    // inverse([A t; 0 1]) = [inverse(A) -inverse(A)*t; 0 1], which only needs
+    // the 3x3 part to be inverted
+    private static Matrix4 createAffineInverse(final float[] m) {
+        final float c00 = m[5] * m[10] - m[9] * m[6];
+        final float c01 = m[9] * m[2] - m[1] * m[10];
+        final float c02 = m[1] * m[6] - m[5] * m[2];
+
+        final float det = m[0] * c00 + m[4] * c01 + m[8] * c02;
+        if (FloatUtil.isZero(det))
+            throw new ArithmeticException("Matrix determinant is zero: non-invertible matrix");
+
+        final float invDet = 1.0f / det;
+        final float[] inv = new float[DIMENSIONS * DIMENSIONS];
+        inv[0] = c00 * invDet;
+        inv[1] = c01 * invDet;
+        inv[2] = c02 * invDet;
+        inv[4] = (m[8] * m[6] - m[4] * m[10]) * invDet;
+        inv[5] = (m[0] * m[10] - m[8] * m[2]) * invDet;
+        inv[6] = (m[4] * m[2] - m[0] * m[6]) * invDet;
+        inv[8] = (m[4] * m[9] - m[8] * m[5]) * invDet;
+        inv[9] = (m[8] * m[1] - m[0] * m[9]) * invDet;
+        inv[10] = (m[0] * m[5] - m[4] * m[1]) * invDet;
+
+        inv[12] = -(inv[0] * m[12] + inv[4] * m[13] + inv[8] * m[14]);
+        inv[13] = -(inv[1] * m[12] + inv[5] * m[13] + inv[9] * m[14]);
+        inv[14] = -(inv[2] * m[12] + inv[6] * m[13] + inv[10] * m[14]);
+        inv[15] = 1f;
+        return new Matrix4f(inv);
+    }
 }
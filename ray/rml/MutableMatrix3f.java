@@ -0,0 +1,377 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+/**
+ * A mutable single-precision floating point 3x3 matrix, the in-place
+ * counterpart of {@link Matrix3f}.
+ * <p>
+ * The values are kept in a flat column-major array, the same order as
+ * {@link Matrix3#toFloatArray()}. Products are computed with the same
+ * arithmetic as {@link Matrix3f}, so both give identical results for the same
+ * inputs.
+ * <p>
+ * Operations that take a destination may be given <code>this</code> matrix or
+ * one of the arguments as the destination.
+ *
+ * @see MutableVector3f
+ * @see MathStack
+ */
+public final class MutableMatrix3f {
+
+    // m[col * 3 + row]
+    private final float[] m = new float[9];
+
+    /**
+     * Creates a new identity matrix.
+     */
+    public MutableMatrix3f() {
+        setIdentity();
+    }
+
+    public MutableMatrix3f(final Matrix3 mat) {
+        set(mat);
+    }
+
+    public float value(int row, int col) {
+        return m[col * 3 + row];
+    }
+
+    public MutableMatrix3f set(int row, int col, float value) {
+        m[col * 3 + row] = value;
+        return this;
+    }
+
+    public MutableMatrix3f setIdentity() {
+        return set(1f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Sets all the values, in column-major order.
+     */
+    public MutableMatrix3f set(float m00, float m10, float m20, float m01, float m11, float m21, float m02, float m12,
+            float m22) {
+        m[0] = m00;
+        m[1] = m10;
+        m[2] = m20;
+        m[3] = m01;
+        m[4] = m11;
+        m[5] = m21;
+        m[6] = m02;
+        m[7] = m12;
+        m[8] = m22;
+        return this;
+    }
+
+    public MutableMatrix3f set(final Matrix3 mat) {
+        // @formatter:off
+        return set(
+            mat.value(0, 0), mat.value(1, 0), mat.value(2, 0),
+            mat.value(0, 1), mat.value(1, 1), mat.value(2, 1),
+            mat.value(0, 2), mat.value(1, 2), mat.value(2, 2)
+        );
+        // @formatter:on
+    }
+
+    public MutableMatrix3f set(final MutableMatrix3f mat) {
+        System.arraycopy(mat.m, 0, m, 0, 9);
+        return this;
+    }
+
+    /**
+     * Sets the values from a column-major array, starting at the given offset.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If the array has less than 9 elements after the offset.
+     */
+    public MutableMatrix3f set(final float[] values, int offset) {
+        System.arraycopy(values, offset, m, 0, 9);
+        return this;
+    }
+
+    /**
+     * Makes <code>this</code> a rotation about the given axis, which does not
+     * need to be of unit length. The result is the same as
+     * {@link Matrix3f#createRotationFrom(Angle, Vector3)}.
+     *
+     * @param radians
+     *            The angle of rotation, in radians.
+     * @throws ArithmeticException
+     *             If the axis has zero length.
+     */
+    public MutableMatrix3f setRotation(float radians, float ax, float ay, float az) {
+        final float sqlen = ax * ax + ay * ay + az * az;
+        if (FloatUtil.isZero(sqlen))
+            throw new ArithmeticException("Cannot normalize zero-length vector");
+
+        final float oneOverLen = MathUtil.invSqrt(sqlen);
+        final float x = ax * oneOverLen;
+        final float y = ay * oneOverLen;
+        final float z = az * oneOverLen;
+
+        final float cos = MathUtil.cos(radians);
+        final float sin = MathUtil.sin(radians);
+        final float t = 1.0f - cos;
+
+        final float txy = t * (x * y);
+        final float txz = t * (x * z);
+        final float tyz = t * (y * z);
+
+        final float xsin = x * sin;
+        final float ysin = y * sin;
+        final float zsin = z * sin;
+
+        // @formatter:off
+        return set(
+            t * (x * x) + cos, txy + zsin, txz - ysin,
+            txy - zsin, t * (y * y) + cos, tyz + xsin,
+            txz + ysin, tyz - xsin, t * (z * z) + cos
+        );
+        // @formatter:on
+    }
+
+    public MutableMatrix3f setRotation(final Angle angle, final Vector3 axis) {
+        return setRotation(angle.valueRadians(), axis.x(), axis.y(), axis.z());
+    }
+
+    /**
+     * Sets <code>this = this * mat</code>.
+     */
+    public MutableMatrix3f mult(final MutableMatrix3f mat) {
+        return mult(mat, this);
+    }
+
+    /**
+     * Writes <code>this * mat</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableMatrix3f mult(final MutableMatrix3f mat, final MutableMatrix3f dest) {
+        final float[] a = m;
+        final float[] b = mat.m;
+        // @formatter:off
+        return dest.set(
+            a[0] * b[0] + a[3] * b[1] + a[6] * b[2],
+            a[1] * b[0] + a[4] * b[1] + a[7] * b[2],
+            a[2] * b[0] + a[5] * b[1] + a[8] * b[2],
+            a[0] * b[3] + a[3] * b[4] + a[6] * b[5],
+            a[1] * b[3] + a[4] * b[4] + a[7] * b[5],
+            a[2] * b[3] + a[5] * b[4] + a[8] * b[5],
+            a[0] * b[6] + a[3] * b[7] + a[6] * b[8],
+            a[1] * b[6] + a[4] * b[7] + a[7] * b[8],
+            a[2] * b[6] + a[5] * b[7] + a[8] * b[8]
+        );
+        // @formatter:on
+    }
+
+    /**
+     * Sets <code>this = this * mat</code>.
+     */
+    public MutableMatrix3f mult(final Matrix3 mat) {
+        final float[] a = m;
+        // @formatter:off
+        final float b0 = mat.value(0, 0), b1 = mat.value(1, 0), b2 = mat.value(2, 0);
+        final float b3 = mat.value(0, 1), b4 = mat.value(1, 1), b5 = mat.value(2, 1);
+        final float b6 = mat.value(0, 2), b7 = mat.value(1, 2), b8 = mat.value(2, 2);
+        return set(
+            a[0] * b0 + a[3] * b1 + a[6] * b2,
+            a[1] * b0 + a[4] * b1 + a[7] * b2,
+            a[2] * b0 + a[5] * b1 + a[8] * b2,
+            a[0] * b3 + a[3] * b4 + a[6] * b5,
+            a[1] * b3 + a[4] * b4 + a[7] * b5,
+            a[2] * b3 + a[5] * b4 + a[8] * b5,
+            a[0] * b6 + a[3] * b7 + a[6] * b8,
+            a[1] * b6 + a[4] * b7 + a[7] * b8,
+            a[2] * b6 + a[5] * b7 + a[8] * b8
+        );
+        // @formatter:on
+    }
+
+    /**
+     * Sets <code>this = mat * this</code>, which applies <code>mat</code>
+     * after <code>this</code> transform.
+     */
+    public MutableMatrix3f multLeft(final MutableMatrix3f mat) {
+        return mat.mult(this, this);
+    }
+
+    public MutableMatrix3f mult(float s) {
+        for (int i = 0; i < 9; i++)
+            m[i] *= s;
+
+        return this;
+    }
+
+    /**
+     * Rotates <code>this</code> matrix about the given axis, the same way
+     * {@link Matrix3#rotate(Angle, Vector3)} does, without creating the
+     * rotation matrix.
+     *
+     * @param radians
+     *            The angle of rotation, in radians.
+     * @throws ArithmeticException
+     *             If the axis has zero length.
+     */
+    public MutableMatrix3f rotate(float radians, float ax, float ay, float az) {
+        // build the rotation in place, keeping the current values in locals
+        final float a0 = m[0], a1 = m[1], a2 = m[2], a3 = m[3], a4 = m[4], a5 = m[5], a6 = m[6], a7 = m[7], a8 = m[8];
+        setRotation(radians, ax, ay, az);
+        final float b0 = m[0], b1 = m[1], b2 = m[2], b3 = m[3], b4 = m[4], b5 = m[5], b6 = m[6], b7 = m[7], b8 = m[8];
+        // @formatter:off
+        return set(
+            a0 * b0 + a3 * b1 + a6 * b2,
+            a1 * b0 + a4 * b1 + a7 * b2,
+            a2 * b0 + a5 * b1 + a8 * b2,
+            a0 * b3 + a3 * b4 + a6 * b5,
+            a1 * b3 + a4 * b4 + a7 * b5,
+            a2 * b3 + a5 * b4 + a8 * b5,
+            a0 * b6 + a3 * b7 + a6 * b8,
+            a1 * b6 + a4 * b7 + a7 * b8,
+            a2 * b6 + a5 * b7 + a8 * b8
+        );
+        // @formatter:on
+    }
+
+    public MutableMatrix3f rotate(final Angle angle, final Vector3 axis) {
+        return rotate(angle.valueRadians(), axis.x(), axis.y(), axis.z());
+    }
+
+    /**
+     * Scales the columns, which is the same as
+     * {@link Matrix3#scale(float, float, float)}.
+     */
+    public MutableMatrix3f scale(float sx, float sy, float sz) {
+        m[0] *= sx;
+        m[1] *= sx;
+        m[2] *= sx;
+        m[3] *= sy;
+        m[4] *= sy;
+        m[5] *= sy;
+        m[6] *= sz;
+        m[7] *= sz;
+        m[8] *= sz;
+        return this;
+    }
+
+    /**
+     * Sets <code>v = this * v</code>.
+     *
+     * @return The vector.
+     */
+    public MutableVector3f transform(final MutableVector3f v) {
+        return transform(v, v);
+    }
+
+    /**
+     * Writes <code>this * v</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f transform(final MutableVector3f v, final MutableVector3f dest) {
+        final float x = v.x();
+        final float y = v.y();
+        final float z = v.z();
+        return dest.set(m[0] * x + m[3] * y + m[6] * z, m[1] * x + m[4] * y + m[7] * z, m[2] * x + m[5] * y + m[8] * z);
+    }
+
+    /**
+     * Writes <code>transpose(this) * v</code> into the destination. For a
+     * rotation, this is the inverse rotation.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f transformTransposed(final MutableVector3f v, final MutableVector3f dest) {
+        final float x = v.x();
+        final float y = v.y();
+        final float z = v.z();
+        return dest.set(m[0] * x + m[1] * y + m[2] * z, m[3] * x + m[4] * y + m[5] * z, m[6] * x + m[7] * y + m[8] * z);
+    }
+
+    public float determinant() {
+        return m[0] * (m[4] * m[8] - m[5] * m[7]) - m[3] * (m[1] * m[8] - m[2] * m[7]) + m[6] * (m[1] * m[5] - m[2] * m[4]);
+    }
+
+    public MutableMatrix3f transpose() {
+        float t = m[1];
+        m[1] = m[3];
+        m[3] = t;
+        t = m[2];
+        m[2] = m[6];
+        m[6] = t;
+        t = m[5];
+        m[5] = m[7];
+        m[7] = t;
+        return this;
+    }
+
+    /**
+     * Inverts <code>this</code> matrix in place.
+     *
+     * @throws ArithmeticException
+     *             If the matrix is singular.
+     */
+    public MutableMatrix3f invert() {
+        final float det = determinant();
+        if (FloatUtil.isZero(det))
+            throw new ArithmeticException("Matrix determinant is zero: non-invertible matrix");
+
+        final float d = 1.0f / det;
+        // @formatter:off
+        return set(
+            (m[4] * m[8] - m[5] * m[7]) * d,
+            (m[2] * m[7] - m[1] * m[8]) * d,
+            (m[1] * m[5] - m[2] * m[4]) * d,
+            (m[5] * m[6] - m[3] * m[8]) * d,
+            (m[0] * m[8] - m[2] * m[6]) * d,
+            (m[2] * m[3] - m[0] * m[5]) * d,
+            (m[3] * m[7] - m[4] * m[6]) * d,
+            (m[1] * m[6] - m[0] * m[7]) * d,
+            (m[0] * m[4] - m[1] * m[3]) * d
+        );
+        // @formatter:on
+    }
+
+    /**
+     * Writes the values into the array in column-major order, starting at the
+     * given offset.
+     *
+     * @return The array.
+     */
+    public float[] get(final float[] dest, int offset) {
+        System.arraycopy(m, 0, dest, offset, 9);
+        return dest;
+    }
+
+    /**
+     * Creates an immutable copy of the current values.
+     *
+     * @return A new {@link Matrix3 matrix}.
+     */
+    public Matrix3 toMatrix3() {
+        return Matrix3f.createFrom(m);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append('(');
+        for (int row = 0; row < 3; row++) {
+            sb.append(row == 0 ? "[" : ", [");
+            sb.append(value(row, 0)).append(", ").append(value(row, 1)).append(", ").append(value(row, 2)).append(']');
+        }
+        return sb.append(')').toString();
+    }
+
+}
@@ -0,0 +1,375 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+/**
+ * A mutable single-precision floating point 4x4 matrix, the in-place
+ * counterpart of {@link Matrix4f}.
+ * <p>
+ * The values are kept in a flat column-major array, the same order as
+ * {@link Matrix4#toFloatArray()} and as OpenGL expects them, so
+ * {@link #get(float[], int)} can fill an upload buffer directly. Products are
+ * computed with the same arithmetic as {@link Matrix4f}, so both give
+ * identical results for the same inputs.
+ * <p>
+ * Operations that take a destination may be given <code>this</code> matrix or
+ * one of the arguments as the destination.
+ *
+ * @see MutableVector3f
+ * @see MathStack
+ */
+public final class MutableMatrix4f {
+
+    // m[col * 4 + row]
+    private final float[] m       = new float[16];
+    private final float[] scratch = new float[16];
+
+    /**
+     * Creates a new identity matrix.
+     */
+    public MutableMatrix4f() {
+        setIdentity();
+    }
+
+    public MutableMatrix4f(final Matrix4 mat) {
+        set(mat);
+    }
+
+    public float value(int row, int col) {
+        return m[col * 4 + row];
+    }
+
+    public MutableMatrix4f set(int row, int col, float value) {
+        m[col * 4 + row] = value;
+        return this;
+    }
+
+    public MutableMatrix4f setIdentity() {
+        for (int i = 0; i < 16; i++)
+            m[i] = (i % 5 == 0) ? 1f : 0f;
+
+        return this;
+    }
+
+    public MutableMatrix4f set(final Matrix4 mat) {
+        for (int col = 0; col < 4; col++)
+            for (int row = 0; row < 4; row++)
+                m[col * 4 + row] = mat.value(row, col);
+
+        return this;
+    }
+
+    public MutableMatrix4f set(final MutableMatrix4f mat) {
+        System.arraycopy(mat.m, 0, m, 0, 16);
+        return this;
+    }
+
+    /**
+     * Sets the values from a column-major array, starting at the given offset.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If the array has less than 16 elements after the offset.
+     */
+    public MutableMatrix4f set(final float[] values, int offset) {
+        System.arraycopy(values, offset, m, 0, 16);
+        return this;
+    }
+
+    /**
+     * Makes <code>this</code> the transform that scales, then rotates, then
+     * translates, which is how a scene node's position, rotation, and scale
+     * are combined.
+     */
+    public MutableMatrix4f setTransform(final MutableVector3f position, final MutableMatrix3f rotation,
+            final MutableVector3f scale) {
+        final float sx = scale.x();
+        final float sy = scale.y();
+        final float sz = scale.z();
+        for (int row = 0; row < 3; row++) {
+            m[row] = rotation.value(row, 0) * sx;
+            m[4 + row] = rotation.value(row, 1) * sy;
+            m[8 + row] = rotation.value(row, 2) * sz;
+        }
+        m[3] = 0f;
+        m[7] = 0f;
+        m[11] = 0f;
+        m[12] = position.x();
+        m[13] = position.y();
+        m[14] = position.z();
+        m[15] = 1f;
+        return this;
+    }
+
+    public MutableMatrix4f setTransform(final Vector3 position, final Matrix3 rotation, final Vector3 scale) {
+        final float sx = scale.x();
+        final float sy = scale.y();
+        final float sz = scale.z();
+        for (int row = 0; row < 3; row++) {
+            m[row] = rotation.value(row, 0) * sx;
+            m[4 + row] = rotation.value(row, 1) * sy;
+            m[8 + row] = rotation.value(row, 2) * sz;
+        }
+        m[3] = 0f;
+        m[7] = 0f;
+        m[11] = 0f;
+        m[12] = position.x();
+        m[13] = position.y();
+        m[14] = position.z();
+        m[15] = 1f;
+        return this;
+    }
+
+    public MutableMatrix4f setTranslation(float tx, float ty, float tz) {
+        setIdentity();
+        m[12] = tx;
+        m[13] = ty;
+        m[14] = tz;
+        return this;
+    }
+
+    /**
+     * Sets <code>this = this * mat</code>.
+     */
+    public MutableMatrix4f mult(final MutableMatrix4f mat) {
+        return mult(mat, this);
+    }
+
+    /**
+     * Writes <code>this * mat</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableMatrix4f mult(final MutableMatrix4f mat, final MutableMatrix4f dest) {
+        final float[] a = m;
+        final float[] b = mat.m;
+
+        // when the destination is also an operand, its values are still
+        // needed until the last column, so the result goes through its
+        // scratch array
+        final boolean aliased = dest == this || dest == mat;
+        final float[] r = aliased ? dest.scratch : dest.m;
+
+        for (int col = 0; col < 4; col++) {
+            final int c = col * 4;
+            final float b0 = b[c], b1 = b[c + 1], b2 = b[c + 2], b3 = b[c + 3];
+            r[c] = a[0] * b0 + a[4] * b1 + a[8] * b2 + a[12] * b3;
+            r[c + 1] = a[1] * b0 + a[5] * b1 + a[9] * b2 + a[13] * b3;
+            r[c + 2] = a[2] * b0 + a[6] * b1 + a[10] * b2 + a[14] * b3;
+            r[c + 3] = a[3] * b0 + a[7] * b1 + a[11] * b2 + a[15] * b3;
+        }
+
+        if (aliased)
+            System.arraycopy(r, 0, dest.m, 0, 16);
+
+        return dest;
+    }
+
+    /**
+     * Sets <code>this = this * mat</code>.
+     */
+    public MutableMatrix4f mult(final Matrix4 mat) {
+        for (int col = 0; col < 4; col++) {
+            final int c = col * 4;
+            final float b0 = mat.value(0, col);
+            final float b1 = mat.value(1, col);
+            final float b2 = mat.value(2, col);
+            final float b3 = mat.value(3, col);
+            scratch[c] = m[0] * b0 + m[4] * b1 + m[8] * b2 + m[12] * b3;
+            scratch[c + 1] = m[1] * b0 + m[5] * b1 + m[9] * b2 + m[13] * b3;
+            scratch[c + 2] = m[2] * b0 + m[6] * b1 + m[10] * b2 + m[14] * b3;
+            scratch[c + 3] = m[3] * b0 + m[7] * b1 + m[11] * b2 + m[15] * b3;
+        }
+        System.arraycopy(scratch, 0, m, 0, 16);
+        return this;
+    }
+
+    /**
+     * Sets <code>this = mat * this</code>, which applies <code>mat</code>
+     * after <code>this</code> transform.
+     */
+    public MutableMatrix4f multLeft(final MutableMatrix4f mat) {
+        return mat.mult(this, this);
+    }
+
+    /**
+     * Writes <code>this * (v, 1)</code> into the destination, which moves a
+     * point by the whole transform.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f transformPoint(final MutableVector3f v, final MutableVector3f dest) {
+        final float x = v.x();
+        final float y = v.y();
+        final float z = v.z();
+        // @formatter:off
+        return dest.set(
+            m[0] * x + m[4] * y + m[8] * z + m[12],
+            m[1] * x + m[5] * y + m[9] * z + m[13],
+            m[2] * x + m[6] * y + m[10] * z + m[14]
+        );
+        // @formatter:on
+    }
+
+    /**
+     * Writes <code>this * (v, 0)</code> into the destination, which ignores
+     * the translation, as needed for directions.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f transformDirection(final MutableVector3f v, final MutableVector3f dest) {
+        final float x = v.x();
+        final float y = v.y();
+        final float z = v.z();
+        // @formatter:off
+        return dest.set(
+            m[0] * x + m[4] * y + m[8] * z,
+            m[1] * x + m[5] * y + m[9] * z,
+            m[2] * x + m[6] * y + m[10] * z
+        );
+        // @formatter:on
+    }
+
+    public MutableMatrix4f transpose() {
+        for (int row = 0; row < 4; row++) {
+            for (int col = row + 1; col < 4; col++) {
+                final float t = m[col * 4 + row];
+                m[col * 4 + row] = m[row * 4 + col];
+                m[row * 4 + col] = t;
+            }
+        }
+        return this;
+    }
+
+    public float determinant() {
+        final float s0 = m[0] * m[5] - m[1] * m[4];
+        final float s1 = m[0] * m[9] - m[1] * m[8];
+        final float s2 = m[0] * m[13] - m[1] * m[12];
+        final float s3 = m[4] * m[9] - m[5] * m[8];
+        final float s4 = m[4] * m[13] - m[5] * m[12];
+        final float s5 = m[8] * m[13] - m[9] * m[12];
+        final float c5 = m[10] * m[15] - m[11] * m[14];
+        final float c4 = m[6] * m[15] - m[7] * m[14];
+        final float c3 = m[6] * m[11] - m[7] * m[10];
+        final float c2 = m[2] * m[15] - m[3] * m[14];
+        final float c1 = m[2] * m[11] - m[3] * m[10];
+        final float c0 = m[2] * m[7] - m[3] * m[6];
+        return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    }
+
+    /**
+     * Inverts <code>this</code> matrix in place.
+     *
+     * @throws ArithmeticException
+     *             If the matrix is singular.
+     */
+    public MutableMatrix4f invert() {
+        // 2x2 sub-determinants of the first two and last two rows, from
+        // "The Laplace expansion theorem" (Eberly)
+        final float a00 = m[0], a01 = m[4], a02 = m[8], a03 = m[12];
+        final float a10 = m[1], a11 = m[5], a12 = m[9], a13 = m[13];
+        final float a20 = m[2], a21 = m[6], a22 = m[10], a23 = m[14];
+        final float a30 = m[3], a31 = m[7], a32 = m[11], a33 = m[15];
+
+        final float s0 = a00 * a11 - a10 * a01;
+        final float s1 = a00 * a12 - a10 * a02;
+        final float s2 = a00 * a13 - a10 * a03;
+        final float s3 = a01 * a12 - a11 * a02;
+        final float s4 = a01 * a13 - a11 * a03;
+        final float s5 = a02 * a13 - a12 * a03;
+
+        final float c5 = a22 * a33 - a32 * a23;
+        final float c4 = a21 * a33 - a31 * a23;
+        final float c3 = a21 * a32 - a31 * a22;
+        final float c2 = a20 * a33 - a30 * a23;
+        final float c1 = a20 * a32 - a30 * a22;
+        final float c0 = a20 * a31 - a30 * a21;
+
+        final float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (FloatUtil.isZero(det))
+            throw new ArithmeticException("Matrix determinant is zero: non-invertible matrix");
+
+        final float d = 1.0f / det;
+
+        m[0] = (a11 * c5 - a12 * c4 + a13 * c3) * d;
+        m[4] = (-a01 * c5 + a02 * c4 - a03 * c3) * d;
+        m[8] = (a31 * s5 - a32 * s4 + a33 * s3) * d;
+        m[12] = (-a21 * s5 + a22 * s4 - a23 * s3) * d;
+
+        m[1] = (-a10 * c5 + a12 * c2 - a13 * c1) * d;
+        m[5] = (a00 * c5 - a02 * c2 + a03 * c1) * d;
+        m[9] = (-a30 * s5 + a32 * s2 - a33 * s1) * d;
+        m[13] = (a20 * s5 - a22 * s2 + a23 * s1) * d;
+
+        m[2] = (a10 * c4 - a11 * c2 + a13 * c0) * d;
+        m[6] = (-a00 * c4 + a01 * c2 - a03 * c0) * d;
+        m[10] = (a30 * s4 - a31 * s2 + a33 * s0) * d;
+        m[14] = (-a20 * s4 + a21 * s2 - a23 * s0) * d;
+
+        m[3] = (-a10 * c3 + a11 * c1 - a12 * c0) * d;
+        m[7] = (a00 * c3 - a01 * c1 + a02 * c0) * d;
+        m[11] = (-a30 * s3 + a31 * s1 - a32 * s0) * d;
+        m[15] = (a20 * s3 - a21 * s1 + a22 * s0) * d;
+        return this;
+    }
+
+    /**
+     * Writes the values into the array in column-major order, starting at the
+     * given offset.
+     *
+     * @return The array.
+     */
+    public float[] get(final float[] dest, int offset) {
+        System.arraycopy(m, 0, dest, offset, 16);
+        return dest;
+    }
+
+    /**
+     * Writes the upper-left 3x3 part into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableMatrix3f get(final MutableMatrix3f dest) {
+        // @formatter:off
+        return dest.set(
+            m[0], m[1], m[2],
+            m[4], m[5], m[6],
+            m[8], m[9], m[10]
+        );
+        // @formatter:on
+    }
+
+    /**
+     * Creates an immutable copy of the current values.
+     *
+     * @return A new {@link Matrix4 matrix}.
+     */
+    public Matrix4 toMatrix4() {
+        return Matrix4f.createFrom(m);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append('(');
+        for (int row = 0; row < 4; row++) {
+            sb.append(row == 0 ? "[" : ", [");
+            for (int col = 0; col < 4; col++)
+                sb.append(col == 0 ? "" : ", ").append(value(row, col));
+            sb.append(']');
+        }
+        return sb.append(')').toString();
+    }
+
+}
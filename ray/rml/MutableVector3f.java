@@ -0,0 +1,284 @@
+/**
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ray.rml;
+
+/**
+ * A mutable single-precision floating point 3-component column vector, for
+ * code that can't afford to allocate a new {@link Vector3 vector} for every
+ * operation.
+ * <p>
+ * Operations change <code>this</code> vector in place and return it, so they
+ * can be chained, or write their result into a destination given by the
+ * caller. The destination may be <code>this</code> vector or one of the
+ * arguments.
+ * <p>
+ * This class deliberately does <i>not</i> implement {@link Vector3}: code
+ * written against {@link Vector3} is free to keep references, which would
+ * then change under it. Use {@link #set(Vector3)} and {@link #toVector3()} to
+ * move values between the two.
+ *
+ * @see MathStack
+ */
+public final class MutableVector3f {
+
+    private float x;
+    private float y;
+    private float z;
+
+    /**
+     * Creates a new zero-length vector.
+     */
+    public MutableVector3f() {}
+
+    public MutableVector3f(float x, float y, float z) {
+        set(x, y, z);
+    }
+
+    public MutableVector3f(final Vector3 v) {
+        set(v);
+    }
+
+    public float x() {
+        return x;
+    }
+
+    public float y() {
+        return y;
+    }
+
+    public float z() {
+        return z;
+    }
+
+    public MutableVector3f set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public MutableVector3f set(final Vector3 v) {
+        return set(v.x(), v.y(), v.z());
+    }
+
+    public MutableVector3f set(final MutableVector3f v) {
+        return set(v.x, v.y, v.z);
+    }
+
+    /**
+     * Sets the components from an array, starting at the given offset.
+     *
+     * @throws IndexOutOfBoundsException
+     *             If the array has less than 3 elements after the offset.
+     */
+    public MutableVector3f set(final float[] values, int offset) {
+        return set(values[offset], values[offset + 1], values[offset + 2]);
+    }
+
+    public MutableVector3f setZero() {
+        return set(0f, 0f, 0f);
+    }
+
+    public MutableVector3f add(float x, float y, float z) {
+        return set(this.x + x, this.y + y, this.z + z);
+    }
+
+    public MutableVector3f add(final MutableVector3f v) {
+        return add(v.x, v.y, v.z);
+    }
+
+    public MutableVector3f add(final Vector3 v) {
+        return add(v.x(), v.y(), v.z());
+    }
+
+    /**
+     * Writes <code>this + v</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f add(final MutableVector3f v, final MutableVector3f dest) {
+        return dest.set(x + v.x, y + v.y, z + v.z);
+    }
+
+    public MutableVector3f sub(float x, float y, float z) {
+        return set(this.x - x, this.y - y, this.z - z);
+    }
+
+    public MutableVector3f sub(final MutableVector3f v) {
+        return sub(v.x, v.y, v.z);
+    }
+
+    public MutableVector3f sub(final Vector3 v) {
+        return sub(v.x(), v.y(), v.z());
+    }
+
+    /**
+     * Writes <code>this - v</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f sub(final MutableVector3f v, final MutableVector3f dest) {
+        return dest.set(x - v.x, y - v.y, z - v.z);
+    }
+
+    public MutableVector3f mult(float s) {
+        return set(x * s, y * s, z * s);
+    }
+
+    /**
+     * Multiplies each component by the matching component of the argument.
+     */
+    public MutableVector3f mult(float sx, float sy, float sz) {
+        return set(x * sx, y * sy, z * sz);
+    }
+
+    public MutableVector3f mult(final MutableVector3f v) {
+        return mult(v.x, v.y, v.z);
+    }
+
+    public MutableVector3f mult(final Vector3 v) {
+        return mult(v.x(), v.y(), v.z());
+    }
+
+    /**
+     * Adds <code>v * s</code> to <code>this</code> vector, which is the usual
+     * way of integrating a velocity or acceleration.
+     */
+    public MutableVector3f addScaled(final MutableVector3f v, float s) {
+        return set(x + v.x * s, y + v.y * s, z + v.z * s);
+    }
+
+    public MutableVector3f negate() {
+        return set(-x, -y, -z);
+    }
+
+    public float dot(float x, float y, float z) {
+        return this.x * x + this.y * y + this.z * z;
+    }
+
+    public float dot(final MutableVector3f v) {
+        return dot(v.x, v.y, v.z);
+    }
+
+    public float dot(final Vector3 v) {
+        return dot(v.x(), v.y(), v.z());
+    }
+
+    public MutableVector3f cross(final MutableVector3f v) {
+        return cross(v, this);
+    }
+
+    /**
+     * Writes <code>this &times; v</code> into the destination.
+     *
+     * @return The destination.
+     */
+    public MutableVector3f cross(final MutableVector3f v, final MutableVector3f dest) {
+        return dest.set(y * v.z - z * v.y, z * v.x - x * v.z, x * v.y - y * v.x);
+    }
+
+    /**
+     * Rotates <code>this</code> vector by a unit {@link Quaternion quaternion},
+     * the same as multiplying it by {@link Quaternion#toMatrix3()}.
+     */
+    public MutableVector3f rotate(final Quaternion q) {
+        // v' = v + w * t + (q.xyz x t), where t = 2 * (q.xyz x v)
+        final float qx = q.x();
+        final float qy = q.y();
+        final float qz = q.z();
+        final float tx = 2f * (qy * z - qz * y);
+        final float ty = 2f * (qz * x - qx * z);
+        final float tz = 2f * (qx * y - qy * x);
+        final float w = q.w();
+        return set(x + w * tx + (qy * tz - qz * ty), y + w * ty + (qz * tx - qx * tz), z + w * tz + (qx * ty - qy * tx));
+    }
+
+    public float length() {
+        return (float) Math.sqrt(lengthSquared());
+    }
+
+    public float lengthSquared() {
+        return x * x + y * y + z * z;
+    }
+
+    public float distanceSquared(final MutableVector3f v) {
+        final float dx = x - v.x;
+        final float dy = y - v.y;
+        final float dz = z - v.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    public boolean isZeroLength() {
+        return FloatUtil.isZero(lengthSquared(), FloatUtil.EPSILON);
+    }
+
+    /**
+     * Scales <code>this</code> vector to unit length, the same way
+     * {@link Vector3#normalize()} does.
+     *
+     * @throws ArithmeticException
+     *             If the vector has zero length.
+     */
+    public MutableVector3f normalize() {
+        return normalize(this);
+    }
+
+    public MutableVector3f normalize(final MutableVector3f dest) {
+        final float sqlen = lengthSquared();
+        if (FloatUtil.isZero(sqlen))
+            throw new ArithmeticException("Cannot normalize zero-length vector");
+
+        final float oneOverLen = MathUtil.invSqrt(sqlen);
+        return dest.set(x * oneOverLen, y * oneOverLen, z * oneOverLen);
+    }
+
+    /**
+     * Moves <code>this</code> vector towards the end by the given fraction,
+     * clamped to <code>[0, 1]</code>.
+     */
+    public MutableVector3f lerp(final MutableVector3f end, float t) {
+        t = MathUtil.clamp(t, 0f, 1f);
+        final float d = 1.0f - t;
+        return set(d * x + t * end.x, d * y + t * end.y, d * z + t * end.z);
+    }
+
+    /**
+     * Writes the components into the array, starting at the given offset.
+     *
+     * @return The array.
+     */
+    public float[] get(final float[] dest, int offset) {
+        dest[offset] = x;
+        dest[offset + 1] = y;
+        dest[offset + 2] = z;
+        return dest;
+    }
+
+    /**
+     * Creates an immutable copy of the current value.
+     *
+     * @return A new {@link Vector3 vector}.
+     */
+    public Vector3 toVector3() {
+        return Vector3f.createFrom(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + x + ", " + y + ", " + z + ")";
+    }
+
+}
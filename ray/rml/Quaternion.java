@@ -143,4 +143,12 @@ public interface Quaternion extends FourDimensional, Addable<Quaternion>, Subtra
      */
     Matrix4 toMatrix4();
 
+    /**
+     * Formats the components as <code>w,x,y,z</code>, for sending over the
+     * network.
+     *
+     * @return The components, separated by commas.
+     */
+    String serialize();
+
 }
@@ -212,6 +212,24 @@ public class Quaternionf implements Quaternion {
         return createNormalizedFrom(values[0], values[1], values[2], values[3]);
     }
 
+    /**
+     * Creates a new <i>normalized</i> {@link Quaternion quaternion} from the
+     * <code>(w, [x, y, z])</code> values of {@link Quaternion#serialize()}.
+     * They're normalized again, since they were rounded when formatted.
+     *
+     * @param values
+     *            The <code>(w, [x, y, z])</code> components of the
+     *            {@link Quaternion quaternion}, as text.
+     * @return A new <i>normalized</i> {@link Quaternion quaternion} with the
+     *         specified values.
+     * @throws IndexOutOfBoundsException
+     *             If the input array has less than 4 elements.
+     */
+    public static Quaternion createNormalizedFrom(final String[] values) {
+        return createNormalizedFrom(Float.parseFloat(values[0]), Float.parseFloat(values[1]),
+                Float.parseFloat(values[2]), Float.parseFloat(values[3]));
+    }
+
     /**
      * Creates a new <i>normalized</i> {@link Quaternion quaternion} from the
      * specified {@link Angle angle} and {@link Vector3 axis}.
@@ -616,6 +634,11 @@ public class Quaternionf implements Quaternion {
         return true;
     }
 
+    @Override
+    public String serialize() {
+        return String.format("%f,%f,%f,%f", w, x, y, z);
+    }
+
     @Override
     public String toString() {
         return Quaternionf.class.getSimpleName() + "(" + w + ", [" + x + ", " + y + ", " + z + "])";